@@ -14,6 +14,7 @@ import net.java.sip.communicator.service.history.*;
 import net.java.sip.communicator.service.protocol.*;
 import net.java.sip.communicator.util.*;
 
+import org.jitsi.service.fileaccess.*;
 import org.jitsi.service.resources.*;
 import org.osgi.framework.*;
 
@@ -49,6 +50,11 @@ public class CallHistoryActivator
      */
     private static ResourceManagementService resourcesService;
 
+    /**
+     * The service giving access to files.
+     */
+    private static FileAccessService fileAccessService;
+
     /**
      * The map containing all registered 
      */
@@ -140,6 +146,23 @@ public class CallHistoryActivator
         return resourcesService;
     }
 
+    /**
+     * Returns the <tt>FileAccessService</tt> obtained from the bundle context.
+     *
+     * @return the <tt>FileAccessService</tt> obtained from the bundle context
+     */
+    public static FileAccessService getFileAccessService()
+    {
+        if (fileAccessService == null)
+        {
+            fileAccessService
+                = ServiceUtils.getService(
+                        bundleContext,
+                        FileAccessService.class);
+        }
+        return fileAccessService;
+    }
+
     /**
      * Returns all <tt>ProtocolProviderFactory</tt>s obtained from the bundle
      * context.
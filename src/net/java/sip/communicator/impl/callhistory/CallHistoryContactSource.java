@@ -157,6 +157,11 @@ public class CallHistoryContactSource
                     callRecords.next());
                 sourceContacts.add(contact);
             }
+
+            // results read from the index are all there already
+            if ((callHistoryQuery instanceof CallHistoryQueryImpl)
+                    && ((CallHistoryQueryImpl) callHistoryQuery).isCompleted())
+                status = QUERY_COMPLETED;
         }
 
         /**
@@ -0,0 +1,718 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.callhistory;
+
+import java.io.*;
+import java.util.*;
+
+import net.java.sip.communicator.service.callhistory.*;
+import net.java.sip.communicator.service.history.*;
+import net.java.sip.communicator.service.history.records.*;
+import net.java.sip.communicator.service.protocol.event.*;
+import net.java.sip.communicator.util.*;
+
+/**
+ * An index of the call history by peer address. All the records of the call
+ * history are kept in memory in the order they were written, together with
+ * the positions of the records of every peer and a summary of the calls with
+ * the peer, so that the calls with a peer, their summary and the most recent
+ * calls can be returned without going through the history files.
+ * <p>
+ * The records are also appended to a file of their own as they are written.
+ * The file is read the first time the index is needed and any record written
+ * to the history after the last record of the file is then read from the
+ * history, so that the index does not depend on the file being up to date.
+ * The file is discarded and the index rebuilt from the history if the last
+ * record of the file is no longer in the history, i.e. the history has been
+ * purged since the file was written.
+ *
+ * @author Damian Minkov
+ */
+public class CallHistoryIndex
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>CallHistoryIndex</tt> class for
+     * logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(CallHistoryIndex.class);
+
+    /**
+     * Identifies our file format.
+     */
+    private static final int MAGIC = 0x43484958;
+
+    /**
+     * The version of our file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The file the records are stored in, <tt>null</tt> if the index is only
+     * kept in memory.
+     */
+    private final File file;
+
+    /**
+     * The names of the properties of the call history records.
+     */
+    private final String[] propertyNames;
+
+    /**
+     * The records of the call history in the order they were written.
+     */
+    private final List<HistoryRecord> records = new ArrayList<HistoryRecord>();
+
+    /**
+     * The calls of every peer by normalized peer address.
+     */
+    private final Map<String, PeerEntry> peers
+        = new HashMap<String, PeerEntry>();
+
+    /**
+     * The timestamp of the last record of the index.
+     */
+    private long lastTimestamp = -1;
+
+    /**
+     * Whether the index has been loaded.
+     */
+    private boolean loaded = false;
+
+    /**
+     * Creates an index of the records having the given properties.
+     *
+     * @param file the file the records are to be stored in or <tt>null</tt>
+     * to keep the index in memory only
+     * @param propertyNames the names of the properties of the call history
+     * records
+     */
+    public CallHistoryIndex(File file, String[] propertyNames)
+    {
+        this.file = file;
+        this.propertyNames = propertyNames;
+    }
+
+    /**
+     * Loads the index, unless it already is, from its file and from the
+     * records of <tt>history</tt> written after the last record of the file.
+     *
+     * @param history the call history
+     */
+    public synchronized void load(History history)
+    {
+        if (loaded)
+            return;
+
+        boolean rewrite = (file == null) || !file.exists();
+
+        if (!rewrite)
+        {
+            DataInputStream in = null;
+
+            try
+            {
+                in = new DataInputStream(
+                        new BufferedInputStream(new FileInputStream(file)));
+                read(in);
+            }
+            catch (IOException e)
+            {
+                // the records read so far are fine, the next ones will be
+                // read from the history
+                logger.warn("Failed to read call history index " + file, e);
+                rewrite = true;
+            }
+            finally
+            {
+                if (in != null)
+                {
+                    try
+                    {
+                        in.close();
+                    }
+                    catch (IOException e)
+                    {
+                    }
+                }
+            }
+
+            if ((lastTimestamp != -1) && !isInHistory(history, lastTimestamp))
+            {
+                logger.info(
+                        "Call history purged, rebuilding its index " + file);
+                clear();
+                rewrite = true;
+            }
+        }
+
+        int fileRecordCount = records.size();
+        QueryResultSet<HistoryRecord> rs
+            = history.getReader().findByStartDate(new Date(lastTimestamp));
+        List<HistoryRecord> newRecords = new ArrayList<HistoryRecord>();
+
+        while (rs.hasNext())
+            newRecords.add(rs.next());
+        Collections.sort(
+                newRecords,
+                new Comparator<HistoryRecord>()
+                {
+                    public int compare(HistoryRecord r1, HistoryRecord r2)
+                    {
+                        long t1 = r1.getTimestamp();
+                        long t2 = r2.getTimestamp();
+
+                        return (t1 < t2) ? -1 : ((t1 == t2) ? 0 : 1);
+                    }
+                });
+        for (HistoryRecord record : newRecords)
+            index(record);
+
+        if (rewrite)
+            write(0, false);
+        else if (records.size() > fileRecordCount)
+            write(fileRecordCount, true);
+
+        if (logger.isDebugEnabled())
+        {
+            logger.debug(
+                    "Indexed " + records.size() + " call history records, "
+                        + newRecords.size() + " read from the history.");
+        }
+        loaded = true;
+    }
+
+    /**
+     * Adds a record which has just been written to the call history. Does
+     * nothing if the index has not been loaded yet since the record will then
+     * be read from the history.
+     *
+     * @param record the record written to the call history
+     */
+    public synchronized void add(HistoryRecord record)
+    {
+        if (!loaded)
+            return;
+
+        index(record);
+        write(records.size() - 1, true);
+    }
+
+    /**
+     * Returns the most recent records of the calls with the peers whose
+     * address contains <tt>address</tt>, ignoring case.
+     *
+     * @param address the address or part of the address of the peers
+     * @param count the maximum number of records to return
+     * @return the most recent records of the calls with the matching peers,
+     * the most recent first
+     */
+    public synchronized List<HistoryRecord> findByPeer(
+            String address,
+            int count)
+    {
+        String key = normalizeAddress(address);
+        List<PeerEntry> matches = new ArrayList<PeerEntry>();
+        PeerEntry exactMatch = peers.get(key);
+
+        if (exactMatch != null)
+            matches.add(exactMatch);
+        for (Map.Entry<String, PeerEntry> e : peers.entrySet())
+        {
+            if ((e.getValue() != exactMatch) && e.getKey().contains(key))
+                matches.add(e.getValue());
+        }
+
+        List<HistoryRecord> result = new ArrayList<HistoryRecord>();
+
+        if (matches.size() == 1)
+        {
+            PeerEntry peer = matches.get(0);
+
+            for (int i = peer.size - 1; (i >= 0) && (result.size() < count);
+                    i--)
+                result.add(records.get(peer.positions[i]));
+        }
+        else if (!matches.isEmpty())
+        {
+            // a conference call may be listed by several of the peers
+            SortedSet<Integer> positions
+                = new TreeSet<Integer>(Collections.reverseOrder());
+
+            for (PeerEntry peer : matches)
+            {
+                for (int i = peer.size - 1, added = 0;
+                        (i >= 0) && (added < count);
+                        i--, added++)
+                    positions.add(peer.positions[i]);
+            }
+            for (Iterator<Integer> iter = positions.iterator();
+                    iter.hasNext() && (result.size() < count);)
+                result.add(records.get(iter.next()));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the most recent records of the call history.
+     *
+     * @param count the maximum number of records to return
+     * @return the most recent records of the call history, the most recent
+     * first
+     */
+    public synchronized List<HistoryRecord> findLast(int count)
+    {
+        List<HistoryRecord> result = new ArrayList<HistoryRecord>();
+
+        for (int i = records.size() - 1; (i >= 0) && (result.size() < count);
+                i--)
+            result.add(records.get(i));
+        return result;
+    }
+
+    /**
+     * Returns the most recent records of the call history written before a
+     * specific time. The records are found by binary search since they are
+     * indexed in the order they were written.
+     *
+     * @param timestamp the time before which the records were written
+     * @param count the maximum number of records to return
+     * @return the most recent records of the call history written before
+     * <tt>timestamp</tt>, the most recent first
+     */
+    public synchronized List<HistoryRecord> findLastBefore(
+            long timestamp,
+            int count)
+    {
+        int low = 0;
+        int high = records.size();
+
+        // the position of the first record written at or after timestamp
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+
+            if (records.get(mid).getTimestamp() < timestamp)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+
+        List<HistoryRecord> result = new ArrayList<HistoryRecord>();
+
+        for (int i = low - 1; (i >= 0) && (result.size() < count); i--)
+            result.add(records.get(i));
+        return result;
+    }
+
+    /**
+     * Returns the summary of the calls with a peer.
+     *
+     * @param address the address of the peer
+     * @return the summary of the calls with the peer or <tt>null</tt> if
+     * there has been no call with the peer
+     */
+    public synchronized PeerSummary getPeerSummary(String address)
+    {
+        PeerEntry peer = peers.get(normalizeAddress(address));
+
+        return
+            (peer == null)
+                ? null
+                : new PeerSummary(
+                        peer.size,
+                        peer.missedCallCount,
+                        peer.lastCallTime);
+    }
+
+    /**
+     * Returns the key under which the calls with a peer are indexed, i.e. its
+     * address in lower case without URI scheme and parameters.
+     *
+     * @param address the address of the peer
+     * @return the key under which the calls with the peer are indexed
+     */
+    static String normalizeAddress(String address)
+    {
+        String key = address.trim().toLowerCase();
+        int paramsIndex = key.indexOf(';');
+
+        if (paramsIndex >= 0)
+            key = key.substring(0, paramsIndex);
+        if (key.startsWith("sip:") || key.startsWith("tel:"))
+            key = key.substring(4);
+        else if (key.startsWith("sips:"))
+            key = key.substring(5);
+        return key;
+    }
+
+    /**
+     * Adds a record to the index.
+     *
+     * @param record the record to add
+     */
+    private void index(HistoryRecord record)
+    {
+        int position = records.size();
+        String[] names = record.getPropertyNames();
+        String[] values = record.getPropertyValues();
+        String peerIDs = null;
+        String dir = null;
+        String callStart = null;
+        String callEnd = null;
+        String endReason = null;
+
+        for (int i = 0; i < names.length; i++)
+        {
+            String name = names[i];
+
+            if (name.equals(propertyNames[1]))
+                callStart = values[i];
+            else if (name.equals(propertyNames[2]))
+                callEnd = values[i];
+            else if (name.equals(propertyNames[3]))
+                dir = values[i];
+            else if (name.equals(propertyNames[4]))
+                peerIDs = values[i];
+            else if (name.equals(propertyNames[8]))
+                endReason = values[i];
+        }
+
+        long startTime = parseLong(callStart);
+        // the same as the missed call icon of CallHistorySourceContact
+        boolean missed
+            = CallRecord.IN.equals(dir)
+                && (startTime == parseLong(callEnd))
+                && (parseLong(endReason)
+                        != CallPeerChangeEvent.NORMAL_CALL_CLEARING);
+
+        records.add(record);
+        lastTimestamp = Math.max(lastTimestamp, record.getTimestamp());
+
+        if (peerIDs == null)
+            return;
+
+        Set<String> keys = new HashSet<String>();
+        StringTokenizer toks = new StringTokenizer(peerIDs, ",");
+
+        while (toks.hasMoreTokens())
+            keys.add(normalizeAddress(toks.nextToken()));
+        for (String key : keys)
+        {
+            PeerEntry peer = peers.get(key);
+
+            if (peer == null)
+            {
+                peer = new PeerEntry();
+                peers.put(key, peer);
+            }
+            peer.add(position, startTime, missed);
+        }
+    }
+
+    /**
+     * Parses a numeric property of a record.
+     *
+     * @param value the value of the property, may be <tt>null</tt>
+     * @return the parsed value or <tt>-1</tt> if <tt>value</tt> is not a
+     * number
+     */
+    private static long parseLong(String value)
+    {
+        if (value == null)
+            return -1;
+        try
+        {
+            return Long.parseLong(value);
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Removes all the records from the index.
+     */
+    private void clear()
+    {
+        records.clear();
+        peers.clear();
+        lastTimestamp = -1;
+    }
+
+    /**
+     * Determines whether the call history still contains a record written at
+     * a specific time.
+     *
+     * @param history the call history
+     * @param timestamp the time the record was written at
+     * @return <tt>true</tt> if <tt>history</tt> contains a record written at
+     * <tt>timestamp</tt>; otherwise, <tt>false</tt>
+     */
+    private static boolean isInHistory(History history, long timestamp)
+    {
+        // the bounds of the period are excluded
+        return
+            history
+                .getReader()
+                    .findByPeriod(
+                            new Date(timestamp - 1),
+                            new Date(timestamp + 1))
+                        .hasNext();
+    }
+
+    /**
+     * Reads the records of <tt>in</tt> and indexes them.
+     *
+     * @param in the stream to read from
+     * @throws IOException if <tt>in</tt> could not be read or is not in our
+     * format
+     */
+    private void read(DataInputStream in)
+        throws IOException
+    {
+        if ((in.readInt() != MAGIC) || (in.readInt() != VERSION))
+            throw new IOException("Unknown call history index format");
+
+        while (true)
+        {
+            long timestamp;
+
+            try
+            {
+                timestamp = in.readLong();
+            }
+            catch (EOFException e)
+            {
+                return;
+            }
+
+            int count = in.readUnsignedByte();
+            String[] names = new String[count];
+            String[] values = new String[count];
+
+            for (int i = 0; i < count; i++)
+            {
+                int nameIndex = in.readUnsignedByte();
+
+                if (nameIndex >= propertyNames.length)
+                    throw new IOException("Unknown property " + nameIndex);
+                names[i] = propertyNames[nameIndex];
+                values[i] = in.readUTF();
+            }
+            index(new HistoryRecord(names, values, timestamp));
+        }
+    }
+
+    /**
+     * Writes records to the file.
+     *
+     * @param from the position of the first record to write
+     * @param append <tt>true</tt> to append the records to the file,
+     * <tt>false</tt> to replace the file with them
+     */
+    private void write(int from, boolean append)
+    {
+        if (file == null)
+            return;
+
+        DataOutputStream out = null;
+
+        try
+        {
+            out = new DataOutputStream(
+                    new BufferedOutputStream(
+                            new FileOutputStream(file, append)));
+            if (!append)
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+            }
+            for (int i = from; i < records.size(); i++)
+                write(out, records.get(i));
+        }
+        catch (IOException e)
+        {
+            logger.error("Failed to write call history index " + file, e);
+        }
+        finally
+        {
+            if (out != null)
+            {
+                try
+                {
+                    out.close();
+                }
+                catch (IOException e)
+                {
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a record.
+     *
+     * @param out the stream to write to
+     * @param record the record to write
+     * @throws IOException if writing fails
+     */
+    private void write(DataOutputStream out, HistoryRecord record)
+        throws IOException
+    {
+        String[] names = record.getPropertyNames();
+        String[] values = record.getPropertyValues();
+        int count = 0;
+
+        for (int i = 0; i < names.length; i++)
+        {
+            if ((values[i] != null) && (indexOf(names[i]) >= 0))
+                count++;
+        }
+
+        out.writeLong(record.getTimestamp());
+        out.writeByte(count);
+        for (int i = 0; i < names.length; i++)
+        {
+            int nameIndex = indexOf(names[i]);
+
+            if ((values[i] != null) && (nameIndex >= 0))
+            {
+                out.writeByte(nameIndex);
+                out.writeUTF(values[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the index of a property name.
+     *
+     * @param name the property name
+     * @return the index of <tt>name</tt> in the property names of the
+     * records or <tt>-1</tt>
+     */
+    private int indexOf(String name)
+    {
+        for (int i = 0; i < propertyNames.length; i++)
+        {
+            if (propertyNames[i].equals(name))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * The calls with one peer.
+     */
+    private static class PeerEntry
+    {
+        /**
+         * The positions of the records of the calls with the peer, in the
+         * order they were written.
+         */
+        private int[] positions = new int[4];
+
+        /**
+         * The number of calls with the peer.
+         */
+        private int size = 0;
+
+        /**
+         * The start time of the last call with the peer.
+         */
+        private long lastCallTime = -1;
+
+        /**
+         * The number of missed calls from the peer.
+         */
+        private int missedCallCount = 0;
+
+        /**
+         * Adds a call.
+         *
+         * @param position the position of the record of the call
+         * @param startTime the start time of the call
+         * @param missed whether the call was missed
+         */
+        private void add(int position, long startTime, boolean missed)
+        {
+            if (size == positions.length)
+                positions = Arrays.copyOf(positions, size * 2);
+            positions[size++] = position;
+            lastCallTime = Math.max(lastCallTime, startTime);
+            if (missed)
+                missedCallCount++;
+        }
+    }
+
+    /**
+     * The summary of the calls with one peer at the time it was requested.
+     */
+    public static class PeerSummary
+    {
+        /**
+         * The number of calls with the peer.
+         */
+        private final int callCount;
+
+        /**
+         * The number of missed calls from the peer.
+         */
+        private final int missedCallCount;
+
+        /**
+         * The start time of the last call with the peer.
+         */
+        private final long lastCallTime;
+
+        /**
+         * Initializes a new <tt>PeerSummary</tt>.
+         *
+         * @param callCount the number of calls with the peer
+         * @param missedCallCount the number of missed calls from the peer
+         * @param lastCallTime the start time of the last call with the peer
+         */
+        private PeerSummary(int callCount, int missedCallCount,
+                long lastCallTime)
+        {
+            this.callCount = callCount;
+            this.missedCallCount = missedCallCount;
+            this.lastCallTime = lastCallTime;
+        }
+
+        /**
+         * Returns the number of calls with the peer.
+         *
+         * @return the number of calls with the peer
+         */
+        public int getCallCount()
+        {
+            return callCount;
+        }
+
+        /**
+         * Returns the number of missed calls from the peer.
+         *
+         * @return the number of missed calls from the peer
+         */
+        public int getMissedCallCount()
+        {
+            return missedCallCount;
+        }
+
+        /**
+         * Returns the start time of the last call with the peer.
+         *
+         * @return the start time of the last call with the peer
+         */
+        public Date getLastCallTime()
+        {
+            return new Date(lastCallTime);
+        }
+    }
+}
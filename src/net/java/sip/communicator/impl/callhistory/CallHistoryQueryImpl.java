@@ -28,6 +28,11 @@ public class CallHistoryQueryImpl
 
     private final HistoryQuery historyQuery;
 
+    /**
+     * The query string, this query was created for.
+     */
+    private final String queryString;
+
     /**
      * Creates an instance of <tt>CallHistoryQueryImpl</tt> by specifying the
      * underlying <tt>HistoryQuery</tt>.
@@ -36,6 +41,7 @@ public class CallHistoryQueryImpl
     public CallHistoryQueryImpl(HistoryQuery query)
     {
         this.historyQuery = query;
+        this.queryString = query.getQueryString();
 
         historyQuery.addHistoryRecordsListener(new HistoryQueryListener()
         {
@@ -68,12 +74,37 @@ public class CallHistoryQueryImpl
         }
     }
 
+    /**
+     * Creates an instance of <tt>CallHistoryQueryImpl</tt>, which has already
+     * completed, by specifying its results.
+     * @param queryString the query string this query was created for
+     * @param callRecords the results of this query
+     */
+    public CallHistoryQueryImpl(String queryString,
+                                Collection<CallRecord> callRecords)
+    {
+        this.historyQuery = null;
+        this.queryString = queryString;
+        this.callRecords.addAll(callRecords);
+    }
+
     /**
      * Cancels this query.
      */
     public void cancel()
     {
-        historyQuery.cancel();
+        if (historyQuery != null)
+            historyQuery.cancel();
+    }
+
+    /**
+     * Indicates if this query has all its results already, in which case no
+     * <tt>CallHistoryQueryListener</tt> is ever notified.
+     * @return <tt>true</tt> if this query has completed when created
+     */
+    boolean isCompleted()
+    {
+        return (historyQuery == null);
     }
 
     /**
@@ -159,6 +190,6 @@ public class CallHistoryQueryImpl
      */
     public String getQueryString()
     {
-        return historyQuery.getQueryString();
+        return queryString;
     }
 }
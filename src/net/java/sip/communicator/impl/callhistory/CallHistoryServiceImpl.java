@@ -52,6 +52,11 @@ public class CallHistoryServiceImpl
 
     private static final String DELIM = ",";
 
+    /**
+     * The name of the file the call history index is stored in.
+     */
+    private static final String INDEX_FILE_NAME = "callhistory.index";
+
     /**
      * The BundleContext that we got from the OSGI bus.
      */
@@ -74,6 +79,12 @@ public class CallHistoryServiceImpl
 
     private HistoryReader historyReader;
 
+    /**
+     * The index of the call history by peer address.
+     */
+    private CallHistoryIndex callIndex
+        = new CallHistoryIndex(null, STRUCTURE_NAMES);
+
     /**
      * Returns the underlying history service.
      * @return the underlying history service
@@ -268,15 +279,35 @@ public class CallHistoryServiceImpl
             = new TreeSet<CallRecord>(new CallRecordComparator());
         try
         {
-            // the default ones
-            History history = this.getHistory(null, null);
-            historyReader = history.getReader();
-            QueryResultSet<HistoryRecord> rs = historyReader.findLast(count);
-            while (rs.hasNext())
-            {
-                HistoryRecord hr = rs.next();
+            for (HistoryRecord hr : getCallIndex().findLast(count))
+                result.add(convertHistoryRecordToCallRecord(hr));
+        }
+        catch (IOException ex)
+        {
+            logger.error("Could not read history", ex);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the supplied number of calls written before the given date
+     *
+     * @param date the date before which the calls were written
+     * @param count calls count
+     * @return Collection of CallRecords with CallPeerRecord
+     * @throws RuntimeException
+     */
+    public Collection<CallRecord> findLastRecordsBefore(Date date, int count)
+        throws RuntimeException
+    {
+        TreeSet<CallRecord> result
+            = new TreeSet<CallRecord>(new CallRecordComparator());
+        try
+        {
+            for (HistoryRecord hr
+                    : getCallIndex().findLastBefore(date.getTime(), count))
                 result.add(convertHistoryRecordToCallRecord(hr));
-            }
         }
         catch (IOException ex)
         {
@@ -300,15 +331,13 @@ public class CallHistoryServiceImpl
 
         try
         {
-            // the default ones
-            History history = this.getHistory(null, null);
-            InteractiveHistoryReader historyReader
-                = history.getInteractiveReader();
-            HistoryQuery historyQuery
-                = historyReader.findByKeyword(
-                    address, "callParticipantIDs", recordCount);
+            List<CallRecord> callRecords = new ArrayList<CallRecord>();
 
-            callQuery = new CallHistoryQueryImpl(historyQuery);
+            for (HistoryRecord hr
+                    : getCallIndex().findByPeer(address, recordCount))
+                callRecords.add(convertHistoryRecordToCallRecord(hr));
+
+            callQuery = new CallHistoryQueryImpl(address, callRecords);
         }
         catch (IOException ex)
         {
@@ -318,6 +347,21 @@ public class CallHistoryServiceImpl
         return callQuery;
     }
 
+    /**
+     * Returns the index of the call history, loading it if it has not been
+     * loaded yet.
+     *
+     * @return the index of the call history
+     * @throws IOException if the call history could not be opened
+     */
+    private CallHistoryIndex getCallIndex()
+        throws IOException
+    {
+        // the default ones
+        callIndex.load(this.getHistory(null, null));
+        return callIndex;
+    }
+
     /**
      * Returns the history by specified local and remote contact
      * if one of them is null the default is used
@@ -553,6 +597,19 @@ public class CallHistoryServiceImpl
 
         this.bundleContext = bc;
 
+        try
+        {
+            File indexFile
+                = CallHistoryActivator.getFileAccessService()
+                    .getPrivatePersistentFile(INDEX_FILE_NAME);
+
+            callIndex = new CallHistoryIndex(indexFile, STRUCTURE_NAMES);
+        }
+        catch (Exception e)
+        {
+            logger.error("Failed to get call history index file", e);
+        }
+
         // start listening for newly register or removed protocol providers
         bc.addServiceListener(this);
 
@@ -675,7 +732,7 @@ public class CallHistoryServiceImpl
                 callPeerStates.append(item.getState().getStateString());
             }
 
-            historyWriter.addRecord(new String[] {
+            String[] values = new String[] {
                     callRecord.getSourceCall().getProtocolProvider()
                         .getAccountID().getAccountUniqueID(),
                     String.valueOf(callRecord.getStartTime().getTime()),
@@ -686,9 +743,20 @@ public class CallHistoryServiceImpl
                     callPeerEndTime.toString(),
                     callPeerStates.toString(),
                     String.valueOf(callRecord.getEndReason()),
-                    callPeerNames.toString()},
-                    new Date());    // this date is when the history
-                                    // record is written
+                    callPeerNames.toString()};
+
+            // the index must not be loaded between the writing of the record
+            // and its addition to the index or it would get it twice
+            synchronized (callIndex)
+            {
+                Date timestamp = new Date(); // this date is when the history
+                                             // record is written
+
+                historyWriter.addRecord(values, timestamp);
+                callIndex.add(
+                    new HistoryRecord(
+                        STRUCTURE_NAMES, values, timestamp.getTime()));
+            }
         }
         catch (IOException e)
         {
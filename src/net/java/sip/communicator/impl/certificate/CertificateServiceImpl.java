@@ -93,6 +93,17 @@ public class CertificateServiceImpl
     /** Hash algorithm for the cert thumbprint*/
     private final static String THUMBPRINT_HASH_ALGORITHM = "SHA1";
 
+    /**
+     * The maximum number of successfully verified chains remembered.
+     */
+    private final static int VERIFIED_CHAINS_CACHE_SIZE = 64;
+
+    /**
+     * The maximum time in milliseconds a verified chain is trusted without
+     * being verified again, even if its certificates are still valid.
+     */
+    private final static long VERIFIED_CHAINS_CACHE_TTL = 60 * 60 * 1000;
+
     // ------------------------------------------------------------------------
     // fields
     // ------------------------------------------------------------------------
@@ -108,6 +119,61 @@ public class CertificateServiceImpl
     private Map<URI, AiaCacheEntry> aiaCache =
         new HashMap<URI, AiaCacheEntry>();
 
+    /**
+     * The default X509 trust manager of the platform, loaded from the
+     * configured trust store the first time it is needed.
+     */
+    private X509TrustManager defaultTrustManager;
+
+    /**
+     * The trust store file {@link #defaultTrustManager} was loaded from or
+     * <tt>null</tt> if the trust store isn't a file.
+     */
+    private File defaultTrustManagerFile;
+
+    /**
+     * The last modification time of {@link #defaultTrustManagerFile} when
+     * {@link #defaultTrustManager} was loaded.
+     */
+    private long defaultTrustManagerFileModified;
+
+    /**
+     * Caches the chains which have been verified successfully by the default
+     * trust manager and the matchers, keyed by the thumbprints of the chain
+     * and the identities they have been verified for, until they expire.
+     */
+    private final Map<String, Long> verifiedChains =
+        new LinkedHashMap<String, Long>(16, 0.75f, true)
+        {
+            /**
+             * Serial version UID.
+             */
+            private static final long serialVersionUID = 0L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest)
+            {
+                return size() > VERIFIED_CHAINS_CACHE_SIZE;
+            }
+        };
+
+    /**
+     * The number of chains checked by the trust managers of this service.
+     */
+    private long chainChecks;
+
+    /**
+     * The number of chains checked by the trust managers of this service
+     * which were found in {@link #verifiedChains}.
+     */
+    private long verifiedChainHits;
+
+    /**
+     * The total time in milliseconds spent by the trust managers of this
+     * service checking chains.
+     */
+    private long chainCheckTime;
+
     // ------------------------------------------------------------------------
     // Map access helpers
     // ------------------------------------------------------------------------
@@ -154,11 +220,13 @@ public class CertificateServiceImpl
     {
         setTrustStore();
         config.addPropertyChangeListener(PNAME_TRUSTSTORE_TYPE, this);
+        config.addPropertyChangeListener(PNAME_TRUSTSTORE_FILE, this);
     }
 
     public void propertyChange(PropertyChangeEvent evt)
     {
         setTrustStore();
+        resetDefaultTrustManager();
     }
 
     private void setTrustStore()
@@ -587,24 +655,7 @@ public class CertificateServiceImpl
         throws GeneralSecurityException
     {
         // obtain the default X509 trust manager
-        X509TrustManager defaultTm = null;
-        TrustManagerFactory tmFactory =
-            TrustManagerFactory.getInstance(TrustManagerFactory
-                .getDefaultAlgorithm());
-        tmFactory.init((KeyStore) null);
-        for (TrustManager m : tmFactory.getTrustManagers())
-        {
-            if (m instanceof X509TrustManager)
-            {
-                defaultTm = (X509TrustManager) m;
-                break;
-            }
-        }
-        if (defaultTm == null)
-            throw new GeneralSecurityException(
-                "No default X509 trust manager found");
-
-        final X509TrustManager tm = defaultTm;
+        final X509TrustManager tm = getDefaultTrustManager();
 
         return new X509TrustManager()
         {
@@ -643,8 +694,16 @@ public class CertificateServiceImpl
                             Boolean.parseBoolean(defaultAlwaysTrustMode)))
                     return;
 
+                long startTime = System.currentTimeMillis();
+                String verifiedChainKey = getVerifiedChainKey(chain, authType);
+
+                if (isVerifiedChain(verifiedChainKey, startTime))
+                    return;
+
                 try
                 {
+                    X509Certificate[] receivedChain = chain;
+
                     // check the certificate itself (issuer, validity)
                     try
                     {
@@ -658,15 +717,20 @@ public class CertificateServiceImpl
                     else
                         tm.checkClientTrusted(chain, authType);
 
-                    if(identitiesToTest == null
-                        || !identitiesToTest.iterator().hasNext())
-                        return;
-                    else if(serverCheck)
-                        serverVerifier.verify(identitiesToTest, chain[0]);
-                    else
-                        clientVerifier.verify(identitiesToTest, chain[0]);
+                    if(identitiesToTest != null
+                        && identitiesToTest.iterator().hasNext())
+                    {
+                        if(serverCheck)
+                            serverVerifier.verify(identitiesToTest, chain[0]);
+                        else
+                            clientVerifier.verify(identitiesToTest, chain[0]);
+                    }
 
                     // ok, globally valid cert
+                    addVerifiedChain(
+                        verifiedChainKey,
+                        receivedChain,
+                        startTime);
                 }
                 catch (CertificateException e)
                 {
@@ -780,6 +844,113 @@ public class CertificateServiceImpl
                 }
             }
 
+            /**
+             * Returns the key of a chain in {@link #verifiedChains} for the
+             * identities and the matcher of this trust manager.
+             *
+             * @param chain the chain as received from the peer
+             * @param authType the authentication type of the check
+             * @return the key of <tt>chain</tt> or <tt>null</tt> if it can't
+             * be cached
+             */
+            private String getVerifiedChainKey(X509Certificate[] chain,
+                String authType)
+            {
+                if (chain == null || chain.length == 0)
+                    return null;
+
+                CertificateMatcher matcher =
+                    serverCheck ? serverVerifier : clientVerifier;
+                StringBuilder key = new StringBuilder();
+
+                key.append(serverCheck ? "server" : "client")
+                    .append(',').append(authType)
+                    .append(',').append(identitiesToTest)
+                    .append(',').append(
+                        (matcher == null)
+                            ? null
+                            : matcher.getClass().getName());
+                try
+                {
+                    for (X509Certificate cert : chain)
+                    {
+                        key.append(',').append(
+                            getThumbprint(cert, THUMBPRINT_HASH_ALGORITHM));
+                    }
+                }
+                catch (CertificateException e)
+                {
+                    return null;
+                }
+                return key.toString();
+            }
+
+            /**
+             * Determines whether a chain has been verified successfully
+             * recently and updates the check counters.
+             *
+             * @param key the key of the chain or <tt>null</tt>
+             * @param now the current time in milliseconds
+             * @return <tt>true</tt> if the chain doesn't have to be verified
+             * again
+             */
+            private boolean isVerifiedChain(String key, long now)
+            {
+                synchronized (verifiedChains)
+                {
+                    chainChecks++;
+                    if (key == null)
+                        return false;
+
+                    Long expiry = verifiedChains.get(key);
+
+                    if (expiry == null)
+                        return false;
+                    if (expiry.longValue() <= now)
+                    {
+                        verifiedChains.remove(key);
+                        return false;
+                    }
+                    verifiedChainHits++;
+                    return true;
+                }
+            }
+
+            /**
+             * Remembers that a chain has been verified successfully until
+             * the first of its certificates expires.
+             *
+             * @param key the key of the chain or <tt>null</tt>
+             * @param chain the chain as received from the peer
+             * @param startTime the time in milliseconds the check of the
+             * chain started at
+             */
+            private void addVerifiedChain(String key, X509Certificate[] chain,
+                long startTime)
+            {
+                long now = System.currentTimeMillis();
+                long expiry = now + VERIFIED_CHAINS_CACHE_TTL;
+
+                for (X509Certificate cert : chain)
+                {
+                    expiry = Math.min(expiry, cert.getNotAfter().getTime());
+                }
+
+                synchronized (verifiedChains)
+                {
+                    if (key != null && expiry > now)
+                        verifiedChains.put(key, expiry);
+                    chainCheckTime += now - startTime;
+
+                    if (logger.isDebugEnabled())
+                        logger.debug("Verified the chain of <"
+                            + chain[0].getSubjectDN() + "> within "
+                            + (now - startTime) + " ms (" + verifiedChainHits
+                            + " of " + chainChecks + " checks were cached, "
+                            + chainCheckTime + " ms spent verifying chains)");
+                }
+            }
+
             private X509Certificate[] tryBuildChain(X509Certificate[] chain)
                 throws IOException,
                 URISyntaxException,
@@ -909,6 +1080,99 @@ public class CertificateServiceImpl
         };
     }
 
+    /**
+     * Returns the default X509 trust manager of the platform. It is created
+     * the first time it's needed and again only when the trust store is
+     * configured differently or its file changes because the creation loads
+     * and parses the whole trust store.
+     *
+     * @return the default X509 trust manager
+     * @throws GeneralSecurityException if the trust manager cannot be created
+     */
+    private synchronized X509TrustManager getDefaultTrustManager()
+        throws GeneralSecurityException
+    {
+        if (defaultTrustManager != null
+            && (defaultTrustManagerFile == null
+                || defaultTrustManagerFile.lastModified()
+                    == defaultTrustManagerFileModified))
+            return defaultTrustManager;
+
+        long startTime = System.currentTimeMillis();
+        File trustStoreFile = getTrustStoreFile();
+        long trustStoreModified =
+            (trustStoreFile == null) ? 0 : trustStoreFile.lastModified();
+        X509TrustManager defaultTm = null;
+        TrustManagerFactory tmFactory =
+            TrustManagerFactory.getInstance(TrustManagerFactory
+                .getDefaultAlgorithm());
+        tmFactory.init((KeyStore) null);
+        for (TrustManager m : tmFactory.getTrustManagers())
+        {
+            if (m instanceof X509TrustManager)
+            {
+                defaultTm = (X509TrustManager) m;
+                break;
+            }
+        }
+        if (defaultTm == null)
+            throw new GeneralSecurityException(
+                "No default X509 trust manager found");
+
+        if (logger.isDebugEnabled())
+            logger.debug("Loaded the default trust manager from <"
+                + trustStoreFile + "> within "
+                + (System.currentTimeMillis() - startTime) + " ms");
+
+        // the chains verified with the previous trust store may not be
+        // trusted by the new one
+        synchronized (verifiedChains)
+        {
+            verifiedChains.clear();
+        }
+        defaultTrustManager = defaultTm;
+        defaultTrustManagerFile = trustStoreFile;
+        defaultTrustManagerFileModified = trustStoreModified;
+        return defaultTrustManager;
+    }
+
+    /**
+     * Drops the default X509 trust manager so that it is created from the
+     * current trust store configuration the next time it's needed.
+     */
+    private synchronized void resetDefaultTrustManager()
+    {
+        defaultTrustManager = null;
+        synchronized (verifiedChains)
+        {
+            verifiedChains.clear();
+        }
+    }
+
+    /**
+     * Returns the file the default X509 trust manager loads the trust store
+     * from, as documented by JSSE.
+     *
+     * @return the trust store file or <tt>null</tt> if the trust store isn't
+     * a file
+     */
+    private static File getTrustStoreFile()
+    {
+        String trustStore = System.getProperty("javax.net.ssl.trustStore");
+
+        if (trustStore != null)
+            return "NONE".equals(trustStore) ? null : new File(trustStore);
+
+        File securityDir = new File(
+            System.getProperty("java.home")
+                + File.separator + "lib" + File.separator + "security");
+        File jsseCacerts = new File(securityDir, "jssecacerts");
+
+        return jsseCacerts.isFile()
+            ? jsseCacerts
+            : new File(securityDir, "cacerts");
+    }
+
     protected class BrowserLikeHostnameMatcher
         implements CertificateMatcher
     {
@@ -37,10 +37,13 @@ public class MetaContactGroupImpl
                                         = new TreeSet<MetaContactGroupImpl>();
 
     /**
-     * A list containing all child contacts.
+     * All the child contacts, sorted, with their indices. A contact changing
+     * its status or name is removed and added again so the ordered tree
+     * keeps the insertion, the removal and the index lookups logarithmic in
+     * large groups.
      */
-    private final Set<MetaContactImpl> childContacts
-                                            = new TreeSet<MetaContactImpl>();
+    private final OrderStatisticTree<MetaContactImpl> childContacts
+        = new OrderStatisticTree<MetaContactImpl>();
 
     /**
      * A list of the contact groups encapsulated by this MetaContactGroup
@@ -58,12 +61,19 @@ public class MetaContactGroupImpl
     private String groupName = null;
 
     /**
-     * We use this copy for returning iterators and searching over the list
-     * in order to avoid creating it upon each query. The copy is updated upon
-     * each modification
+     * We use this copy for returning iterators in order to avoid creating it
+     * upon each query. The copy is dropped upon each modification and only
+     * created again when the child contacts are iterated so that a burst of
+     * presence changes doesn't copy the whole group for each of them.
      */
     private List<MetaContact> childContactsOrderedCopy
-                                            = new LinkedList<MetaContact>();
+        = Collections.emptyList();
+
+    /**
+     * Whether {@link #childContactsOrderedCopy} has to be created again
+     * because the child contacts have changed.
+     */
+    private boolean childContactsOrderedCopyIsStale = false;
 
     /**
      * We use this copy for returning iterators and searching over the list
@@ -180,7 +190,10 @@ public class MetaContactGroupImpl
      */
     public int countChildContacts()
     {
-        return childContacts.size();
+        synchronized(childContacts)
+        {
+            return childContacts.size();
+        }
     }
     
     /**
@@ -254,7 +267,18 @@ public class MetaContactGroupImpl
      */
     public Iterator<MetaContact> getChildContacts()
     {
-        return childContactsOrderedCopy.iterator();
+        synchronized(childContacts)
+        {
+            if (childContactsOrderedCopyIsStale)
+            {
+                childContactsOrderedCopy
+                    = Collections.unmodifiableList(
+                            new ArrayList<MetaContact>(
+                                    childContacts.toList()));
+                childContactsOrderedCopyIsStale = false;
+            }
+            return childContactsOrderedCopy.iterator();
+        }
     }
 
     /**
@@ -292,6 +316,24 @@ public class MetaContactGroupImpl
      */
     public int indexOf(MetaContact metaContact)
     {
+        if (metaContact instanceof MetaContactImpl)
+        {
+            synchronized(childContacts)
+            {
+                int index = childContacts.indexOf(
+                        (MetaContactImpl) metaContact);
+
+                if ((index != -1)
+                        && (childContacts.get(index) == metaContact))
+                    return index;
+            }
+        }
+
+        if (metaContact == null
+                || metaContact.getParentMetaContactGroup() != this)
+            return -1;
+
+        // the contact has changed without being sorted again, look it up
         int i = 0;
 
         Iterator<MetaContact> childrenIter = getChildContacts();
@@ -685,7 +727,10 @@ public class MetaContactGroupImpl
     public MetaContact getMetaContact(int index) throws
         IndexOutOfBoundsException
     {
-        return this.childContactsOrderedCopy.get(index);
+        synchronized(childContacts)
+        {
+            return childContacts.get(index);
+        }
     }
 
     /**
@@ -715,11 +760,9 @@ public class MetaContactGroupImpl
     {
         synchronized(childContacts)
         {
-            this.childContacts.add(metaContact);
-            //no need to synch it's not a disaster if s.o. else reads the old copy.
-            childContactsOrderedCopy
-                = new LinkedList<MetaContact>(childContacts);
-            return childContactsOrderedCopy.indexOf(metaContact);
+            if (this.childContacts.add(metaContact))
+                childContactsOrderedCopyIsStale = true;
+            return childContacts.indexOf(metaContact);
         }
     }
 
@@ -728,9 +771,8 @@ public class MetaContactGroupImpl
       * contacts without unsetting its parent contact and without any
       * synchronization. This method is meant for use _PRIMARILY_ by the
       * <tt>MetaContact</tt> itself upon change in its encapsulated protocol
-      * specific contacts. The method would also regenerate the ordered copy
-      * used for generating iterators and performing search operations over
-      * the group.
+      * specific contacts. The method would also drop the ordered copy used
+      * for generating iterators over the group.
       *
       * @param metaContact the <tt>MetaContact</tt> to remove from the local
       * vector.
@@ -739,10 +781,8 @@ public class MetaContactGroupImpl
     {
         synchronized(childContacts)
         {
-            this.childContacts.remove(metaContact);
-            //no need to synch it's not a disaster if s.o. else reads the old copy.
-            childContactsOrderedCopy
-                            = new LinkedList<MetaContact>(childContacts);
+            if (this.childContacts.remove(metaContact))
+                childContactsOrderedCopyIsStale = true;
         }
     }
 
@@ -829,7 +869,8 @@ public class MetaContactGroupImpl
     {
         synchronized (childContacts)
         {
-            return this.childContacts.contains(contact);
+            return (contact instanceof MetaContactImpl)
+                && this.childContacts.contains((MetaContactImpl) contact);
         }
     }
 
@@ -0,0 +1,381 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.contactlist;
+
+import java.util.*;
+
+/**
+ * A sorted set which, besides adding, removing and looking up its elements,
+ * returns the index of an element and the element at an index in logarithmic
+ * time. It is an AVL tree whose nodes also keep the size of their subtree.
+ * <p>
+ * The elements are ordered by their natural ordering, which is expected to be
+ * consistent with equals. The tree is not synchronized.
+ * </p>
+ *
+ * @param <E> the type of the elements
+ *
+ * @author Lubomir Marinov
+ */
+public class OrderStatisticTree<E extends Comparable<? super E>>
+{
+    /**
+     * The root of the tree or <tt>null</tt> if the tree is empty.
+     */
+    private Node<E> root = null;
+
+    /**
+     * Adds an element to this tree unless it already contains it.
+     *
+     * @param element the element to add
+     * @return <tt>true</tt> if <tt>element</tt> was added or <tt>false</tt> if
+     * this tree already contained it
+     */
+    public boolean add(E element)
+    {
+        int size = size();
+
+        root = add(root, element);
+        return (size != size());
+    }
+
+    /**
+     * Removes an element from this tree.
+     *
+     * @param element the element to remove
+     * @return <tt>true</tt> if <tt>element</tt> was removed or <tt>false</tt>
+     * if this tree didn't contain it
+     */
+    public boolean remove(E element)
+    {
+        int size = size();
+
+        root = remove(root, element);
+        return (size != size());
+    }
+
+    /**
+     * Removes all the elements of this tree.
+     */
+    public void clear()
+    {
+        root = null;
+    }
+
+    /**
+     * Determines whether this tree contains an element.
+     *
+     * @param element the element to look for
+     * @return <tt>true</tt> if this tree contains <tt>element</tt>
+     */
+    public boolean contains(E element)
+    {
+        return (indexOf(element) != -1);
+    }
+
+    /**
+     * Returns the index of an element in the ascending order of the elements
+     * of this tree.
+     *
+     * @param element the element to look for
+     * @return the index of <tt>element</tt> or <tt>-1</tt> if this tree
+     * doesn't contain it
+     */
+    public int indexOf(E element)
+    {
+        Node<E> node = root;
+        int index = 0;
+
+        while (node != null)
+        {
+            int comparison = element.compareTo(node.element);
+
+            if (comparison < 0)
+                node = node.left;
+            else
+            {
+                int leftSize = size(node.left);
+
+                if (comparison == 0)
+                    return index + leftSize;
+                index += leftSize + 1;
+                node = node.right;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the element at an index in the ascending order of the elements
+     * of this tree.
+     *
+     * @param index the index of the element to return
+     * @return the element at <tt>index</tt>
+     * @throws IndexOutOfBoundsException if <tt>index</tt> is negative or not
+     * less than the size of this tree
+     */
+    public E get(int index)
+        throws IndexOutOfBoundsException
+    {
+        if ((index < 0) || (index >= size()))
+            throw new IndexOutOfBoundsException(
+                    "Index: " + index + ", Size: " + size());
+
+        Node<E> node = root;
+
+        while (true)
+        {
+            int leftSize = size(node.left);
+
+            if (index < leftSize)
+                node = node.left;
+            else if (index == leftSize)
+                return node.element;
+            else
+            {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of elements in this tree.
+     *
+     * @return the number of elements in this tree
+     */
+    public int size()
+    {
+        return size(root);
+    }
+
+    /**
+     * Returns the elements of this tree in ascending order.
+     *
+     * @return a new <tt>List</tt> of the elements of this tree in ascending
+     * order
+     */
+    public List<E> toList()
+    {
+        List<E> list = new ArrayList<E>(size());
+        Deque<Node<E>> path = new ArrayDeque<Node<E>>();
+        Node<E> node = root;
+
+        while ((node != null) || !path.isEmpty())
+        {
+            if (node != null)
+            {
+                path.push(node);
+                node = node.left;
+            }
+            else
+            {
+                node = path.pop();
+                list.add(node.element);
+                node = node.right;
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Adds an element to a subtree unless it already contains it.
+     *
+     * @param node the root of the subtree
+     * @param element the element to add
+     * @return the new root of the subtree
+     */
+    private static <E extends Comparable<? super E>> Node<E> add(
+            Node<E> node,
+            E element)
+    {
+        if (node == null)
+            return new Node<E>(element);
+
+        int comparison = element.compareTo(node.element);
+
+        if (comparison < 0)
+            node.left = add(node.left, element);
+        else if (comparison > 0)
+            node.right = add(node.right, element);
+        else
+            return node;
+        return balance(node);
+    }
+
+    /**
+     * Removes an element from a subtree.
+     *
+     * @param node the root of the subtree
+     * @param element the element to remove
+     * @return the new root of the subtree
+     */
+    private static <E extends Comparable<? super E>> Node<E> remove(
+            Node<E> node,
+            E element)
+    {
+        if (node == null)
+            return null;
+
+        int comparison = element.compareTo(node.element);
+
+        if (comparison < 0)
+            node.left = remove(node.left, element);
+        else if (comparison > 0)
+            node.right = remove(node.right, element);
+        else if (node.left == null)
+            return node.right;
+        else if (node.right == null)
+            return node.left;
+        else
+        {
+            Node<E> successor = node.right;
+
+            while (successor.left != null)
+                successor = successor.left;
+            node.element = successor.element;
+            node.right = remove(node.right, successor.element);
+        }
+        return balance(node);
+    }
+
+    /**
+     * Updates the height and the size of a node whose children may have
+     * changed and rotates it if its subtrees' heights differ by more than one.
+     *
+     * @param node the node to balance
+     * @return the new root of the subtree of <tt>node</tt>
+     */
+    private static <E> Node<E> balance(Node<E> node)
+    {
+        int difference = height(node.left) - height(node.right);
+
+        if (difference > 1)
+        {
+            if (height(node.left.left) < height(node.left.right))
+                node.left = rotateLeft(node.left);
+            return rotateRight(node);
+        }
+        else if (difference < -1)
+        {
+            if (height(node.right.right) < height(node.right.left))
+                node.right = rotateRight(node.right);
+            return rotateLeft(node);
+        }
+        node.update();
+        return node;
+    }
+
+    /**
+     * Rotates a subtree to the left.
+     *
+     * @param node the root of the subtree, which has a right child
+     * @return the new root of the subtree
+     */
+    private static <E> Node<E> rotateLeft(Node<E> node)
+    {
+        Node<E> right = node.right;
+
+        node.right = right.left;
+        right.left = node;
+        node.update();
+        right.update();
+        return right;
+    }
+
+    /**
+     * Rotates a subtree to the right.
+     *
+     * @param node the root of the subtree, which has a left child
+     * @return the new root of the subtree
+     */
+    private static <E> Node<E> rotateRight(Node<E> node)
+    {
+        Node<E> left = node.left;
+
+        node.left = left.right;
+        left.right = node;
+        node.update();
+        left.update();
+        return left;
+    }
+
+    /**
+     * Returns the height of a subtree.
+     *
+     * @param node the root of the subtree or <tt>null</tt>
+     * @return the height of the subtree of <tt>node</tt>
+     */
+    private static int height(Node<?> node)
+    {
+        return (node == null) ? 0 : node.height;
+    }
+
+    /**
+     * Returns the number of elements in a subtree.
+     *
+     * @param node the root of the subtree or <tt>null</tt>
+     * @return the number of elements in the subtree of <tt>node</tt>
+     */
+    private static int size(Node<?> node)
+    {
+        return (node == null) ? 0 : node.size;
+    }
+
+    /**
+     * A node of the tree.
+     *
+     * @param <E> the type of the elements
+     */
+    private static class Node<E>
+    {
+        /**
+         * The element of this node.
+         */
+        E element;
+
+        /**
+         * The root of the subtree of the smaller elements.
+         */
+        Node<E> left;
+
+        /**
+         * The root of the subtree of the greater elements.
+         */
+        Node<E> right;
+
+        /**
+         * The height of the subtree of this node.
+         */
+        int height = 1;
+
+        /**
+         * The number of elements in the subtree of this node.
+         */
+        int size = 1;
+
+        /**
+         * Creates a leaf node.
+         *
+         * @param element the element of the node
+         */
+        Node(E element)
+        {
+            this.element = element;
+        }
+
+        /**
+         * Updates the height and the size of this node after its children
+         * have changed.
+         */
+        void update()
+        {
+            height = Math.max(height(left), height(right)) + 1;
+            size = size(left) + size(right) + 1;
+        }
+    }
+}
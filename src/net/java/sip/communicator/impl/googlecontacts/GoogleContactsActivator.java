@@ -16,6 +16,7 @@ import net.java.sip.communicator.service.protocol.*;
 import net.java.sip.communicator.util.*;
 
 import org.jitsi.service.configuration.*;
+import org.jitsi.service.fileaccess.*;
 import org.jitsi.service.resources.*;
 import org.osgi.framework.*;
 
@@ -66,6 +67,12 @@ public class GoogleContactsActivator implements BundleActivator
      */
     private static PhoneNumberI18nService phoneNumberI18nService;
 
+    /**
+     * The <tt>FileAccessService</tt> used to find the directory the contacts
+     * are stored in.
+     */
+    private static FileAccessService fileAccessService;
+
     /**
      * Google contacts service.
      */
@@ -117,6 +124,23 @@ public class GoogleContactsActivator implements BundleActivator
         return configService;
     }
 
+    /**
+     * Returns the <tt>FileAccessService</tt> obtained from the bundle context.
+     *
+     * @return the <tt>FileAccessService</tt> obtained from the bundle context
+     */
+    public static FileAccessService getFileAccessService()
+    {
+        if (fileAccessService == null)
+        {
+            fileAccessService
+                = ServiceUtils.getService(
+                        bundleContext,
+                        FileAccessService.class);
+        }
+        return fileAccessService;
+    }
+
     /**
      * Returns a reference to a GoogleContactsService implementation currently
      * registered in the bundle context or null if no such implementation was
@@ -381,6 +405,7 @@ public class GoogleContactsActivator implements BundleActivator
             else
             {
                 cssList.put(css, cssServiceRegistration);
+                css.startSync();
             }
         }
 
@@ -423,6 +448,7 @@ public class GoogleContactsActivator implements BundleActivator
             else
             {
                 cssList.put(css, cssServiceRegistration);
+                css.startSync();
             }
         }
 
@@ -54,6 +54,20 @@ public class GoogleContactsQuery
         this.count = count;
     }
 
+    /**
+     * Returns the priority of this <tt>AsyncContactQuery</tt>. Only the local
+     * copy of the contacts is searched so it is searched before the remote
+     * contact sources.
+     *
+     * @return {@link ContactQueryExecutor#LOCAL_PRIORITY}
+     * @see AsyncContactQuery#getPriority()
+     */
+    @Override
+    protected int getPriority()
+    {
+        return ContactQueryExecutor.LOCAL_PRIORITY;
+    }
+
     /**
      * Normalizes a <tt>String</tt> phone number by converting alpha characters
      * to their respective digits on a keypad and then stripping non-digit
@@ -180,11 +194,11 @@ public class GoogleContactsQuery
 
             try
             {
-                byte img[] = GoogleContactsServiceImpl.downloadPhoto(
-                        ((GoogleContactsEntryImpl)entry).getPhotoLink(),
-                        getContactSource().getConnection().
-                        getGoogleService());
-                sourceContact.setImage(img);
+                GoogleContactsReplica replica =
+                    getContactSource().getReplica();
+
+                if(replica != null)
+                    sourceContact.setImage(replica.getPhoto(entry));
             }
             catch (OutOfMemoryError oome)
             {
@@ -197,25 +211,24 @@ public class GoogleContactsQuery
 
     /**
      * Performs this <tt>AsyncContactQuery</tt> in a background <tt>Thread</tt>.
+     * It only searches the local copy of the contacts, which is synchronized
+     * with Google Contacts by the contact source.
      *
      * @see AsyncContactQuery#run()
      */
     @Override
     protected void run()
     {
-        GoogleContactsServiceImpl service =
-            GoogleContactsActivator.getGoogleContactsService();
         gQuery = new GoogleQuery(query);
 
-        GoogleContactsConnection cnx = getContactSource().getConnection();
+        GoogleContactsReplica replica = getContactSource().getReplica();
 
-        if(cnx == null)
+        if(replica == null)
         {
             return;
         }
 
-        service.searchContact(
-                cnx,
+        replica.search(
                 gQuery,
                 count,
                 new GoogleEntryCallback()
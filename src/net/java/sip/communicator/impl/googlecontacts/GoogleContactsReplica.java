@@ -0,0 +1,720 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.googlecontacts;
+
+import java.io.*;
+import java.net.*;
+import java.security.*;
+import java.util.*;
+import java.util.regex.*;
+
+import net.java.sip.communicator.service.googlecontacts.*;
+import net.java.sip.communicator.util.*;
+
+import com.google.gdata.client.contacts.*;
+import com.google.gdata.data.*;
+import com.google.gdata.data.contacts.ContactEntry;
+import com.google.gdata.data.contacts.ContactFeed;
+import com.google.gdata.util.*;
+import com.google.gdata.util.common.xml.*;
+
+/**
+ * Local copy of the contacts of a Google Contacts account. The contacts are
+ * stored on disk as an Atom feed together with their photos and are searched
+ * in memory so that a query doesn't go to the network. The copy is kept up to
+ * date by {@link #sync(ContactsService)} which only asks for the contacts
+ * updated or deleted since the previous synchronization. A synchronization
+ * builds a new searchable snapshot of the contacts and publishes it at once
+ * so that the queries never wait for it.
+ *
+ * @author Sebastien Vincent
+ */
+public class GoogleContactsReplica
+{
+    /**
+     * Logger.
+     */
+    private static final Logger logger =
+        Logger.getLogger(GoogleContactsReplica.class);
+
+    /**
+     * The name of the file the contacts are stored in.
+     */
+    private static final String CONTACTS_FILE_NAME = "contacts.xml";
+
+    /**
+     * The name of the directory the photos are stored in.
+     */
+    private static final String PHOTOS_DIR_NAME = "photos";
+
+    /**
+     * The name of the application given to the <tt>ContactsService</tt> which
+     * only describes the extensions of the stored feed.
+     */
+    private static final String APPLICATION_NAME =
+        "GoogleContacts replica for Jitsi";
+
+    /**
+     * The URL of the contacts feed.
+     */
+    private final URL feedURL;
+
+    /**
+     * The file the contacts are stored in.
+     */
+    private final File contactsFile;
+
+    /**
+     * The directory the photos are stored in.
+     */
+    private final File photosDir;
+
+    /**
+     * The extensions of the contacts feed, used to read and write the stored
+     * feed.
+     */
+    private final ExtensionProfile extensionProfile =
+        new ContactsService(APPLICATION_NAME).getExtensionProfile();
+
+    /**
+     * The lock which serializes the reading, the synchronizations and the
+     * deletion of the stored contacts. The queries don't take it.
+     */
+    private final Object syncLock = new Object();
+
+    /**
+     * The contacts by id, in the order they were received. Only accessed with
+     * {@link #syncLock} held.
+     */
+    private final Map<String, ContactEntry> contacts =
+        new LinkedHashMap<String, ContactEntry>();
+
+    /**
+     * The time of the contacts feed at the last synchronization or
+     * <tt>null</tt> if the contacts have never been synchronized. It is the
+     * <tt>updated-min</tt> of the next synchronization.
+     */
+    private volatile DateTime lastUpdated = null;
+
+    /**
+     * Whether the stored contacts have been read.
+     */
+    private boolean loaded = false;
+
+    /**
+     * Whether the stored contacts have been deleted and this replica isn't
+     * to store them anymore.
+     */
+    private boolean deleted = false;
+
+    /**
+     * The searchable contacts. The list is replaced, never modified, so that
+     * the queries don't have to wait for a synchronization to finish.
+     */
+    private volatile List<IndexedEntry> index =
+        Collections.emptyList();
+
+    /**
+     * Creates a replica of a contacts feed stored in a specific directory.
+     *
+     * @param feedURL the URL of the contacts feed
+     * @param directory the directory the contacts and their photos are
+     * stored in
+     */
+    public GoogleContactsReplica(URL feedURL, File directory)
+    {
+        this.feedURL = feedURL;
+        this.contactsFile = new File(directory, CONTACTS_FILE_NAME);
+        this.photosDir = new File(directory, PHOTOS_DIR_NAME);
+    }
+
+    /**
+     * Reads the stored contacts, if they haven't been read yet.
+     */
+    public void load()
+    {
+        synchronized(syncLock)
+        {
+            if(!loaded)
+            {
+                loaded = true;
+                read();
+            }
+        }
+    }
+
+    /**
+     * Reads the stored contacts from {@link #contactsFile}.
+     */
+    private void read()
+    {
+        if(!contactsFile.isFile())
+            return;
+
+        ContactFeed feed = new ContactFeed();
+        InputStream in = null;
+
+        try
+        {
+            in = new BufferedInputStream(new FileInputStream(contactsFile));
+            feed.parseAtom(extensionProfile, in);
+        }
+        catch(Exception e)
+        {
+            logger.warn("Failed to read stored Google Contacts from "
+                    + contactsFile, e);
+            return;
+        }
+        finally
+        {
+            close(in);
+        }
+
+        for(ContactEntry entry : feed.getEntries())
+            contacts.put(entry.getId(), entry);
+        lastUpdated = feed.getUpdated();
+        updateIndex();
+
+        if (logger.isInfoEnabled())
+            logger.info("Read " + contacts.size() + " stored Google Contacts"
+                    + " updated " + lastUpdated);
+    }
+
+    /**
+     * Retrieves the contacts which have changed since the last
+     * synchronization, stores them and downloads their photos. The first
+     * synchronization, and the ones after the server has forgotten the
+     * deleted contacts, retrieve all the contacts.
+     *
+     * @param service the authenticated service to retrieve the contacts with
+     * @return <tt>true</tt> if the contacts were synchronized, <tt>false</tt>
+     * if an error occurred
+     */
+    public boolean sync(ContactsService service)
+    {
+        synchronized(syncLock)
+        {
+            if(deleted)
+                return false;
+
+            load();
+            return syncContacts(service);
+        }
+    }
+
+    /**
+     * Retrieves the contacts which have changed since the last
+     * synchronization, stores them and downloads their photos.
+     *
+     * @param service the authenticated service to retrieve the contacts with
+     * @return <tt>true</tt> if the contacts were synchronized, <tt>false</tt>
+     * if an error occurred
+     */
+    private boolean syncContacts(ContactsService service)
+    {
+        long startTime = System.currentTimeMillis();
+        int changes;
+
+        try
+        {
+            try
+            {
+                changes = retrieve(service, lastUpdated);
+            }
+            catch(NoLongerAvailableException e)
+            {
+                if (logger.isInfoEnabled())
+                    logger.info("Google Contacts changes since " + lastUpdated
+                            + " are no longer available, retrieving all");
+                changes = retrieve(service, null);
+            }
+        }
+        catch(Exception e)
+        {
+            logger.info("Failed to synchronize Google Contacts", e);
+            return false;
+        }
+
+        if(changes > 0)
+        {
+            updateIndex();
+            store();
+        }
+        // also retries the photos which failed to download before
+        downloadPhotos(service);
+
+        if (logger.isInfoEnabled())
+            logger.info("Synchronized " + changes + " Google Contacts changes"
+                    + " within " + (System.currentTimeMillis() - startTime)
+                    + " ms, " + contacts.size() + " contacts");
+        return true;
+    }
+
+    /**
+     * Retrieves the contacts updated since a specific time, or all of them,
+     * page by page and applies them to {@link #contacts}.
+     *
+     * @param service the service to retrieve the contacts with
+     * @param updatedMin the time of the last synchronization or <tt>null</tt>
+     * to retrieve all the contacts
+     * @return the number of retrieved contacts
+     * @throws IOException if the contacts couldn't be retrieved
+     * @throws ServiceException if the contacts couldn't be retrieved
+     */
+    private int retrieve(
+            ContactsService service,
+            DateTime updatedMin)
+        throws IOException,
+               ServiceException
+    {
+        Map<String, ContactEntry> retrieved =
+            new LinkedHashMap<String, ContactEntry>();
+        DateTime feedUpdated = null;
+        int index = 1;
+
+        while(true)
+        {
+            ContactQuery query = new ContactQuery(feedURL);
+
+            query.setStartIndex(index);
+            query.setMaxResults(GoogleContactsServiceImpl.MAX_NUMBER);
+            query.setOrderBy(ContactQuery.OrderBy.LAST_MODIFIED);
+            query.setSortOrder(ContactQuery.SortOrder.ASCENDING);
+            if(updatedMin != null)
+            {
+                query.setUpdatedMin(updatedMin);
+                query.setShowDeleted(true);
+            }
+
+            ContactFeed feed = service.query(query, ContactFeed.class);
+            List<ContactEntry> entries = feed.getEntries();
+
+            if(feedUpdated == null)
+                feedUpdated = feed.getUpdated();
+            for(ContactEntry entry : entries)
+            {
+                retrieved.put(entry.getId(), entry);
+                if((feedUpdated == null)
+                        || ((entry.getUpdated() != null)
+                            && (entry.getUpdated().compareTo(feedUpdated)
+                                    > 0)))
+                    feedUpdated = entry.getUpdated();
+            }
+
+            if(entries.size() < GoogleContactsServiceImpl.MAX_NUMBER)
+                break;
+            index += entries.size();
+        }
+
+        if(updatedMin == null)
+            contacts.clear();
+        for(ContactEntry entry : retrieved.values())
+        {
+            contacts.remove(entry.getId());
+            if(!entry.hasDeleted())
+                contacts.put(entry.getId(), entry);
+        }
+        if(feedUpdated != null)
+            lastUpdated = feedUpdated;
+        return retrieved.size();
+    }
+
+    /**
+     * Writes the contacts and the time of the last synchronization to
+     * {@link #contactsFile}.
+     */
+    private void store()
+    {
+        ContactFeed feed = new ContactFeed();
+
+        feed.setUpdated(lastUpdated);
+        feed.setEntries(new ArrayList<ContactEntry>(contacts.values()));
+
+        File dir = contactsFile.getParentFile();
+        File tmpFile = new File(dir, CONTACTS_FILE_NAME + ".tmp");
+        Writer out = null;
+
+        try
+        {
+            if(!dir.isDirectory() && !dir.mkdirs())
+                throw new IOException("Failed to create " + dir);
+
+            out = new OutputStreamWriter(
+                    new BufferedOutputStream(new FileOutputStream(tmpFile)),
+                    "UTF-8");
+            feed.generateAtom(new XmlWriter(out), extensionProfile);
+            out.close();
+            out = null;
+
+            if(contactsFile.exists() && !contactsFile.delete())
+                throw new IOException("Failed to delete " + contactsFile);
+            if(!tmpFile.renameTo(contactsFile))
+                throw new IOException("Failed to rename " + tmpFile);
+        }
+        catch(IOException e)
+        {
+            logger.warn("Failed to store Google Contacts in "
+                    + contactsFile, e);
+        }
+        finally
+        {
+            close(out);
+        }
+    }
+
+    /**
+     * Downloads the photos which aren't stored yet and deletes the stored
+     * photos which aren't used anymore.
+     *
+     * @param service the service to download the photos with
+     */
+    private void downloadPhotos(ContactsService service)
+    {
+        if(!photosDir.isDirectory() && !photosDir.mkdirs())
+        {
+            logger.warn("Failed to create " + photosDir);
+            return;
+        }
+
+        Set<String> photoFileNames = new HashSet<String>();
+        int downloaded = 0;
+
+        for(IndexedEntry indexed : index)
+        {
+            File photoFile = indexed.photoFile;
+
+            if(photoFile == null)
+                continue;
+
+            photoFileNames.add(photoFile.getName());
+            if(photoFile.exists())
+                continue;
+
+            byte[] photo = GoogleContactsServiceImpl.downloadPhoto(
+                    indexed.entry.getPhotoLink(),
+                    service);
+
+            if(photo != null)
+            {
+                write(photoFile, photo);
+                downloaded++;
+            }
+        }
+
+        File[] photoFiles = photosDir.listFiles();
+
+        if(photoFiles != null)
+        {
+            for(File photoFile : photoFiles)
+            {
+                if(!photoFileNames.contains(photoFile.getName()))
+                    photoFile.delete();
+            }
+        }
+
+        if (logger.isDebugEnabled())
+            logger.debug(
+                    "Downloaded " + downloaded + " Google Contacts photos");
+    }
+
+    /**
+     * Rebuilds the searchable contacts from {@link #contacts}.
+     */
+    private void updateIndex()
+    {
+        List<IndexedEntry> newIndex =
+            new ArrayList<IndexedEntry>(contacts.size());
+
+        for(ContactEntry contact : contacts.values())
+        {
+            try
+            {
+                newIndex.add(new IndexedEntry(contact));
+            }
+            catch(Exception e)
+            {
+                logger.info("Ignoring Google Contacts entry "
+                        + contact.getId(), e);
+            }
+        }
+        index = Collections.unmodifiableList(newIndex);
+    }
+
+    /**
+     * Searches the local contacts for the ones matching a query.
+     *
+     * @param gQuery the query
+     * @param count the maximum number of matching contacts or a negative value
+     * for {@link GoogleContactsServiceImpl#MAX_RESULT}
+     * @param callback object that will be notified for each matching
+     * <tt>GoogleContactsEntry</tt> or <tt>null</tt>
+     * @return the matching contacts
+     */
+    public List<GoogleContactsEntry> search(GoogleQuery gQuery, int count,
+            GoogleEntryCallback callback)
+    {
+        List<GoogleContactsEntry> ret = new ArrayList<GoogleContactsEntry>();
+        Pattern filter = gQuery.getQueryPattern();
+
+        if(count <= 0)
+            count = GoogleContactsServiceImpl.MAX_RESULT;
+
+        for(IndexedEntry indexed : index)
+        {
+            if(gQuery.isCancelled())
+                break;
+
+            if(indexed.matches(filter))
+            {
+                ret.add(indexed.entry);
+                if(callback != null)
+                    callback.callback(indexed.entry);
+                if(ret.size() >= count)
+                    break;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the stored photo of a contact found by this replica.
+     *
+     * @param entry the contact
+     * @return the photo of <tt>entry</tt> or <tt>null</tt> if it doesn't have
+     * one or it hasn't been downloaded yet
+     */
+    public byte[] getPhoto(GoogleContactsEntry entry)
+    {
+        File photoFile = getPhotoFile(((GoogleContactsEntryImpl) entry)
+                .getPhotoLink());
+
+        if((photoFile == null) || !photoFile.isFile())
+            return null;
+
+        InputStream in = null;
+
+        try
+        {
+            in = new FileInputStream(photoFile);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+
+            for (int read = 0 ; (read = in.read(buffer)) != -1;
+                out.write(buffer, 0, read));
+
+            return out.toByteArray();
+        }
+        catch(IOException e)
+        {
+            logger.debug("Failed to read photo " + photoFile, e);
+            return null;
+        }
+        finally
+        {
+            close(in);
+        }
+    }
+
+    /**
+     * Returns the file a photo is stored in. The name of the file is derived
+     * from the link and the ETag of the photo so that a changed photo is
+     * downloaded again.
+     *
+     * @param photoLink the link of the photo
+     * @return the file the photo is stored in or <tt>null</tt> if the
+     * contact doesn't have a photo
+     */
+    private File getPhotoFile(Link photoLink)
+    {
+        if((photoLink == null)
+                || (photoLink.getHref() == null)
+                || (photoLink.getEtag() == null))
+            return null;
+
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(
+                    (photoLink.getHref() + " " + photoLink.getEtag())
+                        .getBytes("UTF-8"));
+            StringBuilder name = new StringBuilder(hash.length * 2);
+
+            for(byte b : hash)
+            {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16));
+                name.append(Character.forDigit(b & 0xF, 16));
+            }
+            return new File(photosDir, name.toString());
+        }
+        catch(Exception e)
+        {
+            // SHA-1 and UTF-8 are always available
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the time of the contacts feed at the last synchronization.
+     *
+     * @return the time of the contacts feed at the last synchronization or
+     * <tt>null</tt> if the contacts have never been synchronized
+     */
+    public DateTime getLastUpdated()
+    {
+        return lastUpdated;
+    }
+
+    /**
+     * Deletes the stored contacts and their photos, waiting for a
+     * synchronization in progress to finish, and stops storing them.
+     */
+    public void delete()
+    {
+        synchronized(syncLock)
+        {
+            deleted = true;
+            contacts.clear();
+            index = Collections.emptyList();
+            delete(contactsFile.getParentFile());
+        }
+    }
+
+    /**
+     * Deletes a file or a directory with all its content.
+     *
+     * @param file the file or the directory to delete
+     * @return <tt>true</tt> if <tt>file</tt> doesn't exist anymore
+     */
+    static boolean delete(File file)
+    {
+        File[] children = file.listFiles();
+
+        if(children != null)
+        {
+            for(File child : children)
+                delete(child);
+        }
+        return file.delete() || !file.exists();
+    }
+
+    /**
+     * Writes a file.
+     *
+     * @param file the file to write
+     * @param content the content of the file
+     */
+    private static void write(File file, byte[] content)
+    {
+        OutputStream out = null;
+
+        try
+        {
+            out = new FileOutputStream(file);
+            out.write(content);
+        }
+        catch(IOException e)
+        {
+            logger.warn("Failed to write " + file, e);
+        }
+        finally
+        {
+            close(out);
+        }
+    }
+
+    /**
+     * Closes a stream, ignoring the errors.
+     *
+     * @param closeable the stream to close or <tt>null</tt>
+     */
+    private static void close(Closeable closeable)
+    {
+        if(closeable != null)
+        {
+            try
+            {
+                closeable.close();
+            }
+            catch(IOException e)
+            {
+            }
+        }
+    }
+
+    /**
+     * A contact with the values a query is matched against.
+     */
+    private class IndexedEntry
+    {
+        /**
+         * The contact.
+         */
+        final GoogleContactsEntryImpl entry;
+
+        /**
+         * The family name of the contact, which has to match the query as a
+         * whole, or <tt>null</tt>.
+         */
+        final String familyName;
+
+        /**
+         * The names, mail addresses and phone numbers of the contact which
+         * have to contain a match of the query.
+         */
+        final String[] values;
+
+        /**
+         * The file the photo of the contact is stored in or <tt>null</tt>.
+         */
+        final File photoFile;
+
+        /**
+         * Indexes a contact.
+         *
+         * @param contact the contact
+         */
+        IndexedEntry(ContactEntry contact)
+        {
+            entry = new GoogleContactsEntryImpl();
+            entry.setField(contact);
+
+            familyName = entry.getFamilyName();
+
+            List<String> values = new ArrayList<String>();
+
+            if(entry.getGivenName() != null)
+                values.add(entry.getGivenName());
+            if(entry.getFullName() != null)
+                values.add(entry.getFullName());
+            values.addAll(entry.getAllMails());
+            values.addAll(entry.getAllPhones());
+            this.values = values.toArray(new String[values.size()]);
+
+            photoFile = getPhotoFile(entry.getPhotoLink());
+        }
+
+        /**
+         * Determines whether the contact matches a query.
+         *
+         * @param filter the query
+         * @return <tt>true</tt> if the contact matches <tt>filter</tt>
+         */
+        boolean matches(Pattern filter)
+        {
+            if((familyName != null) && filter.matcher(familyName).matches())
+                return true;
+
+            for(String value : values)
+            {
+                if(filter.matcher(value).find())
+                    return true;
+            }
+            return false;
+        }
+    }
+}
@@ -9,7 +9,6 @@ package net.java.sip.communicator.impl.googlecontacts;
 import java.io.*;
 import java.net.*;
 import java.util.*;
-import java.util.regex.*;
 
 import net.java.sip.communicator.impl.googlecontacts.configform.*;
 import net.java.sip.communicator.service.credentialsstorage.*;
@@ -21,16 +20,12 @@ import org.jitsi.service.configuration.*;
 import com.google.gdata.client.Service.GDataRequest;
 import com.google.gdata.client.contacts.*;
 import com.google.gdata.data.*;
-import com.google.gdata.data.contacts.ContactEntry;
-import com.google.gdata.data.contacts.ContactFeed;
-import com.google.gdata.data.extensions.*;
 
 /**
  * Implementation of Google Contacts service.
- * We first get {@link #MAX_RESULT} contacts from Google Contacts then
- * we filter it to get {@link #MAX_RESULT} that matched our query.
- * If {@link #MAX_RESULT} is not reach, we try with additional
- * contacts (if there are more than {@link #MAX_RESULT} contacts).
+ * The contacts of each account are kept in a local
+ * <tt>GoogleContactsReplica</tt> which is synchronized in the background and
+ * the queries only search the replica so that they don't go to the network.
  *
  * @author Sebastien Vincent
  */
@@ -71,6 +66,17 @@ public class GoogleContactsServiceImpl
     private final static String CONFIGURATION_PATH =
         "net.java.sip.communicator.impl.googlecontacts";
 
+    /**
+     * The name of the directory the contacts of the accounts are stored in.
+     */
+    private final static String REPLICAS_DIR_NAME = "googlecontacts";
+
+    /**
+     * The local copies of the contacts of the accounts, by login.
+     */
+    private final Map<String, GoogleContactsReplica> replicas =
+        new HashMap<String, GoogleContactsReplica>();
+
     /**
      * Constructor.
      */
@@ -224,179 +230,104 @@ public class GoogleContactsServiceImpl
             GoogleContactsConnection cnx, GoogleQuery gQuery, int count,
             GoogleEntryCallback callback)
     {
-        URL url = null;
-        ContactFeed contactFeed = null;
-        ContactQuery query = null;
-        List<GoogleContactsEntry> ret = new ArrayList<GoogleContactsEntry>();
-        boolean endOfContacts = false;
-        int matchedContacts = 0;
-        int index = 1;
-        GoogleContactsConnectionImpl cnxImpl =
-            (GoogleContactsConnectionImpl)cnx;
-
-        if(count <= 0)
-        {
-            count = MAX_RESULT;
-        }
+        GoogleContactsReplica replica = getReplica(cnx.getLogin());
 
-        try
+        if(replica == null || gQuery.isCancelled())
         {
-            url = new URL(feedURL);
-        }
-        catch(MalformedURLException e)
-        {
-            logger.info("Malformed URL", e);
-            return ret;
+            return new ArrayList<GoogleContactsEntry>();
         }
 
-        if(gQuery.isCancelled())
-        {
-            return ret;
-        }
+        return replica.search(gQuery, count, callback);
+    }
 
-        while(matchedContacts < count || endOfContacts)
+    /**
+     * Returns the local copy of the contacts of an account, reading the stored
+     * contacts when it is created.
+     *
+     * @param login the login of the account
+     * @return the <tt>GoogleContactsReplica</tt> of the account or
+     * <tt>null</tt> if it couldn't be created
+     */
+    public GoogleContactsReplica getReplica(String login)
+    {
+        synchronized(replicas)
         {
-            query = new ContactQuery(url);
-            query.setStartIndex(index);
-            query.setMaxResults(MAX_NUMBER);
-            query.setSortOrder(ContactQuery.SortOrder.DESCENDING);
-
-            if(gQuery.isCancelled())
-            {
-                return ret;
-            }
-
-            try
-            {
-                contactFeed = cnxImpl.getGoogleService().query(
-                        query, ContactFeed.class);
-            }
-            catch(Exception e)
-            {
-                logger.info(
-                        "Problem occurred during Google Contacts retrievment",
-                        e);
-                return ret;
-            }
+            GoogleContactsReplica replica = replicas.get(login);
 
-            if(contactFeed.getEntries().size() == 0)
+            if(replica == null)
             {
-                endOfContacts = true;
-                break;
-            }
-
-            for (int i = 0; i < contactFeed.getEntries().size(); i++)
-            {
-                if(gQuery.isCancelled())
+                try
                 {
-                    return ret;
+                    replica = new GoogleContactsReplica(
+                            new URL(feedURL),
+                            getReplicaDirectory(login));
                 }
-
-                ContactEntry entry = contactFeed.getEntries().get(i);
-
-                if(filter(entry, gQuery.getQueryPattern()))
+                catch(Exception e)
                 {
-                    GoogleContactsEntry gcEntry = null;
-
-                    gcEntry = getGoogleContactsEntry(entry);
-                    matchedContacts++;
-                    ret.add(gcEntry);
-
-                    if(callback != null)
-                    {
-                        callback.callback(gcEntry);
-                    }
-
-                    if(matchedContacts >= count)
-                    {
-                        break;
-                    }
+                    logger.error(
+                            "Failed to create Google Contacts replica of "
+                                + login,
+                            e);
+                    return null;
                 }
+                replica.load();
+                replicas.put(login, replica);
             }
-
-            index += contactFeed.getEntries().size();
+            return replica;
         }
-        return ret;
     }
 
     /**
-     * Filter according to <tt>filter</tt>.
+     * Deletes the local copy of the contacts of an account and the photos of
+     * the contacts.
      *
-     * @param entry <tt>ContactEntry</tt>
-     * @param filter regular expression
-     * @return true if entry match the filter, false otherwise
+     * @param login the login of the account
      */
-    private boolean filter(ContactEntry entry, Pattern filter)
+    private void deleteReplica(String login)
     {
-        Name name = entry.getName();
+        GoogleContactsReplica replica;
 
-        /* try to see if name, mail or phone match */
-
-        if(name != null)
+        synchronized(replicas)
         {
-            if(name.hasFamilyName())
-            {
-                Matcher m = filter.matcher(name.getFamilyName().getValue());
-                if(m.matches())
-                {
-                    return true;
-                }
-            }
-
-            if(name.hasGivenName())
-            {
-                Matcher m = filter.matcher(name.getGivenName().getValue());
-                if(m.find())
-                {
-                    return true;
-                }
-            }
-
-            if(name.hasFullName())
-            {
-                Matcher m = filter.matcher(name.getFullName().getValue());
-                if(m.find())
-                {
-                    return true;
-                }
-            }
+            replica = replicas.remove(login);
         }
 
-        for(Email mail : entry.getEmailAddresses())
+        if(replica != null)
         {
-            Matcher m = filter.matcher(mail.getAddress());
-
-            if(m.find())
-            {
-                return true;
-            }
+            replica.delete();
+            return;
         }
 
-        for(PhoneNumber phone : entry.getPhoneNumbers())
+        try
         {
-            Matcher m = filter.matcher(phone.getPhoneNumber());
-
-            if(m.find())
-            {
-                return true;
-            }
+            GoogleContactsReplica.delete(getReplicaDirectory(login));
+        }
+        catch(Exception e)
+        {
+            logger.warn("Failed to delete Google Contacts replica of "
+                    + login, e);
         }
-
-        return false;
     }
 
     /**
-     * Get a <tt>GoogleContactsEntry</tt> from a <tt>ContactEntry</tt>
+     * Returns the directory which stores the contacts of an account. The name
+     * of the directory is the URL-encoded login so that no two accounts share
+     * it.
      *
-     * @param entry <tt>ContactEntry</tt>
-     * @return <tt>GoogleContactsEntry</tt>
+     * @param login the login of the account
+     * @return the directory which stores the contacts of the account
+     * @throws Exception if the directory cannot be created
      */
-    private GoogleContactsEntry getGoogleContactsEntry(ContactEntry entry)
+    private static File getReplicaDirectory(String login)
+        throws Exception
     {
-        GoogleContactsEntryImpl ret = new GoogleContactsEntryImpl();
-
-        ret.setField(entry);
-        return ret;
+        return GoogleContactsActivator.getFileAccessService()
+            .getPrivatePersistentDirectory(
+                    new String[]
+                    {
+                        REPLICAS_DIR_NAME,
+                        "acc" + URLEncoder.encode(login, "UTF-8")
+                    });
     }
 
     /**
@@ -465,6 +396,8 @@ public class GoogleContactsServiceImpl
     public void removeContactSource(GoogleContactsConnection cnx)
     {
         GoogleContactsActivator.disableContactSource(cnx);
+        if(cnx != null)
+            deleteReplica(cnx.getLogin());
     }
 
     /**
@@ -476,6 +409,7 @@ public class GoogleContactsServiceImpl
     public void removeContactSource(String login)
     {
         GoogleContactsActivator.disableContactSource(login);
+        deleteReplica(login);
     }
 
     /**
@@ -27,6 +27,18 @@ public class GoogleContactsSourceService
     private static final Logger logger =
         Logger.getLogger(GoogleContactsSourceService.class);
 
+    /**
+     * The name of the property which specifies the time in milliseconds
+     * between two synchronizations of the local copy of the contacts.
+     */
+    public static final String SYNC_INTERVAL_PROPERTY =
+        "net.java.sip.communicator.impl.googlecontacts.SYNC_INTERVAL";
+
+    /**
+     * The default value of {@link #SYNC_INTERVAL_PROPERTY}: fifteen minutes.
+     */
+    private static final long DEFAULT_SYNC_INTERVAL = 15 * 60 * 1000;
+
     /**
      * The <tt>List</tt> of <tt>GoogleContactsQuery</tt> instances
      * which have been started and haven't stopped yet.
@@ -65,6 +77,12 @@ public class GoogleContactsSourceService
      */
     private boolean googleTalk = false;
 
+    /**
+     * The timer which synchronizes the local copy of the contacts or
+     * <tt>null</tt> if the synchronization hasn't been started.
+     */
+    private Timer syncTimer = null;
+
     /**
      * Constructor.
      *
@@ -176,6 +194,62 @@ public class GoogleContactsSourceService
         return query;
     }
 
+    /**
+     * Starts synchronizing the local copy of the contacts now and then
+     * periodically. The queries only search the local copy so the periodic
+     * synchronization is the only network activity of this contact source.
+     */
+    synchronized void startSync()
+    {
+        if(syncTimer != null)
+            return;
+
+        long interval = GoogleContactsActivator.getConfigService().getLong(
+                SYNC_INTERVAL_PROPERTY,
+                DEFAULT_SYNC_INTERVAL);
+
+        syncTimer = new Timer("GoogleContacts sync " + login, true);
+        syncTimer.schedule(
+                new TimerTask()
+                {
+                    @Override
+                    public void run()
+                    {
+                        sync();
+                    }
+                },
+                0,
+                interval);
+    }
+
+    /**
+     * Synchronizes the local copy of the contacts.
+     */
+    private void sync()
+    {
+        GoogleContactsReplica replica = getReplica();
+
+        if(replica == null)
+            return;
+
+        GoogleContactsConnectionImpl cnx = getConnection();
+
+        if(cnx != null)
+            replica.sync(cnx.getGoogleService());
+    }
+
+    /**
+     * Returns the local copy of the contacts of this contact source.
+     *
+     * @return the local copy of the contacts of this contact source or
+     * <tt>null</tt> if it couldn't be created
+     */
+    public GoogleContactsReplica getReplica()
+    {
+        return GoogleContactsActivator.getGoogleContactsService().getReplica(
+                login);
+    }
+
     /**
      * Returns the Google Contacts connection.
      *
@@ -363,6 +437,15 @@ public class GoogleContactsSourceService
     {
         boolean interrupted = false;
 
+        synchronized(this)
+        {
+            if(syncTimer != null)
+            {
+                syncTimer.cancel();
+                syncTimer = null;
+            }
+        }
+
         synchronized (queries)
         {
             while (!queries.isEmpty())
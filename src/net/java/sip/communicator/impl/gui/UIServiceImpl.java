@@ -822,6 +822,9 @@ public class UIServiceImpl
      */
     private class RunLoginGui implements Runnable {
         public void run() {
+            // The main window has been shown with the contact list by now.
+            StartupTimeline.milestone(StartupTimeline.CONTACT_LIST_USABLE);
+
             loginManager.runLogin(mainFrame);
         }
     }
@@ -155,6 +155,34 @@ public class ChatConversationPanel
      */
     public static final String TEXT_CONTENT_TYPE = "text/plain";
 
+    /**
+     * The name of the configuration property which indicates whether the
+     * conversation keeps only the last {@link #TRANSCRIPT_WINDOW_SIZE}
+     * messages in its document and loads the previous page from the history
+     * when the user scrolls to its top.
+     */
+    public static final String VIRTUALIZED_TRANSCRIPT_PNAME
+        = "net.java.sip.communicator.impl.gui.main.chat.VIRTUALIZED_TRANSCRIPT";
+
+    /**
+     * The number of messages kept in the document of a virtualized
+     * conversation.
+     */
+    private static final int TRANSCRIPT_WINDOW_SIZE
+        = 2 * ChatPanel.MESSAGES_PER_PAGE;
+
+    /**
+     * The time in milliseconds during which appended messages are collected
+     * in order to be inserted in the document at once.
+     */
+    private static final int APPEND_DELAY = 20;
+
+    /**
+     * The compiled patterns of the replacement sources.
+     */
+    private static final Map<String, Pattern> replacementPatterns
+        = new HashMap<String, Pattern>();
+
     /**
      * The indicator which determines whether an automatic scroll to the bottom
      * of {@link #chatTextPane} is to be performed.
@@ -186,6 +214,37 @@ public class ChatConversationPanel
         }
     };
 
+    /**
+     * The messages appended since the last time {@link #document} was
+     * updated, each one as its HTML string and its content type.
+     */
+    private final java.util.List<String[]> pendingMessages
+        = new ArrayList<String[]>();
+
+    /**
+     * The timer which inserts {@link #pendingMessages} in {@link #document}.
+     */
+    private final javax.swing.Timer appendTimer
+        = new javax.swing.Timer(APPEND_DELAY, new ActionListener()
+        {
+            public void actionPerformed(ActionEvent e)
+            {
+                appendPendingMessages();
+            }
+        });
+
+    /**
+     * Indicates whether this conversation keeps only the last
+     * {@link #TRANSCRIPT_WINDOW_SIZE} messages in its document.
+     */
+    private final boolean isVirtualized;
+
+    /**
+     * Indicates whether the previous page from the history has been
+     * requested and has not been loaded yet.
+     */
+    private boolean previousPageRequested = false;
+
     /**
      * Creates an instance of <tt>ChatConversationPanel</tt>.
      *
@@ -199,6 +258,14 @@ public class ChatConversationPanel
 
         isHistory = (chatContainer instanceof HistoryWindow);
 
+        isVirtualized
+            = (chatContainer instanceof ChatPanel)
+                && GuiActivator.getConfigurationService().getBoolean(
+                        VIRTUALIZED_TRANSCRIPT_PNAME,
+                        false);
+
+        appendTimer.setRepeats(false);
+
         this.rightButtonMenu = new ChatRightButtonMenu(this);
 
         this.document = (HTMLDocument) editorKit.createDefaultDocument();
@@ -306,6 +373,49 @@ public class ChatConversationPanel
 
         chatTextPane.addComponentListener(componentListener);
         getViewport().addComponentListener(componentListener);
+
+        if (isVirtualized)
+        {
+            getVerticalScrollBar().addAdjustmentListener(
+                    new AdjustmentListener()
+            {
+                /**
+                 * The last value of the scroll bar set by the user.
+                 */
+                private int lastValue = 0;
+
+                public void adjustmentValueChanged(AdjustmentEvent e)
+                {
+                    if (e.getValueIsAdjusting())
+                        return;
+
+                    int value = e.getValue();
+                    boolean scrolledToTop = (value == 0) && (lastValue > 0);
+
+                    lastValue = value;
+                    if (scrolledToTop)
+                        loadPreviousPage();
+                }
+            });
+        }
+    }
+
+    /**
+     * Asks the <tt>ChatPanel</tt> of this virtualized conversation to load the
+     * previous page from the history because the user has scrolled to the top
+     * of the document.
+     */
+    private void loadPreviousPage()
+    {
+        synchronized (scrollToBottomRunnable)
+        {
+            // The scroll bar may go to the top on its own while the document
+            // is being replaced.
+            if (scrollToBottomIsPending || previousPageRequested)
+                return;
+            previousPageRequested = true;
+        }
+        ((ChatPanel) chatContainer).loadPreviousPageFromHistory();
     }
 
     /**
@@ -372,6 +482,8 @@ public class ChatConversationPanel
      */
     public String getMessageContents(String messageUID)
     {
+        appendPendingMessages();
+
         Element root = document.getDefaultRootElement();
         Element e = document.getElement(root, Attribute.ID, messageUID);
         if (e == null)
@@ -645,6 +757,8 @@ public class ChatConversationPanel
      */
     public void correctMessage(ChatMessage chatMessage)
     {
+        appendPendingMessages();
+
         String correctedUID = chatMessage.getCorrectedMessageUID();
         Element root = document.getDefaultRootElement();
         Element e = document.getElement(root, Attribute.ID, correctedUID);
@@ -701,6 +815,10 @@ public class ChatConversationPanel
     /**
      * Appends the given string at the end of the contained in this panel
      * document.
+     * <p>
+     * The messages appended within {@link #APPEND_DELAY} milliseconds of each
+     * other (e.g. the messages replayed by a chat room when we join it) are
+     * inserted in the document at once.
      *
      * @param chatString the string to append
      */
@@ -708,62 +826,176 @@ public class ChatConversationPanel
     {
         synchronized (scrollToBottomRunnable)
         {
-            Element root = document.getDefaultRootElement();
+            pendingMessages.add(new String[] { chatString, contentType });
 
-//          Need to call explicitly scrollToBottom, because for some
-//          reason the componentResized event isn't fired every time we
-//          add text.
-//          Replaced by the code on line: 573.
-//
-//            scrollToBottomIsPending = true;
+            if (!appendTimer.isRunning())
+                appendTimer.start();
+        }
+    }
 
-            try
-            {
-                document
-                    .insertAfterEnd(
-                        root.getElement(root.getElementCount() - 1),
-                        chatString);
-
-                // Need to call explicitly scrollToBottom, because for some
-                // reason the componentResized event isn't fired every time we
-                // add text.
-                SwingUtilities.invokeLater(scrollToBottomRunnable);
-            }
-            catch (BadLocationException e)
-            {
-                logger.error("Insert in the HTMLDocument failed.", e);
-            }
-            catch (IOException e)
-            {
-                logger.error("Insert in the HTMLDocument failed.", e);
-            }
-            if (!isHistory)
-                ensureDocumentSize();
+    /**
+     * Inserts the messages appended since the last time the document was
+     * updated at the end of the document.
+     */
+    private void appendPendingMessages()
+    {
+        synchronized (scrollToBottomRunnable)
+        {
+            appendTimer.stop();
 
-            // Process replacements.
-            final Element elem;
-            /*
-             * Check to make sure element isn't the first element in the HTML
-             * document.
-             */
-            if (!(root.getElementCount() < 2))
-            {
-                elem = root.getElement(root.getElementCount() - 2);
-            }
-            else
-                elem = root.getElement(1);
+            if (pendingMessages.isEmpty())
+                return;
 
             /*
              * Replacements will be processed only if it is enabled in the
              * property
              */
-            if (GuiActivator.getConfigurationService().getBoolean(
-                ReplacementProperty.REPLACEMENT_ENABLE, true)
+            boolean processReplacements
+                = GuiActivator.getConfigurationService().getBoolean(
+                    ReplacementProperty.REPLACEMENT_ENABLE, true)
                 || GuiActivator.getConfigurationService().getBoolean(
-                    ReplacementProperty.getPropertyName("SMILEY"), true))
+                    ReplacementProperty.getPropertyName("SMILEY"), true);
+            StringBuilder chatStrings = new StringBuilder();
+
+            for (String[] pendingMessage : pendingMessages)
+            {
+                String chatString = pendingMessage[0];
+
+                if (processReplacements && hasReplacements(chatString))
+                {
+                    /*
+                     * The element to be replaced is located right after the
+                     * insertion so the message is inserted on its own.
+                     */
+                    insertAfterEnd(chatStrings.toString());
+                    chatStrings.setLength(0);
+                    insertAfterEnd(chatString);
+
+                    Element root = document.getDefaultRootElement();
+                    Element elem;
+
+                    /*
+                     * Check to make sure element isn't the first element in
+                     * the HTML document.
+                     */
+                    if (!(root.getElementCount() < 2))
+                        elem = root.getElement(root.getElementCount() - 2);
+                    else
+                        elem = root.getElement(1);
+
+                    processReplacement(elem, chatString, pendingMessage[1]);
+                }
+                else
+                    chatStrings.append(chatString);
+            }
+            insertAfterEnd(chatStrings.toString());
+            pendingMessages.clear();
+
+            // Need to call explicitly scrollToBottom, because for some
+            // reason the componentResized event isn't fired every time we
+            // add text.
+            SwingUtilities.invokeLater(scrollToBottomRunnable);
+
+            if (!isHistory)
+                ensureDocumentSize();
+        }
+    }
+
+    /**
+     * Inserts the given HTML string at the end of the document.
+     *
+     * @param chatString the HTML string to insert
+     */
+    private void insertAfterEnd(String chatString)
+    {
+        if (chatString.length() == 0)
+            return;
+
+        Element root = document.getDefaultRootElement();
+
+        try
+        {
+            document
+                .insertAfterEnd(
+                    root.getElement(root.getElementCount() - 1),
+                    chatString);
+        }
+        catch (BadLocationException e)
+        {
+            logger.error("Insert in the HTMLDocument failed.", e);
+        }
+        catch (IOException e)
+        {
+            logger.error("Insert in the HTMLDocument failed.", e);
+        }
+    }
+
+    /**
+     * Determines whether one of the enabled replacement sources matches the
+     * given message. The replacements themselves may take a while (e.g. they
+     * may fetch a preview from the network) so they are only looked up by
+     * {@link #processReplacement(Element, String, String)}.
+     *
+     * @param chatString the message
+     * @return <tt>true</tt> if the message has replacements
+     */
+    private boolean hasReplacements(String chatString)
+    {
+        boolean isEnabled
+            = GuiActivator.getConfigurationService().getBoolean(
+                ReplacementProperty.REPLACEMENT_ENABLE, true);
+
+        for (ReplacementService source
+                : GuiActivator.getReplacementSources().values())
+        {
+            if (isReplacementSourceEnabled(source, isEnabled)
+                    && getReplacementPattern(source.getPattern())
+                            .matcher(chatString).find())
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Determines whether a specific replacement source is enabled.
+     *
+     * @param source the replacement source
+     * @param isEnabled whether replacements are enabled in general
+     * @return <tt>true</tt> if <tt>source</tt> is enabled
+     */
+    private static boolean isReplacementSourceEnabled(
+            ReplacementService source,
+            boolean isEnabled)
+    {
+        boolean isSmiley = source instanceof SmiliesReplacementService;
+
+        return
+            GuiActivator.getConfigurationService().getBoolean(
+                    ReplacementProperty.getPropertyName(
+                            source.getSourceName()),
+                    true)
+                && (isEnabled || isSmiley);
+    }
+
+    /**
+     * Returns the compiled form of the pattern of a replacement source.
+     *
+     * @param sourcePattern the pattern of the replacement source
+     * @return the compiled form of <tt>sourcePattern</tt>
+     */
+    private static Pattern getReplacementPattern(String sourcePattern)
+    {
+        synchronized (replacementPatterns)
+        {
+            Pattern p = replacementPatterns.get(sourcePattern);
+
+            if (p == null)
             {
-                processReplacement(elem, chatString, contentType);
+                p = Pattern.compile(sourcePattern,
+                        Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+                replacementPatterns.put(sourcePattern, p);
             }
+            return p;
         }
     }
 
@@ -807,14 +1039,10 @@ public class ChatConversationPanel
                    boolean isSmiley
                        = source instanceof SmiliesReplacementService;
 
-                   if (!(GuiActivator.getConfigurationService().getBoolean(
-                       ReplacementProperty.getPropertyName(source
-                       .getSourceName()), true) && (isEnabled || isSmiley)))
+                   if (!isReplacementSourceEnabled(source, isEnabled))
                        continue;
 
-                   String sourcePattern = source.getPattern();
-                   Pattern p = Pattern.compile(sourcePattern,
-                                   Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+                   Pattern p = getReplacementPattern(source.getPattern());
 
                    Matcher m = p.matcher(msgStore);
 
@@ -896,11 +1124,12 @@ public class ChatConversationPanel
 
     /**
      * Ensures that the document won't become too big. When the document reaches
-     * a certain size the first message in the page is removed.
+     * a certain size (or, if this conversation is virtualized, a certain number
+     * of messages) the first messages in the page are removed.
      */
     private void ensureDocumentSize()
     {
-        if (document.getLength() > Chat.CHAT_BUFFER_SIZE)
+        while (isVirtualized || document.getLength() > Chat.CHAT_BUFFER_SIZE)
         {
             int msgElementCount = 0;
 
@@ -930,6 +1159,10 @@ public class ChatConversationPanel
                 }
             }
 
+            if ((document.getLength() <= Chat.CHAT_BUFFER_SIZE)
+                    && (msgElementCount <= TRANSCRIPT_WINDOW_SIZE))
+                return;
+
             // If we doesn't have any known elements in the document or if we
             // have only one long message we don't want to remove it.
             if(firstMsgElement == null || msgElementCount < 2)
@@ -961,6 +1194,7 @@ public class ChatConversationPanel
             catch (BadLocationException e)
             {
                 logger.error("Error removing messages from chat: ", e);
+                return;
             }
         }
     }
@@ -1330,6 +1564,8 @@ public class ChatConversationPanel
      */
     public void clear()
     {
+        appendPendingMessages();
+
         this.document = (HTMLDocument) editorKit.createDefaultDocument();
         Constants.loadSimpleStyle(
             document.getStyleSheet(), chatTextPane.getFont());
@@ -1344,7 +1580,10 @@ public class ChatConversationPanel
     {
         synchronized (scrollToBottomRunnable)
         {
+            appendPendingMessages();
+
             scrollToBottomIsPending = true;
+            previousPageRequested = false;
 
             this.document = document;
             chatTextPane.setDocument(this.document);
@@ -1367,6 +1606,8 @@ public class ChatConversationPanel
      */
     public HTMLDocument getContent()
     {
+        appendPendingMessages();
+
         return (HTMLDocument) this.chatTextPane.getDocument();
     }
 
@@ -1387,6 +1628,8 @@ public class ChatConversationPanel
      */
     public Date getPageFirstMsgTimestamp()
     {
+        appendPendingMessages();
+
         Element rootElement = this.document.getDefaultRootElement();
 
         Element firstMessageElement = null;
@@ -1419,6 +1662,8 @@ public class ChatConversationPanel
      */
     public Date getPageLastMsgTimestamp()
     {
+        appendPendingMessages();
+
         Element rootElement = this.document.getDefaultRootElement();
 
         Element lastMessageElement = null;
@@ -1559,6 +1804,8 @@ public class ChatConversationPanel
     {
         synchronized (scrollToBottomRunnable)
         {
+            appendPendingMessages();
+
             StyleSheet styleSheet = document.getStyleSheet();
             Style style
                 = styleSheet
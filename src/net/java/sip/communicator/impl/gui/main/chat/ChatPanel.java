@@ -2735,8 +2735,7 @@ public class ChatPanel
     {
         try
         {
-            Document doc
-                = this.conversationPanel.getChatTextPane().getDocument();
+            Document doc = this.conversationPanel.getContent();
             doc.remove(0, doc.getLength());
         }
         catch (BadLocationException ex)
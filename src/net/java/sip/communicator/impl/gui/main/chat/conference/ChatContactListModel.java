@@ -18,6 +18,11 @@ import net.java.sip.communicator.service.protocol.event.*;
  * <tt>ChatContact</tt>s. The primary purpose of the implementation is to sort
  * the <tt>ChatContact</tt>s according to their member roles and in alphabetical
  * order according to their names.
+ * <p>
+ * When we join a chat room the members are reported one presence at a time.
+ * The <tt>ChatContact</tt>s added in such a burst are queued and inserted
+ * together on the event dispatch thread so that the list is notified once per
+ * burst rather than once per member.
  *
  * @author Lubomir Marinov
  */
@@ -32,6 +37,34 @@ public class ChatContactListModel
     private final List<ChatContact<?>> chatContacts =
         new ArrayList<ChatContact<?>>();
 
+    /**
+     * The <tt>ChatContact</tt>s listed in {@link #chatContacts} mapped by
+     * their descriptors.
+     */
+    private final Map<Object, ChatContact<?>> descriptorsToChatContacts
+        = new HashMap<Object, ChatContact<?>>();
+
+    /**
+     * The <tt>ChatContact</tt>s added since the last time the list was
+     * updated, mapped by their descriptors.
+     */
+    private final Map<Object, ChatContact<?>> pendingChatContacts
+        = new LinkedHashMap<Object, ChatContact<?>>();
+
+    /**
+     * Whether the <tt>ChatContact</tt>s in {@link #pendingChatContacts} are
+     * to be inserted by the event dispatch thread.
+     */
+    private boolean insertScheduled = false;
+
+    /**
+     * The <tt>ListSelectionModel</tt> of the list which depicts this model,
+     * in which the selected <tt>ChatContact</tt>s are kept selected when a
+     * burst of <tt>ChatContact</tt>s is inserted, or <tt>null</tt> if the
+     * selection isn't tracked.
+     */
+    private ListSelectionModel selectionModel;
+
     /**
      * The implementation of the sorting rules - the <tt>ChatContact</tt>s are
      * first sorted according to their roles in decreasing order of their
@@ -95,26 +128,26 @@ public class ChatContactListModel
                     public void chatRoomPropertyChanged(
                         ChatRoomMemberPropertyChangeEvent event)
                     {
-                        // find the index and fire
-                        // that content has changed
-                        int chatContactCount = chatContacts.size();
-
-                        for (int i = 0; i < chatContactCount; i++)
-                        {
-                            ChatContact<?> containedChatContact = chatContacts.get(i);
-
-                            if(containedChatContact.getDescriptor().equals(
-                                event.getSourceChatRoomMember()))
-                            {
-                                fireContentsChanged(containedChatContact, i, i);
-                            }
-                        }
+                        elementChanged(event.getSourceChatRoomMember());
                     }
             });
         }
     }
 
-
+    /**
+     * Sets the <tt>ListSelectionModel</tt> of the list which depicts this
+     * model. The notification of a burst of inserted <tt>ChatContact</tt>s
+     * doesn't tell where each of them has been inserted so the selected
+     * <tt>ChatContact</tt>s are selected again at their new indices
+     * afterwards.
+     *
+     * @param selectionModel the <tt>ListSelectionModel</tt> of the list which
+     * depicts this model or <tt>null</tt> to not track the selection
+     */
+    public void setSelectionModel(ListSelectionModel selectionModel)
+    {
+        this.selectionModel = selectionModel;
+    }
 
     /**
      * Adds a specific <tt>ChatContact</tt> to this <tt>AbstractListModel</tt>
@@ -128,32 +161,270 @@ public class ChatContactListModel
         if (chatContact == null)
             throw new IllegalArgumentException("chatContact");
 
-        int index = -1;
+        synchronized(chatContacts)
+        {
+            Object descriptor = chatContact.getDescriptor();
+
+            // We don't want duplicates.
+            if (descriptorsToChatContacts.containsKey(descriptor)
+                    || pendingChatContacts.containsKey(descriptor))
+                return;
+
+            pendingChatContacts.put(descriptor, chatContact);
+
+            if (insertScheduled)
+                return;
+            insertScheduled = true;
+        }
 
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            public void run()
+            {
+                insertPendingElements();
+            }
+        });
+    }
+
+    /**
+     * Inserts the <tt>ChatContact</tt>s added since the last time the list was
+     * updated and notifies the listeners once for all of them.
+     */
+    private void insertPendingElements()
+    {
         synchronized(chatContacts)
         {
-            int chatContactCount = chatContacts.size();
+            insertScheduled = false;
+
+            if (pendingChatContacts.isEmpty())
+                return;
+
+            List<ChatContact<?>> added
+                = new ArrayList<ChatContact<?>>(pendingChatContacts.values());
+
+            pendingChatContacts.clear();
 
-            for (int i = 0; i < chatContactCount; i++)
+            if (added.size() == 1)
             {
-                ChatContact<?> containedChatContact = chatContacts.get(i);
+                ChatContact<?> chatContact = added.get(0);
+                int index = insertionIndex(chatContact);
 
-                // We don't want duplicates.
-                if (chatContact.equals(containedChatContact))
-                    return;
-                if ((index == -1)
-                        && (sorter.compare(containedChatContact, chatContact) > 0))
-                {
-                    index = i;
-                    // Continue in order to prevent duplicates.
-                }
+                chatContacts.add(index, chatContact);
+                descriptorsToChatContacts.put(
+                        chatContact.getDescriptor(),
+                        chatContact);
+                fireIntervalAdded(this, index, index);
+                return;
+            }
+
+            /*
+             * Merge the sorted burst into the sorted list in one pass instead
+             * of shifting the list once per ChatContact.
+             */
+            Collections.sort(added, sorter);
+
+            List<ChatContact<?>> selected = getSelectedElements();
+            int oldSize = chatContacts.size();
+            int firstIndex = insertionIndex(added.get(0));
+            List<ChatContact<?>> tail
+                = new ArrayList<ChatContact<?>>(
+                        chatContacts.subList(firstIndex, oldSize));
+            int tailIndex = 0;
+
+            chatContacts.subList(firstIndex, oldSize).clear();
+            for (ChatContact<?> chatContact : added)
+            {
+                while ((tailIndex < tail.size())
+                        && (sorter.compare(tail.get(tailIndex), chatContact)
+                                <= 0))
+                    chatContacts.add(tail.get(tailIndex++));
+                chatContacts.add(chatContact);
+                descriptorsToChatContacts.put(
+                        chatContact.getDescriptor(),
+                        chatContact);
             }
-            if (index == -1)
-                index = chatContactCount;
+            chatContacts.addAll(tail.subList(tailIndex, tail.size()));
+
+            int newSize = chatContacts.size();
+
+            /*
+             * The added ChatContacts may be scattered among the existing ones
+             * so report the growth of the list at once and the rows which got
+             * shifted as changed.
+             */
+            fireIntervalAdded(this, oldSize, newSize - 1);
+            if (firstIndex < oldSize)
+                fireContentsChanged(this, firstIndex, oldSize - 1);
+
+            if (!selected.isEmpty())
+                setSelectedElements(selected);
+        }
+    }
+
+    /**
+     * Returns the <tt>ChatContact</tt>s which are selected in
+     * {@link #selectionModel}. The lead selection, if selected, is the last
+     * one.
+     *
+     * @return the <tt>ChatContact</tt>s which are selected in
+     * {@link #selectionModel}
+     */
+    private List<ChatContact<?>> getSelectedElements()
+    {
+        ListSelectionModel selectionModel = this.selectionModel;
+
+        if ((selectionModel == null) || selectionModel.isSelectionEmpty())
+            return Collections.emptyList();
+
+        List<ChatContact<?>> selected = new ArrayList<ChatContact<?>>();
+        int lead = selectionModel.getLeadSelectionIndex();
+        int max
+            = Math.min(
+                    selectionModel.getMaxSelectionIndex(),
+                    chatContacts.size() - 1);
+
+        for (int i = selectionModel.getMinSelectionIndex(); i <= max; i++)
+        {
+            if ((i != lead) && selectionModel.isSelectedIndex(i))
+                selected.add(chatContacts.get(i));
+        }
+        if ((lead >= 0)
+                && (lead < chatContacts.size())
+                && selectionModel.isSelectedIndex(lead))
+            selected.add(chatContacts.get(lead));
+        return selected;
+    }
 
+    /**
+     * Selects specific <tt>ChatContact</tt>s in {@link #selectionModel} at
+     * their current indices instead of the selected indices.
+     *
+     * @param selected the <tt>ChatContact</tt>s to select, the last of which
+     * becomes the lead selection
+     */
+    private void setSelectedElements(List<ChatContact<?>> selected)
+    {
+        ListSelectionModel selectionModel = this.selectionModel;
+
+        if (selectionModel == null)
+            return;
+
+        selectionModel.setValueIsAdjusting(true);
+        try
+        {
+            selectionModel.clearSelection();
+            for (ChatContact<?> chatContact : selected)
+            {
+                int index = indexOf(chatContact);
+
+                if (index >= 0)
+                    selectionModel.addSelectionInterval(index, index);
+            }
+        }
+        finally
+        {
+            selectionModel.setValueIsAdjusting(false);
+        }
+    }
+
+    /**
+     * Updates the position of the <tt>ChatContact</tt> of a specific
+     * descriptor after one of its properties (e.g. its name) has changed.
+     *
+     * @param descriptor the descriptor of the <tt>ChatContact</tt> which has
+     * changed
+     */
+    private void elementChanged(Object descriptor)
+    {
+        synchronized(chatContacts)
+        {
+            ChatContact<?> chatContact
+                = descriptorsToChatContacts.get(descriptor);
+
+            if (chatContact == null)
+                return;
+
+            int index = indexOf(chatContact);
+
+            if (index < 0)
+                return;
+
+            boolean sorted
+                = ((index == 0)
+                        || (sorter.compare(
+                                    chatContacts.get(index - 1),
+                                    chatContact)
+                                <= 0))
+                    && ((index == chatContacts.size() - 1)
+                        || (sorter.compare(
+                                    chatContact,
+                                    chatContacts.get(index + 1))
+                                <= 0));
+
+            if (sorted)
+            {
+                fireContentsChanged(chatContact, index, index);
+                return;
+            }
+
+            chatContacts.remove(index);
+            fireIntervalRemoved(this, index, index);
+
+            index = insertionIndex(chatContact);
             chatContacts.add(index, chatContact);
+            fireIntervalAdded(this, index, index);
         }
-        fireIntervalAdded(this, index, index);
+    }
+
+    /**
+     * Returns the index at which a specific <tt>ChatContact</tt> is to be
+     * inserted in order to preserve the sorting, after the
+     * <tt>ChatContact</tt>s which are equal to it according to
+     * {@link #sorter}.
+     *
+     * @param chatContact the <tt>ChatContact</tt> to be inserted
+     * @return the index at which <tt>chatContact</tt> is to be inserted
+     */
+    private int insertionIndex(ChatContact<?> chatContact)
+    {
+        int low = 0;
+        int high = chatContacts.size();
+
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+
+            if (sorter.compare(chatContacts.get(mid), chatContact) > 0)
+                high = mid;
+            else
+                low = mid + 1;
+        }
+        return low;
+    }
+
+    /**
+     * Returns the index of a specific <tt>ChatContact</tt> in
+     * {@link #chatContacts}. The <tt>ChatContact</tt> is looked for by binary
+     * search and, if its name or role have changed since it was inserted, by
+     * linear search.
+     *
+     * @param chatContact the <tt>ChatContact</tt> to look for
+     * @return the index of <tt>chatContact</tt> or <tt>-1</tt> if it is not
+     * listed
+     */
+    private int indexOf(ChatContact<?> chatContact)
+    {
+        int end = insertionIndex(chatContact);
+
+        for (int i = end - 1;
+                (i >= 0) && (sorter.compare(chatContacts.get(i), chatContact)
+                        == 0);
+                i--)
+        {
+            if (chatContacts.get(i).equals(chatContact))
+                return i;
+        }
+        return chatContacts.indexOf(chatContact);
     }
 
     /* Implements ListModel#getElementAt(int). */
@@ -185,10 +456,24 @@ public class ChatContactListModel
     {
         synchronized(chatContacts)
         {
-            int index = chatContacts.indexOf(chatContact);
+            Object descriptor = chatContact.getDescriptor();
+
+            if (pendingChatContacts.remove(descriptor) != null)
+                return;
+
+            ChatContact<?> containedChatContact
+                = descriptorsToChatContacts.remove(descriptor);
+
+            if (containedChatContact == null)
+                return;
+
+            int index = indexOf(containedChatContact);
 
-            if ((index >= 0) && chatContacts.remove(chatContact))
+            if (index >= 0)
+            {
+                chatContacts.remove(index);
                 fireIntervalRemoved(this, index, index);
+            }
         }
     }
 
@@ -197,12 +482,16 @@ public class ChatContactListModel
      */
     public void removeAllElements()
     {
-        if (chatContacts == null || chatContacts.size() <= 0)
-            return;
-
         synchronized(chatContacts)
         {
+            pendingChatContacts.clear();
+            descriptorsToChatContacts.clear();
+
             int contactsSize = chatContacts.size();
+
+            if (contactsSize <= 0)
+                return;
+
             chatContacts.clear();
 
             fireIntervalRemoved(this, 0, contactsSize - 1);
@@ -66,6 +66,7 @@ public class ChatRoomMemberListPanel
             = new ChatContactListModel(chatPanel.getChatSession());
 
         this.memberList.setModel(memberListModel);
+        this.memberListModel.setSelectionModel(memberList.getSelectionModel());
         this.memberList.addKeyListener(new CListKeySearchListener(memberList));
         this.memberList.setCellRenderer(new ChatContactCellRenderer());
 
@@ -58,6 +58,24 @@ public class GroupNode
      */
     private boolean isCollapsed = false;
 
+    /**
+     * Indicates if the children of this node are known to be sorted, i.e. no
+     * child has been added out of order by {@link #addContact(UIContactImpl)}
+     * or {@link #addContactGroup(UIGroupImpl)} since the last sort.
+     */
+    private boolean isSorted = true;
+
+    /**
+     * Indicates if a sort of the children of this node has been scheduled on
+     * the event dispatch thread and hasn't run yet.
+     */
+    private boolean isSortScheduled = false;
+
+    /**
+     * The object used to synchronize the access to {@link #isSortScheduled}.
+     */
+    private final Object sortSyncRoot = new Object();
+
     /**
      * Creates a <tt>GroupNode</tt> by specifying the parent <tt>treeModel</tt>
      * and the corresponding <tt>uiGroup</tt>.
@@ -98,7 +116,10 @@ public class GroupNode
         int contactIndex = getIndex(contactNode);
 
         if (contactIndex > -1)
+        {
+            checkSortedAt(contactIndex);
             fireNodeInserted(contactIndex);
+        }
 
         refreshSelection(selectedIndex, getLeadSelectionRow());
 
@@ -121,10 +142,7 @@ public class GroupNode
         ContactNode contactNode = new ContactNode(uiContact);
         uiContact.setContactNode(contactNode);
 
-        add(contactNode);
-
-        // TODO: Optimize!
-        Collections.sort(children, nodeComparator);
+        sortedAdd(contactNode);
 
         int contactIndex = getIndex(contactNode);
 
@@ -180,7 +198,10 @@ public class GroupNode
         int groupIndex = getIndex(groupNode);
 
         if (groupIndex > -1)
+        {
+            checkSortedAt(groupIndex);
             fireNodeInserted(groupIndex);
+        }
 
         refreshSelection(selectedIndex, getLeadSelectionRow());
 
@@ -227,10 +248,7 @@ public class GroupNode
 
         uiGroup.setGroupNode(groupNode);
 
-        add(groupNode);
-
-        // TODO: Optimize!
-        Collections.sort(children, nodeComparator);
+        sortedAdd(groupNode);
 
         int contactIndex = getIndex(groupNode);
 
@@ -259,25 +277,36 @@ public class GroupNode
     }
 
     /**
-     * Sorts the children of this node.
+     * Sorts the children of this node. The sort is made on the event dispatch
+     * thread and the requests made before it runs are coalesced into it.
      * @param treeModel the <tt>ContactListTreeModel</tt>, which should be
      * refreshed
      */
-    @SuppressWarnings("unchecked")
     public void sort(final ContactListTreeModel treeModel)
     {
         if (children != null)
         {
+            synchronized (sortSyncRoot)
+            {
+                if (isSortScheduled)
+                    return;
+                isSortScheduled = true;
+            }
+
             SwingUtilities.invokeLater(new Runnable()
             {
                 public void run()
                 {
+                    synchronized (sortSyncRoot)
+                    {
+                        isSortScheduled = false;
+                    }
+
                     TreePath selectionPath = getLeadSelectionPath();
                     int oldSelectionIndex = getLeadSelectionRow();
 
-                    Collections.sort(children, nodeComparator);
-
-                    fireNodesChanged();
+                    if (!reposition())
+                        return;
 
                     treeModel.getParentTree().setSelectionPath(selectionPath);
 
@@ -287,6 +316,188 @@ public class GroupNode
         }
     }
 
+    /**
+     * Adds a child node at its sorted position, found with a binary search if
+     * the children are sorted.
+     * @param node the node to add
+     */
+    @SuppressWarnings("unchecked")
+    private void sortedAdd(MutableTreeNode node)
+    {
+        if (isSorted)
+        {
+            insert(node, getSortedIndex((ContactListNode) node));
+        }
+        else
+        {
+            add(node);
+            Collections.sort(children, nodeComparator);
+            isSorted = true;
+        }
+    }
+
+    /**
+     * Checks whether the child at a specific index is in order with the
+     * previous one after it has been added without sorting.
+     * @param index the index of the added child
+     */
+    private void checkSortedAt(int index)
+    {
+        if (isSorted
+            && index > 0
+            && nodeComparator.compare(
+                    (ContactListNode) getChildAt(index - 1),
+                    (ContactListNode) getChildAt(index)) > 0)
+            isSorted = false;
+    }
+
+    /**
+     * Returns the index at which a node should be inserted in the sorted
+     * children of this node, after the children which are equal to it.
+     * @param node the node to insert
+     * @return the index at which <tt>node</tt> should be inserted
+     */
+    private int getSortedIndex(ContactListNode node)
+    {
+        int low = 0;
+        int high = getChildCount();
+
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+
+            if (nodeComparator.compare(
+                    node, (ContactListNode) getChildAt(mid)) < 0)
+                high = mid;
+            else
+                low = mid + 1;
+        }
+        return low;
+    }
+
+    /**
+     * Restores the order of the children. Usually only a few contacts have
+     * changed their position, e.g. the one which has changed its status, so
+     * only the children which are not part of the longest sorted subsequence
+     * of the children are removed and inserted again at their sorted
+     * position. If many children have moved or if groups have, the children
+     * are sorted altogether.
+     * @return <tt>true</tt> if the order of the children has changed
+     */
+    @SuppressWarnings("unchecked")
+    private boolean reposition()
+    {
+        int childCount = getChildCount();
+        ContactListNode[] nodes = new ContactListNode[childCount];
+
+        for (int i = 0; i < childCount; i++)
+            nodes[i] = (ContactListNode) getChildAt(i);
+
+        boolean[] inOrder = getLongestSortedSubsequence(nodes);
+        int movedCount = 0;
+        boolean isGroupMoved = false;
+
+        for (int i = 0; i < childCount; i++)
+        {
+            if (!inOrder[i])
+            {
+                movedCount++;
+                if (nodes[i] instanceof GroupNode)
+                    isGroupMoved = true;
+            }
+        }
+
+        isSorted = true;
+
+        if (movedCount == 0)
+            return false;
+
+        if (isGroupMoved || movedCount > childCount / 2)
+        {
+            Collections.sort(children, nodeComparator);
+            fireNodesChanged();
+            return true;
+        }
+
+        int[] removedIndexes = new int[movedCount];
+        ContactListNode[] movedNodes = new ContactListNode[movedCount];
+
+        for (int i = 0, moved = 0; i < childCount; i++)
+        {
+            if (!inOrder[i])
+            {
+                removedIndexes[moved] = i;
+                movedNodes[moved] = nodes[i];
+                moved++;
+            }
+        }
+
+        // We remove the nodes directly from the list, from the last one so
+        // that the indexes of the others stay valid.
+        for (int i = movedCount - 1; i >= 0; i--)
+            children.removeElementAt(removedIndexes[i]);
+
+        treeModel.nodesWereRemoved(this, removedIndexes, movedNodes);
+
+        for (ContactListNode node : movedNodes)
+        {
+            int index = getSortedIndex(node);
+
+            children.insertElementAt(node, index);
+            fireNodeInserted(index);
+        }
+        return true;
+    }
+
+    /**
+     * Finds the longest subsequence of specific nodes which is sorted with
+     * the <tt>nodeComparator</tt>.
+     * @param nodes the nodes to find the sorted subsequence of
+     * @return an array which tells for each node whether it is part of the
+     * subsequence
+     */
+    private static boolean[] getLongestSortedSubsequence(
+            ContactListNode[] nodes)
+    {
+        int count = nodes.length;
+        boolean[] inSubsequence = new boolean[count];
+
+        if (count == 0)
+            return inSubsequence;
+
+        // tails[k] is the index of the smallest last node of the sorted
+        // subsequences of length k + 1 found so far
+        int[] tails = new int[count];
+        int[] previous = new int[count];
+        int length = 0;
+
+        for (int i = 0; i < count; i++)
+        {
+            int low = 0;
+            int high = length;
+
+            while (low < high)
+            {
+                int mid = (low + high) >>> 1;
+
+                if (nodeComparator.compare(nodes[tails[mid]], nodes[i]) <= 0)
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+
+            previous[i] = (low > 0) ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length)
+                length++;
+        }
+
+        for (int i = tails[length - 1]; i >= 0; i = previous[i])
+            inSubsequence[i] = true;
+
+        return inSubsequence;
+    }
+
     /**
      * Returns <tt>true</tt> if the group is collapsed or <tt>false</tt>
      * otherwise.
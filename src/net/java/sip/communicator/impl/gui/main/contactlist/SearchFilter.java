@@ -73,6 +73,11 @@ public class SearchFilter
      */
     public void applyFilter(FilterQuery filterQuery)
     {
+        // The call history lists several calls with the same peer.
+        if ((searchSourceType == HISTORY_SOURCE)
+                && (filterQuery instanceof UIFilterQuery))
+            ((UIFilterQuery) filterQuery).setDeduplicating(false);
+
         // If the filter has a default contact source, we apply it first.
         if (searchSourceType == DEFAULT_SOURCE)
         {
@@ -103,7 +108,7 @@ public class SearchFilter
                 return;
 
             filterQuery.addContactQuery(
-                applyFilter(filterSource));
+                applyFilter(filterSource, filterQuery));
         }
 
         // Closes this filter to indicate that we finished adding queries to it.
@@ -118,6 +123,22 @@ public class SearchFilter
      * @return the <tt>ContactQuery</tt> that tracks this filter
      */
     public ContactQuery applyFilter(UIContactSource contactSource)
+    {
+        return applyFilter(contactSource, null);
+    }
+
+    /**
+     * Applies this filter to the given <tt>contactSource</tt> as part of a
+     * specific filter query.
+     *
+     * @param contactSource the <tt>ExternalContactSource</tt> to apply the
+     * filter to
+     * @param filterQuery the filter query the contacts are shown for or
+     * <tt>null</tt>
+     * @return the <tt>ContactQuery</tt> that tracks this filter
+     */
+    private ContactQuery applyFilter(   UIContactSource contactSource,
+                                        FilterQuery filterQuery)
     {
         ContactSourceService sourceService
             = contactSource.getContactSourceService();
@@ -131,7 +152,7 @@ public class SearchFilter
             contactQuery = sourceService.queryContactSource(filterString);
 
         // Add first available results.
-        this.addMatching(contactQuery.getQueryResults());
+        this.addMatching(contactQuery.getQueryResults(), filterQuery);
 
         contactQuery.addContactQueryListener(GuiActivator.getContactList());
 
@@ -221,20 +242,28 @@ public class SearchFilter
     /**
      * Adds the list of <tt>sourceContacts</tt> to the contact list.
      * @param sourceContacts the list of <tt>SourceContact</tt>s to add
+     * @param filterQuery the filter query the contacts are shown for or
+     * <tt>null</tt>
      */
-    private void addMatching(List<SourceContact> sourceContacts)
+    private void addMatching(   List<SourceContact> sourceContacts,
+                                FilterQuery filterQuery)
     {
         Iterator<SourceContact> contactsIter = sourceContacts.iterator();
 
         while (contactsIter.hasNext())
-            addSourceContact(contactsIter.next());
+            addSourceContact(contactsIter.next(), filterQuery);
     }
 
     /**
-     * Adds the given <tt>sourceContact</tt> to the contact list.
+     * Adds the given <tt>sourceContact</tt> to the contact list unless another
+     * contact source has already shown all its addresses for the same filter
+     * query.
      * @param sourceContact the <tt>SourceContact</tt> to add
+     * @param filterQuery the filter query the contact is shown for or
+     * <tt>null</tt>
      */
-    private void addSourceContact(SourceContact sourceContact)
+    private void addSourceContact(  SourceContact sourceContact,
+                                    FilterQuery filterQuery)
     {
         ContactSourceService contactSource
             = sourceContact.getContactSource();
@@ -248,6 +277,11 @@ public class SearchFilter
             && (contactSource instanceof ExtendedContactSourceService)
                 || isMatching(sourceContact))
         {
+            if ((filterQuery instanceof UIFilterQuery)
+                    && !((UIFilterQuery) filterQuery).addAddresses(
+                            sourceContact))
+                return;
+
             GuiActivator.getContactList().addContact(
                 sourceUI.createUIContact(sourceContact),
                 sourceUI.getUIGroup(),
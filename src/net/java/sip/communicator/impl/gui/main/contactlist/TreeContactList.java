@@ -554,9 +554,13 @@ public class TreeContactList
         }
 
         // If in the meantime the filter has changed we don't
-        // add the contact.
+        // add the contact. Neither do we add a contact whose addresses are
+        // already shown because another contact source has found them.
         if (query != null
-                && currentFilterQuery.containsQuery(query))
+                && currentFilterQuery.containsQuery(query)
+                && (!(contact.getDescriptor() instanceof SourceContact)
+                    || currentFilterQuery.addAddresses(
+                            (SourceContact) contact.getDescriptor())))
         {
             addContact(contact, group, isSorted, true);
         }
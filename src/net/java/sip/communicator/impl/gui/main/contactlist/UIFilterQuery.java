@@ -13,6 +13,7 @@ import net.java.sip.communicator.impl.gui.main.contactlist.contactsource.*;
 import net.java.sip.communicator.service.contactsource.*;
 import net.java.sip.communicator.service.gui.*;
 import net.java.sip.communicator.service.gui.event.*;
+import net.java.sip.communicator.service.protocol.*;
 
 /**
  * The <tt>FilterQuery</tt> gives information about a current filtering.
@@ -65,6 +66,19 @@ public class UIFilterQuery
      */
     private int runningQueries = 0;
 
+    /**
+     * The addresses of the <tt>SourceContact</tt>s shown as a result of this
+     * query.
+     */
+    private final SourceContactAddressFilter addresses
+        = new SourceContactAddressFilter(GuiActivator.getPhoneNumberService());
+
+    /**
+     * Whether a <tt>SourceContact</tt> is only shown if not all of its
+     * addresses have already been shown as a result of this query.
+     */
+    private volatile boolean deduplicating = true;
+
     /**
      * Adds the given <tt>contactQuery</tt> to the list of filterQueries.
      * @param contactQuery the <tt>ContactQuery</tt> to add
@@ -292,6 +306,38 @@ public class UIFilterQuery
         return filterQueries.containsKey(query);
     }
 
+    /**
+     * Adds the addresses of a <tt>SourceContact</tt> to the addresses shown as
+     * a result of this filter query. The same address may be found by several
+     * contact sources, e.g. an address book and an LDAP directory, and the
+     * contact is only to be shown once. The call history records and the
+     * results of the queries which don't de-duplicate are always shown.
+     *
+     * @param sourceContact the <tt>SourceContact</tt> to be shown
+     * @return <tt>false</tt> if all the addresses of <tt>sourceContact</tt>
+     * are already shown and thus it mustn't be shown, <tt>true</tt> -
+     * otherwise
+     */
+    public boolean addAddresses(SourceContact sourceContact)
+    {
+        return !deduplicating || addresses.add(sourceContact);
+    }
+
+    /**
+     * Sets whether a <tt>SourceContact</tt> is only to be shown if not all of
+     * its addresses have already been shown as a result of this query. The
+     * searches of the call history only show call records, of which many have
+     * the same address, and mustn't de-duplicate.
+     *
+     * @param deduplicating <tt>true</tt> to not show the
+     * <tt>SourceContact</tt>s whose addresses have all been shown already;
+     * <tt>false</tt> to show all of them
+     */
+    public void setDeduplicating(boolean deduplicating)
+    {
+        this.deduplicating = deduplicating;
+    }
+
     /**
      * Cancels asynchronous queries after the maximum desired result count is
      * reached.
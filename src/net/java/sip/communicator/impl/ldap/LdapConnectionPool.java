@@ -0,0 +1,238 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.ldap;
+
+import java.util.*;
+
+import javax.naming.*;
+import javax.naming.ldap.*;
+
+import net.java.sip.communicator.util.*;
+
+/**
+ * A small pool of established connections (<tt>InitialLdapContext</tt>s) to
+ * one LDAP directory. The JNDI built-in pool is not used for connections
+ * created through a custom socket factory (which is what we do for SSL), so
+ * without this pool every search pays a new TCP connection, TLS handshake and
+ * bind.
+ * <p>
+ * A context is never shared between threads: it is borrowed by one search
+ * and given back once the search is over.
+ *
+ * @author agent
+ */
+public class LdapConnectionPool
+{
+    /**
+     * The logger for this class.
+     */
+    private final static Logger logger
+        = Logger.getLogger(LdapConnectionPool.class);
+
+    /**
+     * The maximum number of idle connections kept open.
+     */
+    private static final int MAX_IDLE_CONNECTIONS = 4;
+
+    /**
+     * Idle connections older than this (in ms) are closed instead of reused,
+     * most servers drop idle clients after a few minutes anyway.
+     */
+    private static final long MAX_IDLE_TIME = 60000;
+
+    /**
+     * The environment used to create new connections.
+     */
+    private final Hashtable<String, String> env;
+
+    /**
+     * A name identifying the directory, used for logging only.
+     */
+    private final String name;
+
+    /**
+     * The idle connections, the most recently used one last.
+     */
+    private final LinkedList<IdleConnection> idle
+        = new LinkedList<IdleConnection>();
+
+    /**
+     * Whether this pool has been closed.
+     */
+    private boolean closed = false;
+
+    /**
+     * Creates a pool of connections to the directory described by
+     * <tt>env</tt>.
+     *
+     * @param env the environment used to create new connections
+     * @param name a name identifying the directory (used for logging)
+     */
+    public LdapConnectionPool(Hashtable<String, String> env, String name)
+    {
+        this.env = env;
+        this.name = name;
+    }
+
+    /**
+     * Returns a connection to the directory, reusing an idle one if
+     * possible. The connection must be given back with
+     * {@link #release(LdapContext, boolean)}.
+     *
+     * @return a connection to the directory
+     * @throws NamingException if a new connection could not be established
+     */
+    public LdapContext borrow()
+        throws NamingException
+    {
+        long now = System.currentTimeMillis();
+
+        while(true)
+        {
+            IdleConnection connection;
+
+            synchronized(idle)
+            {
+                connection = idle.pollLast();
+            }
+            if(connection == null)
+                break;
+
+            if(now - connection.since < MAX_IDLE_TIME)
+            {
+                logger.trace("reusing connection to directory \""
+                        + name + "\"");
+                return connection.context;
+            }
+            close(connection.context);
+        }
+
+        logger.trace("connecting to directory \"" + name + "\"");
+        long time0 = System.currentTimeMillis();
+        LdapContext context = createContext();
+        long time1 = System.currentTimeMillis();
+        logger.trace("connection to directory \"" + name + "\" took " +
+                (time1-time0)  + " ms");
+        return context;
+    }
+
+    /**
+     * Establishes a new connection to the directory.
+     *
+     * @return a new connection to the directory
+     * @throws NamingException if the connection could not be established
+     */
+    protected LdapContext createContext()
+        throws NamingException
+    {
+        return new InitialLdapContext(env, null);
+    }
+
+    /**
+     * Gives back a connection obtained with {@link #borrow()}.
+     *
+     * @param context the connection
+     * @param broken <tt>true</tt> if the connection failed and must not be
+     * reused
+     */
+    public void release(LdapContext context, boolean broken)
+    {
+        if(context == null)
+            return;
+
+        if(!broken)
+        {
+            try
+            {
+                // do not leak the controls of the last search (e.g. paging)
+                // to the next one
+                context.setRequestControls(null);
+            }
+            catch(NamingException e)
+            {
+                broken = true;
+            }
+        }
+
+        if(!broken)
+        {
+            synchronized(idle)
+            {
+                if(!closed && idle.size() < MAX_IDLE_CONNECTIONS)
+                {
+                    idle.add(new IdleConnection(context));
+                    return;
+                }
+            }
+        }
+        close(context);
+    }
+
+    /**
+     * Closes all idle connections. Connections currently borrowed are closed
+     * when they are released.
+     */
+    public void close()
+    {
+        List<IdleConnection> toClose;
+
+        synchronized(idle)
+        {
+            closed = true;
+            toClose = new ArrayList<IdleConnection>(idle);
+            idle.clear();
+        }
+        for(IdleConnection connection : toClose)
+            close(connection.context);
+    }
+
+    /**
+     * Closes a connection, ignoring errors.
+     *
+     * @param context the connection to close
+     */
+    private void close(LdapContext context)
+    {
+        try
+        {
+            context.close();
+            logger.trace("disconnection from directory \"" + name +
+                    "\" achieved!");
+        }
+        catch(NamingException e)
+        {
+            logger.trace("disconnection from directory \"" + name +
+                    "\" failed!");
+        }
+    }
+
+    /**
+     * An idle connection and the time it was given back to the pool.
+     */
+    private static class IdleConnection
+    {
+        /**
+         * The connection.
+         */
+        private final LdapContext context;
+
+        /**
+         * When the connection was given back to the pool.
+         */
+        private final long since = System.currentTimeMillis();
+
+        /**
+         * Creates an idle connection entry.
+         *
+         * @param context the connection
+         */
+        IdleConnection(LdapContext context)
+        {
+            this.context = context;
+        }
+    }
+}
@@ -6,10 +6,13 @@
  */
 package net.java.sip.communicator.impl.ldap;
 
+import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import javax.naming.*;
 import javax.naming.directory.*;
+import javax.naming.ldap.*;
 
 import net.java.sip.communicator.service.ldap.*;
 import net.java.sip.communicator.service.ldap.event.*;
@@ -38,11 +41,39 @@ public class LdapDirectoryImpl
         logger.setLevelTrace();
     }
 
+    /**
+     * The number of entries we ask the directory to return per page
+     * (RFC 2696 paged results), so that a search can be abandoned without
+     * having to read every match first.
+     */
+    private static final int PAGE_SIZE = 50;
+
+    /**
+     * The maximum number of searches performed at the same time on this
+     * directory.
+     */
+    private static final int MAX_SEARCH_THREADS = 4;
+
     /**
      * The settings for this directory
      */
     private LdapDirectorySettings settings;
 
+    /**
+     * The established connections to this directory.
+     */
+    private final LdapConnectionPool connectionPool;
+
+    /**
+     * The recent complete search results of this directory.
+     */
+    private final LdapQueryCache queryCache = new LdapQueryCache();
+
+    /**
+     * Executes the searches on this directory.
+     */
+    private final ThreadPoolExecutor searchExecutor;
+
     /**
      * Stores the pending searches
      *
@@ -168,8 +199,6 @@ public class LdapDirectoryImpl
         this.env.put("com.sun.jndi.ldap.read.timeout", LDAP_READ_TIMEOUT);
         this.env.put(Context.PROVIDER_URL, settings.getEncryption().
                 protocolString() + settings.getHostname() + portText +"/");
-        //connection pooling
-        this.env.put("com.sun.jndi.ldap.connect.pool", "true");
 
         /* TODO STARTTLS */
         switch(this.settings.getEncryption())
@@ -208,6 +237,33 @@ public class LdapDirectoryImpl
         {
             searchableAttrs.add(s);
         }
+
+        //connection pooling (the JNDI pool ignores our SSL socket factory)
+        this.connectionPool = new LdapConnectionPool(this.env,
+                this.settings.getName());
+
+        this.searchExecutor = new ThreadPoolExecutor(
+                MAX_SEARCH_THREADS, MAX_SEARCH_THREADS,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory()
+                {
+                    public Thread newThread(Runnable r)
+                    {
+                        Thread searchThread = new Thread(r,
+                                "LdapSearch-" + LdapDirectoryImpl.this);
+
+                        // setting the classloader is necessary so that the
+                        // BundleContext can be accessed from classes
+                        // instantiated from JNDI (specifically from our
+                        // custom SocketFactory)
+                        searchThread.setContextClassLoader(
+                                LdapDirectoryImpl.class.getClassLoader());
+                        searchThread.setDaemon(true);
+                        return searchThread;
+                    }
+                });
+        this.searchExecutor.allowCoreThreadTimeOut(true);
     }
 
     /**
@@ -251,40 +307,41 @@ public class LdapDirectoryImpl
     }
 
     /**
-     * Connects to the remote directory
+     * Connects to the remote directory, reusing an established connection
+     * if one is available.
      */
-    private InitialDirContext connect()
+    private LdapContext connect()
         throws NamingException
     {
-        logger.trace("connecting to directory \"" + this + "\"");
-        long time0 = System.currentTimeMillis();
-        InitialDirContext dirContext =
-            new InitialDirContext(this.env);
-        long time1 = System.currentTimeMillis();
-        logger.trace("connection to directory \"" + this + "\" took " +
-                (time1-time0)  + " ms");
-        return dirContext;
+        return this.connectionPool.borrow();
     }
 
     /**
-     * closes the ldap connection
+     * Gives the ldap connection back to the pool.
+     *
+     * @param dirContext the connection obtained with {@link #connect()}
+     * @param broken whether an error occured on the connection, in which case
+     * it is closed instead of reused
      */
-    private void disconnect(InitialDirContext dirContext)
+    private void disconnect(LdapContext dirContext, boolean broken)
     {
         if(dirContext == null)
             throw new NullPointerException("dirContext is null");
 
-        try
-        {
-            dirContext.close();
-        }
-        catch(NamingException e)
-        {
-            logger.trace("disconnection from directory \"" + this +
-                    "\" failed!");
-        }
+        this.connectionPool.release(dirContext, broken);
+    }
 
-        logger.trace("disconnection achieved!");
+    /**
+     * Closes the connections to the directory and stops the search threads.
+     * Called once the directory has been removed.
+     *
+     * @see LdapDirectory#dispose
+     */
+    public void dispose()
+    {
+        this.searchExecutor.shutdownNow();
+        this.connectionPool.close();
+        this.queryCache.clear();
     }
 
     /**
@@ -330,23 +387,52 @@ public class LdapDirectoryImpl
         // when the pendingSearches element will be empty,
         // all intermediate query strings will have been searched
         // and the search will be finished
-        this.pendingSearches.put(query, new LdapPendingSearch(serversList,
-                caller));
+        LdapPendingSearch pendingSearch
+            = new LdapPendingSearch(serversList, caller, query);
+        synchronized(this)
+        {
+            this.pendingSearches.put(query, pendingSearch);
+        }
 
         // really performs the search
         for(String queryString : intermediateQueryStrings)
-            this.performSearch(query, queryString, searchSettings, this);
+            this.performSearch(pendingSearch, queryString, searchSettings,
+                    this);
     }
 
-    private void performSearch(final LdapQuery query,
+    /**
+     * Performs the search of one of the intermediate query strings of a
+     * pending search, on one of the search threads of this directory.
+     * Results are read one page at a time, so that a search cancelled
+     * through its pending search stops asking the directory for more.
+     * Complete results are kept for a short while in the query cache, which
+     * is looked up first.
+     *
+     * @param pendingSearch the pending search
+     * @param realQueryString the intermediate query string, e.g. "*john*"
+     * @param searchSettings the settings of the search
+     * @param caller the listener notified of results
+     */
+    private void performSearch(final LdapPendingSearch pendingSearch,
             final String realQueryString,
             final LdapSearchSettings searchSettings,
             final LdapListener caller)
     {
-        Thread searchThread = new Thread()
+        final LdapQuery query = pendingSearch.getQuery();
+
+        Runnable searchTask = new Runnable()
         {
             int cancelState = 0;
 
+            /**
+             * The cookie of the paged search in progress, non-null as long
+             * as the directory still has pages for us. It is taken from every
+             * paged results response control received, including the one
+             * which comes with a search stopped by a size limit, so that the
+             * search can always be abandoned with the latest cookie.
+             */
+            byte[] pagingCookie = null;
+
             public void run()
             {
                 logger.trace("starting search for " + realQueryString +
@@ -355,9 +441,14 @@ public class LdapDirectoryImpl
 
                 SearchControls searchControls =
                     buildSearchControls(searchSettings);
+                String searchFilter = buildSearchFilter(realQueryString);
+                int maxResults = searchSettings.isMaxResultsSet()
+                    ? searchSettings.getMaxResults()
+                    : 0;
 
                 LdapEvent endEvent = null;
-                InitialDirContext dirContext = null;
+                LdapContext dirContext = null;
+                boolean broken = false;
 
                 try
                 {
@@ -365,51 +456,58 @@ public class LdapDirectoryImpl
                         Thread.sleep(searchSettings.getDelay());
 
                     checkCancel();
-                    dirContext = connect();
-                    checkCancel();
 
                     long time0 = System.currentTimeMillis();
 
-                    NamingEnumeration<?> results = dirContext.search(
-                            LdapDirectoryImpl.this.settings.getBaseDN(),
-                            buildSearchFilter(realQueryString),
-                            searchControls
-                            );
+                    List<LdapQueryCache.Result> cachedResults
+                        = queryCache.get(realQueryString,
+                                searchControls.getSearchScope(),
+                                searchableAttrs);
 
-                    checkCancel();
+                    if(cachedResults != null)
+                    {
+                        int count = 0;
 
-                    while (results.hasMore())
+                        for(LdapQueryCache.Result result : cachedResults)
+                        {
+                            if(maxResults > 0 && count++ >= maxResults)
+                                break;
+                            checkCancel();
+                            fireResult(result);
+                        }
+                    }
+                    else
                     {
+                        dirContext = connect();
                         checkCancel();
 
-                        SearchResult searchResult =
-                            (SearchResult) results.next();
-                        Map<String, Set<String>> retrievedAttributes =
-                            retrieveAttributes(searchResult);
-                        LdapPersonFound person =
-                            buildPerson(
-                                query,
-                                searchResult.getName(),
-                                retrievedAttributes
-                                );
-                        LdapEvent resultEvent =
-                            new LdapEvent(LdapDirectoryImpl.this,
-                                    LdapEvent.LdapEventCause.NEW_SEARCH_RESULT,
-                                    (Object) person);
-                        fireLdapEvent(resultEvent, caller);
+                        List<LdapQueryCache.Result> results
+                            = new ArrayList<LdapQueryCache.Result>();
+                        boolean complete
+                            = searchPaged(dirContext, searchFilter,
+                                    searchControls, maxResults, results);
+
+                        if(complete)
+                        {
+                            queryCache.put(realQueryString,
+                                    searchControls.getSearchScope(),
+                                    results);
+                        }
                     }
 
                     long time1 = System.currentTimeMillis();
                     logger.trace("search for real query \"" + realQueryString +
                             "\" (initial query: \"" + query.toString() +
                             "\") on directory \"" + LdapDirectoryImpl.this +
-                            "\" took " + (time1-time0) + "ms");
+                            "\" took " + (time1-time0) + "ms" +
+                            ((cachedResults != null) ? " (cached)" : ""));
 
                     endEvent = new LdapEvent(LdapDirectoryImpl.this,
                             LdapEvent.LdapEventCause.SEARCH_ACHIEVED, query);
                 }
                 catch(OperationNotSupportedException e)
                 {
+                    broken = true;
                     logger.trace(
                             "use bind DN without password during search" +
                             " for real query \"" +
@@ -424,6 +522,7 @@ public class LdapDirectoryImpl
                 }
                 catch(AuthenticationException e)
                 {
+                    broken = true;
                     logger.trace(
                             "authentication failed during search" +
                             " for real query \"" +
@@ -438,6 +537,7 @@ public class LdapDirectoryImpl
                 }
                 catch(NamingException e)
                 {
+                    broken = true;
                     logger.trace(
                             "an external exception was thrown during search" +
                             " for real query \"" +
@@ -472,8 +572,187 @@ public class LdapDirectoryImpl
                 {
                     fireLdapEvent(endEvent, caller);
                     if(dirContext != null)
-                        disconnect(dirContext);
+                    {
+                        if(!broken && pagingCookie != null)
+                        {
+                            broken = !abandonPagedSearch(dirContext,
+                                    searchFilter, searchControls);
+                        }
+                        disconnect(dirContext, broken);
+                    }
+                }
+            }
+
+            /**
+             * Searches the directory one page at a time, firing an event for
+             * every entry found.
+             *
+             * @param dirContext the connection to the directory
+             * @param searchFilter the search filter
+             * @param searchControls the search controls
+             * @param maxResults the maximum number of entries to return, 0
+             * for no limit
+             * @param results the list receiving the entries found
+             * @return <tt>true</tt> if <tt>results</tt> contains every entry
+             * matching the filter, <tt>false</tt> if the search stopped early
+             */
+            private boolean searchPaged(LdapContext dirContext,
+                    String searchFilter,
+                    SearchControls searchControls,
+                    int maxResults,
+                    List<LdapQueryCache.Result> results)
+                throws NamingException,
+                       LdapQueryCancelledException
+            {
+                int pageSize = PAGE_SIZE;
+
+                if(maxResults > 0 && maxResults < pageSize)
+                    pageSize = maxResults;
+
+                do
+                {
+                    dirContext.setRequestControls(
+                            buildPagedResultsControls(pageSize, pagingCookie));
+
+                    NamingEnumeration<SearchResult> page
+                        = dirContext.search(
+                                LdapDirectoryImpl.this.settings.getBaseDN(),
+                                searchFilter,
+                                searchControls);
+
+                    boolean drained = false;
+
+                    try
+                    {
+                        checkCancel();
+
+                        while (page.hasMore())
+                        {
+                            checkCancel();
+
+                            SearchResult searchResult = page.next();
+                            LdapQueryCache.Result result
+                                = new LdapQueryCache.Result(
+                                        searchResult.getName(),
+                                        retrieveAttributes(searchResult));
+
+                            results.add(result);
+                            fireResult(result);
+
+                            if(maxResults > 0 && results.size() >= maxResults)
+                                return false;
+                        }
+                        drained = true;
+                    }
+                    catch(SizeLimitExceededException e)
+                    {
+                        // the count limit of the search controls was reached
+                        return false;
+                    }
+                    finally
+                    {
+                        page.close();
+
+                        // a directory without paging support answers a
+                        // whole page without a paged results control
+                        if(!updatePagingCookie(dirContext.getResponseControls())
+                                && drained)
+                            pagingCookie = null;
+                    }
+                }
+                while(pagingCookie != null);
+
+                return true;
+            }
+
+            /**
+             * Takes the cookie of the paged results response control among
+             * specific response controls, if any. The cookie is left
+             * unchanged if there is no such control, i.e. the response to
+             * the last page request hasn't been received.
+             *
+             * @param controls the response controls of the last search
+             * @return <tt>true</tt> if <tt>controls</tt> contain a paged
+             * results response control
+             */
+            private boolean updatePagingCookie(Control[] controls)
+            {
+                if(controls != null)
+                {
+                    for(Control control : controls)
+                    {
+                        if(control instanceof PagedResultsResponseControl)
+                        {
+                            byte[] cookie
+                                = ((PagedResultsResponseControl) control)
+                                    .getCookie();
+
+                            pagingCookie
+                                = (cookie != null && cookie.length > 0)
+                                    ? cookie
+                                    : null;
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            }
+
+            /**
+             * Tells the directory we are not interested in the remaining
+             * pages of the search, as specified by RFC 2696 (a request with
+             * a page size of zero and the last cookie received).
+             *
+             * @param dirContext the connection to the directory
+             * @param searchFilter the search filter
+             * @param searchControls the search controls
+             * @return <tt>true</tt> if the connection can be reused
+             */
+            private boolean abandonPagedSearch(LdapContext dirContext,
+                    String searchFilter,
+                    SearchControls searchControls)
+            {
+                try
+                {
+                    dirContext.setRequestControls(
+                            buildPagedResultsControls(0, pagingCookie));
+                    dirContext.search(
+                            LdapDirectoryImpl.this.settings.getBaseDN(),
+                            searchFilter,
+                            searchControls).close();
+                    return true;
                 }
+                catch(NamingException e)
+                {
+                    logger.trace("failed to abandon paged search on " +
+                            LdapDirectoryImpl.this + ": " + e);
+                    return false;
+                }
+                finally
+                {
+                    pagingCookie = null;
+                }
+            }
+
+            /**
+             * Builds an <tt>LdapPersonFound</tt> out of a search result and
+             * sends it to the caller.
+             *
+             * @param result the search result
+             */
+            private void fireResult(LdapQueryCache.Result result)
+            {
+                LdapPersonFound person =
+                    buildPerson(
+                        query,
+                        result.getDN(),
+                        result.getAttributes()
+                        );
+                LdapEvent resultEvent =
+                    new LdapEvent(LdapDirectoryImpl.this,
+                            LdapEvent.LdapEventCause.NEW_SEARCH_RESULT,
+                            (Object) person);
+                fireLdapEvent(resultEvent, caller);
             }
 
             /**
@@ -487,7 +766,7 @@ public class LdapDirectoryImpl
             private void checkCancel()
                 throws LdapQueryCancelledException
             {
-                if(query.getState() == LdapQuery.State.CANCELLED)
+                if(pendingSearch.isCancelled())
                 {
                     throw new LdapQueryCancelledException();
                 }
@@ -495,12 +774,48 @@ public class LdapDirectoryImpl
             }
         };
 
-        // setting the classloader is necessary so that the BundleContext can be
-        // accessed from classes instantiated from JNDI (specifically from our
-        // custom SocketFactory)
-        searchThread.setContextClassLoader(getClass().getClassLoader());
-        searchThread.setDaemon(true);
-        searchThread.start();
+        try
+        {
+            searchExecutor.execute(searchTask);
+        }
+        catch(RejectedExecutionException e)
+        {
+            // the directory has been disposed of
+            fireLdapEvent(new LdapEvent(this,
+                    LdapEvent.LdapEventCause.SEARCH_CANCELLED, query), caller);
+        }
+    }
+
+    /**
+     * Builds the request controls asking for one page of results.
+     *
+     * @param pageSize the number of entries of the page
+     * @param cookie the cookie returned with the previous page or
+     * <tt>null</tt> for the first one
+     * @return the request controls
+     * @throws NamingException if the control could not be encoded
+     */
+    private static Control[] buildPagedResultsControls(int pageSize,
+            byte[] cookie)
+        throws NamingException
+    {
+        try
+        {
+            // not critical: directories without paging support simply
+            // return all the results at once
+            return new Control[]
+                {
+                    new PagedResultsControl(pageSize, cookie,
+                            Control.NONCRITICAL)
+                };
+        }
+        catch(IOException e)
+        {
+            NamingException ne
+                = new NamingException("failed to encode paging control");
+            ne.setRootCause(e);
+            throw ne;
+        }
     }
 
     private static String[]
@@ -545,7 +860,9 @@ public class LdapDirectoryImpl
         while(ids.hasMore())
         {
             String id = ids.next();
-            if(retrievableAttributes.contains(id) || containsAttribute(id))
+            if(retrievableAttributes.contains(id)
+                    || searchableAttrs.contains(id)
+                    || containsAttribute(id))
             {
                 Set<String> valuesSet = new HashSet<String>();
                 retrievedAttributes.put(id, valuesSet);
@@ -880,7 +1197,8 @@ public class LdapDirectoryImpl
     public Collection<String> searchChildren(final String dn)
     {
         final Vector<String> nodes = new Vector<String>();
-        InitialDirContext dirContext = null;
+        LdapContext dirContext = null;
+        boolean broken = false;
 
         if(dn.equals(""))
         {
@@ -911,12 +1229,13 @@ public class LdapDirectoryImpl
             }
             catch (NamingException e)
             {
+                broken = true;
                 logger.trace("error when performing ldap search query" + e);
             }
             finally
             {
                 if(dirContext != null)
-                    disconnect(dirContext);
+                    disconnect(dirContext, broken);
             }
         }
         else
@@ -940,13 +1259,14 @@ public class LdapDirectoryImpl
             }
             catch (NamingException e)
             {
+                broken = true;
                 logger.trace("error when performing ldap search query" + e);
                 e.printStackTrace();
             }
             finally
             {
                 if(dirContext != null)
-                    disconnect(dirContext);
+                    disconnect(dirContext, broken);
             }
         }
 
@@ -963,7 +1283,8 @@ public class LdapDirectoryImpl
     byte[] fetchPhotoForPerson(String dn)
     {
         byte[] photo = null;
-        InitialDirContext dirContext = null;
+        LdapContext dirContext = null;
+        boolean broken = false;
 
         /* use our custom search control */
 
@@ -1000,13 +1321,14 @@ public class LdapDirectoryImpl
         }
         catch (NamingException e)
         {
+            broken = true;
             logger.trace("error when performing photo retrieval" + e);
             e.printStackTrace();
         }
         finally
         {
             if(dirContext != null)
-                disconnect(dirContext);
+                disconnect(dirContext, broken);
         }
 
         return photo;
@@ -1042,9 +1364,11 @@ public class LdapDirectoryImpl
                     );
         }
 
-        List<String> retrievableAttrs = new ArrayList<String>();
+        Set<String> retrievableAttrs = new LinkedHashSet<String>();
 
         retrievableAttrs.addAll(retrievableAttributes);
+        // needed to narrow cached results down to a longer query string
+        retrievableAttrs.addAll(searchableAttrs);
         for(String key : attributesMap.keySet())
         {
             List<String> attrs = attributesMap.get(key);
@@ -95,6 +95,9 @@ public class LdapDirectorySetImpl
         if(configService != null)
             removed.getSettings().persistentRemove();
 
+        if(removed != null)
+            removed.dispose();
+
         return removed;
     }
 
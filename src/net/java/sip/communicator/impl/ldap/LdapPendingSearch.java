@@ -31,6 +31,11 @@ public class LdapPendingSearch
      */
     private final LdapListener caller;
 
+    /**
+     * the query of this search, <tt>null</tt> if unknown
+     */
+    private final LdapQuery query;
+
     /**
      * Simple constructor
      *
@@ -39,9 +44,23 @@ public class LdapPendingSearch
      */
     public LdapPendingSearch(Collection<LdapDirectory> pendingServers,
             LdapListener caller)
+    {
+        this(pendingServers, caller, null);
+    }
+
+    /**
+     * Creates a pending search for <tt>query</tt>.
+     *
+     * @param pendingServers pending LDAP servers
+     * @param caller callback
+     * @param query the query of this search
+     */
+    public LdapPendingSearch(Collection<LdapDirectory> pendingServers,
+            LdapListener caller, LdapQuery query)
     {
         this.pendingServers.addAll(pendingServers);
         this.caller = caller;
+        this.query = query;
     }
 
     /**
@@ -63,4 +82,26 @@ public class LdapPendingSearch
     {
         return this.caller;
     }
+
+    /**
+     * Returns the query of this search
+     *
+     * @return the query of this search, <tt>null</tt> if unknown
+     */
+    public LdapQuery getQuery()
+    {
+        return this.query;
+    }
+
+    /**
+     * Whether the query of this search has been cancelled, in which case
+     * the directories still searching should stop as soon as possible
+     *
+     * @return <tt>true</tt> if the query of this search has been cancelled
+     */
+    public boolean isCancelled()
+    {
+        return (this.query != null)
+            && (this.query.getState() == LdapQuery.State.CANCELLED);
+    }
 }
@@ -0,0 +1,331 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.ldap;
+
+import java.util.*;
+
+/**
+ * A short lived cache of complete search results of one LDAP directory.
+ * <p>
+ * Results are stored per real query string (e.g. "*john*") and scope. Since
+ * the user types a search string one letter at a time, a query such as
+ * "*johnd*" can often be answered from the results of "*john*": every entry
+ * matching the longer substring also matches the shorter one, so the cached
+ * entries only need to be filtered locally. This only holds when the cached
+ * search was complete (not cancelled, not truncated by a size limit), which
+ * is the only kind of search we keep.
+ *
+ * @author agent
+ */
+public class LdapQueryCache
+{
+    /**
+     * How long (in ms) cached results are considered valid by default.
+     */
+    private static final long TTL = 30000;
+
+    /**
+     * The maximum number of query strings kept in the cache.
+     */
+    private static final int MAX_ENTRIES = 64;
+
+    /**
+     * The cached results, in access order so that the least recently used
+     * entries are evicted first.
+     */
+    private final Map<String, CachedSearch> entries
+        = new LinkedHashMap<String, CachedSearch>(16, 0.75f, true)
+        {
+            /**
+             * Serial version UID.
+             */
+            private static final long serialVersionUID = 0L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, CachedSearch> eldest)
+            {
+                return size() > MAX_ENTRIES;
+            }
+        };
+
+    /**
+     * How long (in ms) the cached results of this cache are considered
+     * valid.
+     */
+    private final long ttl;
+
+    /**
+     * Creates a cache which keeps results for 30 seconds.
+     */
+    public LdapQueryCache()
+    {
+        this(TTL);
+    }
+
+    /**
+     * Creates a cache which keeps results for a specific time.
+     *
+     * @param ttl how long (in ms) cached results are considered valid
+     */
+    public LdapQueryCache(long ttl)
+    {
+        this.ttl = ttl;
+    }
+
+    /**
+     * Stores the complete results of a search.
+     *
+     * @param queryString the real query string (e.g. "*john*")
+     * @param scope the search scope
+     * @param results the entries returned by the directory
+     */
+    public synchronized void put(String queryString, int scope,
+            List<Result> results)
+    {
+        entries.put(key(queryString, scope),
+                new CachedSearch(queryString, scope,
+                        new ArrayList<Result>(results)));
+    }
+
+    /**
+     * Returns the cached results matching <tt>queryString</tt>, either
+     * because the very same search was performed recently or because a
+     * broader substring search was, in which case its results are filtered
+     * against <tt>searchableAttributes</tt>.
+     *
+     * @param queryString the real query string (e.g. "*johnd*")
+     * @param scope the search scope
+     * @param searchableAttributes the attributes the search filter is built
+     * upon
+     * @return the matching results, or <tt>null</tt> if the directory has to
+     * be searched
+     */
+    public synchronized List<Result> get(String queryString, int scope,
+            Collection<String> searchableAttributes)
+    {
+        long now = System.currentTimeMillis();
+
+        // drop expired entries while we are at it
+        Iterator<CachedSearch> iter = entries.values().iterator();
+        while(iter.hasNext())
+        {
+            if(now - iter.next().timestamp > ttl)
+                iter.remove();
+        }
+
+        CachedSearch search = entries.get(key(queryString, scope));
+        if(search != null)
+            return search.results;
+
+        String substring = getSubstring(queryString);
+        if(substring == null)
+            return null;
+        substring = substring.toLowerCase();
+
+        // look for the longest cached substring search containing ours
+        CachedSearch broader = null;
+        for(CachedSearch e : entries.values())
+        {
+            if(e.substring != null
+                    && e.scope == scope
+                    && substring.contains(e.substring)
+                    && (broader == null
+                        || e.substring.length() > broader.substring.length()))
+                broader = e;
+        }
+        if(broader == null)
+            return null;
+
+        List<Result> results = new ArrayList<Result>();
+        for(Result result : broader.results)
+        {
+            if(result.matches(substring, searchableAttributes))
+                results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Empties the cache.
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+    }
+
+    /**
+     * Returns the key under which results are stored.
+     *
+     * @param queryString the real query string
+     * @param scope the search scope
+     * @return the key under which results are stored
+     */
+    private static String key(String queryString, int scope)
+    {
+        return scope + ":" + queryString;
+    }
+
+    /**
+     * Returns the substring searched by a query string of the form "*x*",
+     * <tt>null</tt> if the query string has any other form.
+     *
+     * @param queryString the real query string
+     * @return the searched substring or <tt>null</tt>
+     */
+    private static String getSubstring(String queryString)
+    {
+        if(queryString.length() > 2
+                && queryString.startsWith("*")
+                && queryString.endsWith("*"))
+        {
+            String substring
+                = queryString.substring(1, queryString.length() - 1);
+
+            if(substring.indexOf('*') == -1)
+                return substring;
+        }
+        return null;
+    }
+
+    /**
+     * The cached results of one search.
+     */
+    private static class CachedSearch
+    {
+        /**
+         * The search scope.
+         */
+        private final int scope;
+
+        /**
+         * The searched substring in lower case, <tt>null</tt> if the query
+         * string is not a plain substring search.
+         */
+        private final String substring;
+
+        /**
+         * The entries returned by the directory.
+         */
+        private final List<Result> results;
+
+        /**
+         * When the search was performed.
+         */
+        private final long timestamp = System.currentTimeMillis();
+
+        /**
+         * Creates a cache entry.
+         *
+         * @param queryString the real query string
+         * @param scope the search scope
+         * @param results the entries returned by the directory
+         */
+        CachedSearch(String queryString, int scope, List<Result> results)
+        {
+            String substring = getSubstring(queryString);
+
+            this.scope = scope;
+            this.substring
+                = (substring == null) ? null : substring.toLowerCase();
+            this.results = Collections.unmodifiableList(results);
+        }
+    }
+
+    /**
+     * One entry returned by the directory: its distinguished name and the
+     * attributes we retrieved.
+     */
+    public static class Result
+    {
+        /**
+         * The distinguished name of the entry.
+         */
+        private final String dn;
+
+        /**
+         * The retrieved attributes of the entry.
+         */
+        private final Map<String, Set<String>> attributes;
+
+        /**
+         * Creates a result.
+         *
+         * @param dn the distinguished name of the entry
+         * @param attributes the retrieved attributes of the entry
+         */
+        public Result(String dn, Map<String, Set<String>> attributes)
+        {
+            this.dn = dn;
+            this.attributes = attributes;
+        }
+
+        /**
+         * Returns the distinguished name of the entry.
+         *
+         * @return the distinguished name of the entry
+         */
+        public String getDN()
+        {
+            return dn;
+        }
+
+        /**
+         * Returns the retrieved attributes of the entry.
+         *
+         * @return the retrieved attributes of the entry
+         */
+        public Map<String, Set<String>> getAttributes()
+        {
+            return attributes;
+        }
+
+        /**
+         * Determines whether one of the searchable attributes of this entry
+         * contains <tt>substring</tt>, ignoring case like the substring
+         * matching rules of the usual name and mail attributes do.
+         *
+         * @param substring the lower case substring
+         * @param searchableAttributes the attributes to look into
+         * @return <tt>true</tt> if this entry matches
+         */
+        boolean matches(String substring,
+                Collection<String> searchableAttributes)
+        {
+            for(Map.Entry<String, Set<String>> e : attributes.entrySet())
+            {
+                if(!containsIgnoreCase(searchableAttributes, e.getKey()))
+                    continue;
+
+                for(String value : e.getValue())
+                {
+                    if(value.toLowerCase().contains(substring))
+                        return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Attribute names are case insensitive.
+         *
+         * @param names a collection of attribute names
+         * @param name an attribute name
+         * @return <tt>true</tt> if <tt>names</tt> contains <tt>name</tt>
+         */
+        private static boolean containsIgnoreCase(Collection<String> names,
+                String name)
+        {
+            for(String n : names)
+            {
+                if(n.equalsIgnoreCase(name))
+                    return true;
+            }
+            return false;
+        }
+    }
+}
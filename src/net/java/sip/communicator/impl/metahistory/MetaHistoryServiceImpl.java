@@ -7,6 +7,7 @@
 package net.java.sip.communicator.impl.metahistory;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import net.java.sip.communicator.service.callhistory.*;
 import net.java.sip.communicator.service.callhistory.event.*;
@@ -27,6 +28,10 @@ import org.osgi.framework.*;
  * The Meta History Service is wrapper around the other known
  * history services. Query them all at once, sort the result and return all
  * merged records in one collection.
+ * <p>
+ * The wrapped services are queried concurrently. Each of them returns its
+ * records sorted by date and the sorted lists are merged, so that only the
+ * records which are actually returned are ever compared with each other.
  *
  * @author Damian Minkov
  */
@@ -40,6 +45,12 @@ public class MetaHistoryServiceImpl
     private static final Logger logger =
         Logger.getLogger(MetaHistoryServiceImpl.class);
 
+    /**
+     * The comparator ordering the records of all the wrapped services.
+     */
+    private static final RecordsComparator RECORDS_COMPARATOR
+        = new RecordsComparator();
+
     /**
      * The BundleContext that we got from the OSGI bus.
      */
@@ -53,6 +64,23 @@ public class MetaHistoryServiceImpl
     private final List<HistorySearchProgressListener> progressListeners
         = new ArrayList<HistorySearchProgressListener>();
 
+    /**
+     * Runs the queries of the wrapped services. Threads are only kept while
+     * searches are being performed.
+     */
+    private final ExecutorService queryExecutor
+        = Executors.newCachedThreadPool(
+                new ThreadFactory()
+                {
+                    public Thread newThread(Runnable r)
+                    {
+                        Thread queryThread = new Thread(r, "MetaHistoryQuery");
+
+                        queryThread.setDaemon(true);
+                        return queryThread;
+                    }
+                });
+
     /**
      * Returns all the records for the descriptor after the given date.
      *
@@ -65,55 +93,41 @@ public class MetaHistoryServiceImpl
      * @throws RuntimeException
      */
     public Collection<Object> findByStartDate(String[] services,
-            Object descriptor, Date startDate)
+            Object descriptor, final Date startDate)
         throws RuntimeException
     {
         MessageProgressWrapper listenWrapper
             = new MessageProgressWrapper(services.length);
 
-        TreeSet<Object> result = new TreeSet<Object>(new RecordsComparator());
-        for (int i = 0; i < services.length; i++)
-        {
-            String name = services[i];
-            Object serv = getService(name);
-            if(serv instanceof MessageHistoryService)
+        List<List<Object>> results = queryServices(
+            services, descriptor, listenWrapper, null,
+            new ServiceQuery()
             {
-                MessageHistoryService mhs =
-                    (MessageHistoryService)serv;
-                listenWrapper.setIx(i);
-                mhs.addSearchProgressListener(listenWrapper);
+                Collection<?> query(
+                    MessageHistoryService mhs, MetaContact metaContact)
+                {
+                    return mhs.findByStartDate(metaContact, startDate);
+                }
 
-                if(descriptor instanceof MetaContact)
+                Collection<?> query(MessageHistoryService mhs, ChatRoom room)
                 {
-                    result.addAll(
-                        mhs.findByStartDate((MetaContact)descriptor, startDate));
+                    return mhs.findByStartDate(room, startDate);
                 }
-                else if(descriptor instanceof ChatRoom)
+
+                Collection<?> query(
+                    FileHistoryService fhs, MetaContact metaContact)
                 {
-                    result.addAll(
-                        mhs.findByStartDate((ChatRoom)descriptor, startDate));
+                    return fhs.findByStartDate(metaContact, startDate);
                 }
-                mhs.removeSearchProgressListener(listenWrapper);
-            }
-            else if(serv instanceof FileHistoryService
-                    && descriptor instanceof MetaContact)
-            {
-                result.addAll(
-                    ((FileHistoryService)serv).findByStartDate(
-                        (MetaContact)descriptor, startDate));
-            }
-            else if(serv instanceof CallHistoryService)
-            {
-                CallHistoryService chs = (CallHistoryService)serv;
-                listenWrapper.setIx(i);
-                chs.addSearchProgressListener(listenWrapper);
-                result.addAll(chs.findByStartDate(startDate));
-                chs.removeSearchProgressListener(listenWrapper);
-            }
-        }
+
+                Collection<?> query(CallHistoryService chs)
+                {
+                    return chs.findByStartDate(startDate);
+                }
+            });
         listenWrapper.fireLastProgress(startDate, null, null);
 
-        return result;
+        return merge(results);
     }
 
     /**
@@ -128,56 +142,41 @@ public class MetaHistoryServiceImpl
      * @throws RuntimeException
      */
     public Collection<Object> findByEndDate(String[] services,
-            Object descriptor, Date endDate)
+            Object descriptor, final Date endDate)
         throws RuntimeException
     {
         MessageProgressWrapper listenWrapper
             = new MessageProgressWrapper(services.length);
 
-        TreeSet<Object> result = new TreeSet<Object>(new RecordsComparator());
-        for (int i = 0; i < services.length; i++)
-        {
-            String name = services[i];
-            Object serv = getService(name);
-            if(serv instanceof MessageHistoryService)
+        List<List<Object>> results = queryServices(
+            services, descriptor, listenWrapper, null,
+            new ServiceQuery()
             {
-                MessageHistoryService mhs =
-                    (MessageHistoryService)serv;
-                listenWrapper.setIx(i);
-                mhs.addSearchProgressListener(listenWrapper);
+                Collection<?> query(
+                    MessageHistoryService mhs, MetaContact metaContact)
+                {
+                    return mhs.findByEndDate(metaContact, endDate);
+                }
 
-                if(descriptor instanceof MetaContact)
+                Collection<?> query(MessageHistoryService mhs, ChatRoom room)
                 {
-                    result.addAll(
-                        mhs.findByEndDate((MetaContact)descriptor, endDate));
+                    return mhs.findByEndDate(room, endDate);
                 }
-                else if(descriptor instanceof ChatRoom)
+
+                Collection<?> query(
+                    FileHistoryService fhs, MetaContact metaContact)
                 {
-                    result.addAll(
-                        mhs.findByEndDate((ChatRoom)descriptor, endDate));
+                    return fhs.findByEndDate(metaContact, endDate);
                 }
-                mhs.removeSearchProgressListener(listenWrapper);
-            }
-            else if(serv instanceof FileHistoryService
-                    && descriptor instanceof MetaContact)
-            {
-                result.addAll(
-                    ((FileHistoryService)serv).findByEndDate(
-                        (MetaContact)descriptor, endDate));
-            }
-            else if(serv instanceof CallHistoryService)
-            {
-                CallHistoryService chs = (CallHistoryService)serv;
-                listenWrapper.setIx(i);
-                chs.addSearchProgressListener(listenWrapper);
-                result.addAll(
-                    chs.findByEndDate(endDate));
-                chs.removeSearchProgressListener(listenWrapper);
-            }
-        }
+
+                Collection<?> query(CallHistoryService chs)
+                {
+                    return chs.findByEndDate(endDate);
+                }
+            });
         listenWrapper.fireLastProgress(null, endDate, null);
 
-        return result;
+        return merge(results);
     }
 
     /**
@@ -193,58 +192,41 @@ public class MetaHistoryServiceImpl
      * @throws RuntimeException
      */
     public Collection<Object> findByPeriod(String[] services,
-            Object descriptor, Date startDate, Date endDate)
+            Object descriptor, final Date startDate, final Date endDate)
         throws RuntimeException
     {
         MessageProgressWrapper listenWrapper
             = new MessageProgressWrapper(services.length);
 
-        TreeSet<Object> result = new TreeSet<Object>(new RecordsComparator());
-        for (int i = 0; i < services.length; i++)
-        {
-            String name = services[i];
-            Object serv = getService(name);
-            if(serv instanceof MessageHistoryService)
+        List<List<Object>> results = queryServices(
+            services, descriptor, listenWrapper, null,
+            new ServiceQuery()
             {
-                MessageHistoryService mhs =
-                    (MessageHistoryService)serv;
-                listenWrapper.setIx(i);
-                mhs.addSearchProgressListener(listenWrapper);
+                Collection<?> query(
+                    MessageHistoryService mhs, MetaContact metaContact)
+                {
+                    return mhs.findByPeriod(metaContact, startDate, endDate);
+                }
 
-                if(descriptor instanceof MetaContact)
+                Collection<?> query(MessageHistoryService mhs, ChatRoom room)
                 {
-                    result.addAll(
-                        mhs.findByPeriod(
-                            (MetaContact)descriptor, startDate, endDate));
+                    return mhs.findByPeriod(room, startDate, endDate);
                 }
-                else if(descriptor instanceof ChatRoom)
+
+                Collection<?> query(
+                    FileHistoryService fhs, MetaContact metaContact)
                 {
-                    result.addAll(
-                        mhs.findByPeriod(
-                            (ChatRoom)descriptor, startDate, endDate));
+                    return fhs.findByPeriod(metaContact, startDate, endDate);
                 }
-                mhs.removeSearchProgressListener(listenWrapper);
-            }
-            else if(serv instanceof FileHistoryService
-                    && descriptor instanceof MetaContact)
-            {
-                result.addAll(
-                    ((FileHistoryService)serv).findByPeriod(
-                        (MetaContact)descriptor, startDate, endDate));
-            }
-            else if(serv instanceof CallHistoryService)
-            {
-                CallHistoryService chs = (CallHistoryService)serv;
-                listenWrapper.setIx(i);
-                chs.addSearchProgressListener(listenWrapper);
-                result.addAll(
-                    chs.findByPeriod(startDate, endDate));
-                chs.removeSearchProgressListener(listenWrapper);
-            }
-        }
+
+                Collection<?> query(CallHistoryService chs)
+                {
+                    return chs.findByPeriod(startDate, endDate);
+                }
+            });
         listenWrapper.fireLastProgress(startDate, endDate, null);
 
-        return result;
+        return merge(results);
     }
 
     /**
@@ -284,75 +266,53 @@ public class MetaHistoryServiceImpl
      * @throws RuntimeException
      */
     public Collection<Object> findByPeriod(String[] services,
-            Object descriptor, Date startDate, Date endDate,
-            String[] keywords, boolean caseSensitive)
+            Object descriptor, final Date startDate, final Date endDate,
+            final String[] keywords, final boolean caseSensitive)
         throws RuntimeException
     {
         MessageProgressWrapper listenWrapper
             = new MessageProgressWrapper(services.length);
 
-        TreeSet<Object> result = new TreeSet<Object>(new RecordsComparator());
-        for (int i = 0; i < services.length; i++)
-        {
-            String name = services[i];
-            Object serv = getService(name);
-            if(serv instanceof MessageHistoryService)
+        List<List<Object>> results = queryServices(
+            services, descriptor, listenWrapper, null,
+            new ServiceQuery()
             {
-                MessageHistoryService mhs =
-                    (MessageHistoryService)serv;
-                listenWrapper.setIx(i);
-                mhs.addSearchProgressListener(listenWrapper);
-
-                if(descriptor instanceof MetaContact)
+                Collection<?> query(
+                    MessageHistoryService mhs, MetaContact metaContact)
                 {
-                    result.addAll(
-                        mhs.findByPeriod(
-                            (MetaContact)descriptor,
-                            startDate, endDate,
-                            keywords, caseSensitive));
+                    return mhs.findByPeriod(
+                        metaContact,
+                        startDate, endDate,
+                        keywords, caseSensitive);
                 }
-                else if(descriptor instanceof ChatRoom)
+
+                Collection<?> query(MessageHistoryService mhs, ChatRoom room)
                 {
-                    result.addAll(
-                        mhs.findByPeriod(
-                            (ChatRoom)descriptor,
-                            startDate, endDate,
-                            keywords, caseSensitive));
-                }
-                mhs.removeSearchProgressListener(listenWrapper);
-            }
-            else if(serv instanceof FileHistoryService
-                    && descriptor instanceof MetaContact)
-            {
-                result.addAll(
-                    ((FileHistoryService)serv).findByPeriod(
-                        (MetaContact)descriptor,
+                    return mhs.findByPeriod(
+                        room,
                         startDate, endDate,
-                        keywords, caseSensitive));
-            }
-            else if(serv instanceof CallHistoryService)
-            {
-                CallHistoryService chs = (CallHistoryService)serv;
-                listenWrapper.setIx(i);
-                chs.addSearchProgressListener(listenWrapper);
-                Collection<CallRecord> cs =
-                    chs.findByPeriod(startDate, endDate);
+                        keywords, caseSensitive);
+                }
 
-                Iterator<CallRecord> iter = cs.iterator();
-                while (iter.hasNext())
+                Collection<?> query(
+                    FileHistoryService fhs, MetaContact metaContact)
                 {
-                    CallRecord callRecord = iter.next();
+                    return fhs.findByPeriod(
+                        metaContact,
+                        startDate, endDate,
+                        keywords, caseSensitive);
+                }
 
-                    if(matchCallPeer(
-                            callRecord.getPeerRecords(), keywords, caseSensitive))
-                        result.add(callRecord);
+                Collection<?> query(CallHistoryService chs)
+                {
+                    return filterCallRecords(
+                        chs.findByPeriod(startDate, endDate),
+                        keywords, caseSensitive);
                 }
-                chs.removeSearchProgressListener(listenWrapper);
-            }
-        }
+            });
         listenWrapper.fireLastProgress(startDate, endDate, keywords);
 
-        return result;
+        return merge(results);
     }
 
     /**
@@ -424,72 +384,47 @@ public class MetaHistoryServiceImpl
      * @throws RuntimeException
      */
     public Collection<Object> findByKeywords(String[] services,
-            Object descriptor, String[] keywords, boolean caseSensitive)
+            Object descriptor, final String[] keywords,
+            final boolean caseSensitive)
         throws RuntimeException
     {
         MessageProgressWrapper listenWrapper
             = new MessageProgressWrapper(services.length);
 
-        TreeSet<Object> result = new TreeSet<Object>(new RecordsComparator());
-        for (int i = 0; i < services.length; i++)
-        {
-            String name = services[i];
-            Object serv = getService(name);
-            if(serv instanceof MessageHistoryService)
+        List<List<Object>> results = queryServices(
+            services, descriptor, listenWrapper, null,
+            new ServiceQuery()
             {
-                MessageHistoryService mhs =
-                    (MessageHistoryService)serv;
-                listenWrapper.setIx(i);
-                mhs.addSearchProgressListener(listenWrapper);
-
-                if(descriptor instanceof MetaContact)
+                Collection<?> query(
+                    MessageHistoryService mhs, MetaContact metaContact)
                 {
-                    result.addAll(
-                        mhs.findByKeywords(
-                            (MetaContact)descriptor, keywords, caseSensitive));
+                    return mhs.findByKeywords(
+                        metaContact, keywords, caseSensitive);
                 }
-                else if(descriptor instanceof ChatRoom)
+
+                Collection<?> query(MessageHistoryService mhs, ChatRoom room)
                 {
-                    result.addAll(
-                        mhs.findByKeywords(
-                            (ChatRoom)descriptor,
-                            keywords, caseSensitive));
+                    return mhs.findByKeywords(room, keywords, caseSensitive);
                 }
-                mhs.removeSearchProgressListener(listenWrapper);
-            }
-            else if(serv instanceof FileHistoryService
-                    && descriptor instanceof MetaContact)
-            {
-                result.addAll(
-                    ((FileHistoryService)serv).findByKeywords(
-                        (MetaContact)descriptor,
-                        keywords, caseSensitive));
-            }
-            else if(serv instanceof CallHistoryService)
-            {
-                CallHistoryService chs = (CallHistoryService)serv;
-                listenWrapper.setIx(i);
-                chs.addSearchProgressListener(listenWrapper);
-
-                // this will get all call records
-                Collection<CallRecord> cs =
-                    chs.findByEndDate(new Date());
 
-                Iterator<CallRecord> iter = cs.iterator();
-                while (iter.hasNext())
+                Collection<?> query(
+                    FileHistoryService fhs, MetaContact metaContact)
                 {
-                    CallRecord callRecord = iter.next();
+                    return fhs.findByKeywords(
+                        metaContact, keywords, caseSensitive);
+                }
 
-                    if(matchCallPeer(
-                            callRecord.getPeerRecords(), keywords, caseSensitive))
-                        result.add(callRecord);
+                Collection<?> query(CallHistoryService chs)
+                {
+                    // this will get all call records
+                    return filterCallRecords(
+                        chs.findByEndDate(new Date()),
+                        keywords, caseSensitive);
                 }
-                chs.removeSearchProgressListener(listenWrapper);
-            }
-        }
+            });
         listenWrapper.fireLastProgress(null, null, keywords);
 
-        return result;
+        return merge(results);
     }
 
     /**
@@ -504,67 +439,41 @@ public class MetaHistoryServiceImpl
      * @throws RuntimeException
      */
     public Collection<Object> findLast(String[] services,
-            Object descriptor, int count)
+            Object descriptor, final int count)
         throws RuntimeException
     {
         MessageProgressWrapper listenWrapper
             = new MessageProgressWrapper(services.length);
 
-        TreeSet<Object> result = new TreeSet<Object>(new RecordsComparator());
-        for (int i = 0; i < services.length; i++)
-        {
-            String name = services[i];
-            Object serv = getService(name);
-            if(serv instanceof MessageHistoryService)
+        List<List<Object>> results = queryServices(
+            services, descriptor, listenWrapper, null,
+            new ServiceQuery()
             {
-                MessageHistoryService mhs =
-                    (MessageHistoryService)serv;
-                listenWrapper.setIx(i);
-                mhs.addSearchProgressListener(listenWrapper);
-
-                if(descriptor instanceof MetaContact)
+                Collection<?> query(
+                    MessageHistoryService mhs, MetaContact metaContact)
                 {
-                    result.addAll(
-                        mhs.findLast(
-                            (MetaContact)descriptor,
-                            count));
+                    return mhs.findLast(metaContact, count);
                 }
-                else if(descriptor instanceof ChatRoom)
+
+                Collection<?> query(MessageHistoryService mhs, ChatRoom room)
                 {
-                    result.addAll(
-                        mhs.findLast(
-                            (ChatRoom)descriptor,
-                            count));
+                    return mhs.findLast(room, count);
                 }
-                mhs.removeSearchProgressListener(listenWrapper);
-            }
-            else if(serv instanceof FileHistoryService
-                    && descriptor instanceof MetaContact)
-            {
-                result.addAll(
-                    ((FileHistoryService)serv).findLast(
-                        (MetaContact)descriptor,
-                        count));
-            }
-            else if(serv instanceof CallHistoryService)
-            {
-                CallHistoryService chs = (CallHistoryService)serv;
-                listenWrapper.setIx(i);
-                chs.addSearchProgressListener(listenWrapper);
-                result.addAll(
-                    chs.findLast(count));
-                chs.removeSearchProgressListener(listenWrapper);
-            }
-        }
-        listenWrapper.fireLastProgress(null, null, null);
 
-        LinkedList<Object> resultAsList = new LinkedList<Object>(result);
-        int startIndex = resultAsList.size() - count;
+                Collection<?> query(
+                    FileHistoryService fhs, MetaContact metaContact)
+                {
+                    return fhs.findLast(metaContact, count);
+                }
 
-        if(startIndex < 0)
-            startIndex = 0;
+                Collection<?> query(CallHistoryService chs)
+                {
+                    return chs.findLast(count);
+                }
+            });
+        listenWrapper.fireLastProgress(null, null, null);
 
-        return resultAsList.subList(startIndex, resultAsList.size());
+        return mergeLast(results, count);
     }
 
     /**
@@ -580,79 +489,43 @@ public class MetaHistoryServiceImpl
      * @throws RuntimeException
      */
     public Collection<Object> findFirstMessagesAfter(String[] services,
-            Object descriptor, Date date, int count)
+            Object descriptor, final Date date, final int count)
         throws RuntimeException
     {
         MessageProgressWrapper listenWrapper
             = new MessageProgressWrapper(services.length);
 
-        TreeSet<Object> result = new TreeSet<Object>(new RecordsComparator());
-        for (int i = 0; i < services.length; i++)
-        {
-            String name = services[i];
-            Object serv = getService(name);
-            if(serv instanceof MessageHistoryService)
+        List<List<Object>> results = queryServices(
+            services, descriptor, listenWrapper, null,
+            new ServiceQuery()
             {
-                MessageHistoryService mhs =
-                    (MessageHistoryService)serv;
-                listenWrapper.setIx(i);
-                mhs.addSearchProgressListener(listenWrapper);
+                Collection<?> query(
+                    MessageHistoryService mhs, MetaContact metaContact)
+                {
+                    return mhs.findFirstMessagesAfter(
+                        metaContact, date, count);
+                }
 
-                if(descriptor instanceof MetaContact)
+                Collection<?> query(MessageHistoryService mhs, ChatRoom room)
                 {
-                    result.addAll(
-                        mhs.findFirstMessagesAfter(
-                            (MetaContact)descriptor,
-                            date,
-                            count));
+                    return mhs.findFirstMessagesAfter(room, date, count);
                 }
-                else if(descriptor instanceof ChatRoom)
+
+                Collection<?> query(
+                    FileHistoryService fhs, MetaContact metaContact)
                 {
-                    result.addAll(
-                        mhs.findFirstMessagesAfter(
-                            (ChatRoom)descriptor,
-                            date,
-                            count));
+                    return fhs.findFirstRecordsAfter(metaContact, date, count);
                 }
-                mhs.removeSearchProgressListener(listenWrapper);
-            }
-            else if(serv instanceof FileHistoryService
-                    && descriptor instanceof MetaContact)
-            {
-                result.addAll(
-                    ((FileHistoryService)serv).findFirstRecordsAfter(
-                        (MetaContact)descriptor,
-                        date,
-                        count));
-            }
-            else if(serv instanceof CallHistoryService)
-            {
-                CallHistoryService chs = (CallHistoryService)serv;
-                listenWrapper.setIx(i);
-                chs.addSearchProgressListener(listenWrapper);
 
-                Collection<CallRecord> col = chs.findByStartDate(date);
-                if(col.size() > count)
+                Collection<?> query(CallHistoryService chs)
                 {
-                    // before we make a sublist make sure there are sorted in the
-                    // right order
-                    List<CallRecord> l = new LinkedList<CallRecord>(col);
-                    Collections.sort(l, new RecordsComparator());
-                    result.addAll(l.subList(0, count));
+                    // only the first count records are merged
+                    return chs.findByStartDate(date);
                 }
-                else
-                    result.addAll(col);
-                chs.removeSearchProgressListener(listenWrapper);
-            }
-        }
+            });
         listenWrapper.fireLastProgress(date, null, null);
-        LinkedList<Object> resultAsList = new LinkedList<Object>(result);
-
-        int toIndex = count;
-        if(toIndex > resultAsList.size())
-            toIndex = resultAsList.size();
 
-        return resultAsList.subList(0, toIndex);
+        return mergeFirst(results, count);
     }
 
     /**
@@ -670,75 +543,77 @@ public class MetaHistoryServiceImpl
     public Collection<Object> findLastMessagesBefore(String[] services,
             Object descriptor, Date date, int count)
         throws RuntimeException
+    {
+        return findLastMessagesBefore(services, descriptor, date, count, null);
+    }
+
+    /**
+     * Returns the supplied number of recent records before the given date
+     *
+     * @param services the services classnames we will query
+     * @param descriptor CallPeer address(String),
+     *  MetaContact or ChatRoom.
+     * @param date messages before date
+     * @param count messages count
+     * @param search the <tt>Search</tt> which may cancel the queries or
+     * <tt>null</tt>
+     * @return sorted result that conists of records returned from the
+     * services we wrap
+     */
+    private List<Object> findLastMessagesBefore(String[] services,
+            Object descriptor, final Date date, final int count,
+            Search search)
     {
         MessageProgressWrapper listenWrapper
             = new MessageProgressWrapper(services.length);
 
-        TreeSet<Object> result = new TreeSet<Object>(new RecordsComparator());
-        for (int i = 0; i < services.length; i++)
-        {
-            String name = services[i];
-            Object serv = getService(name);
-            if(serv instanceof MessageHistoryService)
+        List<List<Object>> results = queryServices(
+            services, descriptor, listenWrapper, search,
+            new ServiceQuery()
             {
-                MessageHistoryService mhs =
-                    (MessageHistoryService)serv;
-                listenWrapper.setIx(i);
-                mhs.addSearchProgressListener(listenWrapper);
+                Collection<?> query(
+                    MessageHistoryService mhs, MetaContact metaContact)
+                {
+                    return mhs.findLastMessagesBefore(
+                        metaContact, date, count);
+                }
 
-                if(descriptor instanceof MetaContact)
+                Collection<?> query(MessageHistoryService mhs, ChatRoom room)
                 {
-                    result.addAll(
-                        mhs.findLastMessagesBefore(
-                            (MetaContact)descriptor,
-                            date,
-                            count));
+                    return mhs.findLastMessagesBefore(room, date, count);
                 }
-                else if(descriptor instanceof ChatRoom)
+
+                Collection<?> query(
+                    FileHistoryService fhs, MetaContact metaContact)
                 {
-                    result.addAll(
-                        mhs.findLastMessagesBefore(
-                            (ChatRoom)descriptor,
-                            date,
-                            count));
+                    return fhs.findLastRecordsBefore(metaContact, date, count);
                 }
-                mhs.removeSearchProgressListener(listenWrapper);
-            }
-            else if(serv instanceof FileHistoryService
-                    && descriptor instanceof MetaContact)
-            {
-                result.addAll(
-                    ((FileHistoryService)serv).findLastRecordsBefore(
-                        (MetaContact)descriptor,
-                        date,
-                        count));
-            }
-            else if(serv instanceof CallHistoryService)
-            {
-                CallHistoryService chs = (CallHistoryService)serv;
-                listenWrapper.setIx(i);
-                chs.addSearchProgressListener(listenWrapper);
 
-                Collection<CallRecord> col = chs.findByEndDate(date);
-                if(col.size() > count)
+                Collection<?> query(CallHistoryService chs)
                 {
-                    List<CallRecord> l = new LinkedList<CallRecord>(col);
-                    result.addAll(l.subList(l.size() - count, l.size()));
+                    return chs.findLastRecordsBefore(date, count);
                 }
-                else
-                    result.addAll(col);
-                chs.removeSearchProgressListener(listenWrapper);
-            }
-        }
+            });
         listenWrapper.fireLastProgress(date, null, null);
 
-        LinkedList<Object> resultAsList = new LinkedList<Object>(result);
-        int startIndex = resultAsList.size() - count;
-
-        if(startIndex < 0)
-            startIndex = 0;
+        return mergeLast(results, count);
+    }
 
-        return resultAsList.subList(startIndex, resultAsList.size());
+    /**
+     * Returns a cursor which pages backwards through the records before the
+     * given date, <tt>pageSize</tt> records at a time.
+     *
+     * @param services the services classnames we will query
+     * @param descriptor CallPeer address(String),
+     *  MetaContact or ChatRoom.
+     * @param date the date before which the records are to be returned
+     * @param pageSize the maximum number of records of a page
+     * @return a cursor over the records before <tt>date</tt>
+     */
+    public MetaHistoryCursor getCursorBefore(String[] services,
+            Object descriptor, Date date, int pageSize)
+    {
+        return new MetaHistoryCursorImpl(services, descriptor, date, pageSize);
     }
 
     /**
@@ -781,7 +656,262 @@ public class MetaHistoryServiceImpl
        return serv;
    }
 
-   private boolean matchAnyCallPeer(
+    /**
+     * Queries all the <tt>services</tt> concurrently, the last one in the
+     * calling thread.
+     *
+     * @param services the services classnames we will query
+     * @param descriptor CallPeer address(String),
+     *  MetaContact or ChatRoom.
+     * @param listenWrapper the listener reporting the progress of the search
+     * @param search the <tt>Search</tt> which may cancel the queries or
+     * <tt>null</tt>
+     * @param query the query to perform on each service
+     * @return the records returned by each service, sorted by date. The
+     * records of services which failed to answer because the search was
+     * cancelled are empty.
+     */
+    private List<List<Object>> queryServices(
+            String[] services,
+            final Object descriptor,
+            MessageProgressWrapper listenWrapper,
+            Search search,
+            final ServiceQuery query)
+    {
+        List<Future<List<Object>>> futures
+            = new ArrayList<Future<List<Object>>>(services.length);
+
+        for (int i = 0; i < services.length; i++)
+        {
+            final Object serv = getService(services[i]);
+            final ServiceProgressListener listener
+                = listenWrapper.getServiceListener(i);
+            FutureTask<List<Object>> task
+                = new FutureTask<List<Object>>(
+                        new Callable<List<Object>>()
+                        {
+                            public List<Object> call()
+                            {
+                                return queryService(
+                                    serv, descriptor, query, listener);
+                            }
+                        });
+
+            futures.add(task);
+            if (search != null)
+                search.add(task);
+            if (i < services.length - 1)
+                queryExecutor.execute(task);
+        }
+        // no need to hand the last query over to another thread
+        if (!futures.isEmpty())
+            ((FutureTask<List<Object>>) futures.get(futures.size() - 1)).run();
+
+        List<List<Object>> results
+            = new ArrayList<List<Object>>(futures.size());
+        boolean interrupted = false;
+
+        try
+        {
+            for (Future<List<Object>> future : futures)
+            {
+                List<Object> result = null;
+
+                try
+                {
+                    if (!interrupted)
+                        result = future.get();
+                }
+                catch (CancellationException ce)
+                {
+                }
+                catch (InterruptedException ie)
+                {
+                    interrupted = true;
+                }
+                catch (ExecutionException ee)
+                {
+                    for (Future<List<Object>> f : futures)
+                        f.cancel(true);
+
+                    Throwable cause = ee.getCause();
+
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException) cause;
+                    throw new RuntimeException(cause);
+                }
+
+                if (result == null)
+                {
+                    future.cancel(true);
+                    result = Collections.emptyList();
+                }
+                results.add(result);
+            }
+        }
+        finally
+        {
+            // the queries are done, the search doesn't need to cancel them
+            if (search != null)
+                search.remove(futures);
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        return results;
+    }
+
+    /**
+     * Queries one service.
+     *
+     * @param serv the service to query
+     * @param descriptor CallPeer address(String),
+     *  MetaContact or ChatRoom.
+     * @param query the query to perform
+     * @param listener the listener reporting the progress of the query
+     * @return the records returned by <tt>serv</tt>, sorted by date
+     */
+    private static List<Object> queryService(
+            Object serv,
+            Object descriptor,
+            ServiceQuery query,
+            ServiceProgressListener listener)
+    {
+        Collection<?> records = null;
+
+        if(serv instanceof MessageHistoryService)
+        {
+            MessageHistoryService mhs = (MessageHistoryService)serv;
+
+            mhs.addSearchProgressListener(listener);
+            try
+            {
+                if(descriptor instanceof MetaContact)
+                    records = query.query(mhs, (MetaContact)descriptor);
+                else if(descriptor instanceof ChatRoom)
+                    records = query.query(mhs, (ChatRoom)descriptor);
+            }
+            finally
+            {
+                mhs.removeSearchProgressListener(listener);
+            }
+        }
+        else if(serv instanceof FileHistoryService
+                && descriptor instanceof MetaContact)
+        {
+            records
+                = query.query(
+                    (FileHistoryService)serv, (MetaContact)descriptor);
+        }
+        else if(serv instanceof CallHistoryService)
+        {
+            CallHistoryService chs = (CallHistoryService)serv;
+
+            chs.addSearchProgressListener(listener);
+            try
+            {
+                records = query.query(chs);
+            }
+            finally
+            {
+                chs.removeSearchProgressListener(listener);
+            }
+        }
+
+        if (records == null)
+            return Collections.emptyList();
+
+        List<Object> result = new ArrayList<Object>(records);
+
+        // the services mostly return sorted records already, in which case
+        // this is a single pass
+        Collections.sort(result, RECORDS_COMPARATOR);
+        return result;
+    }
+
+    /**
+     * Returns the call records having a peer matching <tt>keywords</tt>.
+     *
+     * @param callRecords the call records to filter
+     * @param keywords array of keywords
+     * @param caseSensitive is keywords search case sensitive
+     * @return the call records having a peer matching <tt>keywords</tt>
+     */
+    private static List<CallRecord> filterCallRecords(
+            Collection<CallRecord> callRecords,
+            String[] keywords,
+            boolean caseSensitive)
+    {
+        List<CallRecord> result = new ArrayList<CallRecord>();
+
+        for (CallRecord callRecord : callRecords)
+        {
+            if(matchCallPeer(
+                    callRecord.getPeerRecords(), keywords, caseSensitive))
+                result.add(callRecord);
+        }
+        return result;
+    }
+
+    /**
+     * Merges lists of records sorted by date into one sorted list.
+     *
+     * @param lists the lists of records sorted by date
+     * @return all the records sorted by date
+     */
+    private static List<Object> merge(List<List<Object>> lists)
+    {
+        int size = 0;
+
+        for (List<Object> list : lists)
+            size += list.size();
+
+        List<Object> result = new ArrayList<Object>(size);
+
+        for (Iterator<Object> iter = new MergeIterator(lists, false);
+                iter.hasNext();)
+            result.add(iter.next());
+        return result;
+    }
+
+    /**
+     * Returns the <tt>count</tt> oldest records of lists of records sorted by
+     * date.
+     *
+     * @param lists the lists of records sorted by date
+     * @param count the maximum number of records to return
+     * @return the <tt>count</tt> oldest records sorted by date
+     */
+    private static List<Object> mergeFirst(List<List<Object>> lists, int count)
+    {
+        List<Object> result = new ArrayList<Object>();
+
+        for (Iterator<Object> iter = new MergeIterator(lists, false);
+                iter.hasNext() && (result.size() < count);)
+            result.add(iter.next());
+        return result;
+    }
+
+    /**
+     * Returns the <tt>count</tt> most recent records of lists of records
+     * sorted by date.
+     *
+     * @param lists the lists of records sorted by date
+     * @param count the maximum number of records to return
+     * @return the <tt>count</tt> most recent records sorted by date
+     */
+    private static List<Object> mergeLast(List<List<Object>> lists, int count)
+    {
+        List<Object> result = new ArrayList<Object>();
+
+        for (Iterator<Object> iter = new MergeIterator(lists, true);
+                iter.hasNext() && (result.size() < count);)
+            result.add(iter.next());
+        Collections.reverse(result);
+        return result;
+    }
+
+   private static boolean matchAnyCallPeer(
        List<CallPeerRecord> cps, String[] keywords, boolean caseSensitive)
    {
        for (CallPeerRecord callPeer : cps)
@@ -798,7 +928,7 @@ public class MetaHistoryServiceImpl
        return false;
    }
 
-   private boolean matchCallPeer(
+   private static boolean matchCallPeer(
        List<CallPeerRecord> cps, String[] keywords, boolean caseSensitive)
    {
        Iterator<CallPeerRecord> iter = cps.iterator();
@@ -880,6 +1010,7 @@ public class MetaHistoryServiceImpl
     {
         bc.removeServiceListener(this);
         services.clear();
+        queryExecutor.shutdown();
     }
 
     /**
@@ -916,25 +1047,412 @@ public class MetaHistoryServiceImpl
         }
     }
 
-    private class MessageProgressWrapper
-        implements MessageHistorySearchProgressListener,
-        CallHistorySearchProgressListener
+    /**
+     * A query to be performed on each of the wrapped services. A search
+     * implements it with the method of each kind of service matching the
+     * search.
+     */
+    private static abstract class ServiceQuery
+    {
+        /**
+         * Queries the message history of a <tt>MetaContact</tt>.
+         *
+         * @param mhs the message history service
+         * @param metaContact the <tt>MetaContact</tt>
+         * @return the matching records
+         */
+        abstract Collection<?> query(
+            MessageHistoryService mhs, MetaContact metaContact);
+
+        /**
+         * Queries the message history of a <tt>ChatRoom</tt>.
+         *
+         * @param mhs the message history service
+         * @param room the <tt>ChatRoom</tt>
+         * @return the matching records
+         */
+        abstract Collection<?> query(MessageHistoryService mhs, ChatRoom room);
+
+        /**
+         * Queries the file transfer history of a <tt>MetaContact</tt>.
+         *
+         * @param fhs the file history service
+         * @param metaContact the <tt>MetaContact</tt>
+         * @return the matching records
+         */
+        abstract Collection<?> query(
+            FileHistoryService fhs, MetaContact metaContact);
+
+        /**
+         * Queries the call history.
+         *
+         * @param chs the call history service
+         * @return the matching records
+         */
+        abstract Collection<?> query(CallHistoryService chs);
+    }
+
+    /**
+     * Iterates over the records of lists sorted by date in date order, oldest
+     * or most recent first, always comparing only the next record of each
+     * list. Records with the same date are returned in the order of their
+     * lists.
+     */
+    private static class MergeIterator
+        implements Iterator<Object>
+    {
+        /**
+         * Whether the most recent records are returned first.
+         */
+        private final boolean descending;
+
+        /**
+         * The lists, one cursor per list holding the next record of the
+         * list.
+         */
+        private final PriorityQueue<ListCursor> heads;
+
+        /**
+         * Creates an iterator over the records of <tt>lists</tt>.
+         *
+         * @param lists the lists of records sorted by date
+         * @param descending <tt>true</tt> to return the most recent records
+         * first
+         */
+        MergeIterator(List<List<Object>> lists, boolean descending)
+        {
+            this.descending = descending;
+            heads
+                = new PriorityQueue<ListCursor>(
+                        Math.max(1, lists.size()),
+                        new Comparator<ListCursor>()
+                        {
+                            public int compare(ListCursor c1, ListCursor c2)
+                            {
+                                int result
+                                    = RECORDS_COMPARATOR.compare(
+                                        c1.record, c2.record);
+
+                                if (result == 0)
+                                    result = c1.index - c2.index;
+                                return
+                                    MergeIterator.this.descending
+                                        ? -result
+                                        : result;
+                            }
+                        });
+
+            for (int i = 0; i < lists.size(); i++)
+            {
+                List<Object> list = lists.get(i);
+
+                if (!list.isEmpty())
+                {
+                    heads.add(
+                        new ListCursor(
+                            i,
+                            descending
+                                ? list.listIterator(list.size())
+                                : list.listIterator()));
+                }
+            }
+        }
+
+        public boolean hasNext()
+        {
+            return !heads.isEmpty();
+        }
+
+        public Object next()
+        {
+            ListCursor head = heads.poll();
+
+            if (head == null)
+                throw new NoSuchElementException();
+
+            Object record = head.record;
+
+            if (head.advance(descending))
+                heads.add(head);
+            return record;
+        }
+
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * The position of a <tt>MergeIterator</tt> in one of its lists.
+     */
+    private static class ListCursor
+    {
+        /**
+         * The index of the list.
+         */
+        final int index;
+
+        /**
+         * Iterates over the list.
+         */
+        private final ListIterator<Object> iter;
+
+        /**
+         * The next record of the list.
+         */
+        Object record;
+
+        /**
+         * Creates a cursor on the first record returned by <tt>iter</tt>.
+         *
+         * @param index the index of the list
+         * @param iter the iterator over the list, which has at least one
+         * record in the direction of the merge
+         */
+        ListCursor(int index, ListIterator<Object> iter)
+        {
+            this.index = index;
+            this.iter = iter;
+            this.record = iter.hasNext() ? iter.next() : iter.previous();
+        }
+
+        /**
+         * Moves to the next record of the list.
+         *
+         * @param descending whether the list is iterated backwards
+         * @return <tt>false</tt> if there are no more records
+         */
+        boolean advance(boolean descending)
+        {
+            if (descending ? !iter.hasPrevious() : !iter.hasNext())
+                return false;
+            record = descending ? iter.previous() : iter.next();
+            return true;
+        }
+    }
+
+    /**
+     * The queries of a search which may be cancelled.
+     */
+    private static class Search
+    {
+        /**
+         * The queries of the search which are in progress.
+         */
+        private final List<Future<?>> futures = new ArrayList<Future<?>>();
+
+        /**
+         * Whether the search has been cancelled.
+         */
+        private boolean cancelled = false;
+
+        /**
+         * Adds a query to this search, cancelling it right away if the search
+         * has already been cancelled.
+         *
+         * @param future the query
+         */
+        synchronized void add(Future<?> future)
+        {
+            if (cancelled)
+                future.cancel(true);
+            else
+                futures.add(future);
+        }
+
+        /**
+         * Removes queries which are done from this search.
+         *
+         * @param done the queries which are done
+         */
+        synchronized void remove(Collection<? extends Future<?>> done)
+        {
+            futures.removeAll(done);
+        }
+
+        /**
+         * Cancels all the queries of this search.
+         */
+        synchronized void cancel()
+        {
+            cancelled = true;
+            for (Future<?> future : futures)
+                future.cancel(true);
+            futures.clear();
+        }
+
+        /**
+         * Determines whether this search has been cancelled.
+         *
+         * @return <tt>true</tt> if this search has been cancelled
+         */
+        synchronized boolean isCancelled()
+        {
+            return cancelled;
+        }
+    }
+
+    /**
+     * Pages backwards through the records before a date using
+     * {@link MetaHistoryServiceImpl#findLastMessagesBefore(String[], Object,
+     * Date, int)}, each page ending right before the oldest record of the
+     * previous one.
+     * <p>
+     * Several records may share the date of the oldest record of a page and
+     * not all of them may fit in it. So the next page is searched up to and
+     * including that date, asking for as many more records as were already
+     * returned with that date. Records with the same date always come in the
+     * same order, so the ones already returned are the most recent ones of
+     * the next page and are dropped.
+     */
+    private class MetaHistoryCursorImpl
+        implements MetaHistoryCursor
     {
-        private final int count;
+        /**
+         * The services classnames we query.
+         */
+        private final String[] services;
+
+        /**
+         * CallPeer address(String), MetaContact or ChatRoom.
+         */
+        private final Object descriptor;
+
+        /**
+         * The maximum number of records of a page.
+         */
+        private final int pageSize;
+
+        /**
+         * The queries of this cursor.
+         */
+        private final Search search = new Search();
+
+        /**
+         * The date before which the next page is to be searched.
+         */
+        private Date before;
+
+        /**
+         * The number of records with the date right before {@link #before}
+         * which have already been returned.
+         */
+        private int returnedAtBoundary = 0;
+
+        /**
+         * Whether the last page was not full.
+         */
+        private boolean exhausted = false;
+
+        /**
+         * Creates a cursor over the records before <tt>date</tt>.
+         *
+         * @param services the services classnames we will query
+         * @param descriptor CallPeer address(String),
+         *  MetaContact or ChatRoom.
+         * @param date the date before which the records are to be returned
+         * @param pageSize the maximum number of records of a page
+         */
+        MetaHistoryCursorImpl(String[] services, Object descriptor, Date date,
+                int pageSize)
+        {
+            this.services = services;
+            this.descriptor = descriptor;
+            this.before = date;
+            this.pageSize = pageSize;
+        }
+
+        public synchronized Collection<Object> previousPage()
+        {
+            if (!hasPreviousPage())
+                return Collections.emptyList();
+
+            int count = pageSize + returnedAtBoundary;
+            List<Object> records
+                = findLastMessagesBefore(
+                        services, descriptor, before, count, search);
+
+            if (search.isCancelled())
+                return Collections.emptyList();
+
+            if (records.size() < count)
+                exhausted = true;
+
+            // drop the records at the boundary which were already returned
+            List<Object> page
+                = new ArrayList<Object>(
+                        records.subList(
+                            0,
+                            Math.max(0, records.size() - returnedAtBoundary)));
+
+            if (!page.isEmpty())
+            {
+                long oldest = RECORDS_COMPARATOR.getDate(page.get(0));
+                int atOldest = 0;
+
+                for (Object record : page)
+                {
+                    if (RECORDS_COMPARATOR.getDate(record) != oldest)
+                        break;
+                    atOldest++;
+                }
+
+                if (before.getTime() == oldest + 1)
+                    returnedAtBoundary += atOldest;
+                else
+                    returnedAtBoundary = atOldest;
+                before = new Date(oldest + 1);
+            }
+            return page;
+        }
 
-        private int ix;
+        public boolean hasPreviousPage()
+        {
+            synchronized (this)
+            {
+                if (exhausted)
+                    return false;
+            }
+            return !search.isCancelled();
+        }
+
+        public void cancel()
+        {
+            search.cancel();
+        }
+    }
+
+    /**
+     * Converts the progress of the searches of the wrapped services into the
+     * progress of a meta search. The services are queried concurrently so
+     * the progress of the meta search is the mean of their progress.
+     */
+    private class MessageProgressWrapper
+    {
+        /**
+         * The progress of each service, between 0 and 1.
+         */
+        private final double[] progress;
 
         public MessageProgressWrapper(int count)
         {
-            this.count = count;
+            this.progress = new double[count];
         }
 
-        public void setIx(int ix)
+        /**
+         * Returns the listener to register with the service with the given
+         * index.
+         *
+         * @param ix the index of the service
+         * @return the listener to register with the service
+         */
+        public ServiceProgressListener getServiceListener(int ix)
         {
-            this.ix = ix;
+            return new ServiceProgressListener(this, ix);
         }
 
-        private void fireProgress(int origProgress, int maxVal,
+        private void fireProgress(int ix, int origProgress, int maxVal,
             Date startDate, Date endDate, String[] keywords)
         {
             ProgressEvent ev = new ProgressEvent(
@@ -943,11 +1461,18 @@ public class MetaHistoryServiceImpl
                 endDate,
                 keywords);
 
-            double part1 = (double)origProgress/
-                ((double)maxVal*count);
+            double sum = 0;
+
+            synchronized(progress)
+            {
+                progress[ix] = (double)origProgress/(double)maxVal;
+                for (double p : progress)
+                    sum += p;
+            }
+
             double convProgress =
-                part1*HistorySearchProgressListener.PROGRESS_MAXIMUM_VALUE +
-                ix*HistorySearchProgressListener.PROGRESS_MAXIMUM_VALUE/count;
+                sum*HistorySearchProgressListener.PROGRESS_MAXIMUM_VALUE/
+                    progress.length;
 
             ev.setProgress((int)convProgress);
 
@@ -979,11 +1504,42 @@ public class MetaHistoryServiceImpl
 
             fireEvent(ev);
         }
+    }
+
+    /**
+     * Listens to the progress of the search of one of the wrapped services.
+     */
+    private static class ServiceProgressListener
+        implements MessageHistorySearchProgressListener,
+        CallHistorySearchProgressListener
+    {
+        /**
+         * The progress of the meta search.
+         */
+        private final MessageProgressWrapper wrapper;
+
+        /**
+         * The index of the service.
+         */
+        private final int ix;
+
+        /**
+         * Creates a listener for the service with the given index.
+         *
+         * @param wrapper the progress of the meta search
+         * @param ix the index of the service
+         */
+        ServiceProgressListener(MessageProgressWrapper wrapper, int ix)
+        {
+            this.wrapper = wrapper;
+            this.ix = ix;
+        }
 
         public void progressChanged(
             net.java.sip.communicator.service.msghistory.event.ProgressEvent evt)
         {
-            fireProgress(
+            wrapper.fireProgress(
+                ix,
                 evt.getProgress(),
                 MessageHistorySearchProgressListener.PROGRESS_MAXIMUM_VALUE,
                 evt.getStartDate(),
@@ -993,7 +1549,8 @@ public class MetaHistoryServiceImpl
 
         public void progressChanged(net.java.sip.communicator.service.callhistory.event.ProgressEvent evt)
         {
-            fireProgress(
+            wrapper.fireProgress(
+                ix,
                 evt.getProgress(),
                 CallHistorySearchProgressListener.PROGRESS_MAXIMUM_VALUE,
                 evt.getStartDate(),
@@ -8,6 +8,7 @@ package net.java.sip.communicator.impl.protocol.jabber;
 
 import java.beans.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import net.java.sip.communicator.service.protocol.*;
 import net.java.sip.communicator.service.protocol.Message;
@@ -102,14 +103,14 @@ public class ChatRoomJabberImpl
     /**
      * The list of members of this chat room.
      */
-    private final Hashtable<String, ChatRoomMemberJabberImpl> members
-        = new Hashtable<String, ChatRoomMemberJabberImpl>();
+    private final Map<String, ChatRoomMemberJabberImpl> members
+        = new ConcurrentHashMap<String, ChatRoomMemberJabberImpl>();
 
     /**
      * The list of banned members of this chat room.
      */
-    private final Hashtable<String, ChatRoomMember> banList
-        = new Hashtable<String, ChatRoomMember>();
+    private final Map<String, ChatRoomMember> banList
+        = new ConcurrentHashMap<String, ChatRoomMember>();
 
     /**
      * The nickname of this chat room local user participant.
@@ -688,12 +689,18 @@ public class ChatRoomJabberImpl
     {
         String participantName = StringUtils.parseResource(participant);
 
+        // members are keyed by their nicknames so try that first
+        ChatRoomMemberJabberImpl member = members.get(participantName);
+
+        if(member != null)
+            return member;
+
         Iterator<ChatRoomMemberJabberImpl> chatRoomMembers =
             this.members.values().iterator();
 
         while(chatRoomMembers.hasNext())
         {
-            ChatRoomMemberJabberImpl member = chatRoomMembers.next();
+            member = chatRoomMembers.next();
 
             if(participantName.equals(member.getName())
                 || participant.equals(member.getContactAddress())
@@ -950,14 +957,11 @@ public class ChatRoomJabberImpl
             // We try to get the nickname of the participantName in case it's
             // in the form john@servicename.com, because the nickname we keep
             // in the nickname property is just the user name like "john".
-            if (nickname.equals(participantName)
-                || members.containsKey(participantName))
-                return;
-
             // when somebody changes its nickname we first receive
             // event for its nickname changed and after that that has joined
             // we check is this already joined and if so we skip it
-            if(members.contains(participantName))
+            if (nickname.equals(participantName)
+                || members.containsKey(participantName))
                 return;
 
             Occupant occupant = multiUserChat.getOccupant(participant);
@@ -1027,7 +1031,8 @@ public class ChatRoomJabberImpl
 
             // chnage the member key
             ChatRoomMemberJabberImpl mem = members.remove(participantName);
-            members.put(newNickname, mem);
+            if(mem != null)
+                members.put(newNickname, mem);
 
             ChatRoomMemberPropertyChangeEvent evt
                 = new ChatRoomMemberPropertyChangeEvent(
@@ -0,0 +1,312 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.protocol.jabber;
+
+import net.java.sip.communicator.service.netaddr.*;
+import net.java.sip.communicator.service.netaddr.event.*;
+import net.java.sip.communicator.util.*;
+
+import org.ice4j.*;
+import org.ice4j.ice.harvest.*;
+import org.ice4j.security.*;
+
+/**
+ * Keeps, for the calls of one account, the results of the discoveries which
+ * have to be made before the ICE agent of a call can gather its candidates:
+ * the STUN/TURN server published in the DNS SRV records of the domain of the
+ * account and the UPnP gateway device of the local network. The results
+ * expire after {@link #DISCOVERY_TTL_PROPERTY} milliseconds and are dropped
+ * as soon as the network configuration changes.
+ *
+ * @author Sebastien Vincent
+ */
+public class IceHarvesterCache
+    implements NetworkConfigurationChangeListener
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>IceHarvesterCache</tt> class and its
+     * instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(IceHarvesterCache.class);
+
+    /**
+     * The name of the property which specifies the time in milliseconds the
+     * discovered STUN/TURN server and UPnP gateway are reused for.
+     */
+    public static final String DISCOVERY_TTL_PROPERTY
+        = "net.java.sip.communicator.impl.protocol.jabber.ICE_DISCOVERY_TTL";
+
+    /**
+     * The name of the property which specifies whether the STUN/TURN server
+     * of an account is discovered as soon as the account is registered rather
+     * than when its first call is set up.
+     */
+    public static final String PREWARM_PROPERTY
+        = "net.java.sip.communicator.impl.protocol.jabber"
+            + ".PREWARM_ICE_DISCOVERY";
+
+    /**
+     * The default value of {@link #DISCOVERY_TTL_PROPERTY}: ten minutes.
+     */
+    private static final long DEFAULT_DISCOVERY_TTL = 10 * 60 * 1000;
+
+    /**
+     * The time in milliseconds the discovery results are reused for.
+     */
+    private final long discoveryTtl;
+
+    /**
+     * The <tt>NetworkAddressManagerService</tt> which discovers the STUN/TURN
+     * servers and notifies about the changes of the network configuration.
+     */
+    private final NetworkAddressManagerService namSer;
+
+    /**
+     * Serializes the STUN/TURN server discoveries so that calls set up at the
+     * same time don't run the same DNS queries.
+     */
+    private final Object discoveryLock = new Object();
+
+    /**
+     * The number of times the cached results have been dropped. Allows a
+     * discovery which was running while the network changed to not store
+     * its result.
+     */
+    private int generation = 0;
+
+    /**
+     * The domain {@link #stunServer} was discovered for or <tt>null</tt> if
+     * no discovery has been made since the last invalidation.
+     */
+    private String stunDomain = null;
+
+    /**
+     * The discovered STUN/TURN server or <tt>null</tt> if the domain doesn't
+     * publish one.
+     */
+    private TransportAddress stunServer = null;
+
+    /**
+     * Whether {@link #stunServer} is a TURN server.
+     */
+    private boolean turnSupported = false;
+
+    /**
+     * The time {@link #stunServer} was discovered at.
+     */
+    private long stunDiscoveryTime = 0;
+
+    /**
+     * The <tt>UPNPHarvester</tt> shared by the calls. It discovers the
+     * gateway device the first time it harvests and reuses it afterwards.
+     */
+    private UPNPHarvester upnpHarvester = null;
+
+    /**
+     * The time {@link #upnpHarvester} was created at.
+     */
+    private long upnpCreationTime = 0;
+
+    /**
+     * Creates a cache which is dropped whenever the network configuration
+     * changes.
+     */
+    public IceHarvesterCache()
+    {
+        this(
+                JabberActivator.getNetworkAddressManagerService(),
+                JabberActivator.getConfigurationService().getLong(
+                        DISCOVERY_TTL_PROPERTY,
+                        DEFAULT_DISCOVERY_TTL));
+    }
+
+    /**
+     * Creates a cache which is dropped whenever the network configuration
+     * changes.
+     *
+     * @param namSer the <tt>NetworkAddressManagerService</tt> which is to
+     * discover the STUN/TURN servers and notify about the changes of the
+     * network configuration
+     * @param discoveryTtl the time in milliseconds the discovery results are
+     * to be reused for
+     */
+    public IceHarvesterCache(
+            NetworkAddressManagerService namSer,
+            long discoveryTtl)
+    {
+        this.namSer = namSer;
+        this.discoveryTtl = discoveryTtl;
+
+        if (namSer != null)
+            namSer.addNetworkConfigurationChangeListener(this);
+    }
+
+    /**
+     * Returns a harvester for the STUN/TURN server of <tt>domainName</tt>,
+     * running the DNS SRV discovery only if it hasn't been made recently.
+     *
+     * @param domainName the domain name that we are trying to discover a
+     * TURN server for.
+     * @param userName the name of the user we'd like to use when connecting to
+     * a TURN server.
+     * @param password the password that we'd like to try when connecting to
+     * a TURN server.
+     * @return a new <tt>StunCandidateHarvester</tt> for the STUN/TURN server
+     * of <tt>domainName</tt> or <tt>null</tt> if there's no such server.
+     * @see NetworkAddressManagerService#discoverStunServer(String, byte[],
+     * byte[])
+     */
+    public StunCandidateHarvester getStunHarvester(String domainName,
+                                                   byte[] userName,
+                                                   byte[] password)
+    {
+        synchronized (discoveryLock)
+        {
+            int discoveryGeneration;
+
+            synchronized (this)
+            {
+                if (domainName.equals(stunDomain)
+                        && !isExpired(stunDiscoveryTime))
+                {
+                    if (stunServer == null)
+                        return null;
+                    else if (turnSupported)
+                        return new TurnCandidateHarvester(
+                                stunServer,
+                                new LongTermCredential(userName, password));
+                    else
+                        return new StunCandidateHarvester(stunServer);
+                }
+                discoveryGeneration = generation;
+            }
+
+            long startDiscoveryTime = System.currentTimeMillis();
+            StunCandidateHarvester harvester
+                = namSer.discoverStunServer(domainName, userName, password);
+
+            if (logger.isInfoEnabled())
+                logger.info("Discovered STUN/TURN server of " + domainName
+                        + " within "
+                        + (System.currentTimeMillis() - startDiscoveryTime)
+                        + " ms: " + harvester);
+
+            synchronized (this)
+            {
+                if (discoveryGeneration == generation)
+                {
+                    stunDomain = domainName;
+                    stunServer
+                        = (harvester == null) ? null : harvester.stunServer;
+                    turnSupported
+                        = (harvester instanceof TurnCandidateHarvester);
+                    stunDiscoveryTime = System.currentTimeMillis();
+                }
+            }
+            return harvester;
+        }
+    }
+
+    /**
+     * Discovers the STUN/TURN server of <tt>domainName</tt> in a separate
+     * thread if {@link #PREWARM_PROPERTY} is enabled so that the first call
+     * doesn't have to wait for it.
+     *
+     * @param domainName the domain name that we are trying to discover a
+     * TURN server for.
+     */
+    public void prewarm(final String domainName)
+    {
+        if (!JabberActivator.getConfigurationService().getBoolean(
+                PREWARM_PROPERTY, false))
+            return;
+
+        Thread prewarmThread = new Thread("IceHarvesterCache prewarm")
+        {
+            @Override
+            public void run()
+            {
+                // the credentials only matter to the harvesters which are
+                // created for the calls.
+                getStunHarvester(domainName, new byte[0], new byte[0]);
+            }
+        };
+
+        prewarmThread.setDaemon(true);
+        prewarmThread.start();
+    }
+
+    /**
+     * Returns the <tt>UPNPHarvester</tt> to be used by the calls of the
+     * account. It remembers the gateway device it discovered until it
+     * expires or the network configuration changes.
+     *
+     * @return the <tt>UPNPHarvester</tt> to be used by the calls of the
+     * account.
+     */
+    public synchronized UPNPHarvester getUPNPHarvester()
+    {
+        if ((upnpHarvester == null) || isExpired(upnpCreationTime))
+        {
+            upnpHarvester = new UPNPHarvester();
+            upnpCreationTime = System.currentTimeMillis();
+        }
+        return upnpHarvester;
+    }
+
+    /**
+     * Drops all the discovery results.
+     */
+    public synchronized void invalidate()
+    {
+        generation++;
+        stunDomain = null;
+        stunServer = null;
+        upnpHarvester = null;
+    }
+
+    /**
+     * Drops all the discovery results and stops listening to the changes of
+     * the network configuration.
+     */
+    public void dispose()
+    {
+        if (namSer != null)
+            namSer.removeNetworkConfigurationChangeListener(this);
+        invalidate();
+    }
+
+    /**
+     * Drops the discovery results when the network configuration changes
+     * because the DNS servers, the gateway or the addresses they were
+     * discovered from may be different.
+     *
+     * @param event the event describing the change.
+     */
+    public void configurationChanged(ChangeEvent event)
+    {
+        if (event.isInitial())
+            return;
+
+        if (logger.isDebugEnabled())
+            logger.debug("Dropping ICE discovery results after " + event);
+        invalidate();
+    }
+
+    /**
+     * Determines whether a discovery result created at <tt>time</tt> has
+     * expired.
+     *
+     * @param time the time the discovery result was created at.
+     * @return <tt>true</tt> if the result must not be used anymore.
+     */
+    private boolean isExpired(long time)
+    {
+        return (System.currentTimeMillis() - time) > discoveryTtl;
+    }
+}
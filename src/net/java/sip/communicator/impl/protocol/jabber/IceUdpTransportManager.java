@@ -103,6 +103,9 @@ public class IceUdpTransportManager
         NetworkAddressManagerService namSer = getNetAddrMgr();
         boolean atLeastOneStunServer = false;
         Agent agent = namSer.createIceAgent();
+        IceHarvesterCache harvesterCache = provider.getIceHarvesterCache();
+        long stunDiscoveryTime = 0;
+        long jingleNodesDiscoveryTime = 0;
 
         /*
          * XEP-0176:  the initiator MUST include the ICE-CONTROLLING attribute,
@@ -162,12 +165,16 @@ public class IceUdpTransportManager
                 }
             }
 
+            long startStunDiscoveryTime = System.currentTimeMillis();
             StunCandidateHarvester autoHarvester
-                = namSer.discoverStunServer(
+                = harvesterCache.getStunHarvester(
                         accID.getService(),
                         StringUtils.getUTF8Bytes(username),
                         StringUtils.getUTF8Bytes(password));
 
+            stunDiscoveryTime
+                = System.currentTimeMillis() - startStunDiscoveryTime;
+
             if (logger.isInfoEnabled())
                 logger.info("Auto discovered harvester is " + autoHarvester);
 
@@ -246,9 +253,13 @@ public class IceUdpTransportManager
             /* this method is blocking until Jingle Nodes auto-discovery (if
              * enabled) finished
              */
+            long startJingleNodesDiscoveryTime = System.currentTimeMillis();
             SmackServiceNode serviceNode =
                 peer.getProtocolProvider().getJingleNodesServiceNode();
 
+            jingleNodesDiscoveryTime
+                = System.currentTimeMillis() - startJingleNodesDiscoveryTime;
+
             if(serviceNode != null)
             {
                 JingleNodesHarvester harvester = new JingleNodesHarvester(
@@ -263,7 +274,7 @@ public class IceUdpTransportManager
 
         if(accID.isUPNPEnabled())
         {
-            UPNPHarvester harvester = new UPNPHarvester();
+            UPNPHarvester harvester = harvesterCache.getUPNPHarvester();
 
             if(harvester != null)
             {
@@ -276,7 +287,9 @@ public class IceUdpTransportManager
             = stopGatheringHarvesterTime - startGatheringHarvesterTime;
         if (logger.isInfoEnabled())
             logger.info("End gathering harvester within "
-                    + gatheringHarvesterTime + " ms");
+                    + gatheringHarvesterTime + " ms (STUN/TURN discovery: "
+                    + stunDiscoveryTime + " ms, Jingle Nodes discovery: "
+                    + jingleNodesDiscoveryTime + " ms)");
         return agent;
     }
 
@@ -741,6 +754,7 @@ public class IceUdpTransportManager
         throws OperationFailedException
     {
         IceMediaStream stream;
+        long startGatheringTime = System.currentTimeMillis();
         try
         {
             //the following call involves STUN processing so it may take a while
@@ -755,6 +769,12 @@ public class IceUdpTransportManager
                     ex);
         }
 
+        if (logger.isInfoEnabled())
+            logger.info("Gathered candidates for stream " + media
+                    + " within "
+                    + (System.currentTimeMillis() - startGatheringTime)
+                    + " ms");
+
         //let's now update the next port var as best we can: we would assume
         //that all local candidates are bound on the same port and set it
         //to the one just above. if the assumption is wrong the next bind
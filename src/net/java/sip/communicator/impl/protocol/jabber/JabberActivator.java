@@ -18,6 +18,7 @@ import net.java.sip.communicator.service.resources.*;
 import net.java.sip.communicator.util.*;
 
 import org.jitsi.service.configuration.*;
+import org.jitsi.service.fileaccess.*;
 import org.jitsi.service.neomedia.*;
 import org.jitsi.service.packetlogging.*;
 import org.jitsi.service.resources.*;
@@ -106,6 +107,12 @@ public class JabberActivator
      */
     private static GoogleContactsService googleService  = null;
 
+    /**
+     * A reference to the currently valid <tt>FileAccessService</tt>
+     * instance.
+     */
+    private static FileAccessService fileAccessService = null;
+
     /**
      * A reference to the currently valid <tt>VersionService</tt>
      * instance.
@@ -417,4 +424,24 @@ public class JabberActivator
         }
         return versionService;
     }
+
+    /**
+     * Returns a reference to a FileAccessService implementation currently
+     * registered in the bundle context or null if no such implementation
+     * was found.
+     *
+     * @return a reference to a FileAccessService implementation currently
+     * registered in the bundle context or null if no such implementation
+     * was found.
+     */
+    public static FileAccessService getFileAccessService()
+    {
+        if (fileAccessService == null)
+        {
+            fileAccessService
+                = ServiceUtils.getService(
+                        bundleContext, FileAccessService.class);
+        }
+        return fileAccessService;
+    }
 }
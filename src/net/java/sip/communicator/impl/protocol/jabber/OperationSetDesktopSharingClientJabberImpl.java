@@ -8,6 +8,7 @@ package net.java.sip.communicator.impl.protocol.jabber;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.util.*;
 import java.util.List;
 
 import net.java.sip.communicator.impl.protocol.jabber.extensions.inputevt.*;
@@ -33,6 +34,61 @@ public class OperationSetDesktopSharingClientJabberImpl
                 PacketListener,
                 PacketFilter
 {
+    /**
+     * Sends the remote-control payloads to the peers, several in one
+     * <tt>InputEvtIQ</tt> when they are queued faster than they are sent.
+     */
+    private final RemoteControlEventBatcher<RemoteControlExtension> batcher
+        = new RemoteControlEventBatcher<RemoteControlExtension>(
+                "Jabber remote-control sender")
+        {
+            @Override
+            protected void send(
+                    CallPeer callPeer,
+                    List<RemoteControlExtension> payloads)
+            {
+                sendRemoteControlExtensions(callPeer, payloads);
+            }
+        };
+
+    /**
+     * Whether the peers support being controlled, once we know it.
+     */
+    private final Map<CallPeer, Boolean> remoteControlSupport
+        = new WeakHashMap<CallPeer, Boolean>();
+
+    /**
+     * The <tt>CallPeerListener</tt> which forgets about the peers which are
+     * disconnected and drops the events not sent to them yet.
+     */
+    private final CallPeerListener callPeerListener = new CallPeerAdapter()
+    {
+        /**
+         * Indicates that a change has occurred in the status of the source
+         * <tt>CallPeer</tt>.
+         *
+         * @param evt the <tt>CallPeerChangeEvent</tt> instance containing the
+         * source event as well as its previous and its new status
+         */
+        @Override
+        public void peerStateChanged(CallPeerChangeEvent evt)
+        {
+            CallPeer peer = evt.getSourceCallPeer();
+            CallPeerState state = peer.getState();
+
+            if (CallPeerState.DISCONNECTED.equals(state)
+                    || CallPeerState.FAILED.equals(state))
+            {
+                peer.removeCallPeerListener(this);
+                synchronized (remoteControlSupport)
+                {
+                    remoteControlSupport.remove(peer);
+                }
+                batcher.remove(peer);
+            }
+        }
+    };
+
     /**
      * Initializes a new <tt>OperationSetDesktopSharingClientJabberImpl</tt>.
      *
@@ -92,7 +148,48 @@ public class OperationSetDesktopSharingClientJabberImpl
     }
 
     /**
-     * Send a mouse/keyboard/videoPanelSize notification.
+     * Determines whether we may control a peer and the peer may be
+     * controlled. The answer is remembered once the features of the peer are
+     * known.
+     *
+     * @param callPeer the <tt>CallPeer</tt> to check
+     * @return <tt>true</tt> if remote-control payloads are to be sent to
+     * <tt>callPeer</tt>
+     */
+    private boolean isRemoteControlSupported(CallPeer callPeer)
+    {
+        synchronized (remoteControlSupport)
+        {
+            Boolean supported = remoteControlSupport.get(callPeer);
+
+            if (supported != null)
+                return supported;
+        }
+
+        DiscoverInfo discoverInfo
+            = ((CallPeerJabberImpl) callPeer).getDiscoverInfo();
+
+        if (discoverInfo == null)
+            return false;
+
+        boolean supported
+            = this.parentProvider.getDiscoveryManager()
+                    .includesFeature(InputEvtIQ.NAMESPACE_CLIENT)
+                && discoverInfo.containsFeature(InputEvtIQ.NAMESPACE_SERVER);
+
+        boolean added;
+
+        synchronized (remoteControlSupport)
+        {
+            added = (remoteControlSupport.put(callPeer, supported) == null);
+        }
+        if (added)
+            callPeer.addCallPeerListener(callPeerListener);
+        return supported;
+    }
+
+    /**
+     * Queues a mouse/keyboard/videoPanelSize notification to be sent.
      *
      * @param callPeer <tt>CallPeer</tt> that will be notified
      * @param payload  The packet payload containing the
@@ -102,23 +199,45 @@ public class OperationSetDesktopSharingClientJabberImpl
             CallPeer callPeer,
             RemoteControlExtension payload)
     {
-        DiscoverInfo discoverInfo
-            = ((CallPeerJabberImpl) callPeer).getDiscoverInfo();
-        if(this.parentProvider.getDiscoveryManager()
-                .includesFeature(InputEvtIQ.NAMESPACE_CLIENT)
-                && discoverInfo != null
-                && discoverInfo.containsFeature(InputEvtIQ.NAMESPACE_SERVER))
+        if(isRemoteControlSupported(callPeer))
         {
-            InputEvtIQ inputIQ = new InputEvtIQ();
+            ComponentEvent event = payload.getEvent();
+            boolean mouseMove
+                = (event != null)
+                    && ((event.getID() == MouseEvent.MOUSE_MOVED)
+                        || (event.getID() == MouseEvent.MOUSE_DRAGGED));
 
-            inputIQ.setAction(InputEvtAction.NOTIFY);
-            inputIQ.setType(IQ.Type.SET);
-            inputIQ.setFrom(parentProvider.getOurJID());
-            inputIQ.setTo(callPeer.getAddress());
+            batcher.add(callPeer, payload, mouseMove);
+        }
+    }
+
+    /**
+     * Sends mouse/keyboard/videoPanelSize notifications in one
+     * <tt>InputEvtIQ</tt>.
+     *
+     * @param callPeer <tt>CallPeer</tt> that will be notified
+     * @param payloads the packet payloads containing the
+     * key/mouse/videoPanelSize events to send to remote peer
+     */
+    private void sendRemoteControlExtensions(
+            CallPeer callPeer,
+            List<RemoteControlExtension> payloads)
+    {
+        XMPPConnection connection = parentProvider.getConnection();
+
+        if(connection == null)
+            return;
+
+        InputEvtIQ inputIQ = new InputEvtIQ();
+
+        inputIQ.setAction(InputEvtAction.NOTIFY);
+        inputIQ.setType(IQ.Type.SET);
+        inputIQ.setFrom(parentProvider.getOurJID());
+        inputIQ.setTo(callPeer.getAddress());
+        for(RemoteControlExtension payload : payloads)
             inputIQ.addRemoteControl(payload);
 
-            parentProvider.getConnection().sendPacket(inputIQ);
-        }
+        connection.sendPacket(inputIQ);
     }
 
     /**
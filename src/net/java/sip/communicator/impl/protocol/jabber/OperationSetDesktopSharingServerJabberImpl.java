@@ -403,15 +403,39 @@ public class OperationSetDesktopSharingServerJabberImpl
             // granted.
             if(callPeers.contains(inputIQ.getFrom()))
             {
-                for(RemoteControlExtension p : inputIQ.getRemoteControls())
+                List<RemoteControlExtension> remoteControls
+                    = inputIQ.getRemoteControls();
+
+                int count = remoteControls.size();
+
+                for(int i = 0; i < count; i++)
                 {
-                    ComponentEvent evt = p.getEvent();
+                    ComponentEvent evt = remoteControls.get(i).getEvent();
+
+                    // stale moves are dropped in favor of the newest position
+                    if(isMouseMove(evt)
+                            && (i + 1 < count)
+                            && isMouseMove(
+                                    remoteControls.get(i + 1).getEvent()))
+                        continue;
                     processComponentEvent(evt);
                 }
             }
         }
     }
 
+    /**
+     * Determines whether an event received from remote peer is a mouse move.
+     *
+     * @param event the <tt>ComponentEvent</tt> received from remote peer
+     * @return <tt>true</tt> if <tt>event</tt> is a mouse move
+     */
+    private static boolean isMouseMove(ComponentEvent event)
+    {
+        return (event instanceof MouseEvent)
+            && (event.getID() == MouseEvent.MOUSE_MOVED);
+    }
+
     /**
      * Tests whether or not the specified packet should be handled by this
      * operation set. This method is called by smack prior to packet delivery
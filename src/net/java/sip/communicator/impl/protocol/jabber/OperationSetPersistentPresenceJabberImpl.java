@@ -1305,6 +1305,16 @@ public class OperationSetPersistentPresenceJabberImpl
             // as we have dispatched the contact list and Roaster is ready
             // lets start the jingle nodes discovery
             parentProvider.startJingleNodesDiscovery();
+
+            // and the discovery of the STUN/TURN server for the calls
+            JabberAccountID accID
+                = (JabberAccountID) parentProvider.getAccountID();
+
+            if(accID.isStunServerDiscoveryEnabled())
+            {
+                parentProvider.getIceHarvesterCache().prewarm(
+                        accID.getService());
+            }
         }
 
         /**
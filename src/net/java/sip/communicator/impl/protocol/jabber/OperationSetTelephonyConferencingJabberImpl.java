@@ -49,10 +49,21 @@ public class OperationSetTelephonyConferencingJabberImpl
         = Logger.getLogger(OperationSetTelephonyConferencingJabberImpl.class);
 
     /**
-     * The value of the <tt>version</tt> attribute to be specified in the
-     * outgoing <tt>conference-info</tt> root XML elements.
+     * The <tt>ConferenceInfoDelta</tt>s which remember the users the
+     * <tt>CallPeer</tt>s have last been notified about and the values of the
+     * <tt>version</tt> attribute to be specified in their next outgoing
+     * <tt>conference-info</tt> root XML elements, by <tt>CallPeer</tt>.
      */
-    private int version = 1;
+    private final Map<CallPeer, ConferenceInfoDelta> deltas
+        = new HashMap<CallPeer, ConferenceInfoDelta>();
+
+    /**
+     * The values of the <tt>version</tt> attribute of the last
+     * <tt>conference-info</tt> root XML elements received from the
+     * <tt>CallPeer</tt>s, by <tt>CallPeer</tt>.
+     */
+    private final Map<CallPeer, Integer> receivedVersions
+        = new HashMap<CallPeer, Integer>();
 
     /**
      * Synchronization object.
@@ -93,9 +104,30 @@ public class OperationSetTelephonyConferencingJabberImpl
             newValue.addCallListener(this);
     }
 
+    /**
+     * Notifies this <tt>CallChangeListener</tt> that a specific
+     * <tt>CallPeer</tt> has been remove from a specific <tt>Call</tt> and
+     * forgets what it has been notified about.
+     *
+     * @param event a <tt>CallPeerEvent</tt> which specifies the
+     * <tt>CallPeer</tt> which has been removed from a <tt>Call</tt>
+     */
+    @Override
+    public void callPeerRemoved(CallPeerEvent event)
+    {
+        synchronized(objSync)
+        {
+            deltas.remove(event.getSourceCallPeer());
+            receivedVersions.remove(event.getSourceCallPeer());
+        }
+        super.callPeerRemoved(event);
+    }
+
     /**
      * Notifies all CallPeer associated with and established in a
-     * specific call for conference information.
+     * specific call for conference information. Only the CallPeers which
+     * haven't been notified about the current state of the conference yet are
+     * notified and only about its changes.
      *
      * @param call the <tt>Call</tt>
      */
@@ -108,32 +140,48 @@ public class OperationSetTelephonyConferencingJabberImpl
 
         synchronized(objSync)
         {
+            /*
+             * The users other than the local one are the same for all the
+             * CallPeers so they are only generated once.
+             */
+            Map<String, UserPacketExtension> users = null;
+
             // send conference-info to all CallPeer of Call
             Iterator<? extends CallPeer> it = call.getCallPeers();
 
             while(it.hasNext())
             {
                 CallPeer callPeer = it.next();
-                notify(callPeer);
+
+                if(!(callPeer instanceof CallPeerJabberImpl))
+                    continue;
+                if(users == null)
+                    users = getUsers(((CallPeerJabberImpl) callPeer).getCall());
+                notify((CallPeerJabberImpl) callPeer, users);
             }
-            version++;
         }
     }
 
     /**
      * Notifies all CallPeer associated with and established in a
-     * specific call has occurred
+     * specific call has occurred. Only the <tt>CallPeer</tt>s which advertise
+     * the support of partial conference-info documents are only notified
+     * about the changes of the conference.
      *
      * @param callPeer the <tt>CallPeer</tt>
+     * @param users the <tt>user</tt> elements of the <tt>CallPeer</tt>s in
+     * the conference by entity as returned by {@link #getUsers(
+     * CallJabberImpl)}
      */
-    private void notify(CallPeer callPeer)
+    private void notify(
+            CallPeerJabberImpl callPeer,
+            Map<String, UserPacketExtension> users)
     {
-        if(!(callPeer instanceof CallPeerJabberImpl))
-            return;
 
         // check that callPeer supports COIN before sending him a
         // conference-info
         String to = getBasicTelephony().getFullCalleeURI(callPeer.getAddress());
+        boolean partial = false;
 
         try
         {
@@ -147,13 +195,17 @@ public class OperationSetTelephonyConferencingJabberImpl
                 logger.info(callPeer.getAddress() + " does not support COIN");
                 return;
             }
+            partial
+                = discoverInfo.containsFeature(
+                        ProtocolProviderServiceJabberImpl
+                            .URN_XMPP_JINGLE_COIN_PARTIAL);
         }
         catch (XMPPException xmppe)
         {
             logger.warn("Failed to retrieve DiscoverInfo for " + to, xmppe);
         }
 
-        IQ iq = getConferenceInfo((CallPeerJabberImpl)callPeer, version);
+        IQ iq = getConferenceInfo(callPeer, users, partial);
 
         if(iq != null)
         {
@@ -285,22 +337,17 @@ public class OperationSetTelephonyConferencingJabberImpl
     }
 
     /**
-     * Generates the conference-info IQ to be sent to a specific
-     * <tt>CallPeer</tt> in order to notify it of the current state of the
-     * conference managed by the local peer.
+     * Generates the <tt>user</tt> elements which describe the
+     * <tt>CallPeer</tt>s of a specific <tt>Call</tt> and its cross-protocol
+     * <tt>CallPeer</tt>s in the conference-info IQ to be sent to any of its
+     * <tt>CallPeer</tt>s.
      *
-     * @param callPeer the <tt>CallPeer</tt> to generate conference-info XML for
-     * @param version the value of the version attribute of the
-     * <tt>conference-info</tt> root element of the conference-info XML to be
-     * generated
-     * @return the conference-info IQ to be sent to the specified
-     * <tt>callPeer</tt> in order to notify it of the current state of the
-     * conference managed by the local peer
+     * @param call the <tt>Call</tt> to generate the <tt>user</tt> elements for
+     * @return the <tt>user</tt> elements which describe the <tt>CallPeer</tt>s
+     * of the specified <tt>call</tt> by entity
      */
-    private IQ getConferenceInfo(CallPeerJabberImpl callPeer, int version)
+    private Map<String, UserPacketExtension> getUsers(CallJabberImpl call)
     {
-        CoinIQ iq = new CoinIQ();
-        CallJabberImpl call = callPeer.getCall();
         List<CallPeer> crossPeers = new ArrayList<CallPeer>();
         Iterator<CallPeer> crossProtocolCallPeerIter =
             call.getCrossProtocolCallPeers();
@@ -328,36 +375,64 @@ public class OperationSetTelephonyConferencingJabberImpl
                 crossPeers.add(crossPeer);
         }
 
-        iq.setFrom(call.getProtocolProvider().getOurJID());
-        iq.setTo(callPeer.getAddress());
-        iq.setType(Type.SET);
-        iq.setEntity(getBasicTelephony().getProtocolProvider().getOurJID());
-        iq.setVersion(version);
-        iq.setState(StateType.full);
+        Map<String, UserPacketExtension> users
+            = new LinkedHashMap<String, UserPacketExtension>();
+        Iterator<CallPeerJabberImpl> callPeerIter = call.getCallPeers();
 
-        if(callPeer.getJingleSID() == null)
-            return null;
-        iq.setSID(callPeer.getJingleSID());
+        while (callPeerIter.hasNext())
+        {
+            CallPeerJabberImpl callPeer = callPeerIter.next();
 
-        // conference-description
-        iq.addExtension(new DescriptionPacketExtension());
+            users.put(callPeer.getAddress(), getUser(callPeer));
+        }
 
-        // conference-state
-        StatePacketExtension state = new StatePacketExtension();
-        state.setUserCount(call.getCallPeerCount() + 1 +
-            crossPeers.size());
-        iq.addExtension(state);
+        for(CallPeer cp : crossPeers)
+        {
+            MediaAwareCallPeer<?,?,?> crossPeer =
+                (MediaAwareCallPeer<?,?,?>)cp;
 
-        // users
-        UsersPacketExtension users = new UsersPacketExtension();
+            users.put(crossPeer.getAddress(), getUser(crossPeer));
+        }
+        return users;
+    }
+
+    /**
+     * Generates the conference-info IQ to be sent to a specific
+     * <tt>CallPeer</tt> in order to notify it of the state of the conference
+     * managed by the local peer. The first notification describes the full
+     * state of the conference; the others only describe the users which have
+     * changed since the last notification of the <tt>CallPeer</tt> if it
+     * supports it.
+     *
+     * @param callPeer the <tt>CallPeer</tt> to generate conference-info XML for
+     * @param users the <tt>user</tt> elements of the <tt>CallPeer</tt>s in the
+     * conference by entity as returned by {@link #getUsers(CallJabberImpl)}
+     * @param partial <tt>true</tt> if <tt>callPeer</tt> supports partial
+     * conference-info documents; <tt>false</tt> to always describe the full
+     * state of the conference
+     * @return the conference-info IQ to be sent to the specified
+     * <tt>callPeer</tt> in order to notify it of the state of the conference
+     * managed by the local peer or <tt>null</tt> if the state hasn't changed
+     * since the last notification
+     */
+    private IQ getConferenceInfo(
+            CallPeerJabberImpl callPeer,
+            Map<String, UserPacketExtension> users,
+            boolean partial)
+    {
+        if(callPeer.getJingleSID() == null)
+            return null;
+
+        CoinIQ iq = new CoinIQ();
+        CallJabberImpl call = callPeer.getCall();
 
         // user
-        UserPacketExtension user = new UserPacketExtension(
-               "xmpp:" + parentProvider.getOurJID());
+        String localEntity = "xmpp:" + parentProvider.getOurJID();
+        UserPacketExtension user = new UserPacketExtension(localEntity);
 
         // endpoint
-        EndpointPacketExtension endpoint = new EndpointPacketExtension(
-            "xmpp:" + parentProvider.getOurJID());
+        EndpointPacketExtension endpoint
+            = new EndpointPacketExtension(localEntity);
         endpoint.setStatus(EndpointStatusType.connected);
 
         // media
@@ -368,26 +443,74 @@ public class OperationSetTelephonyConferencingJabberImpl
             endpoint.addChildExtension(media);
         }
         user.addChildExtension(endpoint);
-        users.addChildExtension(user);
 
-        // other users
-        Iterator<CallPeerJabberImpl> callPeerIter = call.getCallPeers();
+        Map<String, UserPacketExtension> allUsers
+            = new LinkedHashMap<String, UserPacketExtension>();
 
-        while (callPeerIter.hasNext())
+        allUsers.put(localEntity, user);
+        allUsers.putAll(users);
+
+        Map<String, String> usersXML = new LinkedHashMap<String, String>();
+
+        for(Map.Entry<String, UserPacketExtension> e : allUsers.entrySet())
+            usersXML.put(e.getKey(), e.getValue().toXML());
+
+        ConferenceInfoDelta delta = deltas.get(callPeer);
+
+        if(delta == null)
         {
-            UserPacketExtension ext = getUser(callPeerIter.next());
-            users.addChildExtension(ext);
+            delta = new ConferenceInfoDelta();
+            deltas.put(callPeer, delta);
         }
 
-        for(CallPeer cp : crossPeers)
+        ConferenceInfoDelta.Update update = delta.update(usersXML, !partial);
+
+        if(update == null)
+            return null;
+
+        iq.setFrom(call.getProtocolProvider().getOurJID());
+        iq.setTo(callPeer.getAddress());
+        iq.setType(Type.SET);
+        iq.setEntity(getBasicTelephony().getProtocolProvider().getOurJID());
+        iq.setVersion(update.getVersion());
+        iq.setState(update.isFull() ? StateType.full : StateType.partial);
+        iq.setSID(callPeer.getJingleSID());
+
+        // conference-description
+        if(update.isFull())
+            iq.addExtension(new DescriptionPacketExtension());
+
+        // conference-state
+        StatePacketExtension state = new StatePacketExtension();
+        state.setUserCount(allUsers.size());
+        iq.addExtension(state);
+
+        // users
+        UsersPacketExtension usersExt = new UsersPacketExtension();
+
+        // The users which aren't described haven't changed.
+        if(!update.isFull())
         {
-            MediaAwareCallPeer<?,?,?> crossPeer =
-                (MediaAwareCallPeer<?,?,?>)cp;
-            UserPacketExtension ext = getUser(crossPeer);
-            users.addChildExtension(ext);
+            usersExt.setAttribute(
+                    UsersPacketExtension.STATE_ATTR_NAME,
+                    StateType.partial);
         }
 
-        iq.addExtension(users);
+        for(String entity : update.getUsers().keySet())
+        {
+            UserPacketExtension ext = allUsers.get(entity);
+
+            if(ext == null)
+            {
+                ext = new UserPacketExtension(entity);
+                ext.setAttribute(
+                        UserPacketExtension.STATE_ATTR_NAME,
+                        StateType.deleted);
+            }
+            usersExt.addChildExtension(ext);
+        }
+
+        iq.addExtension(usersExt);
         return iq;
     }
 
@@ -553,36 +676,113 @@ public class OperationSetTelephonyConferencingJabberImpl
     public void processPacket(Packet packet)
     {
         CoinIQ coinIQ = (CoinIQ) packet;
+        String sid = coinIQ.getSID();
+        CallPeerJabberImpl callPeer
+            = (sid == null)
+                ? null
+                : getBasicTelephony().getActiveCallsRepository().findCallPeer(
+                        sid);
 
-        //first ack all "set" requests.
-        if (coinIQ.getType() == IQ.Type.SET)
+        if (coinIQ.getType() == IQ.Type.ERROR)
         {
-            IQ ack = IQ.createResultIQ(coinIQ);
+            /*
+             * The CallPeer has missed a partial conference-info so it is to
+             * be notified about the full state of the conference.
+             */
+            if ((callPeer != null) && (coinIQ.getState() == StateType.partial))
+            {
+                ConferenceInfoDelta delta;
 
-            parentProvider.getConnection().sendPacket(ack);
+                synchronized(objSync)
+                {
+                    delta = deltas.get(callPeer);
+                }
+                if (delta != null)
+                {
+                    delta.reset();
+                    scheduleNotifyAll(callPeer.getCall());
+                }
+            }
+            return;
         }
 
-        String sid = coinIQ.getSID();
+        boolean handled = (callPeer == null) || handleCoin(coinIQ, callPeer);
 
-        if (sid != null)
+        // ack all "set" requests.
+        if (coinIQ.getType() == IQ.Type.SET)
         {
-            CallPeerJabberImpl callPeer
-                = getBasicTelephony().getActiveCallsRepository().findCallPeer(
-                        sid);
+            IQ ack
+                = handled
+                    ? IQ.createResultIQ(coinIQ)
+                    : createMissedVersionsError(coinIQ);
 
-            if (callPeer != null)
-                handleCoin(coinIQ, callPeer);
+            parentProvider.getConnection().sendPacket(ack);
         }
     }
 
     /**
-     * Handle Coin IQ.
+     * Creates the error reply to a partial Coin IQ which doesn't directly
+     * follow the last Coin IQ received from its sender. The reply repeats
+     * the <tt>conference-info</tt> element so that the sender recognizes it
+     * and notifies about the full state of the conference again.
+     *
+     * @param coinIQ the partial Coin IQ
+     * @return the error reply to <tt>coinIQ</tt>
+     */
+    private static IQ createMissedVersionsError(CoinIQ coinIQ)
+    {
+        CoinIQ error = new CoinIQ();
+
+        error.setType(IQ.Type.ERROR);
+        error.setPacketID(coinIQ.getPacketID());
+        error.setFrom(coinIQ.getTo());
+        error.setTo(coinIQ.getFrom());
+        error.setEntity(coinIQ.getEntity());
+        error.setVersion(coinIQ.getVersion());
+        error.setState(coinIQ.getState());
+        error.setSID(coinIQ.getSID());
+        error.setError(
+                new XMPPError(XMPPError.Condition.unexpected_request));
+        return error;
+    }
+
+    /**
+     * Handle Coin IQ. A partial Coin IQ is only represented if it directly
+     * follows the last one received from the <tt>CallPeer</tt> because it
+     * only describes the changes since that one.
      *
      * @param coinIQ Coin IQ
      * @param callPeer a <tt>CallPeer</tt>
+     * @return <tt>false</tt> if <tt>coinIQ</tt> is partial and the Coin IQs
+     * before it were missed; otherwise, <tt>true</tt>
      */
-    private void handleCoin(CoinIQ coinIQ, CallPeerJabberImpl callPeer)
+    private boolean handleCoin(CoinIQ coinIQ, CallPeerJabberImpl callPeer)
     {
+        int version = coinIQ.getVersion();
+
+        synchronized(objSync)
+        {
+            Integer receivedVersion = receivedVersions.get(callPeer);
+
+            if ((coinIQ.getState() == StateType.partial)
+                    && ((receivedVersion == null)
+                        || (version > receivedVersion + 1)))
+            {
+                if (logger.isDebugEnabled())
+                {
+                    logger.debug(
+                            "Missed the conference-info before version "
+                                + version + " of " + callPeer
+                                + ", requesting the full state.");
+                }
+                return false;
+            }
+            // ignore the ones which are older than the represented one
+            if ((receivedVersion != null) && (version < receivedVersion))
+                return true;
+            receivedVersions.put(callPeer, version);
+        }
+
         ConferenceMember[] conferenceMembersToRemove
             = callPeer.getConferenceMembers();
         int conferenceMembersToRemoveCount = conferenceMembersToRemove.length;
@@ -601,7 +801,7 @@ public class OperationSetTelephonyConferencingJabberImpl
 
         if(users == null)
         {
-            return;
+            return true;
         }
 
         Collection<UserPacketExtension> userList =
@@ -609,9 +809,18 @@ public class OperationSetTelephonyConferencingJabberImpl
 
         if(userList.size() == 0)
         {
-            return;
+            return true;
         }
 
+        /*
+         * The users which aren't described by a partial users element haven't
+         * changed so the ConferenceMembers which represent them are kept.
+         */
+        boolean partialUsers
+            = StateType.partial.toString().equals(
+                    users.getAttributeAsString(
+                            UsersPacketExtension.STATE_ATTR_NAME));
+
         for(UserPacketExtension u : userList)
         {
             String address = null;
@@ -624,6 +833,9 @@ public class OperationSetTelephonyConferencingJabberImpl
             if ((address == null) || (address.length() < 1))
                 continue;
 
+            String userState
+                = u.getAttributeAsString(UserPacketExtension.STATE_ATTR_NAME);
+
             /*
              * Determine the ConferenceMembers which are no longer in the
              * list.
@@ -649,6 +861,14 @@ public class OperationSetTelephonyConferencingJabberImpl
                 }
             }
 
+            // Remove the deleted ones.
+            if (StateType.deleted.toString().equals(userState))
+            {
+                if (partialUsers && (existingConferenceMember != null))
+                    callPeer.removeConferenceMember(existingConferenceMember);
+                continue;
+            }
+
             // Create the new ones.
             boolean addConferenceMember = false;
             if (existingConferenceMember == null)
@@ -703,8 +923,17 @@ public class OperationSetTelephonyConferencingJabberImpl
                     }
                 }
 
-                existingConferenceMember.setDisplayName(displayName);
-                existingConferenceMember.setEndpointStatus(endpointStatus);
+                /*
+                 * A partial user element only describes the changes of the
+                 * user.
+                 */
+                boolean partialUser
+                    = StateType.partial.toString().equals(userState);
+
+                if (!partialUser || (displayName != null))
+                    existingConferenceMember.setDisplayName(displayName);
+                if (!partialUser || (endpointStatus != null))
+                    existingConferenceMember.setEndpointStatus(endpointStatus);
 
                 if (audioSsrc != null)
                 {
@@ -735,18 +964,22 @@ public class OperationSetTelephonyConferencingJabberImpl
          * Remove the ConferenceMember instance which are no longer present in
          * the conference-info XML document.
          */
-        for (int conferenceMemberIndex = 0;
-                conferenceMemberIndex < conferenceMembersToRemoveCount;
-                conferenceMemberIndex++)
+        if (!partialUsers)
         {
-            ConferenceMember conferenceMemberToRemove
-                = conferenceMembersToRemove[conferenceMemberIndex];
+            for (int conferenceMemberIndex = 0;
+                    conferenceMemberIndex < conferenceMembersToRemoveCount;
+                    conferenceMemberIndex++)
+            {
+                ConferenceMember conferenceMemberToRemove
+                    = conferenceMembersToRemove[conferenceMemberIndex];
 
-            if (conferenceMemberToRemove != null)
-                callPeer.removeConferenceMember(conferenceMemberToRemove);
+                if (conferenceMemberToRemove != null)
+                    callPeer.removeConferenceMember(conferenceMemberToRemove);
+            }
         }
 
         if(changed)
-            notifyAll(callPeer.getCall());
+            scheduleNotifyAll(callPeer.getCall());
+        return true;
     }
 }
@@ -33,6 +33,19 @@ public class ProtocolProviderFactoryJabberImpl
         super(JabberActivator.getBundleContext(), ProtocolNames.JABBER);
     }
 
+    /**
+     * Jabber providers keep no state shared with the other providers which
+     * isn't guarded against their concurrent initialization, so the stored
+     * accounts may be loaded in parallel.
+     *
+     * @return <tt>true</tt>
+     */
+    @Override
+    protected boolean isConcurrentAccountLoadingSupported()
+    {
+        return true;
+    }
+
     /**
      * Ovverides the original in order give access to protocol implementation.
      *
@@ -123,6 +123,14 @@ public class ProtocolProviderServiceJabberImpl
      */
     public static final String URN_XMPP_JINGLE_COIN = "urn:xmpp:coin";
 
+    /**
+     * Discover Info URN for the support of the conference-info documents
+     * which only describe the changes since the previous one
+     * (<tt>state="partial"</tt>) in Coin.
+     */
+    public static final String URN_XMPP_JINGLE_COIN_PARTIAL
+        = "http://jitsi.org/protocol/coin#partial";
+
     /**
      * Jingle's Discover Info URN for "XEP-0294: Jingle RTP Header Extensions
      * Negotiation" support.
@@ -367,6 +375,18 @@ public class ProtocolProviderServiceJabberImpl
      */
     private final Object jingleNodesSyncRoot = new Object();
 
+    /**
+     * The results of the STUN/TURN server and UPnP gateway discoveries made
+     * for the calls of this provider.
+     */
+    private IceHarvesterCache iceHarvesterCache = null;
+
+    /**
+     * Synchronization object for the creation of the
+     * <tt>iceHarvesterCache</tt>.
+     */
+    private final Object iceHarvesterCacheSyncRoot = new Object();
+
     /**
      * Stores user credentials for local use if user hasn't stored
      * its password.
@@ -1656,6 +1676,7 @@ public class ProtocolProviderServiceJabberImpl
                                           CoinIQ.NAMESPACE,
                                           new CoinIQProvider());
             supportedFeatures.add(URN_XMPP_JINGLE_COIN);
+            supportedFeatures.add(URN_XMPP_JINGLE_COIN_PARTIAL);
 
             //register our GTalk dialect provider
             providerManager.addIQProvider( SessionIQ.ELEMENT_NAME,
@@ -1867,6 +1888,15 @@ public class ProtocolProviderServiceJabberImpl
 
             disconnectAndCleanConnection();
 
+            synchronized(iceHarvesterCacheSyncRoot)
+            {
+                if(iceHarvesterCache != null)
+                {
+                    iceHarvesterCache.dispose();
+                    iceHarvesterCache = null;
+                }
+            }
+
             isInitialized = false;
         }
     }
@@ -2536,6 +2566,22 @@ public class ProtocolProviderServiceJabberImpl
         }
     }
 
+    /**
+     * Returns the results of the STUN/TURN server and UPnP gateway
+     * discoveries made for the calls of this provider.
+     *
+     * @return the <tt>IceHarvesterCache</tt> of this provider
+     */
+    public IceHarvesterCache getIceHarvesterCache()
+    {
+        synchronized(iceHarvesterCacheSyncRoot)
+        {
+            if(iceHarvesterCache == null)
+                iceHarvesterCache = new IceHarvesterCache();
+            return iceHarvesterCache;
+        }
+    }
+
     /**
      * Logs a specific message and associated <tt>Throwable</tt> cause as an
      * error using the current <tt>Logger</tt> and then throws a new
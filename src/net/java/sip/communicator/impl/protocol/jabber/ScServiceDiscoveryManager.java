@@ -602,6 +602,17 @@ public class ScServiceDiscoveryManager
      */
     public boolean supportsFeature(String jid, String feature)
     {
+        EntityCapsManager.Caps caps = capsManager.getCapsByUser(jid);
+
+        if (caps != null)
+        {
+            Boolean supported
+                = EntityCapsManager.supportsFeature(caps, feature);
+
+            if (supported != null)
+                return supported;
+        }
+
         DiscoverInfo info;
 
         try
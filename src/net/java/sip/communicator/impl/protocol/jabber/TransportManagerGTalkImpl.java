@@ -489,7 +489,8 @@ public class TransportManagerGTalkImpl
 
         if(accID.isUPNPEnabled())
         {
-            UPNPHarvester harvester = new UPNPHarvester();
+            UPNPHarvester harvester
+                = provider.getIceHarvesterCache().getUPNPHarvester();
 
             if(harvester != null)
             {
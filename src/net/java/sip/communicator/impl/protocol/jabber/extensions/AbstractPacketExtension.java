@@ -23,7 +23,8 @@ import org.jivesoftware.smack.packet.*;
  * @author Lyubomir Marinov
  */
 public abstract class AbstractPacketExtension
-    implements PacketExtension
+    implements PacketExtension,
+               XMLAppendable
 {
     /**
      * The name space of this packet extension. Should remain <tt>null</tt> if
@@ -108,20 +109,22 @@ public abstract class AbstractPacketExtension
     {
         StringBuilder bldr = new StringBuilder();
 
-        bldr.append("<").append(getElementName()).append(" ");
-
-        if(getNamespace() != null)
-            bldr.append("xmlns='").append(getNamespace()).append("'");
+        toXML(bldr);
+        return bldr.toString();
+    }
 
-        //add the rest of the attributes if any
-        for(Map.Entry<String, String> entry : attributes.entrySet())
-        {
-            bldr.append(" ")
-                    .append(entry.getKey())
-                        .append("='")
-                            .append(entry.getValue())
-                                .append("'");
-        }
+    /**
+     * Appends the XML representation of this extension to <tt>bldr</tt>.
+     * Descendants that need to customize their XML should override this
+     * method rather than {@link #toXML()} so that they can be serialized
+     * together with their parent into a single buffer.
+     *
+     * @param bldr the <tt>StringBuilder</tt> to append the XML
+     * representation of this extension to
+     */
+    public void toXML(StringBuilder bldr)
+    {
+        appendStartTag(bldr);
 
         //add child elements if any
         List<? extends PacketExtension> childElements = getChildExtensions();
@@ -132,7 +135,7 @@ public abstract class AbstractPacketExtension
             if ((text == null) || (text.length() == 0))
             {
                 bldr.append("/>");
-                return bldr.toString();
+                return;
             }
             else
                 bldr.append('>');
@@ -145,13 +148,13 @@ public abstract class AbstractPacketExtension
                         && ((text == null) || (text.length() == 0)))
                 {
                     bldr.append("/>");
-                    return bldr.toString();
+                    return;
                 }
                 else
                 {
                     bldr.append(">");
                     for(PacketExtension packExt : childElements)
-                        bldr.append(packExt.toXML());
+                        appendXML(bldr, packExt);
                 }
             }
         }
@@ -161,8 +164,47 @@ public abstract class AbstractPacketExtension
             bldr.append(text);
 
         bldr.append("</").append(getElementName()).append(">");
+    }
 
-        return bldr.toString();
+    /**
+     * Appends the start tag of this element to <tt>bldr</tt>, i.e. its name,
+     * namespace and attributes, without the closing <tt>&gt;</tt> or
+     * <tt>/&gt;</tt>.
+     *
+     * @param bldr the <tt>StringBuilder</tt> to append the start tag to
+     */
+    protected void appendStartTag(StringBuilder bldr)
+    {
+        bldr.append("<").append(getElementName()).append(" ");
+
+        if(getNamespace() != null)
+            bldr.append("xmlns='").append(getNamespace()).append("'");
+
+        //add the rest of the attributes if any
+        for(Map.Entry<String, String> entry : attributes.entrySet())
+        {
+            bldr.append(" ")
+                    .append(entry.getKey())
+                        .append("='")
+                            .append(entry.getValue())
+                                .append("'");
+        }
+    }
+
+    /**
+     * Appends the XML representation of <tt>extension</tt> to <tt>xml</tt>,
+     * without going through an intermediate <tt>String</tt> when the
+     * extension is an {@link XMLAppendable}.
+     *
+     * @param xml the <tt>StringBuilder</tt> to append to
+     * @param extension the extension to append
+     */
+    public static void appendXML(StringBuilder xml, PacketExtension extension)
+    {
+        if(extension instanceof XMLAppendable)
+            ((XMLAppendable) extension).toXML(xml);
+        else
+            xml.append(extension.toXML());
     }
 
     /**
@@ -420,10 +462,10 @@ public abstract class AbstractPacketExtension
             Class<T> type)
     {
         List<? extends PacketExtension> childExtensions = getChildExtensions();
-        List<T> result = new ArrayList<T>();
+        List<T> result = null;
 
         if (childExtensions == null)
-            return result;
+            return Collections.emptyList();
 
         synchronized (childExtensions)
         {
@@ -434,11 +476,15 @@ public abstract class AbstractPacketExtension
                     @SuppressWarnings("unchecked")
                     T extensionAsType = (T) extension;
 
+                    if(result == null)
+                        result = new ArrayList<T>();
                     result.add(extensionAsType);
                 }
             }
         }
 
+        if(result == null)
+            return Collections.emptyList();
         return result;
     }
 }
@@ -0,0 +1,29 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.protocol.jabber.extensions;
+
+/**
+ * Implemented by packet extensions which are able to append their XML
+ * representation to a <tt>StringBuilder</tt> provided by the caller. A tree
+ * of such extensions is serialized into a single buffer instead of having
+ * every element build and return its own <tt>String</tt> only for its parent
+ * to copy it.
+ *
+ * @author Emil Ivov
+ */
+public interface XMLAppendable
+{
+    /**
+     * Appends the XML representation of this extension to <tt>xml</tt>.
+     * The appended text is the same as the one returned by
+     * <tt>toXML()</tt>.
+     *
+     * @param xml the <tt>StringBuilder</tt> to append the XML representation
+     * of this extension to
+     */
+    public void toXML(StringBuilder xml);
+}
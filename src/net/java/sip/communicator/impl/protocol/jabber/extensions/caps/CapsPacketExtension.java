@@ -6,6 +6,8 @@
  */
 package net.java.sip.communicator.impl.protocol.jabber.extensions.caps;
 
+import net.java.sip.communicator.impl.protocol.jabber.extensions.*;
+
 import org.jivesoftware.smack.packet.*;
 
 /**
@@ -15,7 +17,9 @@ import org.jivesoftware.smack.packet.*;
  *
  * @author Emil Ivov
  */
-public class CapsPacketExtension implements PacketExtension
+public class CapsPacketExtension
+    implements PacketExtension,
+               XMLAppendable
 {
     /**
      * The hash method we use for generating the ver string.
@@ -209,6 +213,21 @@ public class CapsPacketExtension implements PacketExtension
      * @return this packet extension as an XML <tt>String</tt>.
      */
     public String toXML()
+    {
+        StringBuilder bldr = new StringBuilder();
+
+        toXML(bldr);
+        return bldr.toString();
+    }
+
+    /**
+     * Appends the XML representation of the caps packet extension to
+     * <tt>bldr</tt>.
+     *
+     * @param bldr the <tt>StringBuilder</tt> to append the XML
+     * representation of this extension to
+     */
+    public void toXML(StringBuilder bldr)
     {
         /* this is the kind of string that we will be generating here:
          *
@@ -220,16 +239,13 @@ public class CapsPacketExtension implements PacketExtension
          * </presence>
          */
 
-        StringBuilder bldr
-            = new StringBuilder("<c xmlns='" + getNamespace() + "' ");
+        bldr.append("<c xmlns='").append(getNamespace()).append("' ");
 
         if(getExtensions() != null)
-            bldr.append("ext='" + getExtensions() + "' ");
+            bldr.append("ext='").append(getExtensions()).append("' ");
 
-        bldr.append("hash='" + getHash() + "' ");
-        bldr.append("node='" + getNode() + "' ");
-        bldr.append("ver='"  + getVersion() + "'/>");
-
-        return bldr.toString();
+        bldr.append("hash='").append(getHash()).append("' ");
+        bldr.append("node='").append(getNode()).append("' ");
+        bldr.append("ver='").append(getVersion()).append("'/>");
     }
 }
@@ -6,7 +6,6 @@
  */
 package net.java.sip.communicator.impl.protocol.jabber.extensions.caps;
 
-import java.io.*;
 import java.lang.reflect.*;
 import java.security.*;
 import java.util.*;
@@ -16,7 +15,6 @@ import net.java.sip.communicator.impl.protocol.jabber.*;
 import net.java.sip.communicator.service.protocol.*;
 import net.java.sip.communicator.util.*;
 
-import org.jitsi.service.configuration.*;
 import org.jivesoftware.smack.*;
 import org.jivesoftware.smack.filter.*;
 import org.jivesoftware.smack.packet.*;
@@ -25,8 +23,6 @@ import org.jivesoftware.smack.util.Base64;
 import org.jivesoftware.smack.util.StringUtils;
 import org.jivesoftware.smackx.*;
 import org.jivesoftware.smackx.packet.*;
-import org.xmlpull.mxp1.*;
-import org.xmlpull.v1.*;
 // disambiguation
 
 /**
@@ -46,14 +42,6 @@ public class EntityCapsManager
     private static final Logger logger
         = Logger.getLogger(EntityCapsManager.class);
 
-    /**
-     * The prefix of the <tt>ConfigurationService</tt> properties which persist
-     * {@link #caps2discoverInfo}.
-     */
-    private static final String CAPS_PROPERTY_NAME_PREFIX
-        = "net.java.sip.communicator.impl.protocol.jabber.extensions.caps."
-            + "EntityCapsManager.CAPS.";
-
     /**
      * An empty array of <tt>UserCapsNodeListener</tt> elements explicitly
      * defined in order to reduce unnecessary allocations.
@@ -76,9 +64,15 @@ public class EntityCapsManager
      * values for different entity capabilities constructed using different hash
      * methods.
      */
-    private static final Map<Caps, DiscoverInfo> caps2discoverInfo
+    private static final ConcurrentMap<Caps, DiscoverInfo> caps2discoverInfo
         = new ConcurrentHashMap<Caps, DiscoverInfo>();
 
+    /**
+     * Remembers the entity capabilities across application instances in order
+     * to not query for them over the network.
+     */
+    private static final EntityCapsStore capsStore = new EntityCapsStore();
+
     /**
      * Map of Full JID -&gt; DiscoverInfo/null. In case of c2s connection the
      * key is formed as user@server/resource (resource is required) In case of
@@ -136,43 +130,15 @@ public class EntityCapsManager
          */
         info.setNode(caps.getNodeVer());
 
-        synchronized (caps2discoverInfo)
-        {
-            DiscoverInfo oldInfo = caps2discoverInfo.put(caps, info);
-
-            /*
-             * If the specified info is a new association for the specified
-             * node, remember it across application instances in order to not
-             * query for it over the network.
-             */
-            if ((oldInfo == null) || !oldInfo.equals(info))
-            {
-                String xml = info.getChildElementXML();
-
-                if ((xml != null) && (xml.length() != 0))
-                {
-                    JabberActivator
-                        .getConfigurationService()
-                            .setProperty(getCapsPropertyName(caps), xml);
-                }
-            }
-        }
-    }
+        DiscoverInfo oldInfo = caps2discoverInfo.put(caps, info);
 
-    /**
-     * Gets the name of the property in the <tt>ConfigurationService</tt> which
-     * is or is to be associated with a specific <tt>Caps</tt> value.
-     *
-     * @param caps the <tt>Caps</tt> value for which the associated
-     * <tt>ConfigurationService</tt> property name is to be returned
-     * @return the name of the property in the <tt>ConfigurationService</tt>
-     * which is or is to be associated with a specific <tt>Caps</tt> value
-     */
-    private static String getCapsPropertyName(Caps caps)
-    {
-        return
-            CAPS_PROPERTY_NAME_PREFIX
-                + caps.node + '#' + caps.hash + '#' + caps.ver;
+        /*
+         * If the specified info is a new association for the specified
+         * node, remember it across application instances in order to not
+         * query for it over the network.
+         */
+        if ((oldInfo == null) || !oldInfo.equals(info))
+            capsStore.put(caps, info);
     }
 
     /**
@@ -410,91 +376,81 @@ public class EntityCapsManager
      */
     public static DiscoverInfo getDiscoverInfoByCaps(Caps caps)
     {
-        synchronized (caps2discoverInfo)
+        DiscoverInfo discoverInfo = caps2discoverInfo.get(caps);
+
+        /*
+         * If we don't have the discoverInfo in the runtime cache yet, we
+         * may have it remembered in a previous application instance.
+         */
+        if (discoverInfo == null)
         {
-            DiscoverInfo discoverInfo = caps2discoverInfo.get(caps);
+            EntityCapsStore.Record record = capsStore.get(caps);
 
-            /*
-             * If we don't have the discoverInfo in the runtime cache yet, we
-             * may have it remembered in a previous application instance.
-             */
-            if (discoverInfo == null)
+            if (record != null)
             {
-                ConfigurationService configurationService
-                    = JabberActivator.getConfigurationService();
-                String capsPropertyName = getCapsPropertyName(caps);
-                String xml = configurationService.getString(capsPropertyName);
+                discoverInfo = record.toDiscoverInfo();
 
-                if ((xml != null) && (xml.length() != 0))
+                if (caps.isValid(discoverInfo))
                 {
-                    IQProvider discoverInfoProvider
-                        = (IQProvider)
-                            ProviderManager.getInstance().getIQProvider(
-                                    "query",
-                                    "http://jabber.org/protocol/disco#info");
+                    DiscoverInfo oldInfo
+                        = caps2discoverInfo.putIfAbsent(caps, discoverInfo);
 
-                    if (discoverInfoProvider != null)
-                    {
-                        XmlPullParser parser = new MXParser();
-
-                        try
-                        {
-                            parser.setFeature(
-                                    XmlPullParser.FEATURE_PROCESS_NAMESPACES,
-                                    true);
-                            parser.setInput(new StringReader(xml));
-                            // Start the parser.
-                            parser.next();
-                        }
-                        catch (XmlPullParserException xppex)
-                        {
-                            parser = null;
-                        }
-                        catch (IOException ioex)
-                        {
-                            parser = null;
-                        }
-
-                        if (parser != null)
-                        {
-                            try
-                            {
-                                discoverInfo
-                                    = (DiscoverInfo)
-                                        discoverInfoProvider.parseIQ(parser);
-                            }
-                            catch (Exception ex)
-                            {
-                            }
-
-                            if (discoverInfo != null)
-                            {
-                                if (caps.isValid(discoverInfo))
-                                    caps2discoverInfo.put(caps, discoverInfo);
-                                else
-                                {
-                                    logger.error(
-                                            "Invalid DiscoverInfo for "
-                                                + caps.getNodeVer()
-                                                + ": "
-                                                + discoverInfo);
-                                    /*
-                                     * The discoverInfo doesn't seem valid
-                                     * according to the caps which means that we
-                                     * must have stored invalid information.
-                                     * Delete the invalid information in order
-                                     * to not try to validate it again.
-                                     */
-                                    configurationService.removeProperty(
-                                            capsPropertyName);
-                                }
-                            }
-                        }
-                    }
+                    if (oldInfo != null)
+                        discoverInfo = oldInfo;
+                }
+                else
+                {
+                    logger.error(
+                            "Invalid DiscoverInfo for " + caps.getNodeVer()
+                                + ": " + discoverInfo);
+                    /*
+                     * The discoverInfo doesn't seem valid according to the
+                     * caps which means that we must have stored invalid
+                     * information. Delete the invalid information in order to
+                     * not try to validate it again.
+                     */
+                    capsStore.remove(caps);
+                    discoverInfo = null;
                 }
             }
-            return discoverInfo;
         }
+        return discoverInfo;
+    }
+
+    /**
+     * Determines whether the entity with the specified <tt>Caps</tt> supports
+     * a specific feature without creating its <tt>DiscoverInfo</tt>.
+     *
+     * @param caps the <tt>Caps</tt> i.e. the node, the hash and the ver
+     * @param feature the feature to check for
+     * @return <tt>Boolean.TRUE</tt> or <tt>Boolean.FALSE</tt> if the entity
+     * capabilities for <tt>caps</tt> are known and valid, <tt>null</tt>
+     * otherwise
+     */
+    public static Boolean supportsFeature(Caps caps, String feature)
+    {
+        /*
+         * A record read from the store is only trusted once it has been
+         * validated against the caps, i.e. once its DiscoverInfo is in the
+         * runtime cache. getDiscoverInfoByCaps validates it the first time and
+         * deletes it if it's invalid.
+         */
+        DiscoverInfo discoverInfo = caps2discoverInfo.get(caps);
+
+        if (discoverInfo == null)
+        {
+            discoverInfo = getDiscoverInfoByCaps(caps);
+            if (discoverInfo == null)
+                return null;
+        }
+
+        EntityCapsStore.Record record = capsStore.get(caps);
+
+        return
+            Boolean.valueOf(
+                    (record == null)
+                        ? discoverInfo.containsFeature(feature)
+                        : record.containsFeature(feature));
     }
 
     /**
@@ -981,6 +937,42 @@ public class EntityCapsManager
             return nodeVer;
         }
 
+        /**
+         * Determines whether <tt>obj</tt> is a <tt>Caps</tt> with the same
+         * node, hash and ver as this one. The ext is not taken into account
+         * because it does not take part in the ver.
+         *
+         * @param obj the <tt>Object</tt> to compare with
+         * @return <tt>true</tt> if <tt>obj</tt> is equal to this <tt>Caps</tt>
+         */
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Caps))
+                return false;
+
+            Caps caps = (Caps) obj;
+
+            return
+                ver.equals(caps.ver)
+                    && hash.equals(caps.hash)
+                    && node.equals(caps.node);
+        }
+
+        /**
+         * Returns a hash code value for this <tt>Caps</tt>, consistent with
+         * {@link #equals(Object)}.
+         *
+         * @return a hash code value for this <tt>Caps</tt>
+         */
+        @Override
+        public int hashCode()
+        {
+            return nodeVer.hashCode() ^ hash.hashCode();
+        }
+
         /**
          * Determines whether a specific <tt>DiscoverInfo</tt> is valid
          * according to this <tt>Caps</tt> i.e. whether the
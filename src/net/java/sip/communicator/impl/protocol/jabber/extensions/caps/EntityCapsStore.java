@@ -0,0 +1,713 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.protocol.jabber.extensions.caps;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import net.java.sip.communicator.impl.protocol.jabber.*;
+import net.java.sip.communicator.util.*;
+
+import org.jitsi.service.configuration.*;
+import org.jitsi.service.fileaccess.*;
+import org.jivesoftware.smack.packet.*;
+import org.jivesoftware.smack.provider.*;
+import org.jivesoftware.smackx.*;
+import org.jivesoftware.smackx.packet.*;
+import org.xmlpull.mxp1.*;
+import org.xmlpull.v1.*;
+
+/**
+ * The on-disk database of the entity capabilities we have discovered, i.e.
+ * node#ver to identities, features and extended info. Entries are kept in a
+ * small binary file of their own rather than as disco#info XML in the
+ * <tt>ConfigurationService</tt>: the file is read once, the first time an
+ * entry is needed, and is rewritten in the background shortly after new
+ * entries have been added.
+ * <p>
+ * The features of every entry are also kept as a <tt>BitSet</tt> of interned
+ * feature ids so that feature checks do not need to go through the
+ * <tt>DiscoverInfo</tt> lists.
+ *
+ * @author Emil Ivov
+ */
+class EntityCapsStore
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>EntityCapsStore</tt> class for
+     * logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(EntityCapsStore.class);
+
+    /**
+     * The name of the file the entries are stored in.
+     */
+    private static final String FILE_NAME = "entitycaps.bin";
+
+    /**
+     * Identifies our file format.
+     */
+    private static final int MAGIC = 0x4A435053;
+
+    /**
+     * The version of our file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * How long (in ms) to wait after a change before writing the file, so
+     * that the entries discovered right after we log in are written at once.
+     */
+    private static final long SAVE_DELAY = 5000;
+
+    /**
+     * The prefix of the <tt>ConfigurationService</tt> properties which used to
+     * persist the entries before this store existed. They are moved into the
+     * store the first time it is loaded.
+     */
+    private static final String CAPS_PROPERTY_NAME_PREFIX
+        = "net.java.sip.communicator.impl.protocol.jabber.extensions.caps."
+            + "EntityCapsManager.CAPS.";
+
+    /**
+     * The ids of the features we know of. Every distinct feature string gets
+     * an id the first time it is seen and keeps it for the lifetime of the
+     * application.
+     */
+    private static final Map<String, Integer> featureIds
+        = new ConcurrentHashMap<String, Integer>();
+
+    /**
+     * The id to be given to the next feature.
+     */
+    private static final AtomicInteger nextFeatureId = new AtomicInteger();
+
+    /**
+     * The stored entries.
+     */
+    private final Map<EntityCapsManager.Caps, Record> records
+        = new ConcurrentHashMap<EntityCapsManager.Caps, Record>();
+
+    /**
+     * Whether the file has been read.
+     */
+    private volatile boolean loaded = false;
+
+    /**
+     * Whether a save of the file is scheduled.
+     */
+    private boolean savePending = false;
+
+    /**
+     * The timer which writes the file, created on first use.
+     */
+    private Timer saveTimer = null;
+
+    /**
+     * Returns the entry stored for <tt>caps</tt>.
+     *
+     * @param caps the node, hash and ver of the entry
+     * @return the entry stored for <tt>caps</tt> or <tt>null</tt>
+     */
+    public Record get(EntityCapsManager.Caps caps)
+    {
+        if (!loaded)
+            load();
+        return records.get(caps);
+    }
+
+    /**
+     * Stores the identities, features and extended info of <tt>info</tt> for
+     * <tt>caps</tt>.
+     *
+     * @param caps the node, hash and ver of the entry
+     * @param info the <tt>DiscoverInfo</tt> for <tt>caps</tt>
+     */
+    public void put(EntityCapsManager.Caps caps, DiscoverInfo info)
+    {
+        if (!loaded)
+            load();
+        records.put(caps, new Record(info));
+        scheduleSave();
+    }
+
+    /**
+     * Removes the entry stored for <tt>caps</tt>, if any.
+     *
+     * @param caps the node, hash and ver of the entry
+     */
+    public void remove(EntityCapsManager.Caps caps)
+    {
+        if (!loaded)
+            load();
+        if (records.remove(caps) != null)
+            scheduleSave();
+    }
+
+    /**
+     * Returns the id of <tt>feature</tt> if any entry has been seen with it.
+     *
+     * @param feature a feature
+     * @return the id of <tt>feature</tt>, or <tt>-1</tt> if no entry has it
+     */
+    static int getFeatureId(String feature)
+    {
+        Integer id = featureIds.get(feature);
+
+        return (id == null) ? -1 : id;
+    }
+
+    /**
+     * Returns the id of <tt>feature</tt>, assigning a new one if we haven't
+     * seen it before.
+     *
+     * @param feature a feature
+     * @return the id of <tt>feature</tt>
+     */
+    private static int internFeature(String feature)
+    {
+        Integer id = featureIds.get(feature);
+
+        if (id == null)
+        {
+            synchronized (featureIds)
+            {
+                id = featureIds.get(feature);
+                if (id == null)
+                {
+                    id = nextFeatureId.getAndIncrement();
+                    featureIds.put(feature, id);
+                }
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Returns the file the entries are stored in.
+     *
+     * @return the file the entries are stored in or <tt>null</tt> if it is
+     * not available
+     */
+    private static File getFile()
+    {
+        FileAccessService fileAccessService
+            = JabberActivator.getFileAccessService();
+
+        if (fileAccessService == null)
+            return null;
+        try
+        {
+            return fileAccessService.getPrivatePersistentFile(FILE_NAME);
+        }
+        catch (Exception e)
+        {
+            logger.error("Failed to get entity caps store file", e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the file and moves the entries still stored in the
+     * <tt>ConfigurationService</tt> into the store. Only done once.
+     */
+    private synchronized void load()
+    {
+        if (loaded)
+            return;
+
+        File file = getFile();
+
+        if ((file != null) && file.exists())
+        {
+            DataInputStream in = null;
+
+            try
+            {
+                in = new DataInputStream(
+                        new BufferedInputStream(new FileInputStream(file)));
+                read(in);
+            }
+            catch (IOException e)
+            {
+                logger.warn("Failed to read entity caps store " + file, e);
+            }
+            finally
+            {
+                if (in != null)
+                {
+                    try
+                    {
+                        in.close();
+                    }
+                    catch (IOException e)
+                    {
+                    }
+                }
+            }
+        }
+
+        if (migrateConfigurationProperties())
+            scheduleSave();
+
+        loaded = true;
+    }
+
+    /**
+     * Reads entries from <tt>in</tt>.
+     *
+     * @param in the stream to read from
+     * @throws IOException if <tt>in</tt> could not be read or is not in our
+     * format
+     */
+    private void read(DataInputStream in)
+        throws IOException
+    {
+        if ((in.readInt() != MAGIC) || (in.readInt() != VERSION))
+            throw new IOException("Unknown entity caps store format");
+
+        for (int count = in.readInt(); count > 0; count--)
+        {
+            String node = in.readUTF();
+            String hash = in.readUTF();
+            String ver = in.readUTF();
+
+            records.put(
+                    new EntityCapsManager.Caps(node, hash, ver, null),
+                    new Record(in));
+        }
+    }
+
+    /**
+     * Moves the entries persisted as disco#info XML in the
+     * <tt>ConfigurationService</tt> by previous versions into the store.
+     *
+     * @return <tt>true</tt> if any entry was moved
+     */
+    private boolean migrateConfigurationProperties()
+    {
+        ConfigurationService configurationService
+            = JabberActivator.getConfigurationService();
+
+        if (configurationService == null)
+            return false;
+
+        List<String> propertyNames
+            = configurationService.getPropertyNamesByPrefix(
+                    CAPS_PROPERTY_NAME_PREFIX,
+                    false);
+
+        if ((propertyNames == null) || propertyNames.isEmpty())
+            return false;
+
+        boolean migrated = false;
+
+        for (String propertyName : propertyNames)
+        {
+            String nodeHashVer
+                = propertyName.substring(CAPS_PROPERTY_NAME_PREFIX.length());
+            int verIndex = nodeHashVer.lastIndexOf('#');
+            int hashIndex
+                = (verIndex > 0) ? nodeHashVer.lastIndexOf('#', verIndex - 1)
+                    : -1;
+
+            if (hashIndex > 0)
+            {
+                EntityCapsManager.Caps caps
+                    = new EntityCapsManager.Caps(
+                            nodeHashVer.substring(0, hashIndex),
+                            nodeHashVer.substring(hashIndex + 1, verIndex),
+                            nodeHashVer.substring(verIndex + 1),
+                            null);
+                DiscoverInfo info
+                    = parseDiscoverInfo(
+                            configurationService.getString(propertyName));
+
+                if ((info != null) && caps.isValid(info))
+                {
+                    records.put(caps, new Record(info));
+                    migrated = true;
+                }
+            }
+            configurationService.removeProperty(propertyName);
+        }
+        return migrated;
+    }
+
+    /**
+     * Parses disco#info XML as persisted by previous versions.
+     *
+     * @param xml the disco#info XML
+     * @return the parsed <tt>DiscoverInfo</tt> or <tt>null</tt>
+     */
+    private static DiscoverInfo parseDiscoverInfo(String xml)
+    {
+        if ((xml == null) || (xml.length() == 0))
+            return null;
+
+        IQProvider discoverInfoProvider
+            = (IQProvider)
+                ProviderManager.getInstance().getIQProvider(
+                        "query",
+                        "http://jabber.org/protocol/disco#info");
+
+        if (discoverInfoProvider == null)
+            return null;
+
+        try
+        {
+            XmlPullParser parser = new MXParser();
+
+            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+            parser.setInput(new StringReader(xml));
+            // Start the parser.
+            parser.next();
+            return (DiscoverInfo) discoverInfoProvider.parseIQ(parser);
+        }
+        catch (Exception ex)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Schedules the file to be written unless it already is.
+     */
+    private synchronized void scheduleSave()
+    {
+        if (savePending)
+            return;
+        savePending = true;
+
+        if (saveTimer == null)
+            saveTimer = new Timer("EntityCapsStore", true);
+        saveTimer.schedule(
+                new TimerTask()
+                {
+                    @Override
+                    public void run()
+                    {
+                        synchronized (EntityCapsStore.this)
+                        {
+                            savePending = false;
+                        }
+                        save();
+                    }
+                },
+                SAVE_DELAY);
+    }
+
+    /**
+     * Writes all entries to the file.
+     */
+    private void save()
+    {
+        File file = getFile();
+
+        if (file == null)
+            return;
+
+        FailSafeTransaction trans
+            = JabberActivator.getFileAccessService()
+                .createFailSafeTransaction(file);
+        DataOutputStream out = null;
+
+        try
+        {
+            trans.beginTransaction();
+
+            // snapshot the entries, they may change while we write them
+            List<Map.Entry<EntityCapsManager.Caps, Record>> entries
+                = new ArrayList<Map.Entry<EntityCapsManager.Caps, Record>>(
+                        records.entrySet());
+
+            out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(file)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<EntityCapsManager.Caps, Record> entry : entries)
+            {
+                EntityCapsManager.Caps caps = entry.getKey();
+
+                out.writeUTF(caps.node);
+                out.writeUTF(caps.hash);
+                out.writeUTF(caps.ver);
+                entry.getValue().write(out);
+            }
+            out.close();
+            out = null;
+
+            trans.commit();
+        }
+        catch (IOException e)
+        {
+            logger.error("Failed to write entity caps store " + file, e);
+            try
+            {
+                if (out != null)
+                    out.close();
+                trans.rollback();
+            }
+            catch (IOException ioe)
+            {
+            }
+        }
+    }
+
+    /**
+     * Writes a <tt>String</tt> which may be <tt>null</tt>.
+     *
+     * @param out the stream to write to
+     * @param s the <tt>String</tt> to write
+     * @throws IOException if writing fails
+     */
+    private static void writeString(DataOutputStream out, String s)
+        throws IOException
+    {
+        out.writeBoolean(s != null);
+        if (s != null)
+            out.writeUTF(s);
+    }
+
+    /**
+     * Reads a <tt>String</tt> written by
+     * {@link #writeString(DataOutputStream, String)}.
+     *
+     * @param in the stream to read from
+     * @return the <tt>String</tt> read, possibly <tt>null</tt>
+     * @throws IOException if reading fails
+     */
+    private static String readString(DataInputStream in)
+        throws IOException
+    {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * The identities, features and extended info stored for one node#ver.
+     * Records are immutable, a new <tt>DiscoverInfo</tt> is created from one
+     * when it is needed.
+     */
+    static class Record
+    {
+        /**
+         * The identities as category, name and type triples.
+         */
+        private final String[] identities;
+
+        /**
+         * The features.
+         */
+        private final String[] features;
+
+        /**
+         * The ids of {@link #features}.
+         */
+        private final BitSet featureBits = new BitSet();
+
+        /**
+         * The extended info as one entry per data form, each entry being its
+         * type followed by the variable, type and values of each field.
+         */
+        private final List<List<String[]>> forms;
+
+        /**
+         * Creates a record from a <tt>DiscoverInfo</tt>.
+         *
+         * @param info the <tt>DiscoverInfo</tt>
+         */
+        Record(DiscoverInfo info)
+        {
+            List<String> identities = new ArrayList<String>();
+            Iterator<DiscoverInfo.Identity> identityIter
+                = info.getIdentities();
+
+            while (identityIter.hasNext())
+            {
+                DiscoverInfo.Identity identity = identityIter.next();
+
+                identities.add(identity.getCategory());
+                identities.add(identity.getName());
+                identities.add(identity.getType());
+            }
+            this.identities = identities.toArray(new String[identities.size()]);
+
+            List<String> features = new ArrayList<String>();
+            Iterator<DiscoverInfo.Feature> featureIter = info.getFeatures();
+
+            while (featureIter.hasNext())
+                features.add(featureIter.next().getVar());
+            this.features = features.toArray(new String[features.size()]);
+
+            forms = new ArrayList<List<String[]>>();
+            for (PacketExtension extension : info.getExtensions())
+            {
+                if (!(extension instanceof DataForm))
+                    continue;
+
+                DataForm dataForm = (DataForm) extension;
+                List<String[]> form = new ArrayList<String[]>();
+                Iterator<FormField> fieldIter = dataForm.getFields();
+
+                form.add(new String[] { dataForm.getType() });
+                while (fieldIter.hasNext())
+                {
+                    FormField field = fieldIter.next();
+                    List<String> values = new ArrayList<String>();
+                    Iterator<String> valueIter = field.getValues();
+
+                    values.add(field.getVariable());
+                    values.add(field.getType());
+                    while (valueIter.hasNext())
+                        values.add(valueIter.next());
+                    form.add(values.toArray(new String[values.size()]));
+                }
+                forms.add(form);
+            }
+
+            indexFeatures();
+        }
+
+        /**
+         * Reads a record written by {@link #write(DataOutputStream)}.
+         *
+         * @param in the stream to read from
+         * @throws IOException if reading fails
+         */
+        Record(DataInputStream in)
+            throws IOException
+        {
+            identities = new String[in.readShort() * 3];
+            for (int i = 0; i < identities.length; i++)
+                identities[i] = readString(in);
+
+            features = new String[in.readShort()];
+            for (int i = 0; i < features.length; i++)
+                features[i] = in.readUTF();
+
+            int formCount = in.readShort();
+
+            forms = new ArrayList<List<String[]>>(formCount);
+            for (int i = 0; i < formCount; i++)
+            {
+                int fieldCount = in.readShort();
+                List<String[]> form = new ArrayList<String[]>(fieldCount);
+
+                for (int j = 0; j < fieldCount; j++)
+                {
+                    String[] values = new String[in.readShort()];
+
+                    for (int k = 0; k < values.length; k++)
+                        values[k] = readString(in);
+                    form.add(values);
+                }
+                forms.add(form);
+            }
+
+            indexFeatures();
+        }
+
+        /**
+         * Fills {@link #featureBits}.
+         */
+        private void indexFeatures()
+        {
+            for (String feature : features)
+                featureBits.set(internFeature(feature));
+        }
+
+        /**
+         * Writes this record.
+         *
+         * @param out the stream to write to
+         * @throws IOException if writing fails
+         */
+        void write(DataOutputStream out)
+            throws IOException
+        {
+            out.writeShort(identities.length / 3);
+            for (String s : identities)
+                writeString(out, s);
+
+            out.writeShort(features.length);
+            for (String feature : features)
+                out.writeUTF(feature);
+
+            out.writeShort(forms.size());
+            for (List<String[]> form : forms)
+            {
+                out.writeShort(form.size());
+                for (String[] values : form)
+                {
+                    out.writeShort(values.length);
+                    for (String s : values)
+                        writeString(out, s);
+                }
+            }
+        }
+
+        /**
+         * Determines whether this record has <tt>feature</tt>.
+         *
+         * @param feature the feature
+         * @return <tt>true</tt> if this record has <tt>feature</tt>
+         */
+        public boolean containsFeature(String feature)
+        {
+            int id = getFeatureId(feature);
+
+            return (id >= 0) && featureBits.get(id);
+        }
+
+        /**
+         * Creates a new <tt>DiscoverInfo</tt> with the identities, features
+         * and extended info of this record.
+         *
+         * @return a new <tt>DiscoverInfo</tt>
+         */
+        public DiscoverInfo toDiscoverInfo()
+        {
+            DiscoverInfo info = new DiscoverInfo();
+
+            for (int i = 0; i < identities.length; i += 3)
+            {
+                DiscoverInfo.Identity identity
+                    = new DiscoverInfo.Identity(
+                            identities[i],
+                            identities[i + 1]);
+
+                identity.setType(identities[i + 2]);
+                info.addIdentity(identity);
+            }
+
+            for (String feature : features)
+                info.addFeature(feature);
+
+            for (List<String[]> form : forms)
+            {
+                DataForm dataForm = new DataForm(form.get(0)[0]);
+
+                for (int i = 1; i < form.size(); i++)
+                {
+                    String[] values = form.get(i);
+                    FormField field = new FormField(values[0]);
+
+                    field.setType(values[1]);
+                    for (int j = 2; j < values.length; j++)
+                        field.addValue(values[j]);
+                    dataForm.addField(field);
+                }
+                info.addExtension(dataForm);
+            }
+            return info;
+        }
+    }
+}
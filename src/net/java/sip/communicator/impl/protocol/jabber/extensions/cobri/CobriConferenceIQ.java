@@ -433,7 +433,7 @@ public class CobriConferenceIQ
             {
                 xml.append('>');
                 for (PayloadTypePacketExtension payloadType : payloadTypes)
-                    xml.append(payloadType.toXML());
+                    payloadType.toXML(xml);
                 xml.append("</").append(ELEMENT_NAME).append('>');
             }
         }
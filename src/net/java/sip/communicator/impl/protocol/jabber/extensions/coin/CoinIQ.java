@@ -6,6 +6,8 @@
  */
 package net.java.sip.communicator.impl.protocol.jabber.extensions.coin;
 
+import net.java.sip.communicator.impl.protocol.jabber.extensions.*;
+
 import org.jivesoftware.smack.packet.*;
 
 /**
@@ -180,7 +182,7 @@ public class CoinIQ
             bldr.append(">");
             for(PacketExtension pe : getExtensions())
             {
-                bldr.append(pe.toXML());
+                AbstractPacketExtension.appendXML(bldr, pe);
             }
             bldr.append("</").append(ELEMENT_NAME).append(">");
         }
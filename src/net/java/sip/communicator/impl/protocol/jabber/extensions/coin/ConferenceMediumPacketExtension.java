@@ -137,29 +137,15 @@ public class ConferenceMediumPacketExtension
     }
 
     /**
-     * Get an XML string representation.
+     * Appends the XML representation of this extension to <tt>bldr</tt>.
      *
-     * @return XML string representation
+     * @param bldr the <tt>StringBuilder</tt> to append the XML
+     * representation of this extension to
      */
     @Override
-    public String toXML()
+    public void toXML(StringBuilder bldr)
     {
-        StringBuilder bldr = new StringBuilder();
-
-        bldr.append("<").append(getElementName()).append(" ");
-
-        if(getNamespace() != null)
-            bldr.append("xmlns='").append(getNamespace()).append("'");
-
-        //add the rest of the attributes if any
-        for(Map.Entry<String, String> entry : attributes.entrySet())
-        {
-            bldr.append(" ")
-                    .append(entry.getKey())
-                        .append("='")
-                            .append(entry.getValue())
-                                .append("'");
-        }
+        appendStartTag(bldr);
 
         bldr.append(">");
 
@@ -180,10 +166,9 @@ public class ConferenceMediumPacketExtension
 
         for(PacketExtension ext : getChildExtensions())
         {
-            bldr.append(ext.toXML());
+            appendXML(bldr, ext);
         }
 
         bldr.append("</").append(getElementName()).append(">");
-        return bldr.toString();
     }
 }
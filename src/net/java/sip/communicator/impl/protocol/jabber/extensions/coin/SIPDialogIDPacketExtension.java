@@ -6,8 +6,6 @@
  */
 package net.java.sip.communicator.impl.protocol.jabber.extensions.coin;
 
-import java.util.*;
-
 import net.java.sip.communicator.impl.protocol.jabber.extensions.*;
 
 import org.jivesoftware.smack.packet.*;
@@ -79,28 +77,15 @@ public class SIPDialogIDPacketExtension
     }
 
     /**
-     * Returns an XML representation of this extension.
+     * Appends the XML representation of this extension to <tt>bldr</tt>.
      *
-     * @return an XML representation of this extension.
+     * @param bldr the <tt>StringBuilder</tt> to append the XML
+     * representation of this extension to
      */
-    public String toXML()
+    @Override
+    public void toXML(StringBuilder bldr)
     {
-        StringBuilder bldr = new StringBuilder();
-
-        bldr.append("<").append(getElementName()).append(" ");
-
-        if(getNamespace() != null)
-            bldr.append("xmlns='").append(getNamespace()).append("'");
-
-        //add the rest of the attributes if any
-        for(Map.Entry<String, String> entry : attributes.entrySet())
-        {
-            bldr.append(" ")
-                    .append(entry.getKey())
-                        .append("='")
-                            .append(entry.getValue())
-                                .append("'");
-        }
+        appendStartTag(bldr);
 
         bldr.append(">");
 
@@ -126,11 +111,9 @@ public class SIPDialogIDPacketExtension
 
         for(PacketExtension ext : getChildExtensions())
         {
-            bldr.append(ext.toXML());
+            appendXML(bldr, ext);
         }
 
         bldr.append("</").append(getElementName()).append(">");
-
-        return bldr.toString();
     }
 }
@@ -101,28 +101,15 @@ public class URIPacketExtension
     }
 
     /**
-     * Returns an XML representation of this extension.
+     * Appends the XML representation of this extension to <tt>bldr</tt>.
      *
-     * @return an XML representation of this extension.
+     * @param bldr the <tt>StringBuilder</tt> to append the XML
+     * representation of this extension to
      */
-    public String toXML()
+    @Override
+    public void toXML(StringBuilder bldr)
     {
-        StringBuilder bldr = new StringBuilder();
-
-        bldr.append("<").append(getElementName()).append(" ");
-
-        if(getNamespace() != null)
-            bldr.append("xmlns='").append(getNamespace()).append("'");
-
-        //add the rest of the attributes if any
-        for(Map.Entry<String, String> entry : attributes.entrySet())
-        {
-            bldr.append(" ")
-                    .append(entry.getKey())
-                        .append("='")
-                            .append(entry.getValue())
-                                .append("'");
-        }
+        appendStartTag(bldr);
 
         bldr.append(">");
 
@@ -138,11 +125,9 @@ public class URIPacketExtension
 
         for(PacketExtension ext : getChildExtensions())
         {
-            bldr.append(ext.toXML());
+            appendXML(bldr, ext);
         }
 
         bldr.append("</").append(getElementName()).append(">");
-
-        return bldr.toString();
     }
 }
@@ -6,6 +6,8 @@
  */
 package net.java.sip.communicator.impl.protocol.jabber.extensions.geolocation;
 
+import net.java.sip.communicator.impl.protocol.jabber.extensions.*;
+
 import org.jivesoftware.smack.packet.*;
 
 /**
@@ -14,7 +16,8 @@ import org.jivesoftware.smack.packet.*;
  * @author Guillaume Schreiner
  */
 public class GeolocationPacketExtension
-    implements PacketExtension
+    implements PacketExtension,
+               XMLAppendable
 {
     //Names of keys used for storing geolocation data in geolocation Maps.
 
@@ -247,8 +250,20 @@ public class GeolocationPacketExtension
      */
     public String toXML()
     {
-        StringBuffer buf = new StringBuffer();
+        StringBuilder buf = new StringBuilder();
 
+        toXML(buf);
+        return buf.toString();
+    }
+
+    /**
+     * Appends the XML representation of the PacketExtension to <tt>buf</tt>.
+     *
+     * @param buf the <tt>StringBuilder</tt> to append the packet extension
+     * as XML to
+     */
+    public void toXML(StringBuilder buf)
+    {
         // open extension
         buf.append("<").append(getElementName()).
             append(" xmlns=\"").append(getNamespace()).append("\">");
@@ -275,23 +290,21 @@ public class GeolocationPacketExtension
 
         // close extension
         buf.append("</").append(getElementName()).append(">");
-
-        return buf.toString();
     }
 
     /**
      * Creates the xml <tt>String</tt> corresponding to the specified element
-     * and value and addsthem to the <tt>buff</tt> StringBuffer.
+     * and value and addsthem to the <tt>buff</tt> StringBuilder.
      *
-     * @param buff the <tt>StringBuffer</tt> to add the element and value to.
+     * @param buff the <tt>StringBuilder</tt> to add the element and value to.
      * @param element the name of the geolocation element that we're adding.
      * @param value the value of the element we're addding to the xml buffer.
-     * @return the <tt>StringBuffer</tt> that we've added the element and its
+     * @return the <tt>StringBuilder</tt> that we've added the element and its
      * value to.
      */
-    private StringBuffer addXmlElement(StringBuffer buff,
-                                       String element,
-                                       String value)
+    private StringBuilder addXmlElement(StringBuilder buff,
+                                        String element,
+                                        String value)
     {
         if (value != null)
         {
@@ -307,18 +320,18 @@ public class GeolocationPacketExtension
     /**
      * Creates the xml <tt>String</tt> corresponding to the specified element
      * and its float value and adds them to the <tt>buf</tt>
-     * <tt>StringBuffer</tt>.
+     * <tt>StringBuilder</tt>.
      *
-     * @param buff the <tt>StringBuffer</tt> to add the element and value to.
+     * @param buff the <tt>StringBuilder</tt> to add the element and value to.
      * @param element the name of the geolocation element that we're adding.
      * @param value the float value of the element we're addding to the xml
      * buffer.
-     * @return the <tt>StringBuffer</tt> that we've added the element and its
+     * @return the <tt>StringBuilder</tt> that we've added the element and its
      * value to.
      */
-    private StringBuffer addFloatXmlElement(StringBuffer buff,
-                                            String element,
-                                            float value)
+    private StringBuilder addFloatXmlElement(StringBuilder buff,
+                                             String element,
+                                             float value)
     {
 
         if (value != -1)
@@ -210,7 +210,7 @@ public class SessionIQ
 
             //reason
             if (reason != null)
-                bldr.append(reason.toXML());
+                reason.toXML(bldr);
 
             // extensions
             if ((extensionsXML != null) && (extensionsXML.length() != 0))
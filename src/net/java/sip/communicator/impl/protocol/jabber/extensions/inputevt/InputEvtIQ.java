@@ -86,7 +86,7 @@ public class InputEvtIQ extends IQ
             bldr.append(">");
 
             for(RemoteControlExtension p : remoteControls)
-                bldr.append(p.toXML());
+                p.toXML(bldr);
 
             bldr.append("</" + ELEMENT_NAME + ">");
         }
@@ -9,6 +9,8 @@ package net.java.sip.communicator.impl.protocol.jabber.extensions.inputevt;
 import java.awt.*;
 import java.awt.event.*;
 
+import net.java.sip.communicator.impl.protocol.jabber.extensions.*;
+
 import org.jivesoftware.smack.packet.*;
 
 /**
@@ -17,7 +19,8 @@ import org.jivesoftware.smack.packet.*;
  * @author Sebastien Vincent
  */
 public class RemoteControlExtension
-    implements PacketExtension
+    implements PacketExtension,
+               XMLAppendable
 {
     /**
      * AWT event that represents our <tt>RemoteControlExtension</tt>.
@@ -113,11 +116,24 @@ public class RemoteControlExtension
      */
     public String toXML()
     {
-        String ret = null;
+        StringBuilder xml = new StringBuilder();
+
+        toXML(xml);
+        return (xml.length() == 0) ? null : xml.toString();
+    }
 
+    /**
+     * Appends the XML representation of this extension to <tt>xml</tt>.
+     * Nothing is appended if the event has no XML representation.
+     *
+     * @param xml the <tt>StringBuilder</tt> to append the XML representation
+     * of this extension to
+     */
+    public void toXML(StringBuilder xml)
+    {
         if(event == null)
         {
-            return null;
+            return;
         }
 
         if(event instanceof MouseEvent)
@@ -133,21 +149,31 @@ public class RemoteControlExtension
                     Point p = e.getPoint();
                     double x = (p.getX() / videoPanelSize.width);
                     double y = (p.getY() / videoPanelSize.height);
-                    ret = RemoteControlExtensionProvider.getMouseMovedXML(x, y);
+                    RemoteControlExtensionProvider.appendXML(
+                            xml,
+                            RemoteControlExtensionProvider.ELEMENT_MOUSE_MOVE,
+                            "x", Double.toString(x),
+                            "y", Double.toString(y));
                 }
                 break;
             case MouseEvent.MOUSE_WHEEL:
                 MouseWheelEvent ew = (MouseWheelEvent)e;
-                ret = RemoteControlExtensionProvider.getMouseWheelXML(
-                        ew.getWheelRotation());
+                RemoteControlExtensionProvider.appendXML(
+                        xml,
+                        RemoteControlExtensionProvider.ELEMENT_MOUSE_WHEEL,
+                        "notch", Integer.toString(ew.getWheelRotation()));
                 break;
             case MouseEvent.MOUSE_PRESSED:
-                ret = RemoteControlExtensionProvider.getMousePressedXML(
-                        e.getModifiers());
+                RemoteControlExtensionProvider.appendXML(
+                        xml,
+                        RemoteControlExtensionProvider.ELEMENT_MOUSE_PRESS,
+                        "btns", Integer.toString(e.getModifiers()));
                 break;
             case MouseEvent.MOUSE_RELEASED:
-                ret = RemoteControlExtensionProvider.getMouseReleasedXML(
-                        e.getModifiers());
+                RemoteControlExtensionProvider.appendXML(
+                        xml,
+                        RemoteControlExtensionProvider.ELEMENT_MOUSE_RELEASE,
+                        "btns", Integer.toString(e.getModifiers()));
                 break;
             default:
                 break;
@@ -170,25 +196,32 @@ public class RemoteControlExtension
 
             if(keycode == 0)
             {
-                return null;
+                return;
             }
 
             switch(e.getID())
             {
             case KeyEvent.KEY_PRESSED:
-                ret = RemoteControlExtensionProvider.getKeyPressedXML(keycode);
+                RemoteControlExtensionProvider.appendXML(
+                        xml,
+                        RemoteControlExtensionProvider.ELEMENT_KEY_PRESS,
+                        "keycode", Integer.toString(keycode));
                 break;
             case KeyEvent.KEY_RELEASED:
-                ret = RemoteControlExtensionProvider.getKeyReleasedXML(keycode);
+                RemoteControlExtensionProvider.appendXML(
+                        xml,
+                        RemoteControlExtensionProvider.ELEMENT_KEY_RELEASE,
+                        "keycode", Integer.toString(keycode));
                 break;
             case KeyEvent.KEY_TYPED:
-                ret = RemoteControlExtensionProvider.getKeyTypedXML(keycode);
+                RemoteControlExtensionProvider.appendXML(
+                        xml,
+                        RemoteControlExtensionProvider.ELEMENT_KEY_TYPE,
+                        "keychar", Integer.toString(keycode));
                 break;
             default:
                 break;
             }
         }
-
-        return ret;
     }
 }
@@ -253,18 +253,46 @@ public class RemoteControlExtensionProvider
     }
 
     /**
-     * Appends a specific array of <tt>String</tt>s to a specific
-     * <tt>StringBuffer</tt>.
+     * Appends a remote-control XML element which contains a single event
+     * element to a specific <tt>StringBuilder</tt>.
      *
-     * @param stringBuffer the <tt>StringBuffer</tt> to append the specified
-     * <tt>strings</tt> to
-     * @param strings the <tt>String</tt> values to be appended to the specified
-     * <tt>stringBuffer</tt>
+     * @param xml the <tt>StringBuilder</tt> to append the remote-control XML
+     * element to
+     * @param element the name of the event element
+     * @param attributes the names and the values of the attributes of the
+     * event element, one after the other
      */
-    private static void append(StringBuffer stringBuffer, String... strings)
+    static void appendXML(
+            StringBuilder xml,
+            String element,
+            String... attributes)
     {
-        for (String str : strings)
-            stringBuffer.append(str);
+        xml.append('<').append(ELEMENT_REMOTE_CONTROL).append(" xmlns=\"")
+            .append(NAMESPACE).append("\">");
+        xml.append('<').append(element);
+        for (int i = 0; i < attributes.length; i += 2)
+        {
+            xml.append(' ').append(attributes[i]).append("=\"")
+                .append(attributes[i + 1]).append('"');
+        }
+        xml.append("/></").append(ELEMENT_REMOTE_CONTROL).append('>');
+    }
+
+    /**
+     * Returns a remote-control XML element which contains a single event
+     * element.
+     *
+     * @param element the name of the event element
+     * @param attributes the names and the values of the attributes of the
+     * event element, one after the other
+     * @return raw XML bytes
+     */
+    private static String getXML(String element, String... attributes)
+    {
+        StringBuilder xml = new StringBuilder();
+
+        appendXML(xml, element, attributes);
+        return xml.toString();
     }
 
     /**
@@ -275,15 +303,7 @@ public class RemoteControlExtensionProvider
      */
     public static String getKeyPressedXML(int keycode)
     {
-        StringBuffer xml = new StringBuffer();
-
-        append(xml, "<" + ELEMENT_REMOTE_CONTROL + " xmlns=\"" + NAMESPACE
-                + "\">");
-        // <key-press>
-        append(xml, "<", RemoteControlExtensionProvider.ELEMENT_KEY_PRESS);
-        append(xml, " keycode=\"", Integer.toString(keycode), "\"/>");
-        append(xml, "</" + ELEMENT_REMOTE_CONTROL + ">");
-        return xml.toString();
+        return getXML(ELEMENT_KEY_PRESS, "keycode", Integer.toString(keycode));
     }
 
     /**
@@ -294,15 +314,9 @@ public class RemoteControlExtensionProvider
      */
     public static String getKeyReleasedXML(int keycode)
     {
-        StringBuffer xml = new StringBuffer();
-
-        append(xml, "<" + ELEMENT_REMOTE_CONTROL + " xmlns=\"" + NAMESPACE
-                + "\">");
-        // <key-release>
-        append(xml, "<", RemoteControlExtensionProvider.ELEMENT_KEY_RELEASE);
-        append(xml, " keycode=\"", Integer.toString(keycode), "\"/>");
-        append(xml, "</" + ELEMENT_REMOTE_CONTROL + ">");
-        return xml.toString();
+        return getXML(
+                ELEMENT_KEY_RELEASE,
+                "keycode", Integer.toString(keycode));
     }
 
     /**
@@ -313,15 +327,7 @@ public class RemoteControlExtensionProvider
      */
     public static String getKeyTypedXML(int keycode)
     {
-        StringBuffer xml = new StringBuffer();
-
-        append(xml, "<" + ELEMENT_REMOTE_CONTROL + " xmlns=\"" + NAMESPACE
-                + "\">");
-        // <key-typed>
-        append(xml, "<", RemoteControlExtensionProvider.ELEMENT_KEY_TYPE);
-        append(xml, " keychar=\"", Integer.toString(keycode), "\"/>");
-        append(xml, "</" + ELEMENT_REMOTE_CONTROL + ">");
-        return xml.toString();
+        return getXML(ELEMENT_KEY_TYPE, "keychar", Integer.toString(keycode));
     }
 
     /**
@@ -332,15 +338,7 @@ public class RemoteControlExtensionProvider
      */
     public static String getMousePressedXML(int btns)
     {
-        StringBuffer xml = new StringBuffer();
-
-        append(xml, "<" + ELEMENT_REMOTE_CONTROL + " xmlns=\"" + NAMESPACE
-                + "\">");
-        // <mouse-press>
-        append(xml, "<", RemoteControlExtensionProvider.ELEMENT_MOUSE_PRESS);
-        append(xml, " btns=\"", Integer.toString(btns), "\"/>");
-        append(xml, "</" + ELEMENT_REMOTE_CONTROL + ">");
-        return xml.toString();
+        return getXML(ELEMENT_MOUSE_PRESS, "btns", Integer.toString(btns));
     }
 
     /**
@@ -351,15 +349,7 @@ public class RemoteControlExtensionProvider
      */
     public static String getMouseReleasedXML(int btns)
     {
-        StringBuffer xml = new StringBuffer();
-
-        append(xml, "<" + ELEMENT_REMOTE_CONTROL + " xmlns=\"" + NAMESPACE
-                + "\">");
-        // <mouse-release>
-        append(xml, "<", RemoteControlExtensionProvider.ELEMENT_MOUSE_RELEASE);
-        append(xml, " btns=\"", Integer.toString(btns), "\"/>");
-        append(xml, "</" + ELEMENT_REMOTE_CONTROL + ">");
-        return xml.toString();
+        return getXML(ELEMENT_MOUSE_RELEASE, "btns", Integer.toString(btns));
     }
 
     /**
@@ -371,16 +361,10 @@ public class RemoteControlExtensionProvider
      */
     public static String getMouseMovedXML(double x, double y)
     {
-        StringBuffer xml = new StringBuffer();
-
-        append(xml, "<" + ELEMENT_REMOTE_CONTROL + " xmlns=\"" + NAMESPACE
-                + "\">");
-        // <mouse-press>
-        append(xml, "<", RemoteControlExtensionProvider.ELEMENT_MOUSE_MOVE);
-        append(xml, " x=\"", Double.toString(x), "\" y=\"", Double.toString(y),
-                "\"/>");
-        append(xml, "</" + ELEMENT_REMOTE_CONTROL + ">");
-        return xml.toString();
+        return getXML(
+                ELEMENT_MOUSE_MOVE,
+                "x", Double.toString(x),
+                "y", Double.toString(y));
     }
 
     /**
@@ -391,14 +375,6 @@ public class RemoteControlExtensionProvider
      */
     public static String getMouseWheelXML(int notch)
     {
-        StringBuffer xml = new StringBuffer();
-
-        append(xml, "<" + ELEMENT_REMOTE_CONTROL + " xmlns=\"" + NAMESPACE
-                + "\">");
-        // <mouse-wheel>
-        append(xml, "<", RemoteControlExtensionProvider.ELEMENT_MOUSE_WHEEL);
-        append(xml, " notch=\"", Integer.toString(notch), "\"/>");
-        append(xml, "</" + ELEMENT_REMOTE_CONTROL + ">");
-        return xml.toString();
+        return getXML(ELEMENT_MOUSE_WHEEL, "notch", Integer.toString(notch));
     }
 }
@@ -10,6 +10,8 @@ import java.math.*;
 import java.security.*;
 import java.util.*;
 
+import net.java.sip.communicator.impl.protocol.jabber.extensions.*;
+
 import org.jivesoftware.smack.packet.*;
 
 /**
@@ -105,22 +107,23 @@ public class JingleIQ extends IQ
     @Override
     public String getChildElementXML()
     {
-        StringBuilder bldr = new StringBuilder("<" + ELEMENT_NAME);
+        StringBuilder bldr = new StringBuilder("<").append(ELEMENT_NAME);
 
-        bldr.append(" xmlns='" + NAMESPACE + "'");
+        bldr.append(" xmlns='").append(NAMESPACE).append('\'');
 
-        bldr.append(" " + ACTION_ATTR_NAME + "='" + getAction() + "'");
+        bldr.append(' ').append(ACTION_ATTR_NAME)
+            .append("='").append(getAction()).append('\'');
 
         if( initiator != null)
-            bldr.append(" " + INITIATOR_ATTR_NAME
-                                + "='" + getInitiator() + "'");
+            bldr.append(' ').append(INITIATOR_ATTR_NAME)
+                .append("='").append(getInitiator()).append('\'');
 
         if( responder != null)
-            bldr.append(" " + RESPONDER_ATTR_NAME
-                                + "='" + getResponder() + "'");
+            bldr.append(' ').append(RESPONDER_ATTR_NAME)
+                .append("='").append(getResponder()).append('\'');
 
-        bldr.append(" " + SID_ATTR_NAME
-                            + "='" + getSID() + "'");
+        bldr.append(' ').append(SID_ATTR_NAME)
+            .append("='").append(getSID()).append('\'');
 
         String extensionsXML = getExtensionsXML();
 
@@ -138,24 +141,24 @@ public class JingleIQ extends IQ
             //content
             for(ContentPacketExtension cpe : contentList)
             {
-                bldr.append(cpe.toXML());
+                cpe.toXML(bldr);
             }
 
             //reason
             if (reason != null)
-                bldr.append(reason.toXML());
+                reason.toXML(bldr);
 
             //session-info
             //XXX: this is RTP specific so we should probably handle it in a
             //subclass
             if (sessionInfo != null)
-                bldr.append(sessionInfo.toXML());
+                sessionInfo.toXML(bldr);
 
             // extensions
             if ((extensionsXML != null) && (extensionsXML.length() != 0))
                 bldr.append(extensionsXML);
 
-            bldr.append("</" + ELEMENT_NAME + ">");
+            bldr.append("</").append(ELEMENT_NAME).append('>');
         }
 
         return bldr.toString();
@@ -6,6 +6,8 @@
  */
 package net.java.sip.communicator.impl.protocol.jabber.extensions.jingle;
 
+import net.java.sip.communicator.impl.protocol.jabber.extensions.*;
+
 import org.jivesoftware.smack.packet.*;
 
 /**
@@ -17,7 +19,8 @@ import org.jivesoftware.smack.packet.*;
  * @author Lyubomir Marinov
  */
 public class ReasonPacketExtension
-    implements PacketExtension
+    implements PacketExtension,
+               XMLAppendable
 {
     /**
      * The name space (or rather lack thereof ) that the reason element
@@ -164,9 +167,24 @@ public class ReasonPacketExtension
      */
     public String toXML()
     {
-        StringBuilder bldr = new StringBuilder("<" + getElementName() + ">");
+        StringBuilder bldr = new StringBuilder();
+
+        toXML(bldr);
+        return bldr.toString();
+    }
+
+    /**
+     * Appends the XML representation of the PacketExtension to
+     * <tt>bldr</tt>.
+     *
+     * @param bldr the <tt>StringBuilder</tt> to append the XML
+     * representation of this extension to
+     */
+    public void toXML(StringBuilder bldr)
+    {
+        bldr.append('<').append(getElementName()).append('>');
 
-        bldr.append("<" + getReason().toString() + "/>");
+        bldr.append('<').append(getReason().toString()).append("/>");
 
         //add reason "text" if we have it
         if(getText() != null)
@@ -179,10 +197,9 @@ public class ReasonPacketExtension
         //add the extra element if it has been specified.
         if(getOtherExtension() != null)
         {
-            bldr.append(getOtherExtension().toXML());
+            AbstractPacketExtension.appendXML(bldr, getOtherExtension());
         }
 
-        bldr.append("</" + getElementName() + ">");
-        return bldr.toString();
+        bldr.append("</").append(getElementName()).append('>');
     }
 }
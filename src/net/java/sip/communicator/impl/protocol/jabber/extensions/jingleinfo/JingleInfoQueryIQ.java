@@ -6,6 +6,8 @@
  */
 package net.java.sip.communicator.impl.protocol.jabber.extensions.jingleinfo;
 
+import net.java.sip.communicator.impl.protocol.jabber.extensions.*;
+
 import org.jivesoftware.smack.packet.*;
 
 /**
@@ -51,7 +53,7 @@ public class JingleInfoQueryIQ
 
             for(PacketExtension pe : getExtensions())
             {
-                bld.append(pe.toXML());
+                AbstractPacketExtension.appendXML(bld, pe);
             }
 
             bld.append("</").append(ELEMENT_NAME).append(">");
@@ -62,14 +62,14 @@ public class RelayPacketExtension
     }
 
     /**
-     * Get an XML string representation.
+     * Appends the XML representation of this extension to <tt>bld</tt>.
      *
-     * @return XML string representation
+     * @param bld the <tt>StringBuilder</tt> to append the XML
+     * representation of this extension to
      */
-    public String toXML()
+    @Override
+    public void toXML(StringBuilder bld)
     {
-        StringBuilder bld = new StringBuilder();
-
         bld.append("<").append(ELEMENT_NAME).append(">");
 
         if(token != null)
@@ -81,10 +81,8 @@ public class RelayPacketExtension
 
         for(PacketExtension pe : getChildExtensions())
         {
-            bld.append(pe.toXML());
+            appendXML(bld, pe);
         }
         bld.append("</").append(ELEMENT_NAME).append(">");
-
-        return bld.toString();
     }
 }
@@ -6,6 +6,8 @@
  */
 package net.java.sip.communicator.impl.protocol.jabber.extensions.messagecorrection;
 
+import net.java.sip.communicator.impl.protocol.jabber.extensions.*;
+
 import org.jivesoftware.smack.packet.*;
 
 /**
@@ -14,7 +16,8 @@ import org.jivesoftware.smack.packet.*;
  * @author Ivan Vergiliev
  */
 public class MessageCorrectionExtension
-    implements PacketExtension
+    implements PacketExtension,
+               XMLAppendable
 {
     /**
      * The XMPP namespace that this extension belongs to.
@@ -83,8 +86,23 @@ public class MessageCorrectionExtension
      */
     public String toXML()
     {
-        return "<" + ELEMENT_NAME + " id='" + correctedMessageUID
-                + "' xmlns='" + NAMESPACE + "' />";
+        StringBuilder xml = new StringBuilder();
+
+        toXML(xml);
+        return xml.toString();
+    }
+
+    /**
+     * Appends an XML element representing this extension to <tt>xml</tt>.
+     *
+     * @param xml the <tt>StringBuilder</tt> to append the XML representation
+     * of this extension to
+     */
+    public void toXML(StringBuilder xml)
+    {
+        xml.append('<').append(ELEMENT_NAME).append(" id='")
+            .append(correctedMessageUID).append("' xmlns='").append(NAMESPACE)
+            .append("' />");
     }
 
     /**
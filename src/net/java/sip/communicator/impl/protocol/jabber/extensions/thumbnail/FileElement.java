@@ -6,6 +6,8 @@
  */
 package net.java.sip.communicator.impl.protocol.jabber.extensions.thumbnail;
 
+import net.java.sip.communicator.impl.protocol.jabber.extensions.*;
+
 import org.jivesoftware.smack.packet.*;
 import org.jivesoftware.smack.provider.*;
 import org.jivesoftware.smack.util.*;
@@ -22,7 +24,8 @@ import org.xmlpull.v1.*;
  */
 public class FileElement
     extends File
-    implements IQProvider
+    implements IQProvider,
+               XMLAppendable
 {
     private ThumbnailElement thumbnail;
 
@@ -80,6 +83,19 @@ public class FileElement
     {
         StringBuilder buffer = new StringBuilder();
 
+        toXML(buffer);
+        return buffer.toString();
+    }
+
+    /**
+     * Appends the XML representation of this <tt>FileElement</tt> to
+     * <tt>buffer</tt>.
+     *
+     * @param buffer the <tt>StringBuilder</tt> to append the XML
+     * representation of this <tt>FileElement</tt> to
+     */
+    public void toXML(StringBuilder buffer)
+    {
         buffer.append("<").append(getElementName()).append(" xmlns=\"")
             .append(getNamespace()).append("\" ");
 
@@ -125,7 +141,7 @@ public class FileElement
 
             if (thumbnail != null)
             {
-                buffer.append(thumbnail.toXML());
+                thumbnail.toXML(buffer);
             }
 
             buffer.append("</").append(getElementName()).append(">");
@@ -134,8 +150,6 @@ public class FileElement
         {
             buffer.append("/>");
         }
-
-        return buffer.toString();
     }
 
     /**
@@ -11,6 +11,7 @@ import java.security.*;
 
 import javax.xml.parsers.*;
 
+import net.java.sip.communicator.impl.protocol.jabber.extensions.*;
 import net.java.sip.communicator.util.*;
 
 import org.w3c.dom.*;
@@ -23,6 +24,7 @@ import org.w3c.dom.*;
  * @author Yana Stamcheva
  */
 public class ThumbnailElement
+    implements XMLAppendable
 {
     private static final Logger logger
         = Logger.getLogger(ThumbnailElement.class);
@@ -143,8 +145,20 @@ public class ThumbnailElement
      */
     public String toXML()
     {
-        StringBuffer buf = new StringBuffer();
+        StringBuilder buf = new StringBuilder();
 
+        toXML(buf);
+        return buf.toString();
+    }
+
+    /**
+     * Appends the XML representation of this PacketExtension to <tt>buf</tt>.
+     *
+     * @param buf the <tt>StringBuilder</tt> to append the packet extension as
+     * XML to
+     */
+    public void toXML(StringBuilder buf)
+    {
         // open element
         buf.append("<").append(ELEMENT_NAME).
             append(" xmlns=\"").append(NAMESPACE).append("\"");
@@ -157,8 +171,6 @@ public class ThumbnailElement
 
         // close element
         buf.append("/>");
-
-        return buf.toString();
     }
 
     /**
@@ -235,38 +247,39 @@ public class ThumbnailElement
 
     /**
      * Creates the XML <tt>String</tt> corresponding to the specified attribute
-     * and value and adds them to the <tt>buff</tt> StringBuffer.
+     * and value and adds them to the <tt>buff</tt> StringBuilder.
      *
-     * @param buff the <tt>StringBuffer</tt> to add the attribute and value to.
+     * @param buff the <tt>StringBuilder</tt> to add the attribute and value to.
      * @param attrName the name of the thumbnail attribute that we're adding.
      * @param attrValue the value of the attribute we're adding to the XML
      * buffer.
-     * @return the <tt>StringBuffer</tt> that we've added the attribute and its
-     * value to.
+     * @return the <tt>StringBuilder</tt> that we've added the attribute and
+     * its value to.
      */
-    private StringBuffer addXmlAttribute(   StringBuffer buff,
+    private StringBuilder addXmlAttribute(  StringBuilder buff,
                                             String attrName,
                                             String attrValue)
     {
-        buff.append(" " + attrName + "=\"").append(attrValue).append("\"");
+        buff.append(' ').append(attrName).append("=\"").append(attrValue)
+            .append('"');
 
         return buff;
     }
 
     /**
      * Creates the XML <tt>String</tt> corresponding to the specified attribute
-     * and value and adds them to the <tt>buff</tt> StringBuffer.
+     * and value and adds them to the <tt>buff</tt> StringBuilder.
      *
-     * @param buff the <tt>StringBuffer</tt> to add the attribute and value to.
+     * @param buff the <tt>StringBuilder</tt> to add the attribute and value to.
      * @param attrName the name of the thumbnail attribute that we're adding.
      * @param attrValue the value of the attribute we're adding to the XML
      * buffer.
-     * @return the <tt>StringBuffer</tt> that we've added the attribute and its
-     * value to.
+     * @return the <tt>StringBuilder</tt> that we've added the attribute and
+     * its value to.
      */
-    private StringBuffer addXmlIntAttribute(StringBuffer buff,
-                                            String attrName,
-                                            int attrValue)
+    private StringBuilder addXmlIntAttribute(StringBuilder buff,
+                                             String attrName,
+                                             int attrValue)
     {
 
         return addXmlAttribute(buff, attrName, String.valueOf(attrValue));
@@ -11,6 +11,7 @@ import java.io.*;
 
 import javax.xml.parsers.*;
 
+import net.java.sip.communicator.impl.protocol.jabber.extensions.*;
 import net.java.sip.communicator.util.*;
 
 import org.jivesoftware.smack.packet.*;
@@ -21,7 +22,9 @@ import org.w3c.dom.*;
  *
  * @author Julien Waechter
  */
-public class WhiteboardObjectPacketExtension implements PacketExtension
+public class WhiteboardObjectPacketExtension
+    implements PacketExtension,
+               XMLAppendable
 {
     private static final Logger logger =
       Logger.getLogger (WhiteboardObjectPacketExtension.class);
@@ -216,19 +219,35 @@ public class WhiteboardObjectPacketExtension implements PacketExtension
      */
     public String toXML ()
     {
-        String s="";
+        StringBuilder xml = new StringBuilder();
+
+        toXML(xml);
+        return xml.toString();
+    }
+
+    /**
+     * Appends the XML representation of the WhiteboardObject to <tt>xml</tt>.
+     *
+     * @param xml the <tt>StringBuilder</tt> to append the WhiteboardObject as
+     * XML to
+     */
+    public void toXML(StringBuilder xml)
+    {
+        xml.append('<').append(WhiteboardObjectPacketExtension.ELEMENT_NAME)
+            .append(" xmlns=\"")
+            .append(WhiteboardObjectPacketExtension.NAMESPACE).append("\">");
+
         if(getAction ().equals (
           WhiteboardObjectPacketExtension.ACTION_DELETE))
         {
-            s = "<delete id=\"#i\"/>";
-            s = s.replaceAll ("#i", getWhiteboardObjectID());
+            xml.append("<delete id=\"").append(getWhiteboardObjectID())
+                .append("\"/>");
         }
         else
-            s = getWhiteboardObject ().toXML ();
-        
-        return "<" + WhiteboardObjectPacketExtension.ELEMENT_NAME +
-          " xmlns=\"" + WhiteboardObjectPacketExtension.NAMESPACE +
-          "\">"+s+"</" + WhiteboardObjectPacketExtension.ELEMENT_NAME + ">";
+            xml.append(getWhiteboardObject ().toXML ());
+
+        xml.append("</").append(WhiteboardObjectPacketExtension.ELEMENT_NAME)
+            .append('>');
     }
 
     /**
@@ -11,6 +11,7 @@ import java.io.*;
 import javax.xml.parsers.*;
 
 import net.java.sip.communicator.impl.protocol.jabber.*;
+import net.java.sip.communicator.impl.protocol.jabber.extensions.*;
 import net.java.sip.communicator.util.*;
 
 import org.jivesoftware.smack.packet.*;
@@ -20,7 +21,8 @@ import org.w3c.dom.*;
  * Whiteboard session packet extension.
  */
 public class WhiteboardSessionPacketExtension
-    implements PacketExtension
+    implements PacketExtension,
+               XMLAppendable
 {
     private Logger logger
         = Logger.getLogger(WhiteboardSessionPacketExtension.class);
@@ -144,21 +146,43 @@ public class WhiteboardSessionPacketExtension
         return NAMESPACE;
     }
 
+    /**
+     * Returns the XML representation of this session packet extension.
+     *
+     * @return the session packet extension as XML.
+     */
     public String toXML()
     {
-        String s = "";
+        StringBuilder xml = new StringBuilder();
+
+        toXML(xml);
+        return xml.toString();
+    }
+
+    /**
+     * Appends the XML representation of this session packet extension to
+     * <tt>xml</tt>.
+     *
+     * @param xml the <tt>StringBuilder</tt> to append the XML representation
+     * of this session packet extension to
+     */
+    public void toXML(StringBuilder xml)
+    {
+        xml.append('<').append(WhiteboardSessionPacketExtension.ELEMENT_NAME)
+            .append(" xmlns=\"")
+            .append(WhiteboardSessionPacketExtension.NAMESPACE).append("\">");
 
         if(action.equals (
           WhiteboardSessionPacketExtension.ACTION_LEAVE))
         {
-            s = "<LEAVE id=\"#sessionId\" userId=\"#userId\"/>";
-            s = s.replaceAll ("#sessionId", whiteboardSession.getWhiteboardID());
-            s = s.replaceAll ("#userId", contactAddress);
+            xml.append("<LEAVE id=\"")
+                .append(whiteboardSession.getWhiteboardID())
+                .append("\" userId=\"").append(contactAddress)
+                .append("\"/>");
         }
 
-        return "<" + WhiteboardSessionPacketExtension.ELEMENT_NAME +
-          " xmlns=\"" + WhiteboardSessionPacketExtension.NAMESPACE +
-          "\">"+s+"</" + WhiteboardSessionPacketExtension.ELEMENT_NAME + ">";
+        xml.append("</").append(WhiteboardSessionPacketExtension.ELEMENT_NAME)
+            .append('>');
     }
 
     /**
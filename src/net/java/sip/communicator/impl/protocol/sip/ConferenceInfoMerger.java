@@ -0,0 +1,473 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.protocol.sip;
+
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+
+import net.java.sip.communicator.service.protocol.*;
+import net.java.sip.communicator.service.protocol.media.*;
+
+import org.jitsi.service.neomedia.*;
+import org.jitsi.service.neomedia.MediaType;
+import org.w3c.dom.*;
+
+/**
+ * Represents the users described by the conference-info XML documents
+ * received from a conference focus as the <tt>ConferenceMember</tt>s of the
+ * <tt>CallPeer</tt> which is the focus. A <tt>state="full"</tt> document
+ * replaces all the <tt>ConferenceMember</tt>s; a <tt>state="partial"</tt>
+ * one only adds, updates and removes (with <tt>state="deleted"</tt>) the
+ * users it describes.
+ *
+ * @author agent
+ */
+public class ConferenceInfoMerger
+{
+    /**
+     * The name of the conference-info XML element <tt>display-text</tt>.
+     */
+    private static final String ELEMENT_DISPLAY_TEXT = "display-text";
+
+    /**
+     * The name of the conference-info XML element <tt>endpoint</tt>.
+     */
+    private static final String ELEMENT_ENDPOINT = "endpoint";
+
+    /**
+     * The name of the conference-info XML element <tt>media</tt>.
+     */
+    private static final String ELEMENT_MEDIA = "media";
+
+    /**
+     * The name of the conference-info XML element <tt>src-id</tt>.
+     */
+    private static final String ELEMENT_SRC_ID = "src-id";
+
+    /**
+     * The name of the conference-info XML element <tt>status</tt>.
+     */
+    private static final String ELEMENT_STATUS = "status";
+
+    /**
+     * The name of the conference-info XML element <tt>type</tt>.
+     */
+    private static final String ELEMENT_TYPE = "type";
+
+    /**
+     * The name of the conference-info XML element <tt>user</tt>.
+     */
+    private static final String ELEMENT_USER = "user";
+
+    /**
+     * The name of the conference-info XML element <tt>users</tt>.
+     */
+    private static final String ELEMENT_USERS = "users";
+
+    /**
+     * The value of the conference-info XML attribute <tt>state</tt> which
+     * removes the element it is specified on.
+     */
+    static final String STATE_DELETED = "deleted";
+
+    /**
+     * The value of the conference-info XML attribute <tt>state</tt> which
+     * specifies that the element it is specified on describes its full state.
+     */
+    static final String STATE_FULL = "full";
+
+    /**
+     * The value of the conference-info XML attribute <tt>state</tt> which
+     * specifies that the element it is specified on only describes the
+     * changes of its state.
+     */
+    static final String STATE_PARTIAL = "partial";
+
+    /**
+     * Determines whether a conference-info XML document cannot be represented
+     * on top of the one currently represented because it only describes
+     * changes since a version which hasn't been received. The full state of
+     * the conference is to be requested again in that case.
+     *
+     * @param version the value of the <tt>version</tt> attribute of the
+     * <tt>conference-info</tt> XML element currently represented or
+     * <tt>0</tt> if none is represented yet
+     * @param conferenceInfoDocument the received conference-info XML document
+     * @return <tt>true</tt> if <tt>conferenceInfoDocument</tt> is partial and
+     * doesn't directly follow the one currently represented
+     */
+    public static boolean isMissingVersions(
+            int version,
+            Document conferenceInfoDocument)
+    {
+        Element documentElement = conferenceInfoDocument.getDocumentElement();
+
+        return
+            STATE_PARTIAL.equals(documentElement.getAttribute("state"))
+                && ((version == 0)
+                    || (getVersion(conferenceInfoDocument) > version + 1));
+    }
+
+    /**
+     * Returns the value of the <tt>version</tt> attribute of the
+     * <tt>conference-info</tt> XML element of a specific conference-info XML
+     * document.
+     *
+     * @param conferenceInfoDocument the conference-info XML document
+     * @return the value of the <tt>version</tt> attribute of the
+     * <tt>conference-info</tt> XML element of
+     * <tt>conferenceInfoDocument</tt>
+     */
+    public static int getVersion(Document conferenceInfoDocument)
+    {
+        return
+            Integer.parseInt(
+                    conferenceInfoDocument
+                        .getDocumentElement()
+                            .getAttribute("version"));
+    }
+
+    /**
+     * Updates the <tt>ConferenceMember</tt>s of a specific <tt>CallPeer</tt>
+     * with the users described in a conference-info XML document received
+     * from it as a conference focus.
+     *
+     * @param callPeer the <tt>CallPeer</tt> which is a conference focus and has
+     * sent the specified conference-info XML document
+     * @param conferenceMembers the <tt>ConferenceMember</tt>s of
+     * <tt>callPeer</tt> to which the users added by the specified
+     * conference-info XML document are added and from which the removed ones
+     * are removed
+     * @param conferenceInfoDocument the conference-info XML document sent by
+     * <tt>callPeer</tt>
+     * @return <tt>true</tt> if the SSRCs of any of the
+     * <tt>ConferenceMember</tt>s have changed and the local peers are to be
+     * notified about them
+     */
+    public static boolean merge(
+            CallPeer callPeer,
+            List<ConferenceMember> conferenceMembers,
+            Document conferenceInfoDocument)
+    {
+        NodeList usersList
+            = conferenceInfoDocument.getElementsByTagName(ELEMENT_USERS);
+        ConferenceMember[] conferenceMembersToRemove
+            = conferenceMembers.toArray(
+                    new ConferenceMember[conferenceMembers.size()]);
+        int conferenceMembersToRemoveCount = conferenceMembersToRemove.length;
+        boolean changed = false;
+        /*
+         * The users which aren't described by a partial users element haven't
+         * changed so the ConferenceMembers which represent them are kept.
+         */
+        boolean partialUsers = false;
+
+        if (usersList.getLength() > 0)
+        {
+            Element users = (Element) usersList.item(0);
+            NodeList userList = users.getChildNodes();
+            int userCount = userList.getLength();
+
+            partialUsers = STATE_PARTIAL.equals(users.getAttribute("state"));
+            for (int userIndex = 0; userIndex < userCount; userIndex++)
+            {
+                Node user = userList.item(userIndex);
+
+                if (!ELEMENT_USER.equals(user.getNodeName()))
+                    continue;
+
+                String address
+                    = stripParametersFromAddress(
+                        ((Element) user).getAttribute("entity"));
+
+                if ((address == null) || (address.length() < 1))
+                    continue;
+
+                String userState = ((Element) user).getAttribute("state");
+
+                /*
+                 * Determine the ConferenceMembers which are no longer in the
+                 * list.
+                 */
+                ConferenceMemberSipImpl existingConferenceMember = null;
+
+                for (int conferenceMemberIndex = 0;
+                        conferenceMemberIndex < conferenceMembersToRemoveCount;
+                        conferenceMemberIndex++)
+                {
+                    ConferenceMemberSipImpl conferenceMember
+                        = (ConferenceMemberSipImpl)
+                            conferenceMembersToRemove[conferenceMemberIndex];
+
+                    if ((conferenceMember != null)
+                            && address
+                                    .equalsIgnoreCase(
+                                        conferenceMember.getAddress()))
+                    {
+                        conferenceMembersToRemove[conferenceMemberIndex] = null;
+                        existingConferenceMember = conferenceMember;
+                        break;
+                    }
+                }
+
+                // Remove the deleted ones.
+                if (STATE_DELETED.equals(userState))
+                {
+                    if (partialUsers && (existingConferenceMember != null))
+                        conferenceMembers.remove(existingConferenceMember);
+                    continue;
+                }
+
+                // Create the new ones.
+                boolean addConferenceMember;
+                if (existingConferenceMember == null)
+                {
+                    existingConferenceMember
+                        = new ConferenceMemberSipImpl(callPeer, address);
+                    addConferenceMember = true;
+                }
+                else
+                    addConferenceMember = false;
+
+                // Update the existing ones.
+                if (existingConferenceMember != null)
+                {
+                    NodeList userChildList = user.getChildNodes();
+                    int userChildCount = userChildList.getLength();
+                    String displayName = null;
+                    String endpointStatus = null;
+                    String audioSsrc = null;
+                    String videoSsrc = null;
+
+                    for (int userChildIndex = 0;
+                            userChildIndex < userChildCount;
+                            userChildIndex++)
+                    {
+                        Node userChild = userChildList.item(userChildIndex);
+                        String userChildName = userChild.getNodeName();
+
+                        if (ELEMENT_DISPLAY_TEXT.equals(userChildName))
+                            displayName = userChild.getTextContent();
+                        else if (ELEMENT_ENDPOINT.equals(userChildName))
+                        {
+                            endpointStatus = getEndpointStatus(userChild);
+                            audioSsrc = getEndpointMediaSrcId(
+                                            userChild,
+                                            MediaType.AUDIO);
+                            videoSsrc = getEndpointMediaSrcId(
+                                            userChild,
+                                            MediaType.VIDEO);
+                        }
+                    }
+                    /*
+                     * A partial user element only describes the changes of
+                     * the user.
+                     */
+                    boolean partialUser = STATE_PARTIAL.equals(userState);
+
+                    if (!partialUser || (displayName != null))
+                        existingConferenceMember.setDisplayName(displayName);
+                    if (!partialUser || (endpointStatus != null))
+                    {
+                        existingConferenceMember.setEndpointStatus(
+                                endpointStatus);
+                    }
+
+                    if (audioSsrc != null)
+                    {
+                        long newSsrc = Long.parseLong(audioSsrc);
+                        if(existingConferenceMember.getAudioSsrc() != newSsrc)
+                            changed = true;
+                        existingConferenceMember.setAudioSsrc(newSsrc);
+                    }
+
+                    if (videoSsrc != null)
+                    {
+                        long newSsrc = Long.parseLong(videoSsrc);
+                        long currentSsrc
+                            = existingConferenceMember.getVideoSsrc();
+
+                        if (currentSsrc != -1 && currentSsrc == newSsrc)
+                            continue;
+
+                        if(existingConferenceMember.getVideoSsrc() != newSsrc)
+                            changed = true;
+
+                        existingConferenceMember.setVideoSsrc(newSsrc);
+
+                        if (callPeer instanceof MediaAwareCallPeer)
+                        {
+                            resolveVisualComponent(
+                                    (MediaAwareCallPeer<?, ?, ?>) callPeer,
+                                    existingConferenceMember);
+                        }
+                    }
+
+                    if (addConferenceMember)
+                        conferenceMembers.add(existingConferenceMember);
+                }
+            }
+        }
+
+        /*
+         * Remove the ConferenceMember instance which are no longer present in
+         * the conference-info XML document.
+         */
+        if (!partialUsers)
+        {
+            for (int conferenceMemberIndex = 0;
+                    conferenceMemberIndex < conferenceMembersToRemoveCount;
+                    conferenceMemberIndex++)
+            {
+                ConferenceMember conferenceMemberToRemove
+                    = conferenceMembersToRemove[conferenceMemberIndex];
+
+                if (conferenceMemberToRemove != null)
+                    conferenceMembers.remove(conferenceMemberToRemove);
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * Notifies the listeners of the media handler of a specific
+     * <tt>CallPeer</tt> about the visual component which displays the video
+     * of a specific <tt>ConferenceMember</tt>, if the video is already
+     * received.
+     *
+     * @param callPeer the <tt>CallPeer</tt> which is the focus of the
+     * conference <tt>conferenceMember</tt> participates in
+     * @param conferenceMember the <tt>ConferenceMember</tt> which video SSRC
+     * has changed
+     */
+    private static void resolveVisualComponent(
+            MediaAwareCallPeer<?, ?, ?> callPeer,
+            ConferenceMember conferenceMember)
+    {
+        CallPeerMediaHandler<?> mediaHandler = callPeer.getMediaHandler();
+        VideoMediaStream peerVideoStream
+            = (VideoMediaStream) mediaHandler.getStream(MediaType.VIDEO);
+        Component visualComponent
+            = peerVideoStream.getVisualComponent(
+                    conferenceMember.getVideoSsrc());
+
+        if (visualComponent != null)
+        {
+            mediaHandler.fireVisualComponentResolveEvent(
+                    visualComponent, conferenceMember);
+        }
+    }
+
+    /**
+     * Reads the text content of the <tt>src-id</tt> XML element of a
+     * <tt>media</tt> XML element of a specific <tt>endpoint</tt> XML element.
+     *
+     * @param endpoint an XML <tt>Node</tt> which represents the
+     * <tt>endpoint</tt> XML element from which to get the text content of a
+     * <tt>src-id</tt> XML element of a <tt>media</tt> XML element
+     * @param mediaType the type of the media to get the <tt>src-id</tt> of
+     * @return the text content of the <tt>src-id</tt> XML element of the
+     * <tt>media</tt> XML element of the specified <tt>endpoint</tt> XML element
+     * if any; otherwise, <tt>null</tt>
+     */
+    private static String getEndpointMediaSrcId(
+            Node endpoint,
+            MediaType mediaType)
+    {
+        NodeList endpointChildList = endpoint.getChildNodes();
+        int endpoingChildCount = endpointChildList.getLength();
+        String mediaTypeStr = mediaType.toString();
+
+        for (int endpointChildIndex = 0;
+                endpointChildIndex < endpoingChildCount;
+                endpointChildIndex++)
+        {
+            Node endpointChild = endpointChildList.item(endpointChildIndex);
+
+            if (ELEMENT_MEDIA.equals(endpointChild.getNodeName()))
+            {
+                NodeList mediaChildList = endpointChild.getChildNodes();
+                int mediaChildCount = mediaChildList.getLength();
+                String srcId = null;
+                String type = null;
+
+                for (int mediaChildIndex = 0;
+                        mediaChildIndex < mediaChildCount;
+                        mediaChildIndex++)
+                {
+                    Node mediaChild = mediaChildList.item(mediaChildIndex);
+                    String mediaChildName = mediaChild.getNodeName();
+
+                    if (ELEMENT_SRC_ID.equals(mediaChildName))
+                    {
+                        srcId = mediaChild.getTextContent();
+                        if (mediaTypeStr.equalsIgnoreCase(type))
+                            return srcId;
+                    }
+                    else if (ELEMENT_TYPE.equals(mediaChildName))
+                    {
+                        type = mediaChild.getTextContent();
+                        if ((srcId != null) && mediaTypeStr.equalsIgnoreCase(
+                                type))
+                            return srcId;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the text content of the <tt>status</tt> XML element of a specific
+     * <tt>endpoint</tt> XML element.
+     *
+     * @param endpoint an XML <tt>Node</tt> which represents the
+     * <tt>endpoint</tt> XML element from which to get the text content of its
+     * <tt>status</tt> XML element
+     * @return the text content of the <tt>status</tt> XML element of the
+     * specified <tt>endpoint</tt> XML element if any; otherwise, <tt>null</tt>
+     */
+    private static String getEndpointStatus(Node endpoint)
+    {
+        NodeList endpointChildList = endpoint.getChildNodes();
+        int endpoingChildCount = endpointChildList.getLength();
+
+        for (int endpointChildIndex = 0;
+                endpointChildIndex < endpoingChildCount;
+                endpointChildIndex++)
+        {
+            Node endpointChild = endpointChildList.item(endpointChildIndex);
+
+            if (ELEMENT_STATUS.equals(endpointChild.getNodeName()))
+                return endpointChild.getTextContent();
+        }
+        return null;
+    }
+
+    /**
+     * Removes the parameters (specified after a semicolon) from a specific
+     * address <tt>String</tt> if any are present in it.
+     *
+     * @param address the <tt>String</tt> value representing an address from
+     * which any parameters are to be removed
+     * @return a <tt>String</tt> representing the specified <tt>address</tt>
+     * without any parameters
+     */
+    static String stripParametersFromAddress(String address)
+    {
+        if (address != null)
+        {
+            int parametersBeginIndex = address.indexOf(';');
+
+            if (parametersBeginIndex > -1)
+                address = address.substring(0, parametersBeginIndex);
+        }
+        return address;
+    }
+}
@@ -72,7 +72,7 @@ public class ConferenceMemberSipImpl
      * @param address the SIP address of the new instance
      */
     public ConferenceMemberSipImpl(
-            CallPeerSipImpl conferenceFocusCallPeer,
+            CallPeer conferenceFocusCallPeer,
             String address)
     {
         super(conferenceFocusCallPeer, address);
@@ -45,6 +45,12 @@ public class ContactGroupSipImpl
      */
     private ContactGroupSipImpl parentGroup = null;
 
+    /**
+     * The contact list this group is the root group of or null if this is
+     * not a root group.
+     */
+    private ServerStoredContactList contactList = null;
+
     /**
      * Determines whether this group is really in the contact list or whether
      * it is here only temporarily and will be gone next time we restart.
@@ -179,6 +185,7 @@ public class ContactGroupSipImpl
         {
             this.list.getEntries().add(contactToAdd.getEntry());
         }
+        fireContactsChanged();
     }
 
     /**
@@ -236,6 +243,7 @@ public class ContactGroupSipImpl
         {
             this.list.getLists().add(subgroup.getList());
         }
+        fireContactsChanged();
     }
 
     /**
@@ -250,6 +258,31 @@ public class ContactGroupSipImpl
         {
             this.list.getLists().remove(subgroup.getList());
         }
+        fireContactsChanged();
+    }
+
+    /**
+     * Sets the contact list this group is the root group of.
+     *
+     * @param contactList the contact list this group is the root group of
+     */
+    void setContactList(ServerStoredContactList contactList)
+    {
+        this.contactList = contactList;
+    }
+
+    /**
+     * Notifies the contact list this group belongs to, if any, that the
+     * contacts it contains have changed.
+     */
+    private void fireContactsChanged()
+    {
+        ContactGroupSipImpl root = this;
+
+        while (root.parentGroup != null)
+            root = root.parentGroup;
+        if (root.contactList != null)
+            root.contactList.contactsChanged();
     }
 
     /**
@@ -397,6 +430,7 @@ public class ContactGroupSipImpl
         {
             this.list.getEntries().remove(contact.getEntry());
         }
+        fireContactsChanged();
     }
 
     /**
@@ -266,9 +266,76 @@ public class DesktopSharingProtocolSipImpl
         return xml.toString();
     }
 
+    /**
+     * Merges remote-info SIP NOTIFY messages built by this class into as few
+     * messages as possible. A merged message only carries consecutive events
+     * of the same kind because {@link #parse(Element, Dimension, Point)}
+     * returns the events grouped by kind.
+     *
+     * @param xmls the messages to merge in the order they are to be processed
+     * @return the merged messages
+     */
+    public static List<String> merge(List<String> xmls)
+    {
+        List<String> merged = new ArrayList<String>();
+        String start = "<" + ELEMENT_REMOTE_CONTROL + ">";
+        String end = "</" + ELEMENT_REMOTE_CONTROL + ">";
+        StringBuffer xml = null;
+        String lastElementName = null;
+
+        for (String s : xmls)
+        {
+            int startIndex = s.indexOf(start);
+            int endIndex = s.lastIndexOf(end);
+
+            if ((startIndex == -1) || (endIndex < startIndex))
+            {
+                // not one of ours, send it as is
+                if (xml != null)
+                {
+                    xml.append(end);
+                    merged.add(xml.toString());
+                    xml = null;
+                }
+                merged.add(s);
+                continue;
+            }
+
+            String elements
+                = s.substring(startIndex + start.length(), endIndex);
+            String elementName = elements;
+            int nameEnd = elements.indexOf(' ');
+
+            if (nameEnd != -1)
+                elementName = elements.substring(0, nameEnd);
+
+            if ((xml != null) && !elementName.equals(lastElementName))
+            {
+                xml.append(end);
+                merged.add(xml.toString());
+                xml = null;
+            }
+            if (xml == null)
+            {
+                xml = new StringBuffer();
+                xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n");
+                xml.append(start);
+            }
+            xml.append(elements);
+            lastElementName = elementName;
+        }
+        if (xml != null)
+        {
+            xml.append(end);
+            merged.add(xml.toString());
+        }
+        return merged;
+    }
+
     /**
      * Parses an XML element and returns a list of all <tt>MouseEvent</tt>
-     * and <tt>KeyEvent</tt> found.
+     * and <tt>KeyEvent</tt> found. Only the last of the mouse moves is
+     * returned, the pointer would not stay at the previous positions anyway.
      *
      * @param root XML root element
      * @param size size of the video (used to have right (x,y) for MouseMoved
@@ -322,14 +389,14 @@ public class DesktopSharingProtocolSipImpl
         }
 
         nl = root.getElementsByTagName(ELEMENT_MOUSE_MOVE);
-        if(nl != null)
+        if(nl != null && nl.getLength() > 0)
         {
             int x = -1;
             int y = -1;
 
-            for(int i = 0 ; i < nl.getLength() ; i++)
+            // stale moves are dropped in favor of the newest position
             {
-                Element el = (Element)nl.item(i);
+                Element el = (Element)nl.item(nl.getLength() - 1);
 
                 if(el.hasAttribute("x"))
                 {
@@ -0,0 +1,676 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.protocol.sip;
+
+import java.io.*;
+import java.util.*;
+
+import net.java.sip.communicator.util.*;
+
+import org.jitsi.util.xml.XMLUtils;
+import org.w3c.dom.*;
+
+/**
+ * Represents the body of a NOTIFY request sent by a resource list server
+ * (RFC 4662) i.e. a multipart/related body made of a Resource List Meta
+ * Information (RLMI) document describing the resources of the list and of the
+ * state documents (e.g. PIDF) of these resources. Nested lists are flattened
+ * so that the notification is seen as a list of resources.
+ *
+ * @author Damian Minkov
+ */
+public class EventListNotification
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>EventListNotification</tt> class
+     * for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(EventListNotification.class);
+
+    /**
+     * The sub-type of the content type of the NOTIFY bodies sent by a
+     * resource list server.
+     */
+    public static final String MULTIPART_RELATED = "related";
+
+    /**
+     * The sub-type of the content type of RLMI documents.
+     */
+    public static final String RLMI_XML = "rlmi+xml";
+
+    /**
+     * The RLMI namespace.
+     */
+    private static final String RLMI_NS_VALUE = "urn:ietf:params:xml:ns:rlmi";
+
+    /**
+     * The <tt>uri</tt> attribute of the <tt>list</tt> and <tt>resource</tt>
+     * elements.
+     */
+    private static final String URI_ATTRIBUTE = "uri";
+
+    /**
+     * The encoding used to keep the bytes of a body in a <tt>String</tt>
+     * while it is being split in parts.
+     */
+    private static final String RAW_ENCODING = "ISO-8859-1";
+
+    /**
+     * The URI of the list as specified by its RLMI document.
+     */
+    private final String uri;
+
+    /**
+     * The version of the RLMI document of the list.
+     */
+    private final int version;
+
+    /**
+     * Whether the notification carries the state of all the resources of the
+     * list or only of the ones which have changed.
+     */
+    private final boolean fullState;
+
+    /**
+     * The resources described by the notification, including the ones of
+     * nested lists.
+     */
+    private final List<Resource> resources = new ArrayList<Resource>();
+
+    /**
+     * Initializes a new <tt>EventListNotification</tt>.
+     *
+     * @param uri the URI of the list
+     * @param version the version of the RLMI document of the list
+     * @param fullState whether the notification carries the state of all the
+     * resources of the list
+     */
+    private EventListNotification(String uri, int version, boolean fullState)
+    {
+        this.uri = uri;
+        this.version = version;
+        this.fullState = fullState;
+    }
+
+    /**
+     * Parses the multipart/related body of a NOTIFY request.
+     *
+     * @param boundary the value of the boundary parameter of the Content-Type
+     * header of the request
+     * @param content the body of the request
+     * @return the notification carried by <tt>content</tt> or <tt>null</tt>
+     * if <tt>content</tt> is not a valid RLMI notification
+     */
+    public static EventListNotification parse(String boundary, byte[] content)
+    {
+        if ((boundary == null) || (content == null))
+            return null;
+
+        Map<String, Part> parts = new HashMap<String, Part>();
+        List<Part> rlmiParts = new ArrayList<Part>();
+
+        try
+        {
+            split(unquote(boundary), new String(content, RAW_ENCODING),
+                    parts, rlmiParts);
+        }
+        catch (UnsupportedEncodingException uee)
+        {
+            // ISO-8859-1 is always supported.
+            throw new RuntimeException(uee);
+        }
+
+        /*
+         * The root document of a multipart/related body is its first part
+         * unless its start parameter says otherwise, the RLMI document of the
+         * list is the first one in all cases we know of.
+         */
+        if (rlmiParts.isEmpty())
+        {
+            logger.error("No RLMI document in the notification");
+            return null;
+        }
+
+        EventListNotification notification = null;
+
+        for (Part rlmiPart : rlmiParts)
+        {
+            Document doc;
+
+            try
+            {
+                doc = XMLUtils.createDocument(rlmiPart.getText());
+            }
+            catch (Exception e)
+            {
+                logger.error("Failed to parse RLMI document", e);
+                return null;
+            }
+
+            Element list = doc.getDocumentElement();
+
+            if ((list == null) || !"list".equals(localName(list)))
+            {
+                logger.error("RLMI document without a list element");
+                return null;
+            }
+
+            if (notification == null)
+            {
+                int version;
+
+                try
+                {
+                    version = Integer.parseInt(list.getAttribute("version"));
+                }
+                catch (NumberFormatException nfe)
+                {
+                    version = -1;
+                }
+                notification
+                    = new EventListNotification(
+                            list.getAttribute(URI_ATTRIBUTE),
+                            version,
+                            Boolean.parseBoolean(
+                                    list.getAttribute("fullState")));
+            }
+            notification.addResources(list, parts);
+        }
+        return notification;
+    }
+
+    /**
+     * Adds the resources of a <tt>list</tt> element of an RLMI document to
+     * this notification.
+     *
+     * @param list the <tt>list</tt> element
+     * @param parts the parts of the notification by their Content-IDs
+     */
+    private void addResources(Element list, Map<String, Part> parts)
+    {
+        NodeList children = list.getChildNodes();
+
+        for (int i = 0; i < children.getLength(); i++)
+        {
+            Node child = children.item(i);
+
+            if ((child.getNodeType() != Node.ELEMENT_NODE)
+                    || !"resource".equals(localName(child)))
+                continue;
+
+            Element resourceElement = (Element) child;
+            String resourceUri = resourceElement.getAttribute(URI_ATTRIBUTE);
+
+            if (resourceUri.length() == 0)
+                continue;
+
+            Resource resource = new Resource(resourceUri);
+            NodeList resourceChildren = resourceElement.getChildNodes();
+
+            for (int j = 0; j < resourceChildren.getLength(); j++)
+            {
+                Node resourceChild = resourceChildren.item(j);
+
+                if (resourceChild.getNodeType() != Node.ELEMENT_NODE)
+                    continue;
+
+                String name = localName(resourceChild);
+
+                if ("name".equals(name))
+                {
+                    if (resource.name == null)
+                        resource.name = resourceChild.getTextContent();
+                }
+                else if ("instance".equals(name))
+                {
+                    Element instance = (Element) resourceChild;
+                    String state = instance.getAttribute("state");
+
+                    /*
+                     * A resource may have several instances (e.g. several
+                     * subscriptions of the server to the same presentity), we
+                     * keep the one which carries a state document or, failing
+                     * that, the first active one.
+                     */
+                    Part part
+                        = parts.get(normalizeContentId(
+                                instance.getAttribute("cid")));
+
+                    if ((part != null) && !part.isMultipart())
+                    {
+                        resource.state = state;
+                        resource.reason = instance.getAttribute("reason");
+                        resource.content = part.content;
+                    }
+                    else if ((resource.state == null)
+                            || ((resource.content == null)
+                                && "active".equals(state)))
+                    {
+                        resource.state = state;
+                        resource.reason = instance.getAttribute("reason");
+                    }
+                }
+            }
+            resources.add(resource);
+        }
+    }
+
+    /**
+     * Splits a multipart body into its parts, recursively.
+     *
+     * @param boundary the boundary of the body
+     * @param body the body with each of its bytes as a char
+     * @param parts the map to put the parts in by their Content-IDs
+     * @param rlmiParts the list to add the RLMI parts to, in document order
+     */
+    private static void split(
+            String boundary,
+            String body,
+            Map<String, Part> parts,
+            List<Part> rlmiParts)
+    {
+        String delimiter = "--" + boundary;
+        int start = body.indexOf(delimiter);
+
+        while (start != -1)
+        {
+            start += delimiter.length();
+
+            // the close delimiter
+            if (body.startsWith("--", start))
+                break;
+
+            int end = body.indexOf(delimiter, start);
+
+            if (end == -1)
+                break;
+
+            // the CRLF preceding the delimiter belongs to the delimiter
+            int partEnd = end;
+
+            if ((partEnd > start) && (body.charAt(partEnd - 1) == '\n'))
+            {
+                partEnd--;
+                if ((partEnd > start) && (body.charAt(partEnd - 1) == '\r'))
+                    partEnd--;
+            }
+
+            Part part = Part.parse(body.substring(start, partEnd));
+
+            if (part != null)
+            {
+                if (part.contentId != null)
+                    parts.put(part.contentId, part);
+
+                if (part.isMultipart())
+                {
+                    String nestedBoundary
+                        = part.getContentTypeParameter("boundary");
+
+                    if (nestedBoundary != null)
+                        split(nestedBoundary, part.raw, parts, rlmiParts);
+                }
+                else if (part.contentType.endsWith("/" + RLMI_XML))
+                    rlmiParts.add(part);
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * Returns the local name of a node whether the document was parsed with
+     * namespaces or not.
+     *
+     * @param node the node
+     * @return the local name of <tt>node</tt>
+     */
+    private static String localName(Node node)
+    {
+        String localName = node.getLocalName();
+
+        if (localName == null)
+        {
+            localName = node.getNodeName();
+
+            int colon = localName.indexOf(':');
+
+            if (colon != -1)
+                localName = localName.substring(colon + 1);
+        }
+        return localName;
+    }
+
+    /**
+     * Removes the angle brackets around a Content-ID and the <tt>cid:</tt>
+     * scheme of a Content-ID URL so that the two compare equal.
+     *
+     * @param contentId the Content-ID
+     * @return the normalized <tt>contentId</tt>
+     */
+    private static String normalizeContentId(String contentId)
+    {
+        if (contentId == null)
+            return null;
+
+        contentId = contentId.trim();
+        if (contentId.startsWith("<") && contentId.endsWith(">"))
+            contentId = contentId.substring(1, contentId.length() - 1);
+        if (contentId.regionMatches(true, 0, "cid:", 0, 4))
+            contentId = contentId.substring(4);
+        return contentId;
+    }
+
+    /**
+     * Removes the double quotes around a parameter value.
+     *
+     * @param value the parameter value
+     * @return <tt>value</tt> without quotes
+     */
+    private static String unquote(String value)
+    {
+        value = value.trim();
+        if ((value.length() > 1)
+                && value.startsWith("\"")
+                && value.endsWith("\""))
+            value = value.substring(1, value.length() - 1);
+        return value;
+    }
+
+    /**
+     * Returns the URI of the list.
+     *
+     * @return the URI of the list
+     */
+    public String getUri()
+    {
+        return uri;
+    }
+
+    /**
+     * Returns the version of the RLMI document of the list, <tt>-1</tt> if it
+     * doesn't specify one.
+     *
+     * @return the version of the RLMI document of the list
+     */
+    public int getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Determines whether this notification carries the state of all the
+     * resources of the list or only of the ones which have changed.
+     *
+     * @return <tt>true</tt> if this notification carries the state of all the
+     * resources of the list
+     */
+    public boolean isFullState()
+    {
+        return fullState;
+    }
+
+    /**
+     * Returns the resources described by this notification.
+     *
+     * @return the resources described by this notification
+     */
+    public List<Resource> getResources()
+    {
+        return Collections.unmodifiableList(resources);
+    }
+
+    /**
+     * A resource of the list.
+     */
+    public static class Resource
+    {
+        /**
+         * The URI of the resource.
+         */
+        private final String uri;
+
+        /**
+         * The display name of the resource.
+         */
+        private String name;
+
+        /**
+         * The state of the subscription of the server to the resource.
+         */
+        private String state;
+
+        /**
+         * The reason why the subscription of the server to the resource is
+         * terminated.
+         */
+        private String reason;
+
+        /**
+         * The state document of the resource.
+         */
+        private byte[] content;
+
+        /**
+         * Initializes a new <tt>Resource</tt>.
+         *
+         * @param uri the URI of the resource
+         */
+        private Resource(String uri)
+        {
+            this.uri = uri;
+        }
+
+        /**
+         * Returns the URI of the resource.
+         *
+         * @return the URI of the resource
+         */
+        public String getUri()
+        {
+            return uri;
+        }
+
+        /**
+         * Returns the display name of the resource if the list specifies one.
+         *
+         * @return the display name of the resource or <tt>null</tt>
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * Returns the state of the subscription of the server to the
+         * resource: <tt>active</tt>, <tt>pending</tt> or
+         * <tt>terminated</tt>, <tt>null</tt> if the resource has no instance.
+         *
+         * @return the state of the subscription of the server to the resource
+         */
+        public String getState()
+        {
+            return state;
+        }
+
+        /**
+         * Returns the reason why the subscription of the server to the
+         * resource is terminated.
+         *
+         * @return the reason why the subscription of the server to the
+         * resource is terminated or an empty string
+         */
+        public String getReason()
+        {
+            return reason;
+        }
+
+        /**
+         * Returns the state document (e.g. PIDF) of the resource.
+         *
+         * @return the state document of the resource or <tt>null</tt> if this
+         * notification doesn't carry one
+         */
+        public byte[] getContent()
+        {
+            return content;
+        }
+    }
+
+    /**
+     * A part of a multipart body.
+     */
+    private static class Part
+    {
+        /**
+         * The Content-ID of the part without angle brackets.
+         */
+        private String contentId;
+
+        /**
+         * The lower case Content-Type of the part without its parameters.
+         */
+        private String contentType = "text/plain";
+
+        /**
+         * The value of the Content-Type header of the part.
+         */
+        private String contentTypeHeader = "";
+
+        /**
+         * The charset of the part.
+         */
+        private String charset = "UTF-8";
+
+        /**
+         * The body of the part with each of its bytes as a char.
+         */
+        private String raw;
+
+        /**
+         * The body of the part.
+         */
+        private byte[] content;
+
+        /**
+         * Parses a part of a multipart body.
+         *
+         * @param part the part following its delimiter line
+         * @return the parsed part or <tt>null</tt> if it is malformed
+         */
+        static Part parse(String part)
+        {
+            // skip the rest of the delimiter line
+            int lineEnd = part.indexOf('\n');
+
+            if (lineEnd == -1)
+                return null;
+
+            Part result = new Part();
+            int start = lineEnd + 1;
+
+            while (true)
+            {
+                lineEnd = part.indexOf('\n', start);
+                if (lineEnd == -1)
+                    return null;
+
+                String line = part.substring(start, lineEnd).trim();
+
+                start = lineEnd + 1;
+                if (line.length() == 0)
+                    break;
+
+                int colon = line.indexOf(':');
+
+                if (colon == -1)
+                    continue;
+
+                String name = line.substring(0, colon).trim();
+                String value = line.substring(colon + 1).trim();
+
+                if ("Content-ID".equalsIgnoreCase(name))
+                    result.contentId = normalizeContentId(value);
+                else if ("Content-Type".equalsIgnoreCase(name))
+                {
+                    result.contentTypeHeader = value;
+
+                    int semicolon = value.indexOf(';');
+
+                    result.contentType
+                        = ((semicolon == -1)
+                                ? value
+                                : value.substring(0, semicolon))
+                            .trim().toLowerCase();
+
+                    String charset = result.getContentTypeParameter("charset");
+
+                    if (charset != null)
+                        result.charset = charset;
+                }
+            }
+
+            result.raw = part.substring(start);
+            try
+            {
+                result.content = result.raw.getBytes(RAW_ENCODING);
+            }
+            catch (UnsupportedEncodingException uee)
+            {
+                // ISO-8859-1 is always supported.
+                throw new RuntimeException(uee);
+            }
+            return result;
+        }
+
+        /**
+         * Returns a parameter of the Content-Type header of this part.
+         *
+         * @param name the name of the parameter
+         * @return the value of the parameter without quotes or <tt>null</tt>
+         */
+        String getContentTypeParameter(String name)
+        {
+            for (String param : contentTypeHeader.split(";"))
+            {
+                int eq = param.indexOf('=');
+
+                if ((eq != -1)
+                        && name.equalsIgnoreCase(param.substring(0, eq).trim()))
+                    return unquote(param.substring(eq + 1));
+            }
+            return null;
+        }
+
+        /**
+         * Determines whether this part is itself a multipart body.
+         *
+         * @return <tt>true</tt> if this part is a multipart body
+         */
+        boolean isMultipart()
+        {
+            return contentType.startsWith("multipart/");
+        }
+
+        /**
+         * Returns the body of this part decoded with its charset.
+         *
+         * @return the body of this part as text
+         */
+        String getText()
+        {
+            try
+            {
+                return new String(content, charset);
+            }
+            catch (UnsupportedEncodingException uee)
+            {
+                return new String(content);
+            }
+        }
+    }
+}
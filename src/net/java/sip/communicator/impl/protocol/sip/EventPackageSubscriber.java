@@ -460,6 +460,20 @@ public class EventPackageSubscriber
                     e);
         }
         req.setHeader(expHeader);
+
+        try
+        {
+            subscription.populateSubscribeRequest(req, headerFactory);
+        }
+        catch (ParseException e)
+        {
+            logger.error("Failed to populate the subscription request", e);
+            throw new OperationFailedException(
+                    "An unexpected error occurred while"
+                    + " populating the subscription request",
+                    OperationFailedException.INTERNAL_ERROR,
+                    e);
+        }
     }
 
     /**
@@ -566,7 +580,9 @@ public class EventPackageSubscriber
         ContentTypeHeader ctheader
             = (ContentTypeHeader) request.getHeader(ContentTypeHeader.NAME);
         if ((ctheader != null)
-                && !ctheader.getContentSubType().equalsIgnoreCase(contentSubType))
+                && !ctheader.getContentSubType().equalsIgnoreCase(contentSubType)
+                && ((subscription == null)
+                        || !subscription.isContentTypeSupported(ctheader)))
         {
             // send a 415 response (rfc3261)
             Response response;
@@ -1247,6 +1263,38 @@ public class EventPackageSubscriber
         protected abstract void processTerminatedRequest(
             RequestEvent requestEvent,
             String reasonCode);
+
+        /**
+         * Adds the headers specific to this <tt>Subscription</tt> (e.g. the
+         * extensions it supports) to a SUBSCRIBE <tt>Request</tt> about to be
+         * sent for it. Does nothing by default.
+         *
+         * @param req the SUBSCRIBE <tt>Request</tt> to be populated
+         * @param headerFactory the <tt>HeaderFactory</tt> to create the
+         * headers with
+         * @throws ParseException if a header cannot be created
+         */
+        protected void populateSubscribeRequest(
+            Request req,
+            HeaderFactory headerFactory)
+            throws ParseException
+        {
+        }
+
+        /**
+         * Determines whether this <tt>Subscription</tt> accepts NOTIFY bodies
+         * of a specific content type in addition to the one of the event
+         * package it belongs to.
+         *
+         * @param contentType the <tt>ContentTypeHeader</tt> of the NOTIFY
+         * <tt>Request</tt>
+         * @return <tt>true</tt> if this <tt>Subscription</tt> processes the
+         * bodies of type <tt>contentType</tt>; <tt>false</tt>, otherwise
+         */
+        protected boolean isContentTypeSupported(ContentTypeHeader contentType)
+        {
+            return false;
+        }
     }
 
     /**
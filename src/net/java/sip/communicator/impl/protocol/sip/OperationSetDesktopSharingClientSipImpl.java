@@ -11,6 +11,7 @@ import java.awt.event.*;
 import java.io.*;
 import java.text.*;
 import java.util.*;
+import java.util.List;
 import java.util.Queue;
 
 import javax.sip.*;
@@ -63,8 +64,9 @@ public class OperationSetDesktopSharingClientSipImpl
                     || CallPeerState.FAILED.equals(state))
             {
                 /* if the peer is disconnected or call has failed, remove
-                 * corresponding subscription.
+                 * corresponding subscription and the events not sent yet.
                  */
+                batcher.remove(peer);
                 try
                 {
                     notifier.removeSubscription(parentProvider.
@@ -100,6 +102,28 @@ public class OperationSetDesktopSharingClientSipImpl
      */
     private final Object inputSync = new Object();
 
+    /**
+     * Queues the SIP NOTIFY messages so that mouse moves are coalesced and
+     * several events are sent in one NOTIFY when they are queued faster than
+     * they are sent.
+     */
+    private final RemoteControlEventBatcher<String> batcher
+        = new RemoteControlEventBatcher<String>("SIP remote-control sender")
+        {
+            @Override
+            protected void send(CallPeer callPeer, List<String> payloads)
+            {
+                for(String msg : DesktopSharingProtocolSipImpl.merge(payloads))
+                {
+                    synchronized(inputSync)
+                    {
+                        inputEvents.add(msg);
+                        notifySubscriptions(callPeer);
+                    }
+                }
+            }
+        };
+
     /**
      * Initializes a new <tt>OperationSetDesktopSharingClientSipImpl</tt>.
      *
@@ -253,11 +277,7 @@ public class OperationSetDesktopSharingClientSipImpl
             return;
         }
 
-        synchronized(inputSync)
-        {
-            inputEvents.add(msg);
-            notifySubscriptions(callPeer);
-        }
+        batcher.add(callPeer, msg, false);
     }
 
     /**
@@ -291,11 +311,7 @@ public class OperationSetDesktopSharingClientSipImpl
 
         msg = DesktopSharingProtocolSipImpl.getMouseMovedXML(x, y);
 
-        synchronized(inputSync)
-        {
-            inputEvents.add(msg);
-            notifySubscriptions(callPeer);
-        }
+        batcher.add(callPeer, msg, true);
     }
 
     /**
@@ -335,11 +351,7 @@ public class OperationSetDesktopSharingClientSipImpl
             return;
         }
 
-        synchronized(inputSync)
-        {
-            inputEvents.add(msg);
-            notifySubscriptions(callPeer);
-        }
+        batcher.add(callPeer, msg, false);
     }
 
     /**
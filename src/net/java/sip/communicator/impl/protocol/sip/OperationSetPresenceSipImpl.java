@@ -25,7 +25,9 @@ import org.w3c.dom.*;
 /**
  * Sip presence implementation (SIMPLE).
  *
- * Compliant with rfc3261, rfc3265, rfc3856, rfc3863, rfc4480 and rfc3903
+ * Compliant with rfc3261, rfc3265, rfc3856, rfc3863, rfc4480 and rfc3903.
+ * Optionally subscribes to the contacts through a resource list server
+ * (rfc4662).
  *
  * @author Benoit Pradelle
  * @author Lyubomir Marinov
@@ -207,6 +209,32 @@ public class OperationSetPresenceSipImpl
      */
     private final EventPackageSubscriber watcherInfoSubscriber;
 
+    /**
+     * The name of the account property which specifies the URI of a resource
+     * list (rfc4662) containing our contacts. When it is set we subscribe
+     * once to the list instead of once to every contact in it.
+     */
+    public static final String RLS_URI = "RLS_URI";
+
+    /**
+     * The URI of the resource list containing our contacts or <tt>null</tt>
+     * if we subscribe to every contact separately.
+     */
+    private final String rlsUri;
+
+    /**
+     * The subscription to the resource list or <tt>null</tt> if we are not
+     * subscribed to the resource list (anymore).
+     */
+    private ResourceListSubscription rlsSubscription = null;
+
+    /**
+     * The addresses of the contacts included in the last full state
+     * notification of the resource list. We don't subscribe to them
+     * separately.
+     */
+    private final Set<String> rlsResources = new HashSet<String>();
+
     /**
      * The authorization handler, asking client for authentication.
      */
@@ -370,6 +398,16 @@ public class OperationSetPresenceSipImpl
 
         this.sipStatusEnum = parentProvider.getSipStatusEnum();
         this.presenceStatus = sipStatusEnum.getStatus(SipStatusEnum.OFFLINE);
+
+        String rlsUri
+            = provider.getAccountID().getAccountPropertyString(RLS_URI);
+
+        this.rlsUri
+            = (this.presenceEnabled
+                    && (rlsUri != null)
+                    && (rlsUri.trim().length() != 0))
+                ? rlsUri.trim()
+                : null;
     }
 
     /**
@@ -1842,7 +1880,8 @@ public class OperationSetPresenceSipImpl
 
     /**
      * Tries to find a <code>ContactSipImpl</code> which is identified either by
-     * a specific <code>contactID</code> or by a derivation of it.
+     * a specific <code>contactID</code> or by a derivation of it i.e. the
+     * <code>contactID</code> without its scheme, port and parameters.
      *
      * @param contactID
      *            the identifier of the <code>ContactSipImpl</code> to retrieve
@@ -1852,49 +1891,9 @@ public class OperationSetPresenceSipImpl
      */
     ContactSipImpl resolveContactID(String contactID)
     {
-        ContactSipImpl res = findContactByID(contactID);
-
-        if (res == null)
-        {
-            // we try to resolve the conflict by removing "sip:" from the id
-            if (contactID.startsWith("sip:"))
-                res = findContactByID(contactID.substring(4));
-
-            if (res == null)
-            {
-                int domainBeginIndex = contactID.indexOf('@');
-
-                // we try to remove the part after the '@'
-                if (domainBeginIndex > -1)
-                {
-                    res
-                        = findContactByID(
-                            contactID.substring(0, domainBeginIndex));
-
-                    // try the same thing without sip:
-                    if ((res == null) && contactID.startsWith("sip:"))
-                        res
-                            = findContactByID(
-                                contactID.substring(4, domainBeginIndex));
-                }
-
-                if (res == null)
-                {
-                    // sip:user_name@ip_address:5060;transport=udp
-                    int domainEndIndex = contactID.indexOf(":", 4);
-
-                    // if port is absent try removing the params after ;
-                    if (domainEndIndex < 0)
-                        domainEndIndex = contactID.indexOf(";", 4);
-
-                    if (domainEndIndex > -1)
-                        res
-                            = findContactByID(
-                                contactID.substring(4, domainEndIndex));
-                }
-            }
-        }
-        return res;
+        // sip:user_name@ip_address:5060;transport=udp is looked up as
+        // user_name@ip_address
+        return ssContactList.findContactByAddress(contactID);
     }
 
     /**
@@ -2077,149 +2076,58 @@ public class OperationSetPresenceSipImpl
       */
      public void setPidfPresenceStatus(String presenceDoc)
      {
-         Document doc = convertDocument(presenceDoc);
-
-         if (doc == null)
-             return;
-
          if (logger.isDebugEnabled())
              logger.debug("parsing:\n" + presenceDoc);
 
-         // <presence>
-         NodeList presList = doc.getElementsByTagNameNS(PIDF_NS_VALUE,
-                 PRESENCE_ELEMENT);
-
-         if (presList.getLength() == 0)
-         {
-             presList = doc.getElementsByTagNameNS(ANY_NS, PRESENCE_ELEMENT);
+         PidfParser.Presence presence = PidfParser.parse(presenceDoc);
 
-             if (presList.getLength() == 0)
-             {
-                 logger.error("no presence element in this document");
-                 return;
-             }
-         }
-         if (presList.getLength() > 1)
-         {
-             logger.warn("more than one presence element in this document");
-         }
-         Node presNode = presList.item(0);
-         if (presNode.getNodeType() != Node.ELEMENT_NODE)
-         {
-             logger.error("the presence node is not an element");
+         if (presence == null)
              return;
-         }
-         Element presence = (Element) presNode;
+
+         // also accept entity URIs starting with pres: instead of sip:
+         String entity = presence.getEntity();
+
+         if (entity.startsWith("pres:"))
+             entity = entity.substring("pres:".length());
 
          // RPID area
 
          // due to a lot of changes in the past years to this functionality,
-         // the namespace used by servers and clients are often wrong so we just
-         // ignore namespaces here
+         // the namespace used by servers and clients are often wrong so the
+         // parser just ignores namespaces
 
          PresenceStatus personStatus = null;
-         URI personStatusIcon = null;
-         NodeList personList = presence.getElementsByTagNameNS(ANY_NS,
-                 PERSON_ELEMENT);
+         String activity = presence.getActivity();
+
+         if (AWAY_ELEMENT.equals(activity))
+             personStatus = sipStatusEnum.getStatus(SipStatusEnum.AWAY);
+         else if (BUSY_ELEMENT.equals(activity))
+             personStatus = sipStatusEnum.getStatus(SipStatusEnum.BUSY);
+         else if (OTP_ELEMENT.equals(activity))
+             personStatus = sipStatusEnum.getStatus(SipStatusEnum.ON_THE_PHONE);
 
-         //if (personList.getLength() > 1) {
-         //    logger.error("more than one person in this document");
-         //    return;
-         //}
+         String statusIcon = presence.getStatusIcon();
 
-         if (personList.getLength() > 0)
+         if (statusIcon != null)
          {
-             Node personNode = personList.item(0);
-             if (personNode.getNodeType() != Node.ELEMENT_NODE)
-             {
-                 logger.error("the person node is not an element");
-                 return;
-             }
-             Element person = (Element) personNode;
+             URI personStatusIcon = null;
 
-             NodeList activityList =
-                 person.getElementsByTagNameNS(ANY_NS, ACTIVITY_ELEMENT);
-             if (activityList.getLength() > 0)
+             try
              {
-                 Element activity = null;
-                 // find the first correct activity
-                 for (int i = 0; i < activityList.getLength(); i++)
-                 {
-                     Node activityNode = activityList.item(i);
-
-                     if (activityNode.getNodeType() != Node.ELEMENT_NODE)
-                         continue;
-
-                     activity = (Element) activityNode;
-
-                     NodeList statusList = activity.getChildNodes();
-                     for (int j = 0; j < statusList.getLength(); j++)
-                     {
-                         Node statusNode = statusList.item(j);
-                         if (statusNode.getNodeType() == Node.ELEMENT_NODE)
-                         {
-                             String statusname = statusNode.getLocalName();
-                             if (statusname.equals(AWAY_ELEMENT))
-                             {
-                                 personStatus = sipStatusEnum
-                                     .getStatus(SipStatusEnum.AWAY);
-                                 break;
-                             }
-                             else if (statusname.equals(BUSY_ELEMENT))
-                             {
-                                 personStatus = sipStatusEnum
-                                     .getStatus(SipStatusEnum.BUSY);
-                                 break;
-                             }
-                             else if (statusname.equals(OTP_ELEMENT))
-                             {
-                                 personStatus = sipStatusEnum
-                                     .getStatus(SipStatusEnum.ON_THE_PHONE);
-                                 break;
-                             }
-                         }
-                     }
-                     if (personStatus != null)
-                         break;
-                 }
+                 personStatusIcon = URI.create(statusIcon);
              }
-             NodeList statusIconList = person.getElementsByTagNameNS(ANY_NS,
-                     STATUS_ICON_ELEMENT);
-             if (statusIconList.getLength() > 0)
+             catch (IllegalArgumentException ex)
              {
-                 Element statusIcon;
-                 Node statusIconNode = statusIconList.item(0);
-                 if (statusIconNode.getNodeType() == Node.ELEMENT_NODE)
-                 {
-                     statusIcon = (Element) statusIconNode;
-                     String content = getTextContent(statusIcon);
-                     if (content != null && content.trim().length() != 0)
-                     {
-                         try
-                         {
-                             personStatusIcon = URI.create(content);
-                         }
-                         catch (IllegalArgumentException ex)
-                         {
-                             logger.error("Person's status icon uri: " +
-                                     content + " is invalid");
-                         }
-                     }
-                 }
+                 logger.error("Person's status icon uri: " +
+                         statusIcon + " is invalid");
              }
-         }
+             if (personStatusIcon != null)
+             {
+                 ContactSipImpl contact = resolveContactID(entity);
 
-          if(personStatusIcon != null)
-          {
-              String contactID =
-                  XMLUtils.getAttribute(presNode, ENTITY_ATTRIBUTE);
-
-              if (contactID.startsWith("pres:"))
-              {
-                  contactID = contactID.substring("pres:".length());
-              }
-              Contact contact = resolveContactID(contactID);
-              updateContactIcon((ContactSipImpl) contact, personStatusIcon);
+                 if (contact != null)
+                     updateContactIcon(contact, personStatusIcon);
+             }
          }
 
          // Vector containing the list of status to set for each contact in
@@ -2228,34 +2136,20 @@ public class OperationSetPresenceSipImpl
          List<Object[]> newPresenceStates = new Vector<Object[]>(3, 2);
 
          // <tuple>
-         NodeList tupleList = getPidfChilds(presence, TUPLE_ELEMENT);
-         for (int i = 0; i < tupleList.getLength(); i++)
+         for (PidfParser.Tuple tuple : presence.getTuples())
          {
-             Node tupleNode = tupleList.item(i);
-
-             if (tupleNode.getNodeType() != Node.ELEMENT_NODE)
-                 continue;
-
-             Element tuple = (Element) tupleNode;
-
-             // <contact>
-             NodeList contactList = getPidfChilds(tuple, CONTACT_ELEMENT);
-
              // we use a vector here and not an unique contact to handle an
              // error case where many contacts are associated with a status
              // Vector<ContactSipImpl>
              List<Object[]> sipcontact = new Vector<Object[]>(1, 3);
              String contactID = null;
-             if (contactList.getLength() == 0)
+
+             // <contact>
+             if (tuple.getContacts().isEmpty())
              {
                  // use the entity attribute of the presence node
-                 contactID = XMLUtils.getAttribute(
-                         presNode, ENTITY_ATTRIBUTE);
-                 // also accept entity URIs starting with pres: instead of sip:
-                 if (contactID.startsWith("pres:"))
-                 {
-                     contactID = contactID.substring("pres:".length());
-                 }
+                 contactID = entity;
+
                  Contact tmpContact = resolveContactID(contactID);
 
                  if (tmpContact != null)
@@ -2266,16 +2160,9 @@ public class OperationSetPresenceSipImpl
              else
              {
                  // this is normally not permitted by RFC3863
-                 for (int j = 0; j < contactList.getLength(); j++)
+                 for (PidfParser.TupleContact contact : tuple.getContacts())
                  {
-                     Node contactNode = contactList.item(j);
-
-                     if (contactNode.getNodeType() != Node.ELEMENT_NODE)
-                         continue;
-
-                     Element contact = (Element) contactNode;
-
-                     contactID = getTextContent(contact);
+                     contactID = contact.getUri();
                      // also accept entity URIs starting with pres: instead
                      // of sip:
                      if (contactID.startsWith("pres:"))
@@ -2291,7 +2178,7 @@ public class OperationSetPresenceSipImpl
                      Object tab[] = new Object[2];
 
                      // search if the contact has a priority
-                     String prioStr = contact.getAttribute(PRIORITY_ATTRIBUTE);
+                     String prioStr = contact.getPriority();
                      Float prio = null;
                      try
                      {
@@ -2362,82 +2249,21 @@ public class OperationSetPresenceSipImpl
                  continue;
              }
 
-             // <status>
-             NodeList statusList = getPidfChilds(tuple, STATUS_ELEMENT);
-
-             // in case of many status, just consider the last one
-             // this is normally not permitted by RFC3863
-             int index = statusList.getLength() - 1;
-             Node statusNode = null;
-             do
-             {
-                 Node temp = statusList.item(index);
-                 if (temp.getNodeType() == Node.ELEMENT_NODE)
-                 {
-                     statusNode = temp;
-                     break;
-                 }
-                 index--;
-             }
-             while (index >= 0);
+             // <status>, in case of many status or basic the parser keeps the
+             // last one, this is normally not permitted by RFC3863
+             String basic = tuple.getBasic();
 
-             Element basic = null;
-
-             if (statusNode == null)
-             {
-                 if (logger.isDebugEnabled())
-                     logger.debug("no valid status in this tuple");
-             }
-             else
-             {
-                 Element status = (Element) statusNode;
-
-                 // <basic>
-                 NodeList basicList = getPidfChilds(status, BASIC_ELEMENT);
-
-                 // in case of many basic, just consider the last one
-                 // this is normally not permitted by RFC3863
-                 index = basicList.getLength() - 1;
-                 Node basicNode = null;
-                 do
-                 {
-                     Node temp = basicList.item(index);
-                     if (temp.getNodeType() == Node.ELEMENT_NODE)
-                     {
-                         basicNode = temp;
-                         break;
-                     }
-                     index--;
-                 }
-                 while (index >= 0);
-
-                 if (basicNode == null)
-                 {
-                     if (logger.isDebugEnabled())
-                         logger.debug("no valid <basic> in this status");
-                 }
-                 else
-                 {
-                     basic = (Element) basicNode;
-                 }
-             }
+             if ((basic == null) && logger.isDebugEnabled())
+                 logger.debug("no valid <basic> in this tuple");
 
              // search for a <note> that can define a more precise
              // status this is not recommended by RFC3863 but some im
              // clients use this.
-             NodeList noteList = getPidfChilds(tuple, NOTE_ELEMENT);
-
              boolean changed = false;
-             for (int k = 0; k < noteList.getLength() && !changed; k++)
+             for (Iterator<String> notes = tuple.getNotes().iterator();
+                     notes.hasNext() && !changed;)
              {
-                 Node noteNode = noteList.item(k);
-
-                 if (noteNode.getNodeType() != Node.ELEMENT_NODE)
-                     continue;
-
-                 Element note = (Element) noteNode;
-
-                 String state = getTextContent(note);
+                 String state = notes.next();
 
                  Iterator<PresenceStatus> states
                      = sipStatusEnum.getSupportedStatusSet();
@@ -2458,7 +2284,7 @@ public class OperationSetPresenceSipImpl
 
              if (changed == false && basic != null)
              {
-                 if (getTextContent(basic).equalsIgnoreCase(ONLINE_STATUS))
+                 if (basic.equalsIgnoreCase(ONLINE_STATUS))
                  {
                      // if its online(open) we use the person status
                      // if any, otherwise just mark as online
@@ -2477,8 +2303,7 @@ public class OperationSetPresenceSipImpl
                                  newPresenceStates);
                      }
                  }
-                 else if (getTextContent(basic).equalsIgnoreCase(
-                         OFFLINE_STATUS))
+                 else if (basic.equalsIgnoreCase(OFFLINE_STATUS))
                  {
                      // if its offline we ignore person status
                      newPresenceStates = setStatusForContacts(
@@ -2720,31 +2545,6 @@ public class OperationSetPresenceSipImpl
          return res;
      }
 
-     /**
-      * Gets the list of the descendant of an element in the pidf namespace.
-      * If the list is empty, we try to get this list in any namespace.
-      * This method is useful for being able to read pidf document without any
-      * namespace or with a wrong namespace.
-      *
-      * @param element the base element concerned.
-      * @param childName the name of the descendants to match on.
-      *
-      * @return The list of all the descendant node.
-      */
-     private NodeList getPidfChilds(Element element, String childName)
-     {
-         NodeList res;
-
-         res = element.getElementsByTagNameNS(PIDF_NS_VALUE, childName);
-
-         if (res.getLength() == 0)
-         {
-             res = element.getElementsByTagNameNS(ANY_NS, childName);
-         }
-
-         return res;
-     }
-
      /**
       * Associate the provided presence state to the contacts considering the
       * current presence states and priorities.
@@ -2844,7 +2644,8 @@ public class OperationSetPresenceSipImpl
      {
          if (this.presenceEnabled == false
              || !contact.isResolvable()
-             || !contact.isPersistent())
+             || !contact.isPersistent()
+             || isInResourceList(contact))
              return;
 
          // Attempt to subscribe.
@@ -2858,6 +2659,68 @@ public class OperationSetPresenceSipImpl
          }
      }
 
+    /**
+     * Subscribes to every contact in the contact list which is not included
+     * in the resource list we are subscribed to.
+     */
+    private void pollContactsNotInResourceList()
+    {
+        for (ContactSipImpl contact : ssContactList
+                .getAllContacts(ssContactList.getRootGroup()))
+        {
+            forcePollContact(contact);
+        }
+    }
+
+    /**
+     * Subscribes to the resource list specified by the {@link #RLS_URI}
+     * account property if there is one.
+     *
+     * @return <tt>true</tt> if a subscription to the resource list has been
+     * sent; <tt>false</tt> if we have to subscribe to every contact
+     */
+    private boolean subscribeToResourceList()
+    {
+        if (rlsUri == null)
+            return false;
+
+        try
+        {
+            ResourceListSubscription subscription
+                = new ResourceListSubscription(
+                        parentProvider.parseAddressString(rlsUri));
+
+            subscriber.poll(subscription);
+            rlsSubscription = subscription;
+            return true;
+        }
+        catch (ParseException ex)
+        {
+            logger.error("Invalid resource list URI " + rlsUri, ex);
+        }
+        catch (OperationFailedException ex)
+        {
+            logger.error("Failed to subscribe to the resource list", ex);
+        }
+        return false;
+    }
+
+    /**
+     * Determines whether a specific contact is included in the resource list
+     * we are subscribed to and thus doesn't need a subscription of its own.
+     *
+     * @param contact the contact
+     * @return <tt>true</tt> if the presence of <tt>contact</tt> is notified
+     * through the resource list
+     */
+    private boolean isInResourceList(ContactSipImpl contact)
+    {
+        synchronized (rlsResources)
+        {
+            return rlsResources.contains(contact.getAddress());
+        }
+    }
+
     /**
      * Unsubscribe to every contact.
      */
@@ -2867,6 +2730,25 @@ public class OperationSetPresenceSipImpl
         {
             logger.debug("Trying to unsubscribe to every contact");
         }
+        ResourceListSubscription rlsSubscription = this.rlsSubscription;
+
+        if (rlsSubscription != null)
+        {
+            this.rlsSubscription = null;
+            try
+            {
+                subscriber.unsubscribe(rlsSubscription.getAddress(), false);
+            }
+            catch (Throwable ex)
+            {
+                logger.error("Failed to unsubscribe to the resource list", ex);
+            }
+        }
+        synchronized (rlsResources)
+        {
+            rlsResources.clear();
+        }
+
         // Send event notifications saying that all our buddies are offline.
         for (ContactSipImpl contact : ssContactList
                 .getUniqueContacts(ssContactList.getRootGroup()))
@@ -2997,6 +2879,24 @@ public class OperationSetPresenceSipImpl
           */
          public void run()
          {
+             // renew the subscription to the resource list if it has been
+             // terminated
+             ResourceListSubscription rlsSubscription
+                 = OperationSetPresenceSipImpl.this.rlsSubscription;
+
+             if (rlsSubscription != null)
+             {
+                 try
+                 {
+                     subscriber.poll(rlsSubscription);
+                 }
+                 catch (OperationFailedException ex)
+                 {
+                     logger.error(
+                             "Failed to subscribe to the resource list", ex);
+                 }
+             }
+
              // send a subscription for every contact
              Iterator<Contact> rootContactsIter
                 = getServerStoredContactListRoot().contacts();
@@ -3119,12 +3019,10 @@ public class OperationSetPresenceSipImpl
                 return;
             }
 
-            // Subcribe to each contact in the list
-            for (ContactSipImpl contact : ssContactList
-                    .getAllContacts(ssContactList.getRootGroup()))
-            {
-                forcePollContact(contact);
-            }
+            // Subscribe to the resource list or, if there is none, to each
+            // contact in the list
+            if (!subscribeToResourceList())
+                pollContactsNotInResourceList();
 
             // create the new polling task
             pollingTask = new PollOfflineContactsTask();
@@ -3156,6 +3054,15 @@ public class OperationSetPresenceSipImpl
             }
             // Destroy XCAP contacts
             ssContactList.destroy();
+            if (rlsSubscription != null)
+            {
+                subscriber.removeSubscription(rlsSubscription.getAddress());
+                rlsSubscription = null;
+            }
+            synchronized (rlsResources)
+            {
+                rlsResources.clear();
+            }
             // if connection failed we have lost network connectivity
             // we must fire that all contacts has gone offline
             for (ContactSipImpl contact : ssContactList
@@ -3557,6 +3464,294 @@ public class OperationSetPresenceSipImpl
         }
     }
 
+    /**
+     * Represents a subscription to the presence of the contacts included in a
+     * resource list (rfc4662). The notifications of the resource list server
+     * are split into the presence documents of the contacts which are then
+     * processed as if they came from separate subscriptions.
+     */
+    private class ResourceListSubscription
+        extends EventPackageSubscriber.Subscription
+    {
+        /**
+         * The version of the last RLMI document we processed.
+         */
+        private int version = -1;
+
+        /**
+         * Initializes a new <tt>ResourceListSubscription</tt>.
+         *
+         * @param address the URI of the resource list
+         */
+        public ResourceListSubscription(Address address)
+        {
+            super(address);
+        }
+
+        /**
+         * Announces that we support event lists and their content types.
+         *
+         * @param req the SUBSCRIBE request
+         * @param headerFactory the factory of the headers to add
+         * @throws ParseException if a header cannot be created
+         */
+        @Override
+        protected void populateSubscribeRequest(
+            Request req,
+            HeaderFactory headerFactory)
+            throws ParseException
+        {
+            req.addHeader(headerFactory.createSupportedHeader("eventlist"));
+            req.addHeader(
+                    headerFactory.createAcceptHeader(
+                            "application",
+                            EventListNotification.RLMI_XML));
+            req.addHeader(
+                    headerFactory.createAcceptHeader(
+                            "multipart",
+                            EventListNotification.MULTIPART_RELATED));
+        }
+
+        /**
+         * Accepts the multipart/related bodies of the resource list server.
+         *
+         * @param contentType the content type of a NOTIFY body
+         * @return <tt>true</tt> if <tt>contentType</tt> is
+         * multipart/related
+         */
+        @Override
+        protected boolean isContentTypeSupported(ContentTypeHeader contentType)
+        {
+            return "multipart".equalsIgnoreCase(contentType.getContentType())
+                && EventListNotification.MULTIPART_RELATED.equalsIgnoreCase(
+                        contentType.getContentSubType());
+        }
+
+        /*
+         * Implements
+         * EventPackageSubscriber.Subscription#processActiveRequest(RequestEvent
+         * , byte[]).
+         */
+        protected void processActiveRequest(
+            RequestEvent requestEvent,
+            byte[] rawContent)
+        {
+            if (rawContent == null)
+                return;
+
+            ContentTypeHeader contentType
+                = (ContentTypeHeader)
+                    requestEvent.getRequest().getHeader(ContentTypeHeader.NAME);
+
+            if ((contentType == null) || !isContentTypeSupported(contentType))
+            {
+                /*
+                 * The URI is not a resource list to this server, fall back to
+                 * a subscription per contact.
+                 */
+                logger.warn(getAddress() + " is not a resource list");
+                setPidfPresenceStatus(new String(rawContent));
+                terminate();
+                return;
+            }
+
+            EventListNotification notification
+                = EventListNotification.parse(
+                        contentType.getParameter("boundary"),
+                        rawContent);
+
+            if (notification == null)
+                return;
+
+            synchronized (this)
+            {
+                // the notifications of a resource list may be reordered
+                if (!notification.isFullState()
+                        && (notification.getVersion() <= version))
+                    return;
+                version = notification.getVersion();
+            }
+
+            List<ContactSipImpl> added = new ArrayList<ContactSipImpl>();
+            Set<String> resources = new HashSet<String>();
+
+            for (EventListNotification.Resource resource
+                    : notification.getResources())
+            {
+                ContactSipImpl contact = resolveContactID(resource.getUri());
+
+                if (contact == null)
+                    continue;
+
+                resources.add(contact.getAddress());
+                processResource(contact, resource);
+            }
+
+            synchronized (rlsResources)
+            {
+                if (notification.isFullState())
+                    rlsResources.retainAll(resources);
+                for (ContactSipImpl contact
+                        : ssContactList.getAllContacts(
+                                ssContactList.getRootGroup()))
+                {
+                    if (resources.contains(contact.getAddress())
+                            && rlsResources.add(contact.getAddress()))
+                        added.add(contact);
+                }
+            }
+
+            // the contacts in the list don't need subscriptions of their own
+            for (ContactSipImpl contact : added)
+            {
+                try
+                {
+                    subscriber.unsubscribe(
+                            OperationSetPresenceSipImpl.this.getAddress(
+                                    contact),
+                            false);
+                }
+                catch (OperationFailedException ex)
+                {
+                    logger.error(
+                            "Failed to unsubscribe to contact " + contact, ex);
+                }
+            }
+
+            // and the ones which aren't in the list (anymore) do
+            if (notification.isFullState())
+                pollContactsNotInResourceList();
+        }
+
+        /**
+         * Applies the state of a resource of the list to the corresponding
+         * contact.
+         *
+         * @param contact the contact
+         * @param resource the resource of the list corresponding to
+         * <tt>contact</tt>
+         */
+        private void processResource(
+            ContactSipImpl contact,
+            EventListNotification.Resource resource)
+        {
+            String state = resource.getState();
+
+            if (SubscriptionStateHeader.PENDING.equalsIgnoreCase(state))
+            {
+                contact.setSubscriptionState(SubscriptionStateHeader.PENDING);
+            }
+            else if (SubscriptionStateHeader.TERMINATED.equalsIgnoreCase(
+                    state))
+            {
+                changePresenceStatusForContact(
+                    contact,
+                    sipStatusEnum.getStatus(SipStatusEnum.UNKNOWN));
+                contact.setSubscriptionState(
+                        SubscriptionStateHeader.TERMINATED);
+            }
+            else if (SubscriptionStateHeader.ACTIVE.equalsIgnoreCase(state))
+            {
+                contact.setSubscriptionState(SubscriptionStateHeader.ACTIVE);
+                if (!contact.isResolved())
+                    finalizeSubscription(contact);
+            }
+
+            byte[] content = resource.getContent();
+
+            if (content != null)
+            {
+                try
+                {
+                    setPidfPresenceStatus(new String(content, "UTF-8"));
+                }
+                catch (java.io.UnsupportedEncodingException ex)
+                {
+                    // UTF-8 is always supported.
+                    setPidfPresenceStatus(new String(content));
+                }
+            }
+        }
+
+        /*
+         * Implements
+         * EventPackageSubscriber.Subscription#processFailureResponse(
+         * ResponseEvent, int).
+         */
+        protected void processFailureResponse(
+            ResponseEvent responseEvent,
+            int statusCode)
+        {
+            logger.warn("Subscription to the resource list " + getAddress()
+                    + " failed with " + statusCode);
+
+            // we won't try again before we register again
+            if (rlsSubscription == this)
+                rlsSubscription = null;
+            resourceListTerminated();
+        }
+
+        /*
+         * Implements
+         * EventPackageSubscriber.Subscription#processSuccessResponse(
+         * ResponseEvent, int).
+         */
+        protected void processSuccessResponse(
+            ResponseEvent responseEvent,
+            int statusCode)
+        {
+        }
+
+        /*
+         * Implements
+         * EventPackageSubscriber.Subscription#processTerminatedRequest(
+         * RequestEvent, String).
+         */
+        protected void processTerminatedRequest(
+            RequestEvent requestEvent,
+            String reasonCode)
+        {
+            // the polling task will subscribe again
+            resourceListTerminated();
+        }
+
+        /**
+         * Stops using this subscription and subscribes to every contact
+         * separately.
+         */
+        private void terminate()
+        {
+            if (rlsSubscription == this)
+                rlsSubscription = null;
+            try
+            {
+                subscriber.unsubscribe(getAddress(), false);
+            }
+            catch (OperationFailedException ex)
+            {
+                logger.error("Failed to unsubscribe to the resource list", ex);
+            }
+            resourceListTerminated();
+        }
+
+        /**
+         * Subscribes to the contacts of the resource list separately once
+         * the subscription to the list is over.
+         */
+        private void resourceListTerminated()
+        {
+            synchronized (this)
+            {
+                version = -1;
+            }
+            synchronized (rlsResources)
+            {
+                rlsResources.clear();
+            }
+            pollContactsNotInResourceList();
+        }
+    }
+
     /**
      * Represents a subscription to the presence.winfo event package.
      *
@@ -6,7 +6,6 @@
  */
 package net.java.sip.communicator.impl.protocol.sip;
 
-import java.awt.*;
 import java.io.*;
 import java.text.*;
 import java.util.*;
@@ -137,6 +136,27 @@ public class OperationSetTelephonyConferencingSipImpl
      */
     private static final int REFRESH_MARGIN = 60;
 
+    /**
+     * The value of the conference-info XML attribute <tt>state</tt> which
+     * removes the element it is specified on.
+     */
+    private static final String STATE_DELETED
+        = ConferenceInfoMerger.STATE_DELETED;
+
+    /**
+     * The value of the conference-info XML attribute <tt>state</tt> which
+     * specifies that the element it is specified on describes its full state.
+     */
+    private static final String STATE_FULL = ConferenceInfoMerger.STATE_FULL;
+
+    /**
+     * The value of the conference-info XML attribute <tt>state</tt> which
+     * specifies that the element it is specified on only describes the
+     * changes of its state.
+     */
+    private static final String STATE_PARTIAL
+        = ConferenceInfoMerger.STATE_PARTIAL;
+
     /**
      * The time in seconds after which a <tt>Subscription</tt> should be expired
      * by the <tt>OperationSetTelephonyConferencingSipImpl</tt> instance which
@@ -341,18 +361,31 @@ public class OperationSetTelephonyConferencingSipImpl
 
     /**
      * Generates the conference-info XML to be sent to a specific
-     * <tt>CallPeer</tt> in order to notify it of the current state of the
-     * conference managed by the local peer.
+     * <tt>CallPeer</tt> in order to notify it of the state of the conference
+     * managed by the local peer. The first notification and the notifications
+     * which are explicitly requested to do so describe the full state of the
+     * conference; the others only describe the users which have changed since
+     * the last notification of the <tt>CallPeer</tt>.
      *
      * @param callPeer the <tt>CallPeer</tt> to generate conference-info XML for
-     * @param version the value of the version attribute of the
-     * <tt>conference-info</tt> root element of the conference-info XML to be
-     * generated
+     * @param delta the <tt>ConferenceInfoDelta</tt> which remembers the users
+     * the specified <tt>callPeer</tt> has last been notified about
+     * @param usersXML the <tt>user</tt> XML elements of the <tt>CallPeer</tt>s
+     * in the conference by entity as returned by {@link #getUsersXML(
+     * CallSipImpl)}
+     * @param full <tt>true</tt> to generate a <tt>state="full"</tt>
+     * conference-info XML document regardless of what the specified
+     * <tt>callPeer</tt> has been notified about
      * @return the conference-info XML to be sent to the specified
-     * <tt>callPeer</tt> in order to notify it of the current state of the
-     * conference managed by the local peer
+     * <tt>callPeer</tt> in order to notify it of the state of the conference
+     * managed by the local peer or <tt>null</tt> if the state hasn't changed
+     * since the last notification
      */
-    private String getConferenceInfoXML(CallPeerSipImpl callPeer, int version)
+    private String getConferenceInfoXML(
+            CallPeerSipImpl callPeer,
+            ConferenceInfoDelta delta,
+            Map<String, String> usersXML,
+            boolean full)
     {
         Dialog dialog = callPeer.getDialog();
         String localParty = null;
@@ -363,39 +396,23 @@ public class OperationSetTelephonyConferencingSipImpl
 
             if (localPartyAddress != null)
                 localParty
-                    = stripParametersFromAddress(
+                    = ConferenceInfoMerger.stripParametersFromAddress(
                         localPartyAddress.getURI().toString());
         }
 
-        StringBuffer xml = new StringBuffer();
         CallSipImpl call = callPeer.getCall();
-        List<CallPeer> crossPeers = new ArrayList<CallPeer>();
-        Iterator<CallPeer> crossProtocolCallPeerIter =
-            call.getCrossProtocolCallPeers();
+        Map<String, String> users = new LinkedHashMap<String, String>();
 
-        while (crossProtocolCallPeerIter.hasNext())
-        {
-            MediaAwareCallPeer<?,?,?> crossPeer =
-                (MediaAwareCallPeer<?,?,?>)crossProtocolCallPeerIter.next();
-            Iterator<CallPeerSipImpl> it = call.getCallPeers();
-            boolean found = false;
+        users.put(localParty, getLocalUserXML(callPeer, localParty));
+        users.putAll(usersXML);
 
-            while(it.hasNext())
-            {
-                CallPeerSipImpl cpsip = it.next();
-                if(cpsip.getAddress().equals(crossPeer.getAddress()))
-                {
-                    found = true;
-                    break;
-                }
-            }
+        ConferenceInfoDelta.Update update = delta.update(users, full);
 
-            if(found)
-                continue;
+        if (update == null)
+            return null;
+        full = update.isFull();
 
-            if(!crossPeers.contains(crossPeer))
-                crossPeers.add(crossPeer);
-        }
+        StringBuffer xml = new StringBuffer();
 
         xml.append( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n");
         // <conference-info>
@@ -403,11 +420,16 @@ public class OperationSetTelephonyConferencingSipImpl
         // entity
         append(xml, " entity=\"", domElementWriter.encode(localParty), "\"");
         // state
-        xml.append(" state=\"full\"");
+        append(xml, " state=\"", full ? STATE_FULL : STATE_PARTIAL, "\"");
         // version
-        append(xml, " version=\"", Integer.toString(version), "\">");
-        // <conference-description/>
-        append(xml, "<", ELEMENT_CONFERENCE_DESCRIPTION, "/>");
+        append(
+                xml,
+                " version=\"", Integer.toString(update.getVersion()), "\">");
+        if (full)
+        {
+            // <conference-description/>
+            append(xml, "<", ELEMENT_CONFERENCE_DESCRIPTION, "/>");
+        }
         // <conference-state>
         append(xml, "<", ELEMENT_CONFERENCE_STATE, ">");
         // <user-count>
@@ -419,7 +441,54 @@ public class OperationSetTelephonyConferencingSipImpl
         // </conference-state>
         append(xml, "</", ELEMENT_CONFERENCE_STATE, ">");
         // <users>
-        append(xml, "<", ELEMENT_USERS, ">");
+        append(xml, "<", ELEMENT_USERS);
+        if (!full)
+        {
+            // The users which aren't described haven't changed.
+            append(xml, " state=\"", STATE_PARTIAL, "\"");
+        }
+        xml.append(">");
+
+        for (Map.Entry<String, String> user : update.getUsers().entrySet())
+        {
+            String userXML = user.getValue();
+
+            if (userXML == null)
+            {
+                // <user/>
+                append(xml, "<", ELEMENT_USER);
+                // entity
+                append(
+                    xml,
+                    " entity=\"", domElementWriter.encode(user.getKey()), "\"");
+                // state
+                append(xml, " state=\"", STATE_DELETED, "\"/>");
+            }
+            else
+                xml.append(userXML);
+        }
+
+        // </users>
+        append(xml, "</", ELEMENT_USERS, ">");
+        // </conference-info>
+        append(xml, "</", ELEMENT_CONFERENCE_INFO, ">");
+        return xml.toString();
+    }
+
+    /**
+     * Generates the <tt>user</tt> XML element which describes the local peer
+     * in the conference-info XML to be sent to a specific <tt>CallPeer</tt>.
+     *
+     * @param callPeer the <tt>CallPeer</tt> to generate the <tt>user</tt> XML
+     * element for
+     * @param localParty the entity of the local peer in the <tt>Dialog</tt>
+     * with the specified <tt>callPeer</tt>
+     * @return the <tt>user</tt> XML element which describes the local peer in
+     * the conference-info XML to be sent to the specified <tt>callPeer</tt>
+     */
+    private String getLocalUserXML(CallPeerSipImpl callPeer, String localParty)
+    {
+        StringBuffer xml = new StringBuffer();
 
         // <user>
         append(xml, "<", ELEMENT_USER);
@@ -451,108 +520,63 @@ public class OperationSetTelephonyConferencingSipImpl
         append(xml, "</", ELEMENT_ENDPOINT, ">");
         // </user>
         append(xml, "</", ELEMENT_USER, ">");
-
-        Iterator<CallPeerSipImpl> callPeerIter = call.getCallPeers();
-
-        while (callPeerIter.hasNext())
-            getUserXML(callPeerIter.next(), xml);
-
-        for(CallPeer cp : crossPeers)
-        {
-            MediaAwareCallPeer<?,?,?> crossPeer =
-                (MediaAwareCallPeer<?,?,?>)cp;
-            getUserXML(crossPeer, xml);
-        }
-
-        // </users>
-        append(xml, "</", ELEMENT_USERS, ">");
-        // </conference-info>
-        append(xml, "</", ELEMENT_CONFERENCE_INFO, ">");
         return xml.toString();
     }
 
     /**
-     * Reads the text content of the <tt>src-id</tt> XML element of a
-     * <tt>media</tt> XML element of a specific <tt>endpoint</tt> XML element.
+     * Generates the <tt>user</tt> XML elements which describe the
+     * <tt>CallPeer</tt>s of a specific <tt>Call</tt> and its cross-protocol
+     * <tt>CallPeer</tt>s in the conference-info XML to be sent to any of its
+     * <tt>CallPeer</tt>s.
      *
-     * @param endpoint an XML <tt>Node</tt> which represents the
-     * <tt>endpoint</tt> XML element from which to get the text content of a
-     * <tt>src-id</tt> XML element of a <tt>media</tt> XML element
-     * @param mediaType the type of the media to get the <tt>src-id</tt> of
-     * @return the text content of the <tt>src-id</tt> XML element of the
-     * <tt>media</tt> XML element of the specified <tt>endpoint</tt> XML element
-     * if any; otherwise, <tt>null</tt>
+     * @param call the <tt>Call</tt> to generate the <tt>user</tt> XML elements
+     * for
+     * @return the <tt>user</tt> XML elements which describe the
+     * <tt>CallPeer</tt>s of the specified <tt>call</tt> by entity
      */
-    private String getEndpointMediaSrcId(Node endpoint, MediaType mediaType)
+    private Map<String, String> getUsersXML(CallSipImpl call)
     {
-        NodeList endpointChildList = endpoint.getChildNodes();
-        int endpoingChildCount = endpointChildList.getLength();
-        String mediaTypeStr = mediaType.toString();
+        List<CallPeer> crossPeers = new ArrayList<CallPeer>();
+        Iterator<CallPeer> crossProtocolCallPeerIter =
+            call.getCrossProtocolCallPeers();
 
-        for (int endpointChildIndex = 0;
-                endpointChildIndex < endpoingChildCount;
-                endpointChildIndex++)
+        while (crossProtocolCallPeerIter.hasNext())
         {
-            Node endpointChild = endpointChildList.item(endpointChildIndex);
+            MediaAwareCallPeer<?,?,?> crossPeer =
+                (MediaAwareCallPeer<?,?,?>)crossProtocolCallPeerIter.next();
+            Iterator<CallPeerSipImpl> it = call.getCallPeers();
+            boolean found = false;
 
-            if (ELEMENT_MEDIA.equals(endpointChild.getNodeName()))
+            while(it.hasNext())
             {
-                NodeList mediaChildList = endpointChild.getChildNodes();
-                int mediaChildCount = mediaChildList.getLength();
-                String srcId = null;
-                String type = null;
-
-                for (int mediaChildIndex = 0;
-                        mediaChildIndex < mediaChildCount;
-                        mediaChildIndex++)
+                CallPeerSipImpl cpsip = it.next();
+                if(cpsip.getAddress().equals(crossPeer.getAddress()))
                 {
-                    Node mediaChild = mediaChildList.item(mediaChildIndex);
-                    String mediaChildName = mediaChild.getNodeName();
-
-                    if (ELEMENT_SRC_ID.equals(mediaChildName))
-                    {
-                        srcId = mediaChild.getTextContent();
-                        if (mediaTypeStr.equalsIgnoreCase(type))
-                            return srcId;
-                    }
-                    else if (ELEMENT_TYPE.equals(mediaChildName))
-                    {
-                        type = mediaChild.getTextContent();
-                        if ((srcId != null) && mediaTypeStr.equalsIgnoreCase(
-                                type))
-                            return srcId;
-                    }
+                    found = true;
+                    break;
                 }
             }
+
+            if(found)
+                continue;
+
+            if(!crossPeers.contains(crossPeer))
+                crossPeers.add(crossPeer);
         }
-        return null;
-    }
 
-    /**
-     * Reads the text content of the <tt>status</tt> XML element of a specific
-     * <tt>endpoint</tt> XML element.
-     *
-     * @param endpoint an XML <tt>Node</tt> which represents the
-     * <tt>endpoint</tt> XML element from which to get the text content of its
-     * <tt>status</tt> XML element
-     * @return the text content of the <tt>status</tt> XML element of the
-     * specified <tt>endpoint</tt> XML element if any; otherwise, <tt>null</tt>
-     */
-    private String getEndpointStatus(Node endpoint)
-    {
-        NodeList endpointChildList = endpoint.getChildNodes();
-        int endpoingChildCount = endpointChildList.getLength();
+        Map<String, String> users = new LinkedHashMap<String, String>();
+        Iterator<CallPeerSipImpl> callPeerIter = call.getCallPeers();
 
-        for (int endpointChildIndex = 0;
-                endpointChildIndex < endpoingChildCount;
-                endpointChildIndex++)
-        {
-            Node endpointChild = endpointChildList.item(endpointChildIndex);
+        while (callPeerIter.hasNext())
+            getUserXML(callPeerIter.next(), users);
 
-            if (ELEMENT_STATUS.equals(endpointChild.getNodeName()))
-                return endpointChild.getTextContent();
+        for(CallPeer cp : crossPeers)
+        {
+            MediaAwareCallPeer<?,?,?> crossPeer =
+                (MediaAwareCallPeer<?,?,?>)cp;
+            getUserXML(crossPeer, users);
         }
-        return null;
+        return users;
     }
 
     /**
@@ -662,30 +686,30 @@ public class OperationSetTelephonyConferencingSipImpl
     }
 
     /**
-     * Appends to a specific <tt>StringBuffer</tt> a <tt>user</tt> XML element
-     * tree which describes the participation of a specific <tt>CallPeer</tt> in
-     * a conference managed by the local peer represented by its associated
+     * Puts into a specific <tt>Map</tt> a <tt>user</tt> XML element tree which
+     * describes the participation of a specific <tt>CallPeer</tt> in a
+     * conference managed by the local peer represented by its associated
      * <tt>Call</tt>.
      *
      * @param callPeer the <tt>CallPeer</tt> which is to get its conference
-     * participation describes in a <tt>user</tt> XML element tree appended to
-     * the specified <tt>StringBuffer</tt>
-     * @param xml the <tt>StringBuffer</tt> to append the <tt>user</tt> XML
-     * tree describing the conference participation of the specified
-     * <tt>callPeer</tt> to
+     * participation describes in a <tt>user</tt> XML element tree put into
+     * the specified <tt>Map</tt>
+     * @param users the <tt>Map</tt> to put the <tt>user</tt> XML tree
+     * describing the conference participation of the specified
+     * <tt>callPeer</tt> into, by entity
      */
     private void getUserXML(MediaAwareCallPeer<?,?,?> callPeer,
-        StringBuffer xml)
+        Map<String, String> users)
     {
+        StringBuffer xml = new StringBuffer();
+        String entity
+            = ConferenceInfoMerger.stripParametersFromAddress(
+                    callPeer.getURI());
+
         // <user>
         append(xml, "<", ELEMENT_USER);
         // entity
-        append(
-            xml,
-            " entity=\"",
-            domElementWriter
-                .encode(stripParametersFromAddress(callPeer.getURI())),
-            "\"");
+        append(xml, " entity=\"", domElementWriter.encode(entity), "\"");
         // state
         xml.append(" state=\"full\">");
 
@@ -717,6 +741,7 @@ public class OperationSetTelephonyConferencingSipImpl
         append(xml, "</", ELEMENT_ENDPOINT, ">");
         // </user>
         append(xml, "</", ELEMENT_USER, ">");
+        users.put(entity, xml.toString());
     }
 
     /**
@@ -837,7 +862,9 @@ public class OperationSetTelephonyConferencingSipImpl
     /**
      * Notifies all <tt>Subscription</tt>s associated with and established in a
      * specific <tt>Call</tt> about a specific subscription state and the reason
-     * for that subscription state.
+     * for that subscription state. Only the <tt>Subscription</tt>s which
+     * haven't been notified about the current state of the conference yet are
+     * notified and only about its changes.
      *
      * @param subscriptionState the subscription state to notify about
      * @param reason the reason for entering the specified
@@ -853,16 +880,32 @@ public class OperationSetTelephonyConferencingSipImpl
         EventPackageNotifier.SubscriptionFilter subscriptionFilter
             = new EventPackageNotifier.SubscriptionFilter()
             {
+                /**
+                 * The <tt>user</tt> XML elements of the <tt>CallPeer</tt>s of
+                 * <tt>call</tt> which are the same for all the
+                 * <tt>Subscription</tt>s and are thus only generated once.
+                 */
+                private Map<String, String> usersXML;
+
                 public boolean accept(
                         EventPackageNotifier.Subscription subscription)
                 {
+                    if (!(subscription
+                            instanceof ConferenceNotifierSubscription))
+                        return false;
+
+                    ConferenceNotifierSubscription conferenceSubscription
+                        = (ConferenceNotifierSubscription) subscription;
+                    CallSipImpl subscriptionCall
+                        = conferenceSubscription.getCall();
+
+                    if (!call.equals(subscriptionCall))
+                        return false;
+
+                    if (usersXML == null)
+                        usersXML = getUsersXML(subscriptionCall);
                     return
-                        (subscription instanceof ConferenceNotifierSubscription)
-                            && call
-                                    .equals(
-                                        ((ConferenceNotifierSubscription)
-                                                subscription)
-                                            .getCall());
+                        conferenceSubscription.prepareNotifyContent(usersXML);
                 }
             };
 
@@ -980,159 +1023,28 @@ public class OperationSetTelephonyConferencingSipImpl
             CallPeerSipImpl callPeer,
             Document conferenceInfoDocument)
     {
-        NodeList usersList
-            = conferenceInfoDocument.getElementsByTagName(ELEMENT_USERS);
-        ConferenceMember[] conferenceMembersToRemove
+        ConferenceMember[] oldConferenceMembers
             = callPeer.getConferenceMembers();
-        int conferenceMembersToRemoveCount = conferenceMembersToRemove.length;
-        boolean changed = false;
-
-        if (usersList.getLength() > 0)
-        {
-            NodeList userList = usersList.item(0).getChildNodes();
-            int userCount = userList.getLength();
-
-            for (int userIndex = 0; userIndex < userCount; userIndex++)
-            {
-                Node user = userList.item(userIndex);
-
-                if (!ELEMENT_USER.equals(user.getNodeName()))
-                    continue;
-
-                String address
-                    = stripParametersFromAddress(
-                        ((Element) user).getAttribute("entity"));
-
-                if ((address == null) || (address.length() < 1))
-                    continue;
-
-                /*
-                 * Determine the ConferenceMembers which are no longer in the
-                 * list.
-                 */
-                ConferenceMemberSipImpl existingConferenceMember = null;
-
-                for (int conferenceMemberIndex = 0;
-                        conferenceMemberIndex < conferenceMembersToRemoveCount;
-                        conferenceMemberIndex++)
-                {
-                    ConferenceMemberSipImpl conferenceMember
-                        = (ConferenceMemberSipImpl)
-                            conferenceMembersToRemove[conferenceMemberIndex];
-
-                    if ((conferenceMember != null)
-                            && address
-                                    .equalsIgnoreCase(
-                                        conferenceMember.getAddress()))
-                    {
-                        conferenceMembersToRemove[conferenceMemberIndex] = null;
-                        existingConferenceMember = conferenceMember;
-                        break;
-                    }
-                }
-
-                // Create the new ones.
-                boolean addConferenceMember;
-                if (existingConferenceMember == null)
-                {
-                    existingConferenceMember
-                        = new ConferenceMemberSipImpl(callPeer, address);
-                    addConferenceMember = true;
-                }
-                else
-                    addConferenceMember = false;
-
-                // Update the existing ones.
-                if (existingConferenceMember != null)
-                {
-                    NodeList userChildList = user.getChildNodes();
-                    int userChildCount = userChildList.getLength();
-                    String displayName = null;
-                    String endpointStatus = null;
-                    String audioSsrc = null;
-                    String videoSsrc = null;
-
-                    for (int userChildIndex = 0;
-                            userChildIndex < userChildCount;
-                            userChildIndex++)
-                    {
-                        Node userChild = userChildList.item(userChildIndex);
-                        String userChildName = userChild.getNodeName();
-
-                        if (ELEMENT_DISPLAY_TEXT.equals(userChildName))
-                            displayName = userChild.getTextContent();
-                        else if (ELEMENT_ENDPOINT.equals(userChildName))
-                        {
-                            endpointStatus = getEndpointStatus(userChild);
-                            audioSsrc = getEndpointMediaSrcId(
-                                            userChild,
-                                            MediaType.AUDIO);
-                            videoSsrc = getEndpointMediaSrcId(
-                                            userChild,
-                                            MediaType.VIDEO);
-                        }
-                    }
-                    existingConferenceMember.setDisplayName(displayName);
-                    existingConferenceMember.setEndpointStatus(endpointStatus);
-
-                    if (audioSsrc != null)
-                    {
-                        long newSsrc = Long.parseLong(audioSsrc);
-                        if(existingConferenceMember.getAudioSsrc() != newSsrc)
-                            changed = true;
-                        existingConferenceMember.setAudioSsrc(newSsrc);
-                    }
-
-                    if (videoSsrc != null)
-                    {
-                        long newSsrc = Long.parseLong(videoSsrc);
-                        long currentSsrc
-                            = existingConferenceMember.getVideoSsrc();
-
-                        if (currentSsrc != -1 && currentSsrc == newSsrc)
-                            continue;
-
-                        if(existingConferenceMember.getVideoSsrc() != newSsrc)
-                            changed = true;
-
-                        existingConferenceMember.setVideoSsrc(newSsrc);
-
-                        VideoMediaStream peerVideoStream
-                            = (VideoMediaStream) callPeer.getMediaHandler()
-                                .getStream(MediaType.VIDEO);
-
-                        Component visualComponent
-                            = peerVideoStream.getVisualComponent(newSsrc);
-
-                        if (visualComponent != null)
-                            callPeer.getMediaHandler()
-                                .fireVisualComponentResolveEvent(
-                                    visualComponent, existingConferenceMember);
-                    }
-
-                    if (addConferenceMember)
-                        callPeer.addConferenceMember(existingConferenceMember);
-                }
-            }
-        }
-
-        /*
-         * Remove the ConferenceMember instance which are no longer present in
-         * the conference-info XML document.
-         */
-        for (int conferenceMemberIndex = 0;
-                conferenceMemberIndex < conferenceMembersToRemoveCount;
-                conferenceMemberIndex++)
+        List<ConferenceMember> conferenceMembers
+            = new ArrayList<ConferenceMember>(
+                    Arrays.asList(oldConferenceMembers));
+        boolean changed
+            = ConferenceInfoMerger.merge(
+                    callPeer,
+                    conferenceMembers,
+                    conferenceInfoDocument);
+
+        for (ConferenceMember conferenceMember : oldConferenceMembers)
         {
-            ConferenceMember conferenceMemberToRemove
-                = conferenceMembersToRemove[conferenceMemberIndex];
-
-            if (conferenceMemberToRemove != null)
-                callPeer.removeConferenceMember(conferenceMemberToRemove);
+            if (!conferenceMembers.contains(conferenceMember))
+                callPeer.removeConferenceMember(conferenceMember);
         }
+        // the ConferenceMembers which are already added are not added again
+        for (ConferenceMember conferenceMember : conferenceMembers)
+            callPeer.addConferenceMember(conferenceMember);
 
         if(changed)
-            notifyAll(callPeer.getCall());
+            scheduleNotifyAll(callPeer.getCall());
     }
 
     /**
@@ -1141,6 +1053,13 @@ public class OperationSetTelephonyConferencingSipImpl
      * information received from it as a conference focus in the form of a
      * conference-info XML document.
      *
+     * A partial conference-info XML document is only represented if it
+     * directly follows the one currently represented because it only
+     * describes the changes since that one; otherwise, the full state of the
+     * conference is requested again.
+     *
+     * @param subscription the <tt>ConferenceSubscriberSubscription</tt> in
+     * which the specified conference-info XML document has been received
      * @param callPeer the <tt>CallPeer</tt> which is a conference focus and has
      * sent the specified conference-info XML document
      * @param version the value of the <tt>version</tt> attribute of the
@@ -1155,6 +1074,7 @@ public class OperationSetTelephonyConferencingSipImpl
      * in the specified <tt>callPeer</tt>
      */
     private int setConferenceInfoXML(
+            ConferenceSubscriberSubscription subscription,
             CallPeerSipImpl callPeer,
             int version,
             String conferenceInfoXML)
@@ -1207,12 +1127,30 @@ public class OperationSetTelephonyConferencingSipImpl
              */
             callPeer.setConferenceFocus(true);
 
-            int documentVersion
-                = Integer
-                    .parseInt(
-                        document.getDocumentElement().getAttribute("version"));
+            int documentVersion = ConferenceInfoMerger.getVersion(document);
 
-            if (documentVersion >= version)
+            if (ConferenceInfoMerger.isMissingVersions(version, document))
+            {
+                if (logger.isDebugEnabled())
+                {
+                    logger.debug(
+                            "Missed the conference-info before version "
+                                + documentVersion + " of " + callPeer
+                                + ", requesting the full state.");
+                }
+                try
+                {
+                    subscriber.poll(subscription);
+                }
+                catch (OperationFailedException ofe)
+                {
+                    logger.error(
+                            "Failed to renew the conference subscription "
+                                + subscription,
+                            ofe);
+                }
+            }
+            else if (documentVersion >= version)
             {
                 setConferenceInfoDocument(callPeer, document);
                 return documentVersion;
@@ -1221,27 +1159,6 @@ public class OperationSetTelephonyConferencingSipImpl
         return -1;
     }
 
-    /**
-     * Removes the parameters (specified after a semicolon) from a specific
-     * address <tt>String</tt> if any are present in it.
-     *
-     * @param address the <tt>String</tt> value representing an address from
-     * which any parameters are to be removed
-     * @return a <tt>String</tt> representing the specified <tt>address</tt>
-     * without any parameters
-     */
-    private static String stripParametersFromAddress(String address)
-    {
-        if (address != null)
-        {
-            int parametersBeginIndex = address.indexOf(';');
-
-            if (parametersBeginIndex > -1)
-                address = address.substring(0, parametersBeginIndex);
-        }
-        return address;
-    }
-
     /**
      * Implements <tt>EventPackageNotifier.Subscription</tt> in order to
      * represent a conference subscription created by a remote <tt>CallPeer</tt>
@@ -1252,10 +1169,20 @@ public class OperationSetTelephonyConferencingSipImpl
     {
 
         /**
-         * The value of the <tt>version</tt> attribute to be specified in the
-         * outgoing <tt>conference-info</tt> root XML elements.
+         * The <tt>ConferenceInfoDelta</tt> which remembers the users the
+         * target of this <tt>Subscription</tt> has last been notified about
+         * and the value of the <tt>version</tt> attribute to be specified in
+         * the next outgoing <tt>conference-info</tt> root XML element.
+         */
+        private final ConferenceInfoDelta delta = new ConferenceInfoDelta();
+
+        /**
+         * The conference-info XML prepared by
+         * {@link #prepareNotifyContent(Map)} for the next NOTIFY request or
+         * <tt>null</tt> if the next NOTIFY request is to carry the full state
+         * of the conference.
          */
-        private int version = 1;
+        private String preparedConferenceInfoXML;
 
         /**
          * Initializes a new <tt>ConferenceNotifierSubscription</tt> instance
@@ -1297,18 +1224,41 @@ public class OperationSetTelephonyConferencingSipImpl
                 String subscriptionState,
                 String reason)
         {
-            CallPeerSipImpl callPeer = getCallPeer();
+            String conferenceInfoXML;
 
-            if (callPeer == null)
+            synchronized (this)
             {
-                logger
-                    .error(
-                        "Failed to find the CallPeer of the conference " +
-                        "subscription " + this);
-                return null;
+                conferenceInfoXML = preparedConferenceInfoXML;
+                preparedConferenceInfoXML = null;
+            }
+
+            /*
+             * The NOTIFY requests which haven't been prepared are sent in
+             * response to SUBSCRIBE requests, including the ones a subscriber
+             * sends when it has missed a partial notification, so they carry
+             * the full state of the conference.
+             */
+            if (conferenceInfoXML == null)
+            {
+                CallPeerSipImpl callPeer = getCallPeer();
+
+                if (callPeer == null)
+                {
+                    logger
+                        .error(
+                            "Failed to find the CallPeer of the conference " +
+                            "subscription " + this);
+                    return null;
+                }
+
+                conferenceInfoXML
+                    = getConferenceInfoXML(
+                            callPeer,
+                            delta,
+                            getUsersXML(callPeer.getCall()),
+                            true);
             }
 
-            String conferenceInfoXML = getConferenceInfoXML(callPeer, version);
             byte[] notifyContent;
 
             if (conferenceInfoXML == null)
@@ -1328,11 +1278,41 @@ public class OperationSetTelephonyConferencingSipImpl
                             uee);
                     notifyContent = conferenceInfoXML.getBytes();
                 }
-                ++ version;
             }
             return notifyContent;
         }
 
+        /**
+         * Prepares the content of the next NOTIFY request to be sent to the
+         * target represented by this <tt>Subscription</tt> so that it only
+         * describes the changes of the conference since the last NOTIFY
+         * request.
+         *
+         * @param usersXML the <tt>user</tt> XML elements of the
+         * <tt>CallPeer</tt>s in the conference by entity
+         * @return <tt>true</tt> if the conference has changed since the last
+         * NOTIFY request and a NOTIFY request is to be sent; otherwise,
+         * <tt>false</tt>
+         */
+        boolean prepareNotifyContent(Map<String, String> usersXML)
+        {
+            CallPeerSipImpl callPeer = getCallPeer();
+
+            if (callPeer == null)
+                return false;
+
+            String conferenceInfoXML
+                = getConferenceInfoXML(callPeer, delta, usersXML, false);
+
+            if (conferenceInfoXML == null)
+                return false;
+            synchronized (this)
+            {
+                preparedConferenceInfoXML = conferenceInfoXML;
+            }
+            return true;
+        }
+
         /**
          * Gets the <tt>Call</tt> of the <tt>CallPeerSipImpl</tt> subscribed to
          * the <tt>EventPackageNotifier</tt> and represented by this
@@ -1462,6 +1442,7 @@ public class OperationSetTelephonyConferencingSipImpl
             {
                 int contentVersion
                     = setConferenceInfoXML(
+                        this,
                         callPeer,
                         version,
                         SdpUtils.getContentAsString(requestEvent.getRequest()));
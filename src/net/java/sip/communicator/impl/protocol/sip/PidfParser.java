@@ -0,0 +1,514 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.protocol.sip;
+
+import java.io.*;
+import java.util.*;
+
+import javax.xml.stream.*;
+
+import net.java.sip.communicator.util.*;
+
+/**
+ * Extracts from a PIDF document (rfc3863) and its RPID extensions (rfc4480)
+ * the few things <tt>OperationSetPresenceSipImpl</tt> needs to set the
+ * presence status of a contact: the basic status, the notes and the contacts
+ * of each tuple as well as the activity and the status icon of the person.
+ * <p>
+ * The document is read with a pull parser in a single pass without building
+ * a DOM tree. As many servers and clients get the namespaces of these
+ * documents wrong, the elements are matched by their local names only.
+ *
+ * @author Damian Minkov
+ */
+public class PidfParser
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>PidfParser</tt> class for logging
+     * output.
+     */
+    private static final Logger logger = Logger.getLogger(PidfParser.class);
+
+    // pidf elements and attributes
+    private static final String PRESENCE_ELEMENT= "presence";
+    private static final String ENTITY_ATTRIBUTE= "entity";
+    private static final String TUPLE_ELEMENT   = "tuple";
+    private static final String STATUS_ELEMENT  = "status";
+    private static final String BASIC_ELEMENT   = "basic";
+    private static final String CONTACT_ELEMENT = "contact";
+    private static final String NOTE_ELEMENT    = "note";
+    private static final String PRIORITY_ATTRIBUTE  = "priority";
+
+    // rpid elements
+    private static final String PERSON_ELEMENT  = "person";
+    private static final String ACTIVITY_ELEMENT= "activities";
+    private static final String STATUS_ICON_ELEMENT = "status-icon";
+
+    /**
+     * The activities we translate into presence statuses.
+     */
+    private static final List<String> ACTIVITIES
+        = Arrays.asList(new String[] { "away", "busy", "on-the-phone" });
+
+    /**
+     * The factory of the pull parsers, configured once as it is costly to
+     * look up.
+     */
+    private static final XMLInputFactory inputFactory;
+
+    static
+    {
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(
+                XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+                false);
+    }
+
+    /**
+     * Prevents the initialization of <tt>PidfParser</tt> instances.
+     */
+    private PidfParser()
+    {
+    }
+
+    /**
+     * Parses a PIDF document.
+     *
+     * @param presenceDoc the PIDF document
+     * @return the information extracted from <tt>presenceDoc</tt> or
+     * <tt>null</tt> if <tt>presenceDoc</tt> is not a well-formed document
+     * with a <tt>presence</tt> element
+     */
+    public static Presence parse(String presenceDoc)
+    {
+        XMLStreamReader reader = null;
+
+        try
+        {
+            reader
+                = inputFactory.createXMLStreamReader(
+                        new StringReader(presenceDoc));
+
+            while (reader.hasNext())
+            {
+                if ((reader.next() == XMLStreamConstants.START_ELEMENT)
+                        && PRESENCE_ELEMENT.equals(reader.getLocalName()))
+                {
+                    Presence presence = readPresence(reader);
+
+                    // the remaining of the document is of no interest to us
+                    return presence;
+                }
+            }
+            logger.error("no presence element in this document");
+        }
+        catch (XMLStreamException e)
+        {
+            logger.error("Can't parse the presence document", e);
+        }
+        finally
+        {
+            if (reader != null)
+            {
+                try
+                {
+                    reader.close();
+                }
+                catch (XMLStreamException e)
+                {
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads a <tt>presence</tt> element.
+     *
+     * @param reader the parser positioned on the start of the element
+     * @return the information read from the element
+     * @throws XMLStreamException if the document is not well-formed
+     */
+    private static Presence readPresence(XMLStreamReader reader)
+        throws XMLStreamException
+    {
+        Presence presence
+            = new Presence(reader.getAttributeValue(null, ENTITY_ATTRIBUTE));
+        boolean personRead = false;
+        int depth = 1;
+
+        while (depth > 0)
+        {
+            int event = reader.next();
+
+            if (event == XMLStreamConstants.END_ELEMENT)
+            {
+                depth--;
+            }
+            else if (event == XMLStreamConstants.START_ELEMENT)
+            {
+                String name = reader.getLocalName();
+
+                if (TUPLE_ELEMENT.equals(name))
+                {
+                    presence.tuples.add(readTuple(reader));
+                }
+                else if (PERSON_ELEMENT.equals(name) && !personRead)
+                {
+                    // only the first person is taken into account
+                    readPerson(reader, presence);
+                    personRead = true;
+                }
+                else
+                {
+                    depth++;
+                }
+            }
+        }
+        return presence;
+    }
+
+    /**
+     * Reads a <tt>person</tt> element.
+     *
+     * @param reader the parser positioned on the start of the element
+     * @param presence the presence to set the activity and the status icon of
+     * @throws XMLStreamException if the document is not well-formed
+     */
+    private static void readPerson(XMLStreamReader reader, Presence presence)
+        throws XMLStreamException
+    {
+        int depth = 1;
+        // the depth of the activities element we are in, if any
+        int activitiesDepth = -1;
+
+        while (depth > 0)
+        {
+            int event = reader.next();
+
+            if (event == XMLStreamConstants.END_ELEMENT)
+            {
+                if (depth == activitiesDepth)
+                    activitiesDepth = -1;
+                depth--;
+            }
+            else if (event == XMLStreamConstants.START_ELEMENT)
+            {
+                String name = reader.getLocalName();
+
+                if (STATUS_ICON_ELEMENT.equals(name)
+                        && (presence.statusIcon == null))
+                {
+                    String statusIcon = readText(reader);
+
+                    if (statusIcon.length() != 0)
+                        presence.statusIcon = statusIcon;
+                    continue;
+                }
+
+                depth++;
+                if (ACTIVITY_ELEMENT.equals(name))
+                {
+                    if (activitiesDepth == -1)
+                        activitiesDepth = depth;
+                }
+                else if ((activitiesDepth != -1)
+                        && (depth == activitiesDepth + 1)
+                        && (presence.activity == null)
+                        && ACTIVITIES.contains(name))
+                {
+                    presence.activity = name;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a <tt>tuple</tt> element. In case of many <tt>status</tt>
+     * elements, or many <tt>basic</tt> elements in the <tt>status</tt>, the
+     * last one is used.
+     *
+     * @param reader the parser positioned on the start of the element
+     * @return the information read from the element
+     * @throws XMLStreamException if the document is not well-formed
+     */
+    private static Tuple readTuple(XMLStreamReader reader)
+        throws XMLStreamException
+    {
+        Tuple tuple = new Tuple();
+        int depth = 1;
+        // the depth of the status element we are in, if any
+        int statusDepth = -1;
+
+        while (depth > 0)
+        {
+            int event = reader.next();
+
+            if (event == XMLStreamConstants.END_ELEMENT)
+            {
+                if (depth == statusDepth)
+                    statusDepth = -1;
+                depth--;
+            }
+            else if (event == XMLStreamConstants.START_ELEMENT)
+            {
+                String name = reader.getLocalName();
+
+                if (CONTACT_ELEMENT.equals(name))
+                {
+                    String priority
+                        = reader.getAttributeValue(null, PRIORITY_ATTRIBUTE);
+
+                    tuple.contacts.add(
+                            new TupleContact(readText(reader), priority));
+                }
+                else if (NOTE_ELEMENT.equals(name))
+                {
+                    tuple.notes.add(readText(reader));
+                }
+                else if ((statusDepth != -1) && BASIC_ELEMENT.equals(name))
+                {
+                    tuple.basic = readText(reader);
+                }
+                else
+                {
+                    depth++;
+                    if (STATUS_ELEMENT.equals(name) && (statusDepth == -1))
+                    {
+                        statusDepth = depth;
+                        // only the basic of the last status counts
+                        tuple.basic = null;
+                    }
+                }
+            }
+        }
+        return tuple;
+    }
+
+    /**
+     * Reads the text of the element the parser is positioned on and leaves
+     * the parser on its end. The text of the child elements, if any, is
+     * ignored.
+     *
+     * @param reader the parser positioned on the start of the element
+     * @return the trimmed text of the element
+     * @throws XMLStreamException if the document is not well-formed
+     */
+    private static String readText(XMLStreamReader reader)
+        throws XMLStreamException
+    {
+        StringBuilder text = new StringBuilder();
+        int depth = 1;
+
+        while (depth > 0)
+        {
+            switch (reader.next())
+            {
+            case XMLStreamConstants.START_ELEMENT:
+                depth++;
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                depth--;
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.CDATA:
+            case XMLStreamConstants.SPACE:
+                if (depth == 1)
+                    text.append(reader.getText());
+                break;
+            }
+        }
+        return text.toString().trim();
+    }
+
+    /**
+     * The information of a <tt>presence</tt> element.
+     */
+    public static class Presence
+    {
+        /**
+         * The value of the <tt>entity</tt> attribute.
+         */
+        private final String entity;
+
+        /**
+         * The first activity of the person we know of.
+         */
+        private String activity;
+
+        /**
+         * The status icon of the person.
+         */
+        private String statusIcon;
+
+        /**
+         * The tuples in document order.
+         */
+        private final List<Tuple> tuples = new ArrayList<Tuple>();
+
+        /**
+         * Initializes a new <tt>Presence</tt>.
+         *
+         * @param entity the value of the <tt>entity</tt> attribute
+         */
+        private Presence(String entity)
+        {
+            this.entity = (entity == null) ? "" : entity;
+        }
+
+        /**
+         * Returns the value of the <tt>entity</tt> attribute of the
+         * <tt>presence</tt> element.
+         *
+         * @return the entity the document is about or an empty string if it
+         * doesn't specify one
+         */
+        public String getEntity()
+        {
+            return entity;
+        }
+
+        /**
+         * Returns the first of the <tt>away</tt>, <tt>busy</tt> and
+         * <tt>on-the-phone</tt> activities of the person.
+         *
+         * @return the name of the activity or <tt>null</tt> if the person has
+         * none of them
+         */
+        public String getActivity()
+        {
+            return activity;
+        }
+
+        /**
+         * Returns the URI of the status icon of the person.
+         *
+         * @return the URI of the status icon or <tt>null</tt> if there isn't
+         * one
+         */
+        public String getStatusIcon()
+        {
+            return statusIcon;
+        }
+
+        /**
+         * Returns the tuples of the document.
+         *
+         * @return the tuples in document order
+         */
+        public List<Tuple> getTuples()
+        {
+            return tuples;
+        }
+    }
+
+    /**
+     * The information of a <tt>tuple</tt> element.
+     */
+    public static class Tuple
+    {
+        /**
+         * The text of the <tt>basic</tt> element of the last status.
+         */
+        private String basic;
+
+        /**
+         * The contacts of the tuple.
+         */
+        private final List<TupleContact> contacts
+            = new ArrayList<TupleContact>();
+
+        /**
+         * The notes of the tuple.
+         */
+        private final List<String> notes = new ArrayList<String>();
+
+        /**
+         * Returns the basic status of the tuple.
+         *
+         * @return the text of the <tt>basic</tt> element (<tt>open</tt> or
+         * <tt>closed</tt>) or <tt>null</tt> if there is no status
+         */
+        public String getBasic()
+        {
+            return basic;
+        }
+
+        /**
+         * Returns the contacts of the tuple. They are normally not permitted
+         * by rfc3863 though.
+         *
+         * @return the contacts of the tuple
+         */
+        public List<TupleContact> getContacts()
+        {
+            return contacts;
+        }
+
+        /**
+         * Returns the notes of the tuple which some clients use to carry a
+         * more precise status than the basic one.
+         *
+         * @return the text of the notes of the tuple
+         */
+        public List<String> getNotes()
+        {
+            return notes;
+        }
+    }
+
+    /**
+     * The information of a <tt>contact</tt> element of a tuple.
+     */
+    public static class TupleContact
+    {
+        /**
+         * The URI of the contact.
+         */
+        private final String uri;
+
+        /**
+         * The value of the <tt>priority</tt> attribute.
+         */
+        private final String priority;
+
+        /**
+         * Initializes a new <tt>TupleContact</tt>.
+         *
+         * @param uri the URI of the contact
+         * @param priority the value of the <tt>priority</tt> attribute
+         */
+        private TupleContact(String uri, String priority)
+        {
+            this.uri = uri;
+            this.priority = priority;
+        }
+
+        /**
+         * Returns the URI of the contact.
+         *
+         * @return the URI of the contact
+         */
+        public String getUri()
+        {
+            return uri;
+        }
+
+        /**
+         * Returns the priority of the contact.
+         *
+         * @return the value of the <tt>priority</tt> attribute or
+         * <tt>null</tt> if there isn't one
+         */
+        public String getPriority()
+        {
+            return priority;
+        }
+    }
+}
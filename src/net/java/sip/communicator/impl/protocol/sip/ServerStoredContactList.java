@@ -59,6 +59,31 @@ public abstract class ServerStoredContactList
      */
     protected final ContactGroupSipImpl rootGroup;
 
+    /**
+     * The number of times the contacts of the list have changed. Compared to
+     * {@link #contactsByAddressModCount} to know when
+     * {@link #contactsByAddress} needs to be rebuilt.
+     */
+    private volatile int contactsModCount = 0;
+
+    /**
+     * The contacts of the list by their normalized addresses.
+     */
+    private Map<String, ContactSipImpl> contactsByAddress = null;
+
+    /**
+     * The value of {@link #contactsModCount} when {@link #contactsByAddress}
+     * was built.
+     */
+    private int contactsByAddressModCount = -1;
+
+    /**
+     * The object {@link #contactsByAddress} is accessed in synchronization
+     * with. The list itself isn't used so that looking up a contact doesn't
+     * have to wait for the server stored list to be updated.
+     */
+    private final Object contactsByAddressSyncRoot = new Object();
+
     /**
      * Creates a ServerStoredContactList wrapper for the specified BuddyList.
      *
@@ -75,6 +100,7 @@ public abstract class ServerStoredContactList
         this.serverStoredGroupListeners =
                 new Vector<ServerStoredGroupListener>();
         this.rootGroup = new ContactGroupSipImpl(ROOT_GROUP_NAME, sipProvider);
+        this.rootGroup.setContactList(this);
     }
 
     /**
@@ -347,6 +373,113 @@ public abstract class ServerStoredContactList
         return new ArrayList<ContactSipImpl>(uniqueContacts.values());
     }
 
+    /**
+     * Returns the contact of the list with a specific address. Unlike
+     * {@link ContactGroupSipImpl#findContactByID(String)} the address may be
+     * a full SIP URI with a scheme, a port and parameters and the contact is
+     * looked up in an index rather than by walking the whole list.
+     *
+     * @param address the address of the contact to find
+     * @return the contact with the specified address or <tt>null</tt> if
+     * there is no such contact in the list
+     */
+    public ContactSipImpl findContactByAddress(String address)
+    {
+        synchronized (contactsByAddressSyncRoot)
+        {
+            int modCount = contactsModCount;
+
+            if ((contactsByAddress == null)
+                    || (contactsByAddressModCount != modCount))
+            {
+                Map<String, ContactSipImpl> index
+                    = new HashMap<String, ContactSipImpl>();
+
+                indexContacts(rootGroup, index);
+                contactsByAddress = index;
+                contactsByAddressModCount = modCount;
+            }
+            return contactsByAddress.get(normalizeAddress(address));
+        }
+    }
+
+    /**
+     * Adds the contacts of a group and its subgroups to an index by address,
+     * in the order in which
+     * {@link ContactGroupSipImpl#findContactByID(String)} would find them.
+     *
+     * @param group the group to index
+     * @param index the index to add the contacts of <tt>group</tt> to
+     */
+    private static void indexContacts(
+            ContactGroupSipImpl group,
+            Map<String, ContactSipImpl> index)
+    {
+        Iterator<Contact> contactIterator = group.contacts();
+        while (contactIterator.hasNext())
+        {
+            ContactSipImpl contact = (ContactSipImpl) contactIterator.next();
+            String address = normalizeAddress(contact.getAddress());
+
+            if (!index.containsKey(address))
+                index.put(address, contact);
+        }
+        Iterator<ContactGroup> groupIterator = group.subgroups();
+        while (groupIterator.hasNext())
+        {
+            indexContacts((ContactGroupSipImpl) groupIterator.next(), index);
+        }
+    }
+
+    /**
+     * Reduces an address to the <tt>user@host</tt> form of
+     * {@link ContactSipImpl#getAddress()} by removing its scheme, port and
+     * parameters.
+     *
+     * @param address the address to normalize e.g.
+     * <tt>sip:user@host:5060;transport=udp</tt>
+     * @return the normalized address e.g. <tt>user@host</tt>
+     */
+    static String normalizeAddress(String address)
+    {
+        address = address.trim();
+
+        int schemeEnd = address.indexOf(':');
+
+        if ((schemeEnd != -1)
+                && (schemeEnd < address.indexOf('@'))
+                && (address.regionMatches(true, 0, "sip:", 0, 4)
+                    || address.regionMatches(true, 0, "sips:", 0, 5)
+                    || address.regionMatches(true, 0, "pres:", 0, 5)))
+            address = address.substring(schemeEnd + 1);
+
+        int end = address.length();
+        int paramsStart = address.indexOf(';');
+
+        if (paramsStart != -1)
+            end = paramsStart;
+
+        int headersStart = address.indexOf('?');
+
+        if ((headersStart != -1) && (headersStart < end))
+            end = headersStart;
+
+        int portStart = address.indexOf(':', address.indexOf('@') + 1);
+
+        if ((portStart != -1) && (portStart < end))
+            end = portStart;
+        return address.substring(0, end);
+    }
+
+    /**
+     * Notifies this list that contacts or groups have been added to or
+     * removed from it.
+     */
+    void contactsChanged()
+    {
+        contactsModCount++;
+    }
+
     /**
      * Returns all avaliable contacts from group and all subgroups.
      *
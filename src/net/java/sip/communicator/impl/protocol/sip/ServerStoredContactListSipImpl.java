@@ -8,6 +8,7 @@ package net.java.sip.communicator.impl.protocol.sip;
 
 import gov.nist.javax.sip.address.*;
 
+import java.io.*;
 import java.net.URI;
 import java.text.*;
 import java.util.*;
@@ -220,7 +221,7 @@ public class ServerStoredContactListSipImpl
             // Update resoure-lists
             try
             {
-                updateResourceLists();
+                putResourceListsEntry(newContact);
             }
             catch (XCapException e)
             {
@@ -304,7 +305,7 @@ public class ServerStoredContactListSipImpl
             // Update resoure-lists
             try
             {
-                updateResourceLists();
+                deleteResourceListsEntry(parentGroup, contact);
             }
             catch (XCapException e)
             {
@@ -366,7 +367,9 @@ public class ServerStoredContactListSipImpl
         {
             try
             {
-                updateResourceLists();
+                if (wasContactPersistent)
+                    deleteResourceListsEntry(oldParentGroup, contact);
+                putResourceListsEntry(contact);
             }
             catch (XCapException e)
             {
@@ -432,7 +435,7 @@ public class ServerStoredContactListSipImpl
         {
             try
             {
-                updateResourceLists();
+                putResourceListsEntry(contact);
             }
             catch (XCapException e)
             {
@@ -496,7 +499,7 @@ public class ServerStoredContactListSipImpl
         {
             try
             {
-                updateResourceLists();
+                putResourceListsList(subGroup);
             }
             catch (XCapException e)
             {
@@ -537,7 +540,7 @@ public class ServerStoredContactListSipImpl
         {
             try
             {
-                updateResourceLists();
+                deleteResourceListsList(parentGroup, group);
 
                 Iterator<Contact>  iter = group.contacts();
                 boolean updateRules = false;
@@ -1395,6 +1398,171 @@ public class ServerStoredContactListSipImpl
         xCapClient.putResourceLists(resourceLists);
     }
 
+    /**
+     * Puts the entry of a contact to its list in the resource-lists on the
+     * server.
+     *
+     * @param contact the contact to put.
+     * @throws XCapException if there is some error during operation.
+     */
+    private void putResourceListsEntry(ContactSipImpl contact)
+            throws XCapException
+    {
+        if (!xCapClient.isConnected()
+            || !xCapClient.isResourceListsSupported())
+        {
+            return;
+        }
+        try
+        {
+            xCapClient.putResourceListsEntry(
+                    getListPath(
+                        (ContactGroupSipImpl) contact.getParentContactGroup()),
+                    contact.getEntry());
+        }
+        catch (XCapException e)
+        {
+            updateResourceListsAfter(e);
+        }
+    }
+
+    /**
+     * Deletes the entry of a contact from the list of a group in the
+     * resource-lists on the server.
+     *
+     * @param group the group the contact was in.
+     * @param contact the contact to delete.
+     * @throws XCapException if there is some error during operation.
+     */
+    private void deleteResourceListsEntry(
+            ContactGroupSipImpl group,
+            ContactSipImpl contact)
+            throws XCapException
+    {
+        if (!xCapClient.isConnected()
+            || !xCapClient.isResourceListsSupported())
+        {
+            return;
+        }
+        try
+        {
+            xCapClient.deleteResourceListsEntry(
+                    getListPath(group), contact.getUri());
+        }
+        catch (XCapException e)
+        {
+            updateResourceListsAfter(e);
+        }
+    }
+
+    /**
+     * Puts the list of a group to the resource-lists on the server.
+     *
+     * @param group the group to put.
+     * @throws XCapException if there is some error during operation.
+     */
+    private void putResourceListsList(ContactGroupSipImpl group)
+            throws XCapException
+    {
+        if (!xCapClient.isConnected()
+            || !xCapClient.isResourceListsSupported())
+        {
+            return;
+        }
+        ContactGroupSipImpl parentGroup
+            = (ContactGroupSipImpl) group.getParentContactGroup();
+        try
+        {
+            xCapClient.putResourceListsList(
+                    rootGroup.equals(parentGroup)
+                        ? new ArrayList<String>()
+                        : getListPath(parentGroup),
+                    group.getList());
+        }
+        catch (XCapException e)
+        {
+            updateResourceListsAfter(e);
+        }
+    }
+
+    /**
+     * Deletes the list of a group from the resource-lists on the server.
+     *
+     * @param parentGroup the group the deleted group was in.
+     * @param group the group to delete.
+     * @throws XCapException if there is some error during operation.
+     */
+    private void deleteResourceListsList(
+            ContactGroupSipImpl parentGroup,
+            ContactGroupSipImpl group)
+            throws XCapException
+    {
+        if (!xCapClient.isConnected()
+            || !xCapClient.isResourceListsSupported())
+        {
+            return;
+        }
+        List<String> listPath
+            = rootGroup.equals(parentGroup)
+                ? new ArrayList<String>()
+                : getListPath(parentGroup);
+        listPath.add(group.getGroupName());
+        try
+        {
+            xCapClient.deleteResourceListsList(listPath);
+        }
+        catch (XCapException e)
+        {
+            updateResourceListsAfter(e);
+        }
+    }
+
+    /**
+     * Puts the whole resource-lists to the server after the server has
+     * refused to modify one of its elements, e.g. because the list of the
+     * element is not on the server yet.
+     *
+     * @param e the error of the element operation.
+     * @throws XCapException if the server couldn't be reached or there is
+     * some error during operation.
+     */
+    private void updateResourceListsAfter(XCapException e)
+            throws XCapException
+    {
+        // the whole resource-lists wouldn't make it either
+        if (e.getCause() instanceof IOException)
+            throw e;
+
+        logger.warn("XCAP element operation failed, "
+                + "putting the whole resource-lists", e);
+        updateResourceLists();
+    }
+
+    /**
+     * Returns the names of the lists of the resource-lists from the top-level
+     * list to the list of a group. The contacts of the root group are in the
+     * special top-level list named <tt>ROOT_GROUP_NAME</tt>.
+     *
+     * @param group the group.
+     * @return the names of the lists leading to the list of <tt>group</tt>.
+     */
+    private List<String> getListPath(ContactGroupSipImpl group)
+    {
+        LinkedList<String> listPath = new LinkedList<String>();
+
+        if (rootGroup.equals(group))
+        {
+            listPath.add(ROOT_GROUP_NAME);
+            return listPath;
+        }
+        while ((group != null) && !rootGroup.equals(group))
+        {
+            listPath.addFirst(group.getGroupName());
+            group = (ContactGroupSipImpl) group.getParentContactGroup();
+        }
+        return listPath;
+    }
+
     /**
      * Puts pres-rules to the server.
      *
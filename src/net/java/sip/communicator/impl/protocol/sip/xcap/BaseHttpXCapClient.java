@@ -9,6 +9,7 @@ package net.java.sip.communicator.impl.protocol.sip.xcap;
 import java.io.*;
 import java.net.*;
 import java.net.URI;
+import java.util.*;
 
 import javax.net.ssl.*;
 import javax.sip.address.*;
@@ -29,13 +30,19 @@ import org.apache.http.conn.scheme.*;
 import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.entity.*;
 import org.apache.http.impl.client.*;
+import org.apache.http.impl.conn.tsccm.*;
 import org.apache.http.params.*;
+import org.apache.http.util.*;
 import org.osgi.framework.*;
 
 /**
  * Base HTTP XCAP client implementation.
  * <p/>
  * Compliant with rfc4825
+ * <p/>
+ * All the requests to the XCAP root the client is connected to share a pool
+ * of persistent connections. The documents fetched from the server are kept
+ * with their ETags so that they are fetched again only if they have changed.
  *
  * @author Grigorii Balutsel
  */
@@ -68,6 +75,18 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
     public static final String XCAP_ERROR_CONTENT_TYPE
             = "application/xcap-error+xml";
 
+    /**
+     * The maximum number of simultaneous connections to the XCAP server.
+     */
+    private static final int MAX_CONNECTIONS = 4;
+
+    /**
+     * The printable ASCII characters of a node selector which have to be
+     * percent-encoded in an URI.
+     */
+    private static final String NODE_SELECTOR_UNSAFE_CHARS
+        = "\"<>[]{}|\\^`%#?";
+
     /**
      * The default timeout (10 seconds)
      */
@@ -108,6 +127,19 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
      */
     private CertificateService certificateVerification;
 
+    /**
+     * The HTTP client shared by the requests to the server we are connected
+     * to, <tt>null</tt> if we are not connected.
+     */
+    private DefaultHttpClient httpClient;
+
+    /**
+     * The last successful responses to the GET requests which carried an
+     * ETag, by request URI.
+     */
+    private final Map<URI, XCapHttpResponse> cachedResponses
+        = new HashMap<URI, XCapHttpResponse>();
+
     /**
      * Creates an instance of this XCAP client.
      */
@@ -115,13 +147,18 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
     {
         timeout = DEFAULT_TIMEOUT;
 
+        BundleContext bundleContext = SipActivator.getBundleContext();
+
+        if (bundleContext == null)
+            return;
+
         ServiceReference guiVerifyReference
-            = SipActivator.getBundleContext().getServiceReference(
+            = bundleContext.getServiceReference(
                 CertificateService.class.getName());
 
         if(guiVerifyReference != null)
             certificateVerification
-                = (CertificateService)SipActivator.getBundleContext()
+                = (CertificateService)bundleContext
                     .getService(guiVerifyReference);
     }
 
@@ -145,6 +182,9 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
         this.userAddress = (Address) userAddress.clone();
         this.username = username;
         this.password = password == null ? "" : password;
+        if (httpClient != null)
+            httpClient.getConnectionManager().shutdown();
+        httpClient = createHttpClient();
         connected = true;
     }
 
@@ -163,6 +203,15 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
      */
     public void disconnect()
     {
+        if (httpClient != null)
+        {
+            httpClient.getConnectionManager().shutdown();
+            httpClient = null;
+        }
+        synchronized (cachedResponses)
+        {
+            cachedResponses.clear();
+        }
         this.uri = null;
         this.userAddress = null;
         this.password = null;
@@ -194,18 +243,52 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
     protected XCapHttpResponse get(URI uri)
             throws XCapException
     {
-        DefaultHttpClient httpClient = createHttpClient();
+        DefaultHttpClient httpClient = getHttpClient();
         try
         {
             HttpGet getMethod = new HttpGet(uri);
-            getMethod.setHeader("Connection", "close");
-            Credentials credentials =
-                    new UsernamePasswordCredentials(getUserName(), password);
-            httpClient.getCredentialsProvider().
-                    setCredentials(AuthScope.ANY, credentials);
+            XCapHttpResponse cachedResponse;
+
+            synchronized (cachedResponses)
+            {
+                cachedResponse = cachedResponses.get(uri);
+            }
+            if (cachedResponse != null)
+            {
+                getMethod.setHeader(
+                        HEADER_IF_NONE_MATCH,
+                        cachedResponse.getETag());
+            }
 
             HttpResponse response = httpClient.execute(getMethod);
-            XCapHttpResponse result = createResponse(response);
+            XCapHttpResponse result;
+
+            try
+            {
+                if ((cachedResponse != null)
+                        && (response.getStatusLine().getStatusCode()
+                                == HttpStatus.SC_NOT_MODIFIED))
+                {
+                    if (logger.isDebugEnabled())
+                        logger.debug("Resource " + uri + " is not modified");
+                    return cachedResponse;
+                }
+                result = createResponse(response);
+            }
+            finally
+            {
+                // release the connection for the next request
+                EntityUtils.consume(response.getEntity());
+            }
+
+            synchronized (cachedResponses)
+            {
+                if ((result.getHttpCode() == HttpStatus.SC_OK)
+                        && (result.getETag() != null))
+                    cachedResponses.put(uri, result);
+                else
+                    cachedResponses.remove(uri);
+            }
             if (logger.isDebugEnabled())
             {
                 byte[] contentBytes = result.getContent();
@@ -244,10 +327,6 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
             showError(e, null, errorMessage);
             throw new XCapException(errorMessage, e);
         }
-        finally
-        {
-            httpClient.getConnectionManager().shutdown();
-        }
     }
 
     /**
@@ -292,20 +371,15 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
     public XCapHttpResponse put(XCapResource resource)
             throws XCapException
     {
-        DefaultHttpClient httpClient = createHttpClient();
+        DefaultHttpClient httpClient = getHttpClient();
         try
         {
             URI resourceUri = getResourceURI(resource.getId());
             HttpPut putMethod = new HttpPut(resourceUri);
-            putMethod.setHeader("Connection", "close");
             StringEntity stringEntity = new StringEntity(resource.getContent());
             stringEntity.setContentType(resource.getContentType());
             stringEntity.setContentEncoding("UTF-8");
             putMethod.setEntity(stringEntity);
-            Credentials credentials =
-                    new UsernamePasswordCredentials(getUserName(), password);
-            httpClient.getCredentialsProvider().
-                    setCredentials(AuthScope.ANY, credentials);
             if (logger.isDebugEnabled())
             {
                 String logMessage = String.format(
@@ -315,8 +389,8 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
                 );
                 logger.debug(logMessage);
             }
-            HttpResponse response = httpClient.execute(putMethod);
-            return createResponse(response);
+            documentChanged(resource.getId());
+            return execute(httpClient, putMethod);
         }
         catch (IOException e)
         {
@@ -325,10 +399,6 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
                     resource.getId().toString());
             throw new XCapException(errorMessage, e);
         }
-        finally
-        {
-            httpClient.getConnectionManager().shutdown();
-        }
     }
 
     /**
@@ -343,16 +413,11 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
             throws XCapException
     {
         assertConnected();
-        DefaultHttpClient httpClient = createHttpClient();
+        DefaultHttpClient httpClient = getHttpClient();
         try
         {
             URI resourceUri = getResourceURI(resourceId);
             HttpDelete deleteMethod = new HttpDelete(resourceUri);
-            deleteMethod.setHeader("Connection", "close");
-            Credentials credentials =
-                    new UsernamePasswordCredentials(getUserName(), password);
-            httpClient.getCredentialsProvider().
-                    setCredentials(AuthScope.ANY, credentials);
             if (logger.isDebugEnabled())
             {
                 String logMessage = String.format(
@@ -361,8 +426,8 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
                 );
                 logger.debug(logMessage);
             }
-            HttpResponse response = httpClient.execute(deleteMethod);
-            return createResponse(response);
+            documentChanged(resourceId);
+            return execute(httpClient, deleteMethod);
         }
         catch (IOException e)
         {
@@ -371,10 +436,6 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
                     resourceId.toString());
             throw new XCapException(errorMessage, e);
         }
-        finally
-        {
-            httpClient.getConnectionManager().shutdown();
-        }
     }
 
     /**
@@ -441,7 +502,17 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
     {
         try
         {
-            return new URI(uri.toString() + "/" + resourceId);
+            StringBuilder resourceUri
+                = new StringBuilder(uri.toString())
+                    .append('/').append(resourceId.getDocument());
+            String node = resourceId.getNode();
+
+            if (node != null && node.length() != 0)
+            {
+                resourceUri.append(XCapResourceId.DELIMETER);
+                encodeNodeSelector(node, resourceUri);
+            }
+            return new URI(resourceUri.toString());
         }
         catch (URISyntaxException e)
         {
@@ -451,14 +522,124 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
     }
 
     /**
-     * Creates HTTP client with special parameters.
+     * Percent-encodes the characters of a node selector which are not allowed
+     * in the path of an URI such as the quotes and brackets of its predicates.
+     *
+     * @param node the node selector.
+     * @param encoded the builder to append the encoded node selector to.
+     */
+    private static void encodeNodeSelector(String node, StringBuilder encoded)
+    {
+        byte[] bytes;
+
+        try
+        {
+            bytes = node.getBytes("UTF-8");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            // UTF-8 is always supported.
+            throw new RuntimeException(e);
+        }
+        for (byte b : bytes)
+        {
+            int c = b & 0xFF;
+
+            if ((c > 0x20)
+                    && (c < 0x7F)
+                    && (NODE_SELECTOR_UNSAFE_CHARS.indexOf(c) == -1))
+            {
+                encoded.append((char) c);
+            }
+            else
+            {
+                encoded.append('%');
+                if (c < 0x10)
+                    encoded.append('0');
+                encoded.append(Integer.toHexString(c).toUpperCase());
+            }
+        }
+    }
+
+    /**
+     * Forgets the cached version of the document of a resource which is
+     * about to be modified.
+     *
+     * @param resourceId the identifier of the resource to be modified.
+     */
+    private void documentChanged(XCapResourceId resourceId)
+    {
+        URI documentUri
+            = getResourceURI(new XCapResourceId(resourceId.getDocument()));
+
+        synchronized (cachedResponses)
+        {
+            cachedResponses.remove(documentUri);
+        }
+    }
+
+    /**
+     * Executes a request which modifies a resource and releases the
+     * connection it used.
+     *
+     * @param httpClient the HTTP client to execute the request with.
+     * @param request the request.
+     * @return the XCAP response.
+     * @throws IOException if there is error during the request.
+     */
+    private XCapHttpResponse execute(
+            DefaultHttpClient httpClient,
+            HttpUriRequest request)
+            throws IOException
+    {
+        HttpResponse response = httpClient.execute(request);
+
+        try
+        {
+            return createResponse(response);
+        }
+        finally
+        {
+            EntityUtils.consume(response.getEntity());
+        }
+    }
+
+    /**
+     * Returns the HTTP client shared by the requests to the server we are
+     * connected to.
+     *
+     * @return the HTTP client.
+     * @throws IllegalStateException if the user is not connected.
+     */
+    private DefaultHttpClient getHttpClient()
+    {
+        DefaultHttpClient httpClient = this.httpClient;
+
+        if (httpClient == null)
+        {
+            throw new IllegalStateException(
+                    "User is not connected to the server");
+        }
+        return httpClient;
+    }
+
+    /**
+     * Creates HTTP client with special parameters. The client keeps the
+     * connections to the server alive between requests.
      *
      * @return the HTTP client.
      */
     private DefaultHttpClient createHttpClient()
     {
         //TODO: move to HttpUtil
-        DefaultHttpClient httpClient = new DefaultHttpClient();
+        ThreadSafeClientConnManager connectionManager
+            = new ThreadSafeClientConnManager();
+
+        connectionManager.setMaxTotal(MAX_CONNECTIONS);
+        connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS);
+
+        DefaultHttpClient httpClient
+            = new DefaultHttpClient(connectionManager);
         try
         {
             // make sure we use Certificate Verification Service if
@@ -481,6 +662,10 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
         HttpParams httpParams = httpClient.getParams();
         HttpConnectionParams.setConnectionTimeout(httpParams, timeout);
         HttpConnectionParams.setSoTimeout(httpParams, timeout);
+        Credentials credentials =
+                new UsernamePasswordCredentials(getUserName(), password);
+        httpClient.getCredentialsProvider().
+                setCredentials(AuthScope.ANY, credentials);
         return httpClient;
     }
 
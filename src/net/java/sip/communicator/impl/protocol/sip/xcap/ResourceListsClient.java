@@ -6,6 +6,8 @@
  */
 package net.java.sip.communicator.impl.protocol.sip.xcap;
 
+import java.util.*;
+
 import net.java.sip.communicator.impl.protocol.sip.xcap.model.resourcelists.*;
 
 /**
@@ -78,4 +80,55 @@ public interface ResourceListsClient
     public ListType getList(String anchor)
             throws XCapException;
 
+    /**
+     * Puts an entry to a list of the resource-lists on the server, replacing
+     * the entry with the same uri if there is one, without putting the whole
+     * resource-lists.
+     *
+     * @param listPath the names of the lists from the top-level list to the
+     * list of the entry.
+     * @param entry the entry to be saved on the server.
+     * @throws IllegalStateException if the user has not been connected.
+     * @throws XCapException         if there is some error during operation.
+     */
+    public void putResourceListsEntry(List<String> listPath, EntryType entry)
+            throws XCapException;
+
+    /**
+     * Deletes an entry from a list of the resource-lists on the server.
+     *
+     * @param listPath the names of the lists from the top-level list to the
+     * list of the entry.
+     * @param uri the uri of the entry to delete.
+     * @throws IllegalStateException if the user has not been connected.
+     * @throws XCapException         if there is some error during operation.
+     */
+    public void deleteResourceListsEntry(List<String> listPath, String uri)
+            throws XCapException;
+
+    /**
+     * Puts a list to the resource-lists on the server, replacing the list with
+     * the same name if there is one, without putting the whole
+     * resource-lists.
+     *
+     * @param parentListPath the names of the lists from the top-level list to
+     * the parent of the list, empty for a top-level list.
+     * @param list the list to be saved on the server.
+     * @throws IllegalStateException if the user has not been connected.
+     * @throws XCapException         if there is some error during operation.
+     */
+    public void putResourceListsList(List<String> parentListPath, ListType list)
+            throws XCapException;
+
+    /**
+     * Deletes a list from the resource-lists on the server.
+     *
+     * @param listPath the names of the lists from the top-level list to the
+     * list to delete.
+     * @throws IllegalStateException if the user has not been connected.
+     * @throws XCapException         if there is some error during operation.
+     */
+    public void deleteResourceListsList(List<String> listPath)
+            throws XCapException;
+
 }
@@ -8,6 +8,7 @@ package net.java.sip.communicator.impl.protocol.sip.xcap;
 
 import java.io.*;
 import java.net.URI;
+import java.util.*;
 
 import javax.sip.address.*;
 
@@ -218,6 +219,153 @@ public class XCapClientImpl extends BaseHttpXCapClient implements XCapClient
 //        }
     }
 
+    /**
+     * Puts an entry to a list of the resource-lists on the server, replacing
+     * the entry with the same uri if there is one, without putting the whole
+     * resource-lists.
+     *
+     * @param listPath the names of the lists from the top-level list to the
+     * list of the entry.
+     * @param entry the entry to be saved on the server.
+     * @throws IllegalStateException if the user has not been connected, or
+     *                               resource-lists is not supported.
+     * @throws XCapException         if there is some error during operation.
+     */
+    public void putResourceListsEntry(List<String> listPath, EntryType entry)
+            throws XCapException
+    {
+        assertConnected();
+        assertResourceListsSupported();
+        StringBuilder node = getListNodeSelector(listPath);
+        appendNodeStep(node, "entry", "uri", entry.getUri());
+        XCapResourceId resourceId = new XCapResourceId(
+                getResourceListsDocument(), node.toString());
+        try
+        {
+            String xml = ResourceListsParser.toXml(entry);
+            XCapResource resource = new XCapResource(resourceId, xml,
+                    ResourceListsClient.ELEMENT_CONTENT_TYPE);
+            putResource(resource);
+        }
+        catch (ParsingException e)
+        {
+            throw new XCapException("Entry cannot be parsed", e);
+        }
+    }
+
+    /**
+     * Deletes an entry from a list of the resource-lists on the server.
+     *
+     * @param listPath the names of the lists from the top-level list to the
+     * list of the entry.
+     * @param uri the uri of the entry to delete.
+     * @throws IllegalStateException if the user has not been connected, or
+     *                               resource-lists is not supported.
+     * @throws XCapException         if there is some error during operation.
+     */
+    public void deleteResourceListsEntry(List<String> listPath, String uri)
+            throws XCapException
+    {
+        assertConnected();
+        assertResourceListsSupported();
+        StringBuilder node = getListNodeSelector(listPath);
+        appendNodeStep(node, "entry", "uri", uri);
+        deleteResource(new XCapResourceId(
+                getResourceListsDocument(), node.toString()));
+    }
+
+    /**
+     * Puts a list to the resource-lists on the server, replacing the list with
+     * the same name if there is one, without putting the whole
+     * resource-lists.
+     *
+     * @param parentListPath the names of the lists from the top-level list to
+     * the parent of the list, empty for a top-level list.
+     * @param list the list to be saved on the server.
+     * @throws IllegalStateException if the user has not been connected, or
+     *                               resource-lists is not supported.
+     * @throws XCapException         if there is some error during operation.
+     */
+    public void putResourceListsList(List<String> parentListPath, ListType list)
+            throws XCapException
+    {
+        assertConnected();
+        assertResourceListsSupported();
+        StringBuilder node = getListNodeSelector(parentListPath);
+        appendNodeStep(node, "list", "name", list.getName());
+        XCapResourceId resourceId = new XCapResourceId(
+                getResourceListsDocument(), node.toString());
+        try
+        {
+            String xml = ResourceListsParser.toXml(list);
+            XCapResource resource = new XCapResource(resourceId, xml,
+                    ResourceListsClient.ELEMENT_CONTENT_TYPE);
+            putResource(resource);
+        }
+        catch (ParsingException e)
+        {
+            throw new XCapException("List cannot be parsed", e);
+        }
+    }
+
+    /**
+     * Deletes a list from the resource-lists on the server.
+     *
+     * @param listPath the names of the lists from the top-level list to the
+     * list to delete.
+     * @throws IllegalStateException if the user has not been connected, or
+     *                               resource-lists is not supported.
+     * @throws XCapException         if there is some error during operation.
+     */
+    public void deleteResourceListsList(List<String> listPath)
+            throws XCapException
+    {
+        assertConnected();
+        assertResourceListsSupported();
+        deleteResource(new XCapResourceId(
+                getResourceListsDocument(),
+                getListNodeSelector(listPath).toString()));
+    }
+
+    /**
+     * Gets the node selector (rfc4825) of a list of the resource-lists.
+     *
+     * @param listPath the names of the lists from the top-level list to the
+     * list.
+     * @return the node selector of the list.
+     */
+    private static StringBuilder getListNodeSelector(List<String> listPath)
+    {
+        StringBuilder node = new StringBuilder("/resource-lists");
+        for (String name : listPath)
+        {
+            appendNodeStep(node, "list", "name", name);
+        }
+        return node;
+    }
+
+    /**
+     * Appends to a node selector a step selecting an element by the value of
+     * one of its attributes e.g. <tt>/entry[@uri="sip:user@example.com"]</tt>.
+     *
+     * @param node the node selector.
+     * @param element the name of the element.
+     * @param attribute the name of the attribute.
+     * @param value the value of the attribute.
+     */
+    private static void appendNodeStep(
+            StringBuilder node,
+            String element,
+            String attribute,
+            String value)
+    {
+        // the value can be quoted with either kind of quotes
+        char quote = (value.indexOf('"') == -1) ? '"' : '\'';
+        node.append('/').append(element)
+                .append("[@").append(attribute).append('=')
+                .append(quote).append(value).append(quote).append(']');
+    }
+
     /**
      * Gets the xcap-caps from the server.
      *
@@ -16,7 +16,7 @@ public class XCapResourceId
     /**
      * Delimeter between document and node selectors.
      */
-    private static String DELIMETER = "/~~";
+    static final String DELIMETER = "/~~";
 
     /**
      * Document selector.
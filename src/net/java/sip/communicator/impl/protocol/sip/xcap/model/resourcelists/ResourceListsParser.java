@@ -153,6 +153,76 @@ public final class ResourceListsParser
         }
     }
 
+    /**
+     * Creates XML from the list element, e.g. to put it alone to the server
+     * with a node selector.
+     *
+     * @param list the list to analyze.
+     * @return the list xml.
+     * @throws ParsingException if there is some error during parsing.
+     */
+    public static String toXml(ListType list)
+            throws ParsingException
+    {
+        if (list == null)
+        {
+            throw new IllegalArgumentException("list cannot be null");
+        }
+        try
+        {
+            Document document = createDocument();
+            document.appendChild(elementFromList(document, list));
+            return toElementXml(createXml(document));
+        }
+        catch (Exception ex)
+        {
+            throw new ParsingException(ex);
+        }
+    }
+
+    /**
+     * Creates XML from the entry element, e.g. to put it alone to the server
+     * with a node selector.
+     *
+     * @param entry the entry to analyze.
+     * @return the entry xml.
+     * @throws ParsingException if there is some error during parsing.
+     */
+    public static String toXml(EntryType entry)
+            throws ParsingException
+    {
+        if (entry == null)
+        {
+            throw new IllegalArgumentException("entry cannot be null");
+        }
+        try
+        {
+            Document document = createDocument();
+            document.appendChild(elementFromEntry(document, entry));
+            return toElementXml(createXml(document));
+        }
+        catch (Exception ex)
+        {
+            throw new ParsingException(ex);
+        }
+    }
+
+    /**
+     * Removes the XML declaration of a document so that it can be used as
+     * the content of an element (application/xcap-el+xml).
+     *
+     * @param xml the document xml.
+     * @return the element xml.
+     */
+    private static String toElementXml(String xml)
+    {
+        if (xml.startsWith("<?xml"))
+        {
+            xml = xml.substring(xml.indexOf("?>") + 2).trim();
+        }
+        return xml;
+    }
+
     /**
      * Creates list object from the element.
      *
@@ -9,6 +9,7 @@ package net.java.sip.communicator.impl.protocol.zeroconf;
 import java.io.*;
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import net.java.sip.communicator.impl.protocol.zeroconf.jmdns.*;
 import net.java.sip.communicator.service.protocol.*;
@@ -26,10 +27,16 @@ public class BonjourService extends Thread
     private static final Logger logger =
         Logger.getLogger(BonjourService.class);
 
+    /**
+     * The time in milliseconds after which the information about a service
+     * which hasn't been resolved is requested again.
+     */
+    private static final long RESOLVE_RETRY_INTERVAL = 10000;
+
     private int port = 5298;
     private ServerSocket sock = null;
     private String id = null;
-    private JmDNS jmdns=null;
+    private volatile JmDNS jmdns=null;
     private final Map<String, Object> props = new Hashtable<String, Object>();
     private ServiceInfo service = null;
     private boolean dead = false;
@@ -42,6 +49,30 @@ public class BonjourService extends Thread
 
     private ZeroconfAccountID acc;
 
+    /**
+     * The thread the events of JmDNS are handled on. JmDNS delivers them on
+     * the thread receiving its packets so they are handed over to this single
+     * thread, which changes the presence of the contacts in the order of the
+     * events and retries the resolution of the services.
+     */
+    private final ScheduledExecutorService eventExecutor
+        = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "Zeroconf events");
+
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+    /**
+     * The names of the services being resolved. Only accessed on the event
+     * thread.
+     */
+    private final Set<String> resolving = new HashSet<String>();
+
     /* Should maybe better get the status directly from OperationSetPresence */
     private PresenceStatus status = ZeroconfStatusEnum.OFFLINE;
 
@@ -204,6 +235,7 @@ public class BonjourService extends Thread
         changeStatus(ZeroconfStatusEnum.OFFLINE);
         if(jmdns != null)
             jmdns.close();
+        eventExecutor.shutdownNow();
     }
 
     private ServerSocket createSocket(int port)
@@ -317,39 +349,70 @@ public class BonjourService extends Thread
         status = stat;
     }
 
-    private class AddThread extends Thread
+    /**
+     * Requests the information about a service until the service has been
+     * resolved and its contact created or we go offline. The information is
+     * delivered to {@link #serviceResolved(ServiceEvent)}.
+     */
+    private class ResolveTask implements Runnable
     {
         private String type, name;
-        public AddThread(String type, String name)
+        public ResolveTask(String type, String name)
         {
-            this.setDaemon(true);
             this.type = type;
             this.name = name;
-            this.start();
         }
 
         public void run()
         {
-            ServiceInfo service = null;
-            while ((service == null) && (dead == false)
-            && !status.equals(ZeroconfStatusEnum.OFFLINE))
+            if (!resolving.contains(name))
+                return;
+
+            JmDNS jmdns = BonjourService.this.jmdns;
+
+            if ((jmdns == null) || (dead == true)
+                || status.equals(ZeroconfStatusEnum.OFFLINE)
+                || (getContact(name, null) != null))
             {
-                service = jmdns.getServiceInfo(type, name, 10000);
-                if (service == null)
-                    logger.error("BONJOUR: ERROR - Service Info of "
-                                      + name +" not found in cache!!");
-                try
-                {
-                    sleep(2);
-                }
-                catch (InterruptedException ex)
-                {
-                    logger.error(ex);
-                }
+                resolving.remove(name);
+                return;
             }
-            if ((dead == false) && !status.equals(ZeroconfStatusEnum.OFFLINE))
-                jmdns.requestServiceInfo(type, name);
-            //} else handleResolvedService(name, type, service);
+
+            jmdns.resolveServiceInfo(type, name);
+            eventExecutor.schedule(
+                this, RESOLVE_RETRY_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Starts resolving a service unless it is already being resolved. Must be
+     * called on the event thread.
+     *
+     * @param type the fully qualified type of the service
+     * @param name the name of the service
+     */
+    private void resolve(String type, String name)
+    {
+        if (resolving.add(name))
+            new ResolveTask(type, name).run();
+    }
+
+    /**
+     * Handles an event of JmDNS on the event thread.
+     *
+     * @param task the handling of the event
+     */
+    private void execute(Runnable task)
+    {
+        try
+        {
+            eventExecutor.execute(task);
+        }
+        catch (RejectedExecutionException ex)
+        {
+            // we've been shut down
+            if (logger.isDebugEnabled())
+                logger.debug("ZEROCONF: Ignoring event after shutdown", ex);
         }
     }
 
@@ -368,8 +431,8 @@ public class BonjourService extends Thread
          * method doesn't return, jmDNS will hang !!
          */
 
-        String name = event.getName();
-        String type = event.getType();
+        final String name = event.getName();
+        final String type = event.getType();
 
         if (name.equals(id))
             return;
@@ -377,18 +440,17 @@ public class BonjourService extends Thread
         if (logger.isDebugEnabled())
             logger.debug("BONJOUR: "+name
                           +"["+type+"] detected! Trying to get information...");
-        try
-        {
-            sleep(2);
-        }
-        catch (InterruptedException ex)
-        {
-            logger.error(ex);
-        }
 
-        jmdns.printServices();
+        if (logger.isTraceEnabled())
+            jmdns.printServices();
 
-        new AddThread(type, name);
+        execute(new Runnable()
+        {
+            public void run()
+            {
+                resolve(type, name);
+            }
+        });
     }
 
 
@@ -401,10 +463,24 @@ public class BonjourService extends Thread
      */
     public void serviceRemoved(ServiceEvent event)
     {
-        String name = event.getName();
+        final String name = event.getName();
         if (name.equals(id))
             return;
 
+        execute(new Runnable()
+        {
+            public void run()
+            {
+                handleRemovedService(name);
+            }
+        });
+    }
+
+    private void handleRemovedService(String name)
+    {
+        resolving.remove(name);
+
+
         ContactZeroconfImpl contact = getContact(name, null);
 
         if(contact == null)
@@ -428,15 +504,21 @@ public class BonjourService extends Thread
      */
     public void serviceResolved(ServiceEvent event)
     {
-        String contactID = event.getName();
-        String type = event.getType();
-        ServiceInfo info = event.getInfo();
+        final String contactID = event.getName();
+        final String type = event.getType();
+        final ServiceInfo info = event.getInfo();
 
         if (logger.isDebugEnabled())
             logger.debug("BONJOUR:    Information about "
                           +contactID+" discovered");
 
-        handleResolvedService(contactID, type, info);
+        execute(new Runnable()
+        {
+            public void run()
+            {
+                handleResolvedService(contactID, type, info);
+            }
+        });
     }
 
     private void handleResolvedService(String contactID,
@@ -529,9 +611,12 @@ public class BonjourService extends Thread
                                status == null?ZeroconfStatusEnum.ONLINE:status);
 
         // Listening for changes
-        jmdns.addListener(this, new DNSQuestion(info.getQualifiedName(),
-                                                DNSConstants.TYPE_SRV,
-                                                DNSConstants.CLASS_UNIQUE));
+        JmDNS jmdns = this.jmdns;
+
+        if (jmdns != null)
+            jmdns.addListener(this, new DNSQuestion(info.getQualifiedName(),
+                                                    DNSConstants.TYPE_SRV,
+                                                    DNSConstants.CLASS_UNIQUE));
     }
 
     /**
@@ -541,9 +626,21 @@ public class BonjourService extends Thread
      * @param now Timestamp
      * @param record DNSRecord which changed
      */
-    public synchronized void updateRecord(  JmDNS jmdns,
-                                            long now,
-                                            DNSRecord record)
+    public void updateRecord(final JmDNS jmdns,
+                             long now,
+                             final DNSRecord record)
+    {
+        execute(new Runnable()
+        {
+            public void run()
+            {
+                handleUpdatedRecord(jmdns, record);
+            }
+        });
+    }
+
+    private synchronized void handleUpdatedRecord(JmDNS jmdns,
+                                                  DNSRecord record)
     {
         if (logger.isDebugEnabled())
             logger.debug("ZEROCONF/JMDNS: Received record update for "+record);
@@ -569,7 +666,7 @@ public class BonjourService extends Thread
             if (contact == null) { //return;
                 logger.error("ZEROCONF: BUG in jmDNS => Received update without "
                         +"previous contact annoucement. Trying to add contact");
-                new AddThread("_presence._tcp.local.", name);
+                resolve("_presence._tcp.local.", name);
                 return;
             }
         }
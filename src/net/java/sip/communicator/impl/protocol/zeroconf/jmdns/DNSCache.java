@@ -4,6 +4,7 @@
 package net.java.sip.communicator.impl.protocol.zeroconf.jmdns;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import net.java.sip.communicator.util.*;
 
@@ -12,7 +13,15 @@ import net.java.sip.communicator.util.*;
  * can handle multiple entries with the same name.
  * <p/>
  * Storing multiple entries with the same name is implemented using a
- * linked list of <code>CacheNode</code>'s.
+ * linked list of <code>CacheNode</code>'s. The lists are never modified once
+ * they are in the table: adding or removing an entry replaces the list of its
+ * name with a new one. Thus the table may be read and iterated over by the
+ * thread receiving the packets, the timer tasks and the listeners at the same
+ * time without any locking.
+ * <p/>
+ * The records are also kept in a timer wheel by expiration time so that
+ * reaping the expired records only looks at the records which expire during
+ * the reaped interval instead of the whole cache.
  * <p/>
  * The current implementation of the API of DNSCache does expose the
  * cache nodes to clients. Clients must explicitly deal with the nodes
@@ -45,7 +54,7 @@ import net.java.sip.communicator.util.*;
  * @version %I%, %G%
  * @author  Arthur van Hoff, Werner Randelshofer, Rick Blair
  */
-class DNSCache
+public class DNSCache
 {
     private static Logger logger = Logger.getLogger(DNSCache.class.toString());
     // Implementation note:
@@ -60,9 +69,15 @@ class DNSCache
     // that would be amuch cleaner implementation
 
     /**
-     * The number of DNSEntry's in the cache.
+     * The number of slots of the expiration timer wheel.
+     */
+    private static final int WHEEL_SLOTS = 64;
+
+    /**
+     * The time in milliseconds covered by a slot of the expiration timer
+     * wheel.
      */
-    private int size;
+    private static final long WHEEL_TICK = DNSConstants.RECORD_REAPER_INTERVAL;
 
     /**
      * The hashtable used internally to store the entries of the cache.
@@ -70,7 +85,21 @@ class DNSCache
      * name.
      * Values are linked lists of CacheNode instances.
      */
-    private HashMap<String, CacheNode> hashtable;
+    private final ConcurrentMap<String, CacheNode> hashtable;
+
+    /**
+     * The expiration timer wheel. The slot of a record is its expiration time
+     * in ticks modulo the number of slots so a slot holds the records
+     * expiring during its tick of the current turn of the wheel as well as
+     * the ones expiring during the next turns.
+     */
+    private final List<List<DNSRecord>> wheel
+        = new ArrayList<List<DNSRecord>>(WHEEL_SLOTS);
+
+    /**
+     * The last tick of the expiration timer wheel which has been reaped.
+     */
+    private long reapedTick;
 
     /**
      * Cache nodes are used to implement storage of multiple DNSEntry's of the
@@ -78,17 +107,18 @@ class DNSCache
      */
     public static class CacheNode
     {
-        private static Logger logger = Logger.getLogger(CacheNode.class.toString());
-        private DNSEntry value;
-        private CacheNode next;
+        private final DNSEntry value;
+        private final CacheNode next;
 
         public CacheNode(DNSEntry value)
+        {
+            this(value, null);
+        }
+
+        private CacheNode(DNSEntry value, CacheNode next)
         {
             this.value = value;
-//            String SLevel = System.getProperty("jmdns.debug");
-//            if (SLevel == null)
-//                SLevel = "INFO";
-//            logger.setLevel(Level.parse(SLevel));
+            this.next = next;
         }
 
         public CacheNode next()
@@ -109,41 +139,59 @@ class DNSCache
      */
     public DNSCache(final int size)
     {
-        hashtable = new HashMap<String, CacheNode>(size);
+        hashtable = new ConcurrentHashMap<String, CacheNode>(size);
 
-//        String SLevel = System.getProperty("jmdns.debug");
-//        if (SLevel == null) SLevel = "INFO";
-//        logger.setLevel(Level.parse(SLevel));
+        for (int i = 0; i < WHEEL_SLOTS; i++)
+            wheel.add(new ArrayList<DNSRecord>());
+        reapedTick = System.currentTimeMillis() / WHEEL_TICK;
     }
 
     /**
      * Clears the cache.
      */
-    public synchronized void clear()
+    public void clear()
     {
         hashtable.clear();
-        size = 0;
+        synchronized (wheel)
+        {
+            for (List<DNSRecord> slot : wheel)
+                slot.clear();
+        }
     }
 
     /**
      * Adds an entry to the table.
      * @param entry added to the table.
      */
-    public synchronized void add(final DNSEntry entry)
+    public void add(final DNSEntry entry)
     {
         //logger.log("DNSCache.add("+entry.getName()+")");
-        CacheNode newValue = new CacheNode(entry);
-        CacheNode node = hashtable.get(entry.getName());
-        if (node == null)
-        {
-            hashtable.put(entry.getName(), newValue);
-        }
-        else
+        String name = entry.getName();
+
+        while (true)
         {
-            newValue.next = node.next;
-            node.next = newValue;
+            CacheNode node = hashtable.get(name);
+
+            if (node == null)
+            {
+                if (hashtable.putIfAbsent(name, new CacheNode(entry)) == null)
+                    break;
+            }
+            else
+            {
+                // keep the first entry first
+                CacheNode newNode
+                    = new CacheNode(
+                            node.value,
+                            new CacheNode(entry, node.next));
+
+                if (hashtable.replace(name, node, newNode))
+                    break;
+            }
         }
-        size++;
+
+        if (entry instanceof DNSRecord)
+            scheduleExpiration((DNSRecord) entry);
     }
 
     /**
@@ -151,41 +199,50 @@ class DNSCache
      * @param entry removed from table.
      * @return Returns true if the entry was found.
      */
-    public synchronized boolean remove(DNSEntry entry)
+    public boolean remove(DNSEntry entry)
     {
-        CacheNode node = hashtable.get(entry.getName());
-        if (node != null)
+        String name = entry.getName();
+
+        while (true)
         {
-            if (node.value == entry)
-            {
-                if (node.next == null)
-                {
-                    hashtable.remove(entry.getName());
-                }
-                else
-                {
-                    hashtable.put(entry.getName(), node.next);
-                }
-                size--;
-                return true;
-            }
+            CacheNode node = hashtable.get(name);
+            boolean found = false;
 
-            CacheNode previous = node;
-            node = node.next;
-            while (node != null)
+            for (CacheNode n = node; n != null; n = n.next)
             {
-                if (node.value == entry)
+                if (n.value == entry)
                 {
-                    previous.next = node.next;
-                    size--;
-                    return true;
+                    found = true;
+                    break;
                 }
-                previous = node;
-                node = node.next;
             }
-            ;
+            if (!found)
+                return false;
+
+            CacheNode newNode = without(node, entry);
+
+            if ((newNode == null)
+                    ? hashtable.remove(name, node)
+                    : hashtable.replace(name, node, newNode))
+                return true;
         }
-        return false;
+    }
+
+    /**
+     * Returns a copy of a linked list of nodes without a specific entry.
+     *
+     * @param node the first node of the list
+     * @param entry the entry to leave out
+     * @return the first node of the copy or <tt>null</tt> if the copy is empty
+     */
+    private static CacheNode without(CacheNode node, DNSEntry entry)
+    {
+        if (node == null)
+            return null;
+        else if (node.value == entry)
+            return node.next;
+        else
+            return new CacheNode(node.value, without(node.next, entry));
     }
 
     /**
@@ -193,7 +250,7 @@ class DNSCache
      * @param entry to be found in table.
      * @return Returns the entry that was found.
      */
-    public synchronized DNSEntry get(DNSEntry entry)
+    public DNSEntry get(DNSEntry entry)
     {
         for (CacheNode node = find(entry.getName()); node != null; node = node.next)
         {
@@ -212,7 +269,7 @@ class DNSCache
      * @param clazz
      * @return Return the entry if found, null otherwise.
      */
-    public synchronized DNSEntry get(String name, int type, int clazz)
+    public DNSEntry get(String name, int type, int clazz)
     {
         for (CacheNode node = find(name); node != null; node = node.next)
         {
@@ -244,15 +301,147 @@ class DNSCache
      * @param name to be found.
      * @return Returns an instance of DNSCache.CacheNode or null.
      */
-    public synchronized CacheNode find(String name)
+    public CacheNode find(String name)
     {
         return hashtable.get(name);
     }
 
+    /**
+     * Removes the records which have expired since the last call from the
+     * table. Only the records in the slots of the expiration timer wheel which
+     * have passed since the last call are looked at. The records among them
+     * which haven't expired yet, because their TTL has been reset or they
+     * expire during a next turn of the wheel, are moved to the slot of their
+     * expiration time.
+     *
+     * @param now the current time in milliseconds
+     * @return the records which have expired and have been removed
+     */
+    public List<DNSRecord> reap(long now)
+    {
+        List<DNSRecord> expired = new ArrayList<DNSRecord>();
+
+        // hold the wheel while rescheduling so that resetTTL finds the
+        // records in their slots
+        synchronized (wheel)
+        {
+            List<DNSRecord> due = new ArrayList<DNSRecord>();
+            long nowTick = now / WHEEL_TICK;
+            long tick = Math.max(reapedTick + 1, nowTick - WHEEL_SLOTS + 1);
+
+            for (; tick <= nowTick; tick++)
+            {
+                List<DNSRecord> slot = wheel.get((int) (tick % WHEEL_SLOTS));
+
+                due.addAll(slot);
+                slot.clear();
+            }
+            if (reapedTick < nowTick)
+                reapedTick = nowTick;
+
+            for (DNSRecord rec : due)
+            {
+                if (rec.isExpired(now))
+                {
+                    if (remove(rec))
+                        expired.add(rec);
+                }
+                else if (contains(rec))
+                    scheduleExpiration(rec);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Resets the TTL of a record of the table. If the record now expires
+     * earlier, e.g. because its peer has said goodbye with a TTL of zero, it
+     * is moved to the slot of the expiration timer wheel of its new
+     * expiration time. If it expires later, it is moved when its old slot is
+     * reaped.
+     *
+     * @param rec the record of the table to reset the TTL of
+     * @param other the record received with the new TTL of <tt>rec</tt>
+     */
+    public void resetTTL(DNSRecord rec, DNSRecord other)
+    {
+        synchronized (wheel)
+        {
+            rec.resetTTL(other);
+
+            if (getExpirationTick(rec) < rec.expirationTick)
+            {
+                List<DNSRecord> slot
+                    = wheel.get((int) (rec.expirationTick % WHEEL_SLOTS));
+
+                // DNSRecord.equals compares the contents of the records
+                for (Iterator<DNSRecord> i = slot.iterator(); i.hasNext();)
+                {
+                    if (i.next() == rec)
+                    {
+                        i.remove();
+                        break;
+                    }
+                }
+                scheduleExpiration(rec);
+            }
+        }
+    }
+
+    /**
+     * Determines whether a specific record is in the table.
+     *
+     * @param rec the record to look for
+     * @return <tt>true</tt> if <tt>rec</tt> itself is in the table
+     */
+    private boolean contains(DNSRecord rec)
+    {
+        for (CacheNode n = find(rec.getName()); n != null; n = n.next)
+        {
+            if (n.value == rec)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Puts a record in the slot of the expiration timer wheel of its
+     * expiration time or in the next slot to be reaped if its expiration time
+     * has already been reaped.
+     *
+     * @param rec the record to put in the expiration timer wheel
+     */
+    private void scheduleExpiration(DNSRecord rec)
+    {
+        synchronized (wheel)
+        {
+            long tick = getExpirationTick(rec);
+
+            rec.expirationTick = tick;
+            wheel.get((int) (tick % WHEEL_SLOTS)).add(rec);
+        }
+    }
+
+    /**
+     * Returns the tick of the expiration timer wheel of the expiration time
+     * of a record or the next tick to be reaped if its expiration time has
+     * already been reaped. Must be called with the wheel held.
+     *
+     * @param rec the record to get the expiration tick of
+     * @return the tick of the slot of the expiration timer wheel in which
+     * <tt>rec</tt> is to be put
+     */
+    private long getExpirationTick(DNSRecord rec)
+    {
+        long tick = rec.getExpirationTime(100) / WHEEL_TICK;
+
+        return (tick <= reapedTick) ? (reapedTick + 1) : tick;
+    }
+
     /**
      * List all entries for debugging.
      */
-    public synchronized void print()
+    public void print()
     {
         for (Iterator<CacheNode> i = iterator(); i.hasNext();)
         {
@@ -264,7 +453,7 @@ class DNSCache
         }
     }
 
-    public synchronized String toString()
+    public String toString()
     {
         StringBuffer aLog = new StringBuffer();
         aLog.append("\t---- cache ----");
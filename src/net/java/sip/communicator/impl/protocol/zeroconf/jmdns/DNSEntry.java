@@ -16,6 +16,14 @@ import java.util.logging.*;
 public class DNSEntry
 {
     private static Logger logger = Logger.getLogger(DNSEntry.class.toString());
+
+    static
+    {
+        String SLevel = System.getProperty("jmdns.debug");
+        if (SLevel == null) SLevel = "INFO";
+        logger.setLevel(Level.parse(SLevel));
+    }
+
     String key;
     String name;
     int type;
@@ -32,10 +40,6 @@ public class DNSEntry
         this.type = type;
         this.clazz = clazz & DNSConstants.CLASS_MASK;
         this.unique = (clazz & DNSConstants.CLASS_UNIQUE) != 0;
-        
-        String SLevel = System.getProperty("jmdns.debug");
-        if (SLevel == null) SLevel = "INFO";
-        logger.setLevel(Level.parse(SLevel)); 
     }
 
     /**
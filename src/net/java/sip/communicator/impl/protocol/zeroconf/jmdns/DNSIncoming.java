@@ -17,6 +17,14 @@ import java.util.logging.*;
 final class DNSIncoming
 {
     private static Logger logger = Logger.getLogger(DNSIncoming.class.toString());
+
+    static
+    {
+        String SLevel = System.getProperty("jmdns.debug");
+        if (SLevel == null) SLevel = "INFO";
+        logger.setLevel(Level.parse(SLevel));
+    }
+
     // Implementation note: This vector should be immutable.
     // If a client of DNSIncoming changes the contents of this vector,
     // we get undesired results. To fix this, we have to migrate to
@@ -44,10 +52,6 @@ final class DNSIncoming
      */
     DNSIncoming(DatagramPacket packet) throws IOException
     {
-        String SLevel = System.getProperty("jmdns.debug");
-        if (SLevel == null) SLevel = "INFO";
-        logger.setLevel(Level.parse(SLevel));
-
         this.packet = packet;
         this.data = packet.getData();
         this.len = packet.getLength();
@@ -17,6 +17,13 @@ final class DNSOutgoing
 {
     private static Logger logger = 
         Logger.getLogger(DNSOutgoing.class.toString());
+
+    static
+    {
+        String SLevel = System.getProperty("jmdns.debug");
+        if (SLevel == null) SLevel = "INFO";
+        logger.setLevel(Level.parse(SLevel));
+    }
     
     int id;
     int flags;
@@ -45,9 +52,6 @@ final class DNSOutgoing
      */
     DNSOutgoing(int flags, boolean multicast)
     {
-        String SLevel = System.getProperty("jmdns.debug");
-        if (SLevel == null) SLevel = "INFO";
-        logger.setLevel(Level.parse(SLevel)); 
         
         this.flags = flags;
         this.multicast = multicast;
@@ -17,6 +17,13 @@ public final class DNSQuestion
     private static Logger logger = 
         Logger.getLogger(DNSQuestion.class.toString());
 
+    static
+    {
+        String SLevel = System.getProperty("jmdns.debug");
+        if (SLevel == null) SLevel = "INFO";
+        logger.setLevel(Level.parse(SLevel));
+    }
+
     /**
      * Create a question.
      * @param name 
@@ -26,10 +33,6 @@ public final class DNSQuestion
     public DNSQuestion(String name, int type, int clazz)
     {
         super(name, type, clazz);
-        
-        String SLevel = System.getProperty("jmdns.debug");
-        if (SLevel == null) SLevel = "INFO";
-        logger.setLevel(Level.parse(SLevel)); 
     }
 
     /**
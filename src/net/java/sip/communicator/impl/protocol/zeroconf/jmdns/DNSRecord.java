@@ -17,9 +17,23 @@ public abstract class DNSRecord extends DNSEntry
 {
     private static Logger logger = 
         Logger.getLogger(DNSRecord.class.toString());
+
+    static
+    {
+        String SLevel = System.getProperty("jmdns.debug");
+        if (SLevel == null) SLevel = "INFO";
+        logger.setLevel(Level.parse(SLevel));
+    }
+
     int ttl;
     private long created;
 
+    /**
+     * The tick of the expiration timer wheel of the <tt>DNSCache</tt> in the
+     * slot of which this record is.
+     */
+    long expirationTick;
+
     /**
      * Create a DNSRecord with a name, type, clazz, and ttl.
      */
@@ -28,10 +42,6 @@ public abstract class DNSRecord extends DNSEntry
         super(name, type, clazz);
         this.ttl = ttl;
         this.created = System.currentTimeMillis();
-        
-        String SLevel = System.getProperty("jmdns.debug");
-        if (SLevel == null) SLevel = "INFO";
-        logger.setLevel(Level.parse(SLevel)); 
     }
 
     /**
@@ -177,20 +187,29 @@ public abstract class DNSRecord extends DNSEntry
     /**
      * Address record.
      */
-    static class Address extends DNSRecord
+    public static class Address extends DNSRecord
     {
         private static Logger logger = 
             Logger.getLogger(Address.class.toString());
+
+        static
+        {
+            String SLevel = System.getProperty("jmdns.debug");
+            if (SLevel == null) SLevel = "INFO";
+            logger.setLevel(Level.parse(SLevel));
+        }
+
         InetAddress addr;
 
-        Address(String name, int type, int clazz, int ttl, InetAddress addr)
+        public Address(
+                String name,
+                int type,
+                int clazz,
+                int ttl,
+                InetAddress addr)
         {
             super(name, type, clazz, ttl);
             this.addr = addr;
-            
-            String SLevel = System.getProperty("jmdns.debug");
-            if (SLevel == null) SLevel = "INFO";
-            logger.setLevel(Level.parse(SLevel)); 
         }
 
         Address(String name, int type, int clazz, int ttl, byte[] rawAddress)
@@ -418,16 +437,20 @@ public abstract class DNSRecord extends DNSEntry
     {
         private static Logger logger = 
             Logger.getLogger(Pointer.class.toString());
+
+        static
+        {
+            String SLevel = System.getProperty("jmdns.debug");
+            if (SLevel == null) SLevel = "INFO";
+            logger.setLevel(Level.parse(SLevel));
+        }
+
         String alias;
 
         Pointer(String name, int type, int clazz, int ttl, String alias)
         {
             super(name, type, clazz, ttl);
             this.alias = alias;
-            
-            String SLevel = System.getProperty("jmdns.debug");
-            if (SLevel == null) SLevel = "INFO";
-            logger.setLevel(Level.parse(SLevel)); 
         }
 
         void write(DNSOutgoing out) throws IOException
@@ -480,16 +503,20 @@ public abstract class DNSRecord extends DNSEntry
     {
         private static Logger logger = 
             Logger.getLogger(Text.class.toString());
+
+        static
+        {
+            String SLevel = System.getProperty("jmdns.debug");
+            if (SLevel == null) SLevel = "INFO";
+            logger.setLevel(Level.parse(SLevel));
+        }
+
         byte text[];
 
         Text(String name, int type, int clazz, int ttl, byte text[])
         {
             super(name, type, clazz, ttl);
             this.text = text;
-            
-            String SLevel = System.getProperty("jmdns.debug");
-            if (SLevel == null) SLevel = "INFO";
-            logger.setLevel(Level.parse(SLevel)); 
         }
 
         void write(DNSOutgoing out) throws IOException
@@ -564,6 +591,14 @@ public abstract class DNSRecord extends DNSEntry
     {
         private static Logger logger = 
             Logger.getLogger(Service.class.toString());
+
+        static
+        {
+            String SLevel = System.getProperty("jmdns.debug");
+            if (SLevel == null) SLevel = "INFO";
+            logger.setLevel(Level.parse(SLevel));
+        }
+
         int priority;
         int weight;
         int port;
@@ -583,10 +618,6 @@ public abstract class DNSRecord extends DNSEntry
             this.weight = weight;
             this.port = port;
             this.server = server;
-            
-            String SLevel = System.getProperty("jmdns.debug");
-            if (SLevel == null) SLevel = "INFO";
-            logger.setLevel(Level.parse(SLevel)); 
         }
 
         void write(DNSOutgoing out) throws IOException
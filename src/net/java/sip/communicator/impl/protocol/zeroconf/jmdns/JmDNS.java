@@ -486,6 +486,21 @@ public class JmDNS
         }
     }
 
+    /**
+     * Request service information without waiting for it. The
+     * ServiceListener.serviceResolved method is called as soon as the
+     * information is available.
+     *
+     * @param type full qualified service type,
+     *      such as <code>_http._tcp.local.</code> .
+     * @param name unqualified service name, such as <code>foobar</code> .
+     */
+    public void resolveServiceInfo(String type, String name)
+    {
+        registerServiceType(type);
+        new ServiceInfoResolver(new ServiceInfo(type, name)).start();
+    }
+
     void handleServiceResolved(ServiceInfo info)
     {
         List<ServiceListener> list = serviceListeners.get(info.type.toLowerCase());
@@ -1022,7 +1037,7 @@ public class JmDNS
                     }
                     else
                     {
-                        c.resetTTL(rec);
+                        cache.resetTTL(c, rec);
                         rec = c;
                     }
                 }
@@ -1260,6 +1275,10 @@ public class JmDNS
 
     /**
      * Periodicaly removes expired entries from the cache.
+     * <p/>
+     * The cache keeps its records by expiration time so only the records which
+     * have expired since the last run are looked at. The listeners are
+     * notified without holding the lock of JmDNS since they may query it.
      */
     private class RecordReaper extends TimerTask
     {
@@ -1272,44 +1291,18 @@ public class JmDNS
 
         public void run()
         {
-            synchronized (JmDNS.this)
+            if (state == DNSState.CANCELED)
             {
-                if (state == DNSState.CANCELED)
-                {
-                    return;
-                }
-                if (logger.isTraceEnabled())
-                    logger.trace("run() JmDNS reaping cache");
-
-                // Remove expired answers from the cache
-                // -------------------------------------
-                // To prevent race conditions, we defensively copy all cache
-                // entries into a list.
-                List<DNSEntry> list = new ArrayList<DNSEntry>();
-                synchronized (cache)
-                {
-                    for (Iterator<DNSCache.CacheNode> i = cache.iterator();
-                            i.hasNext();)
-                    {
-                        for (DNSCache.CacheNode n = i.next();
-                            n != null;
-                            n = n.next())
-                        {
-                            list.add(n.getValue());
-                        }
-                    }
-                }
-                // Now, we remove them.
-                long now = System.currentTimeMillis();
-                for (Iterator<DNSEntry> i = list.iterator(); i.hasNext();)
-                {
-                    DNSRecord c = (DNSRecord)i.next();
-                    if (c.isExpired(now))
-                    {
-                        updateRecord(now, c);
-                        cache.remove(c);
-                    }
-                }
+                return;
+            }
+            if (logger.isTraceEnabled())
+                logger.trace("run() JmDNS reaping cache");
+
+            long now = System.currentTimeMillis();
+
+            for (DNSRecord c : cache.reap(now))
+            {
+                updateRecord(now, c);
             }
         }
     }
@@ -2326,22 +2319,22 @@ public class JmDNS
                                 type,
                                 DNSConstants.TYPE_PTR,
                                 DNSConstants.CLASS_IN));
-                        for (Iterator<ServiceInfo> s = services.values().iterator(); s.hasNext();)
+                        for (DNSRecord answer : getKnownAnswers(type, now))
                         {
-                            final ServiceInfo info = s.next();
                             try
                             {
-                                out.addAnswer(
-                                    new DNSRecord.Pointer(
-                                        info.type,
-                                        DNSConstants.TYPE_PTR,
-                                        DNSConstants.CLASS_IN,
-                                        DNSConstants.DNS_TTL,
-                                        info.getQualifiedName()), now);
+                                out.addAnswer(answer, now);
                             }
                             catch (IOException ee)
                             {
-                                break;
+                                // The known answers don't fit in one
+                                // packet: send them in several ones with
+                                // the TC bit set in all but the last one.
+                                out.flags |= DNSConstants.FLAGS_TC;
+                                send(out);
+                                out = new DNSOutgoing(
+                                    DNSConstants.FLAGS_QR_QUERY);
+                                out.addAnswer(answer, now);
                             }
                         }
                         send(out);
@@ -2368,6 +2361,44 @@ public class JmDNS
         }
     }
 
+    /**
+     * Returns the known answers to a query for the services of a given type:
+     * the services we have registered and the services in the cache which
+     * haven't outlived half of their TTL. Listing them in the query spares
+     * the peers whose services are known from answering it.
+     *
+     * @param type the fully qualified service type
+     * @param now the current time in milliseconds
+     * @return the known answers to a query for the services of
+     * <tt>type</tt>
+     */
+    private List<DNSRecord> getKnownAnswers(String type, long now)
+    {
+        List<DNSRecord> answers = new ArrayList<DNSRecord>();
+
+        for (ServiceInfo info : services.values())
+        {
+            if (info.type.equalsIgnoreCase(type))
+            {
+                answers.add(
+                    new DNSRecord.Pointer(
+                        info.type,
+                        DNSConstants.TYPE_PTR,
+                        DNSConstants.CLASS_IN,
+                        DNSConstants.DNS_TTL,
+                        info.getQualifiedName()));
+            }
+        }
+        for (DNSCache.CacheNode n = cache.find(type); n != null; n = n.next())
+        {
+            DNSRecord rec = (DNSRecord) n.getValue();
+
+            if ((rec.type == DNSConstants.TYPE_PTR) && !rec.isStale(now))
+                answers.add(rec);
+        }
+        return answers;
+    }
+
     /**
      * The ServiceInfoResolver queries up to three times consecutively for
      * a service info, and then removes itself from the timer.
@@ -0,0 +1,393 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.startup;
+
+import java.util.*;
+
+import net.java.sip.communicator.util.*;
+
+import org.jitsi.service.configuration.*;
+import org.osgi.framework.*;
+import org.osgi.framework.hooks.service.*;
+import org.osgi.service.startlevel.*;
+
+/**
+ * Activates on first use the bundles which only contribute services such as
+ * configuration forms and replacement sources. Such a bundle declares the
+ * lazy activation policy and lists the services it registers in its
+ * <tt>Lazy-Services</tt> manifest header, for example:
+ * <pre>
+ * Bundle-ActivationPolicy: lazy
+ * Lazy-Services: net.java.sip.communicator.service.gui.ConfigurationForm;
+ *  FORM_TYPE=GENERAL_TYPE;
+ *  unless:=net.java.sip.communicator.plugin.chatconfig.DISABLED
+ * </pre>
+ * <p>
+ * The bundle is started with its declared activation policy so it waits in
+ * the <tt>STARTING</tt> state when its start level is reached. Its services
+ * are then registered on its behalf as <tt>LazyService</tt>s, which activate
+ * it when they are first gotten. The services the bundle registers itself are
+ * hidden from the other bundles so that they only see the lazy ones.
+ * </p>
+ *
+ * @author Lyubomir Marinov
+ */
+public class LazyActivationManager
+    implements EventHook,
+               FindHook,
+               SynchronousBundleListener
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>LazyActivationManager</tt> class and
+     * its instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(LazyActivationManager.class);
+
+    /**
+     * The manifest header which lists the services of a lazily activated
+     * bundle.
+     */
+    static final String LAZY_SERVICES_HEADER = "Lazy-Services";
+
+    /**
+     * The <tt>BundleContext</tt> the lazy services are registered in.
+     */
+    private final BundleContext bundleContext;
+
+    /**
+     * The lazy services of the lazily activated bundles, by bundle.
+     */
+    private final Map<Bundle, List<LazyService>> lazyServices
+        = new HashMap<Bundle, List<LazyService>>();
+
+    /**
+     * The registration of this instance as service hooks.
+     */
+    private ServiceRegistration hookRegistration;
+
+    /**
+     * Initializes a new <tt>LazyActivationManager</tt>.
+     *
+     * @param bundleContext the <tt>BundleContext</tt> to register the lazy
+     * services in
+     */
+    LazyActivationManager(BundleContext bundleContext)
+    {
+        this.bundleContext = bundleContext;
+    }
+
+    /**
+     * Finds the bundles which declare lazy services and makes sure that they
+     * are started with their declared activation policy.
+     */
+    void start()
+    {
+        hookRegistration
+            = bundleContext.registerService(
+                    new String[]
+                            {
+                                EventHook.class.getName(),
+                                FindHook.class.getName()
+                            },
+                    this,
+                    null);
+        bundleContext.addBundleListener(this);
+
+        for (Bundle bundle : bundleContext.getBundles())
+        {
+            List<LazyService> services = parseLazyServices(bundle);
+
+            if (services == null)
+                continue;
+
+            synchronized (lazyServices)
+            {
+                lazyServices.put(bundle, services);
+            }
+
+            switch (bundle.getState())
+            {
+            case Bundle.INSTALLED:
+            case Bundle.RESOLVED:
+                /*
+                 * The start level of the bundle hasn't been reached yet so
+                 * this only sets its autostart setting.
+                 */
+                try
+                {
+                    bundle.start(Bundle.START_ACTIVATION_POLICY);
+                }
+                catch (BundleException be)
+                {
+                    logger.error(
+                            "Failed to start " + bundle.getLocation()
+                                + " lazily",
+                            be);
+                }
+                break;
+            case Bundle.STARTING:
+                registerLazyServices(bundle);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Unregisters the lazy services and the service hooks.
+     */
+    void stop()
+    {
+        bundleContext.removeBundleListener(this);
+
+        List<Bundle> bundles;
+
+        synchronized (lazyServices)
+        {
+            bundles = new ArrayList<Bundle>(lazyServices.keySet());
+        }
+        for (Bundle bundle : bundles)
+            unregisterLazyServices(bundle);
+
+        if (hookRegistration != null)
+        {
+            hookRegistration.unregister();
+            hookRegistration = null;
+        }
+    }
+
+    /**
+     * Registers the lazy services of a bundle when it starts waiting to be
+     * activated and unregisters them when it stops.
+     *
+     * @param event the <tt>BundleEvent</tt> which describes the change of the
+     * state of a bundle
+     */
+    public void bundleChanged(BundleEvent event)
+    {
+        switch (event.getType())
+        {
+        case BundleEvent.LAZY_ACTIVATION:
+            registerLazyServices(event.getBundle());
+            break;
+        case BundleEvent.STOPPING:
+            unregisterLazyServices(event.getBundle());
+            break;
+        }
+    }
+
+    /**
+     * Hides the services which the lazily activated bundles have registered
+     * under the classes of their lazy services from the bundles other than
+     * this one and the lazily activated bundles themselves.
+     *
+     * @param context the <tt>BundleContext</tt> of the bundle which looks for
+     * services
+     * @param name the name of the class of the services looked for
+     * @param filter the filter of the services looked for
+     * @param allServices whether all the services are looked for or only the
+     * ones compatible with the bundle which looks for them
+     * @param references the services found, from which the hidden ones are
+     * removed
+     */
+    @SuppressWarnings("rawtypes")
+    public void find(
+            BundleContext context,
+            String name,
+            String filter,
+            boolean allServices,
+            Collection references)
+    {
+        Bundle finder = context.getBundle();
+
+        for (Iterator i = references.iterator(); i.hasNext();)
+        {
+            if (isHidden((ServiceReference) i.next(), finder))
+                i.remove();
+        }
+    }
+
+    /**
+     * Doesn't deliver the events of the hidden services to the bundles they
+     * are hidden from.
+     *
+     * @param event the <tt>ServiceEvent</tt> to be delivered
+     * @param contexts the <tt>BundleContext</tt>s of the bundles the event is
+     * to be delivered to, from which the ones it is hidden from are removed
+     */
+    @SuppressWarnings("rawtypes")
+    public void event(ServiceEvent event, Collection contexts)
+    {
+        ServiceReference reference = event.getServiceReference();
+
+        for (Iterator i = contexts.iterator(); i.hasNext();)
+        {
+            if (isHidden(reference, ((BundleContext) i.next()).getBundle()))
+                i.remove();
+        }
+    }
+
+    /**
+     * Determines whether a service is hidden from a bundle because the service
+     * has been registered by a lazily activated bundle under the class of one
+     * of its lazy services.
+     *
+     * @param reference the service
+     * @param finder the bundle which looks for the service
+     * @return <tt>true</tt> if <tt>reference</tt> is hidden from
+     * <tt>finder</tt>; otherwise, <tt>false</tt>
+     */
+    private boolean isHidden(ServiceReference reference, Bundle finder)
+    {
+        Bundle owner = reference.getBundle();
+
+        if ((owner == null)
+                || (finder == null)
+                || finder.equals(owner)
+                || finder.equals(bundleContext.getBundle())
+                || (finder.getBundleId() == 0))
+            return false;
+
+        List<LazyService> services;
+
+        synchronized (lazyServices)
+        {
+            services = lazyServices.get(owner);
+        }
+        if (services == null)
+            return false;
+
+        String[] classNames
+            = (String[]) reference.getProperty(Constants.OBJECTCLASS);
+
+        if (classNames != null)
+        {
+            for (LazyService service : services)
+            {
+                for (String className : classNames)
+                {
+                    if (service.getClassName().equals(className))
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Registers the enabled lazy services of a bundle.
+     *
+     * @param bundle the bundle which waits to be activated
+     */
+    private void registerLazyServices(Bundle bundle)
+    {
+        List<LazyService> services;
+
+        synchronized (lazyServices)
+        {
+            services = lazyServices.get(bundle);
+        }
+        if ((services == null) || !isStartLevelReached(bundle))
+            return;
+
+        StartupTimeline.bundleDeferred(StartupActivator.getName(bundle));
+
+        ConfigurationService config = null;
+
+        for (LazyService service : services)
+        {
+            String disabledProperty = service.getDisabledProperty();
+
+            if (disabledProperty != null)
+            {
+                if (config == null)
+                {
+                    config
+                        = ServiceUtils.getService(
+                                bundleContext,
+                                ConfigurationService.class);
+                }
+                if ((config != null)
+                        && config.getBoolean(disabledProperty, false))
+                    continue;
+            }
+            service.register(bundleContext);
+        }
+    }
+
+    /**
+     * Determines whether the start level of a bundle has been reached. The
+     * framework also reports a bundle as waiting to be activated when it is
+     * started with its declared activation policy before its start level has
+     * been reached and it couldn't be activated yet.
+     *
+     * @param bundle the bundle
+     * @return <tt>true</tt> if the active start level of the framework is at
+     * least the start level of <tt>bundle</tt>; otherwise, <tt>false</tt>
+     */
+    private boolean isStartLevelReached(Bundle bundle)
+    {
+        StartLevel startLevel
+            = ServiceUtils.getService(bundleContext, StartLevel.class);
+
+        return
+            (startLevel == null)
+                || (startLevel.getBundleStartLevel(bundle)
+                        <= startLevel.getStartLevel());
+    }
+
+    /**
+     * Unregisters the lazy services of a bundle.
+     *
+     * @param bundle the bundle which stops
+     */
+    private void unregisterLazyServices(Bundle bundle)
+    {
+        List<LazyService> services;
+
+        synchronized (lazyServices)
+        {
+            services = lazyServices.get(bundle);
+        }
+        if (services != null)
+        {
+            for (LazyService service : services)
+                service.unregister();
+        }
+    }
+
+    /**
+     * Parses the <tt>Lazy-Services</tt> manifest header of a bundle which
+     * declares the lazy activation policy.
+     *
+     * @param bundle the bundle
+     * @return the lazy services of <tt>bundle</tt> or <tt>null</tt> if it
+     * doesn't declare any or isn't activated lazily
+     */
+    public static List<LazyService> parseLazyServices(Bundle bundle)
+    {
+        Dictionary<?, ?> headers = bundle.getHeaders();
+        Object activationPolicy
+            = headers.get(Constants.BUNDLE_ACTIVATIONPOLICY);
+        Object header = headers.get(LAZY_SERVICES_HEADER);
+
+        if ((activationPolicy == null)
+                || !activationPolicy.toString().trim().startsWith(
+                        Constants.ACTIVATION_LAZY)
+                || (header == null))
+            return null;
+
+        List<LazyService> services = new ArrayList<LazyService>();
+
+        for (String clause : LazyService.split(header.toString(), ','))
+        {
+            if (clause.trim().length() != 0)
+                services.add(new LazyService(bundle, clause));
+        }
+        return services.isEmpty() ? null : services;
+    }
+}
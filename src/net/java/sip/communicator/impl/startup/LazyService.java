@@ -0,0 +1,377 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.startup;
+
+import java.util.*;
+
+import net.java.sip.communicator.util.*;
+
+import org.osgi.framework.*;
+
+/**
+ * A service which a lazily activated bundle declares in its
+ * <tt>Lazy-Services</tt> manifest header. It is registered on behalf of the
+ * bundle as a <tt>ServiceFactory</tt> with the declared properties while the
+ * bundle waits to be activated. The first bundle which gets the service
+ * activates the bundle and receives the service it has registered.
+ *
+ * @author Lyubomir Marinov
+ */
+public class LazyService
+    implements ServiceFactory
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>LazyService</tt> class and its
+     * instances for logging output.
+     */
+    private static final Logger logger = Logger.getLogger(LazyService.class);
+
+    /**
+     * The name of the directive which names a boolean configuration property
+     * which, when <tt>true</tt>, disables the service.
+     */
+    private static final String UNLESS_DIRECTIVE = "unless";
+
+    /**
+     * The lazily activated bundle which provides this service.
+     */
+    private final Bundle bundle;
+
+    /**
+     * The name of the class this service is registered under.
+     */
+    private final String className;
+
+    /**
+     * The properties this service is registered with.
+     */
+    private final Hashtable<String, String> properties
+        = new Hashtable<String, String>();
+
+    /**
+     * The name of the boolean configuration property which disables this
+     * service or <tt>null</tt> if it is always enabled.
+     */
+    private final String disabledProperty;
+
+    /**
+     * The <tt>BundleContext</tt> this service is registered in.
+     */
+    private BundleContext bundleContext;
+
+    /**
+     * The registration of this service or <tt>null</tt> if it isn't
+     * registered.
+     */
+    private ServiceRegistration registration;
+
+    /**
+     * The service registered by {@link #bundle} once it has been activated,
+     * which this service stands for.
+     */
+    private ServiceReference actualReference;
+
+    /**
+     * Initializes a new <tt>LazyService</tt> from a clause of a
+     * <tt>Lazy-Services</tt> manifest header: the name of the class of the
+     * service followed by its properties as <tt>name=value</tt> attributes
+     * and, optionally, an <tt>unless:=property</tt> directive, all separated
+     * by semicolons. The values may be quoted in order to contain semicolons
+     * and commas.
+     *
+     * @param bundle the lazily activated bundle which provides the service
+     * @param clause the clause which declares the service
+     */
+    public LazyService(Bundle bundle, String clause)
+    {
+        this.bundle = bundle;
+
+        List<String> parts = split(clause, ';');
+        String disabledProperty = null;
+
+        className = parts.get(0).trim();
+        for (int i = 1; i < parts.size(); i++)
+        {
+            String part = parts.get(i);
+            int equals = part.indexOf('=');
+
+            if (equals < 1)
+                continue;
+
+            boolean directive = (part.charAt(equals - 1) == ':');
+            String name
+                = part.substring(0, directive ? (equals - 1) : equals).trim();
+            String value = unquote(part.substring(equals + 1).trim());
+
+            if (directive)
+            {
+                if (UNLESS_DIRECTIVE.equals(name))
+                    disabledProperty = value;
+            }
+            else
+            {
+                /*
+                 * Some consumers compare the values of the properties to
+                 * their constants by reference.
+                 */
+                properties.put(name, value.intern());
+            }
+        }
+        this.disabledProperty = disabledProperty;
+    }
+
+    /**
+     * Returns the name of the class this service is registered under.
+     *
+     * @return the name of the class this service is registered under
+     */
+    public String getClassName()
+    {
+        return className;
+    }
+
+    /**
+     * Returns the name of the boolean configuration property which disables
+     * this service.
+     *
+     * @return the name of the boolean configuration property which disables
+     * this service or <tt>null</tt> if it is always enabled
+     */
+    public String getDisabledProperty()
+    {
+        return disabledProperty;
+    }
+
+    /**
+     * Returns the properties this service is registered with.
+     *
+     * @return the properties this service is registered with
+     */
+    public Map<String, String> getProperties()
+    {
+        return Collections.unmodifiableMap(properties);
+    }
+
+    /**
+     * Registers this service in a specific <tt>BundleContext</tt>.
+     *
+     * @param bundleContext the <tt>BundleContext</tt> to register this service
+     * in
+     */
+    synchronized void register(BundleContext bundleContext)
+    {
+        if (registration == null)
+        {
+            this.bundleContext = bundleContext;
+            registration
+                = bundleContext.registerService(className, this, properties);
+        }
+    }
+
+    /**
+     * Unregisters this service and releases the service of {@link #bundle} it
+     * stands for.
+     */
+    synchronized void unregister()
+    {
+        if (registration != null)
+        {
+            try
+            {
+                registration.unregister();
+            }
+            catch (IllegalStateException ise)
+            {
+                // The registration has already been unregistered.
+            }
+            registration = null;
+        }
+        actualReference = null;
+    }
+
+    /**
+     * Determines whether a service registered by {@link #bundle} is the one
+     * this service stands for i.e. whether it has been registered under
+     * {@link #className} and with the declared properties.
+     *
+     * @param reference the service registered by {@link #bundle}
+     * @return <tt>true</tt> if <tt>reference</tt> is the service this service
+     * stands for; otherwise, <tt>false</tt>
+     */
+    public boolean matches(ServiceReference reference)
+    {
+        String[] classNames
+            = (String[]) reference.getProperty(Constants.OBJECTCLASS);
+
+        if ((classNames == null)
+                || !Arrays.asList(classNames).contains(className))
+            return false;
+
+        for (Map.Entry<String, String> property : properties.entrySet())
+        {
+            Object value = reference.getProperty(property.getKey());
+
+            if ((value == null)
+                    || !property.getValue().equals(value.toString()))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Activates {@link #bundle}, if it hasn't been activated yet, and returns
+     * the service it has registered which this service stands for.
+     *
+     * @param bundle the bundle which gets the service
+     * @param registration the registration of this service
+     * @return the service registered by {@link #bundle} which this service
+     * stands for or <tt>null</tt> if <tt>bundle</tt> failed to activate or
+     * hasn't registered it
+     */
+    public Object getService(Bundle bundle, ServiceRegistration registration)
+    {
+        ServiceReference reference = getActualReference();
+
+        return
+            (reference == null) ? null : bundleContext.getService(reference);
+    }
+
+    /**
+     * Releases the service registered by {@link #bundle} which has been
+     * returned by {@link #getService(Bundle, ServiceRegistration)}.
+     *
+     * @param bundle the bundle which releases the service
+     * @param registration the registration of this service
+     * @param service the service which is released
+     */
+    public void ungetService(
+            Bundle bundle,
+            ServiceRegistration registration,
+            Object service)
+    {
+        ServiceReference reference;
+
+        synchronized (this)
+        {
+            reference = actualReference;
+        }
+        if (reference != null)
+        {
+            try
+            {
+                bundleContext.ungetService(reference);
+            }
+            catch (IllegalStateException ise)
+            {
+                // The bundle of this service has been stopped.
+            }
+        }
+    }
+
+    /**
+     * Activates {@link #bundle}, if it hasn't been activated yet, and finds
+     * the service it has registered which this service stands for.
+     *
+     * @return the service registered by {@link #bundle} which this service
+     * stands for or <tt>null</tt> if <tt>bundle</tt> failed to activate or
+     * hasn't registered it
+     */
+    private synchronized ServiceReference getActualReference()
+    {
+        if (actualReference != null)
+            return actualReference;
+
+        if (bundle.getState() != Bundle.ACTIVE)
+        {
+            if (logger.isInfoEnabled())
+            {
+                logger.info(
+                        "Activating " + bundle.getLocation() + " on first use"
+                            + " of " + className);
+            }
+            try
+            {
+                /*
+                 * Don't change the persistent autostart setting of the bundle
+                 * so that it is activated lazily on the next start as well.
+                 */
+                bundle.start(Bundle.START_TRANSIENT);
+            }
+            catch (BundleException be)
+            {
+                logger.error("Failed to activate " + bundle.getLocation(), be);
+                return null;
+            }
+        }
+
+        ServiceReference[] references = bundle.getRegisteredServices();
+
+        if (references != null)
+        {
+            for (ServiceReference reference : references)
+            {
+                if (matches(reference))
+                {
+                    actualReference = reference;
+                    return actualReference;
+                }
+            }
+        }
+        logger.error(
+                bundle.getLocation() + " hasn't registered the " + className
+                    + " it declares as a lazy service with properties "
+                    + properties);
+        return null;
+    }
+
+    /**
+     * Splits a manifest header or a clause of one at the separators which
+     * aren't within double quotes.
+     *
+     * @param value the manifest header or the clause to split
+     * @param separator the character which separates the parts of
+     * <tt>value</tt>
+     * @return the parts of <tt>value</tt> in the order they appear in it
+     */
+    static List<String> split(String value, char separator)
+    {
+        List<String> parts = new ArrayList<String>();
+        boolean quoted = false;
+        int start = 0;
+
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+
+            if (c == '"')
+                quoted = !quoted;
+            else if ((c == separator) && !quoted)
+            {
+                parts.add(value.substring(start, i));
+                start = i + 1;
+            }
+        }
+        parts.add(value.substring(start));
+        return parts;
+    }
+
+    /**
+     * Removes the double quotes around a value of a manifest header.
+     *
+     * @param value the value
+     * @return <tt>value</tt> without the double quotes around it
+     */
+    private static String unquote(String value)
+    {
+        return
+            ((value.length() > 1)
+                    && value.startsWith("\"")
+                    && value.endsWith("\""))
+                ? value.substring(1, value.length() - 1)
+                : value;
+    }
+}
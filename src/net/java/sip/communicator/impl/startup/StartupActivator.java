@@ -0,0 +1,161 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.startup;
+
+import java.io.*;
+
+import net.java.sip.communicator.util.*;
+
+import org.osgi.framework.*;
+
+/**
+ * The first bundle to be started. It records the activations of the other
+ * bundles in the <tt>StartupTimeline</tt> and, unless it has been disabled,
+ * activates the bundles which declare lazy services on their first use
+ * instead of at startup.
+ *
+ * @author Lyubomir Marinov
+ */
+public class StartupActivator
+    implements BundleActivator,
+               FrameworkListener,
+               SynchronousBundleListener
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>StartupActivator</tt> class and its
+     * instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(StartupActivator.class);
+
+    /**
+     * The name of the framework or system property which disables the lazy
+     * activation of the bundles which declare lazy services when it is
+     * <tt>false</tt>.
+     */
+    public static final String PNAME_LAZY_ACTIVATION
+        = "net.java.sip.communicator.impl.startup.LAZY_ACTIVATION";
+
+    /**
+     * The name of the framework or system property which specifies the file
+     * the <tt>StartupTimeline</tt> is written to.
+     */
+    public static final String PNAME_TIMELINE_REPORT
+        = "net.java.sip.communicator.impl.startup.TIMELINE_REPORT";
+
+    /**
+     * The <tt>BundleContext</tt> this bundle has been started in.
+     */
+    private BundleContext bundleContext;
+
+    /**
+     * The <tt>LazyActivationManager</tt> which activates the bundles which
+     * declare lazy services or <tt>null</tt> if lazy activation is disabled.
+     */
+    private LazyActivationManager lazyActivationManager;
+
+    /**
+     * Starts recording the activations of the bundles and the lazy activation
+     * of the bundles which declare lazy services.
+     *
+     * @param bundleContext the <tt>BundleContext</tt> to start this bundle in
+     * @throws Exception if anything goes wrong
+     */
+    public void start(BundleContext bundleContext)
+        throws Exception
+    {
+        this.bundleContext = bundleContext;
+
+        String reportFile = bundleContext.getProperty(PNAME_TIMELINE_REPORT);
+
+        if ((reportFile != null) && (reportFile.length() != 0))
+            StartupTimeline.setReportFile(new File(reportFile));
+
+        bundleContext.addBundleListener(this);
+        bundleContext.addFrameworkListener(this);
+
+        if (!"false".equalsIgnoreCase(
+                bundleContext.getProperty(PNAME_LAZY_ACTIVATION)))
+        {
+            lazyActivationManager = new LazyActivationManager(bundleContext);
+            lazyActivationManager.start();
+        }
+        else if (logger.isInfoEnabled())
+            logger.info("Lazy activation of bundles is disabled.");
+    }
+
+    /**
+     * Stops recording the activations of the bundles and the lazy activation
+     * of the bundles which declare lazy services.
+     *
+     * @param bundleContext the <tt>BundleContext</tt> to stop this bundle in
+     * @throws Exception if anything goes wrong
+     */
+    public void stop(BundleContext bundleContext)
+        throws Exception
+    {
+        bundleContext.removeFrameworkListener(this);
+        bundleContext.removeBundleListener(this);
+
+        if (lazyActivationManager != null)
+        {
+            lazyActivationManager.stop();
+            lazyActivationManager = null;
+        }
+        this.bundleContext = null;
+    }
+
+    /**
+     * Records the start and the end of the activation of a bundle.
+     *
+     * @param event the <tt>BundleEvent</tt> which describes the change of the
+     * state of a bundle
+     */
+    public void bundleChanged(BundleEvent event)
+    {
+        switch (event.getType())
+        {
+        case BundleEvent.STARTING:
+            StartupTimeline.bundleStarting(getName(event.getBundle()));
+            break;
+        case BundleEvent.STARTED:
+            StartupTimeline.bundleStarted(getName(event.getBundle()));
+            break;
+        }
+    }
+
+    /**
+     * Records the milestone of the framework having started all the bundles
+     * which aren't activated lazily.
+     *
+     * @param event the <tt>FrameworkEvent</tt> which describes the change of
+     * the state of the framework
+     */
+    public void frameworkEvent(FrameworkEvent event)
+    {
+        if (event.getType() == FrameworkEvent.STARTED)
+            StartupTimeline.milestone(StartupTimeline.FRAMEWORK_STARTED);
+    }
+
+    /**
+     * Returns the name of a bundle in the <tt>StartupTimeline</tt>, which is
+     * the name of the file it has been installed from because our bundles
+     * don't have symbolic names.
+     *
+     * @param bundle the bundle
+     * @return the name of <tt>bundle</tt> in the <tt>StartupTimeline</tt>
+     */
+    static String getName(Bundle bundle)
+    {
+        String location = bundle.getLocation();
+
+        return
+            (location == null)
+                ? Long.toString(bundle.getBundleId())
+                : location.substring(location.lastIndexOf('/') + 1);
+    }
+}
@@ -41,6 +41,14 @@ public class AddrBookActivator
     public static final String PNAME_ENABLE_MACOSX_ADDRESS_BOOK_SEARCH =
         "plugin.addrbook.ENABLE_MACOSX_ADDRESS_BOOK_SEARCH";
 
+    /**
+     * Long property that defines the time in milliseconds a search of an
+     * address book has to complete before it is canceled. Zero or less lets
+     * the searches run indefinitely.
+     */
+    public static final String PNAME_QUERY_DEADLINE =
+        "plugin.addrbook.QUERY_DEADLINE";
+
     /**
      * The <tt>Logger</tt> used by the <tt>AddrBookActivator</tt> class and its
      * instances for logging output.
@@ -141,6 +149,26 @@ public class AddrBookActivator
         return configService;
     }
 
+    /**
+     * Gets the time in milliseconds a search of an address book has to
+     * complete before it is canceled.
+     *
+     * @return the deadline of the searches of the address books in
+     * milliseconds or zero if they can run indefinitely
+     */
+    public static long getQueryDeadline()
+    {
+        ConfigurationService configService = getConfigService();
+        long deadline
+            = (configService == null)
+                ? ContactQueryExecutor.DEFAULT_DEADLINE
+                : configService.getLong(
+                        PNAME_QUERY_DEADLINE,
+                        ContactQueryExecutor.DEFAULT_DEADLINE);
+
+        return (deadline > 0) ? deadline : 0;
+    }
+
     /**
      * Starts the addrbook plug-in.
      *
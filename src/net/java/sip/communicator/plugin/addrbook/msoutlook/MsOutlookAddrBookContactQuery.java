@@ -492,6 +492,34 @@ public class MsOutlookAddrBookContactQuery
         }
     }
 
+    /**
+     * Returns the priority of this <tt>AsyncContactQuery</tt>. The Outlook
+     * address book is local to this machine so it is searched before the
+     * remote contact sources.
+     *
+     * @return {@link ContactQueryExecutor#LOCAL_PRIORITY}
+     * @see AsyncContactQuery#getPriority()
+     */
+    @Override
+    protected int getPriority()
+    {
+        return ContactQueryExecutor.LOCAL_PRIORITY;
+    }
+
+    /**
+     * Returns the time in milliseconds this <tt>AsyncContactQuery</tt> has to
+     * complete before it is canceled. The search of the Outlook address book
+     * stops as soon as it is canceled so it is given the configured deadline.
+     *
+     * @return the deadline of this <tt>AsyncContactQuery</tt> in milliseconds
+     * @see AsyncContactQuery#getDeadline()
+     */
+    @Override
+    protected long getDeadline()
+    {
+        return AddrBookActivator.getQueryDeadline();
+    }
+
     /**
      * Normalizes a <tt>String</tt> phone number by converting alpha characters
      * to their respective digits on a keypad and then stripping non-digit
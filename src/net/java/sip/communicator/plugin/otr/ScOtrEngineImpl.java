@@ -70,9 +70,12 @@ public class ScOtrEngineImpl
             KeyPair keyPair =
                 OtrActivator.scOtrKeyManager.loadKeyPair(accountID);
             if (keyPair == null)
+            {
                 OtrActivator.scOtrKeyManager.generateKeyPair(accountID);
+                keyPair = OtrActivator.scOtrKeyManager.loadKeyPair(accountID);
+            }
 
-            return OtrActivator.scOtrKeyManager.loadKeyPair(accountID);
+            return keyPair;
         }
 
         public void showWarning(SessionID sessionID, String warn)
@@ -9,6 +9,7 @@ package net.java.sip.communicator.plugin.otr;
 import java.security.*;
 import java.security.spec.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import net.java.otr4j.crypto.*;
 import net.java.sip.communicator.service.protocol.*;
@@ -24,6 +25,34 @@ public class ScOtrKeyManagerImpl
     private final List<ScOtrKeyManagerListener> listeners =
         new Vector<ScOtrKeyManagerListener>();
 
+    /**
+     * The decoded key pairs of our accounts, by account unique ID. Decoding
+     * them from the configuration is expensive and they are asked for on
+     * every AKE.
+     */
+    private final Map<String, KeyPair> keyPairs =
+        new ConcurrentHashMap<String, KeyPair>();
+
+    /**
+     * The decoded public keys of our contacts, by contact address.
+     */
+    private final Map<String, PublicKey> publicKeys =
+        new ConcurrentHashMap<String, PublicKey>();
+
+    /**
+     * The fingerprints of the public keys we handed out. Weak keys let the
+     * entries of replaced keys go away on their own.
+     */
+    private final Map<PublicKey, String> fingerprints =
+        Collections.synchronizedMap(new WeakHashMap<PublicKey, String>());
+
+    /**
+     * The verification status of our contacts' public keys, by contact
+     * address.
+     */
+    private final Map<String, Boolean> verified =
+        new ConcurrentHashMap<String, Boolean>();
+
     public void addListener(ScOtrKeyManagerListener l)
     {
         synchronized (listeners)
@@ -48,6 +77,7 @@ public class ScOtrKeyManagerImpl
 
         this.configurator.setProperty(contact.getAddress()
             + ".publicKey.verified", true);
+        verified.put(contact.getAddress(), Boolean.TRUE);
 
         for (ScOtrKeyManagerListener l : listeners)
             l.contactVerificationStatusChanged(contact);
@@ -60,6 +90,7 @@ public class ScOtrKeyManagerImpl
 
         this.configurator.removeProperty(contact.getAddress()
             + ".publicKey.verified");
+        verified.put(contact.getAddress(), Boolean.FALSE);
 
         for (ScOtrKeyManagerListener l : listeners)
             l.contactVerificationStatusChanged(contact);
@@ -69,9 +100,17 @@ public class ScOtrKeyManagerImpl
     {
         if (contact == null)
             return false;
-        
-        return this.configurator.getPropertyBoolean(contact.getAddress()
-            + ".publicKey.verified", false);
+
+        String userID = contact.getAddress();
+        Boolean isVerified = verified.get(userID);
+
+        if (isVerified == null)
+        {
+            isVerified = this.configurator.getPropertyBoolean(userID
+                + ".publicKey.verified", false);
+            verified.put(userID, isVerified);
+        }
+        return isVerified;
     }
 
     public String getRemoteFingerprint(Contact contact)
@@ -79,15 +118,8 @@ public class ScOtrKeyManagerImpl
         PublicKey remotePublicKey = loadPublicKey(contact);
         if (remotePublicKey == null)
             return null;
-        try
-        {
-            return new OtrCryptoEngineImpl().getFingerprint(remotePublicKey);
-        }
-        catch (OtrCryptoException e)
-        {
-            e.printStackTrace();
-            return null;
-        }
+
+        return getFingerprint(remotePublicKey);
     }
 
     public String getLocalFingerprint(AccountID account)
@@ -97,17 +129,36 @@ public class ScOtrKeyManagerImpl
         if (keyPair == null)
             return null;
 
-        PublicKey pubKey = keyPair.getPublic();
+        return getFingerprint(keyPair.getPublic());
+    }
+
+    /**
+     * Returns the fingerprint of <tt>pubKey</tt>, computing it only the
+     * first time it is asked for.
+     *
+     * @param pubKey the public key
+     * @return the fingerprint of <tt>pubKey</tt> or <tt>null</tt> if it
+     * could not be computed
+     */
+    private String getFingerprint(PublicKey pubKey)
+    {
+        String fingerprint = fingerprints.get(pubKey);
+
+        if (fingerprint != null)
+            return fingerprint;
 
         try
         {
-            return new OtrCryptoEngineImpl().getFingerprint(pubKey);
+            fingerprint = new OtrCryptoEngineImpl().getFingerprint(pubKey);
         }
         catch (OtrCryptoException e)
         {
             e.printStackTrace();
             return null;
         }
+
+        fingerprints.put(pubKey, fingerprint);
+        return fingerprint;
     }
 
     public void savePublicKey(Contact contact, PublicKey pubKey)
@@ -118,11 +169,15 @@ public class ScOtrKeyManagerImpl
         X509EncodedKeySpec x509EncodedKeySpec =
             new X509EncodedKeySpec(pubKey.getEncoded());
 
-        this.configurator.setProperty(contact.getAddress() + ".publicKey",
+        String userID = contact.getAddress();
+
+        this.configurator.setProperty(userID + ".publicKey",
             x509EncodedKeySpec.getEncoded());
 
-        this.configurator.removeProperty(contact.getAddress()
-            + ".publicKey.verified");
+        this.configurator.removeProperty(userID + ".publicKey.verified");
+
+        publicKeys.put(userID, pubKey);
+        verified.put(userID, Boolean.FALSE);
     }
 
     public PublicKey loadPublicKey(Contact contact)
@@ -132,6 +187,10 @@ public class ScOtrKeyManagerImpl
 
         String userID = contact.getAddress();
 
+        PublicKey publicKey = publicKeys.get(userID);
+        if (publicKey != null)
+            return publicKey;
+
         byte[] b64PubKey =
             this.configurator.getPropertyBytes(userID + ".publicKey");
         if (b64PubKey == null)
@@ -144,7 +203,9 @@ public class ScOtrKeyManagerImpl
         try
         {
             keyFactory = KeyFactory.getInstance("DSA");
-            return keyFactory.generatePublic(publicKeySpec);
+            publicKey = keyFactory.generatePublic(publicKeySpec);
+            publicKeys.put(userID, publicKey);
+            return publicKey;
         }
         catch (NoSuchAlgorithmException e)
         {
@@ -164,6 +225,11 @@ public class ScOtrKeyManagerImpl
             return null;
         
         String accountID = account.getAccountUniqueID();
+
+        KeyPair keyPair = keyPairs.get(accountID);
+        if (keyPair != null)
+            return keyPair;
+
         // Load Private Key.
         byte[] b64PrivKey =
             this.configurator.getPropertyBytes(accountID + ".privateKey");
@@ -203,7 +269,9 @@ public class ScOtrKeyManagerImpl
             return null;
         }
 
-        return new KeyPair(publicKey, privateKey);
+        keyPair = new KeyPair(publicKey, privateKey);
+        keyPairs.put(accountID, keyPair);
+        return keyPair;
     }
 
     public void generateKeyPair(AccountID account)
@@ -238,5 +306,7 @@ public class ScOtrKeyManagerImpl
 
         this.configurator.setProperty(accountID + ".privateKey",
             pkcs8EncodedKeySpec.getEncoded());
+
+        keyPairs.put(accountID, keyPair);
     }
 }
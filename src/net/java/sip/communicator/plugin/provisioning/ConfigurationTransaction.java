@@ -0,0 +1,236 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.plugin.provisioning;
+
+import java.util.*;
+
+import net.java.sip.communicator.service.credentialsstorage.*;
+import net.java.sip.communicator.util.*;
+
+import org.jitsi.service.configuration.*;
+
+/**
+ * Stages changes to the configuration and applies them at once. The
+ * <tt>ConfigurationService</tt> stores the configuration file and notifies
+ * its listeners on every <tt>setProperty</tt> and <tt>removeProperty</tt>
+ * call so applying a provisioning file property by property costs as many
+ * file writes as there are properties. A transaction only reads the names of
+ * all the properties once, skips the properties which already have the
+ * provisioned value and writes the others with a single
+ * {@link ConfigurationService#setProperties(Map)} call, which stores the
+ * configuration once and notifies the listeners after all the properties
+ * have been changed.
+ *
+ * @author Sebastien Vincent
+ */
+public class ConfigurationTransaction
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>ConfigurationTransaction</tt> class
+     * for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(ConfigurationTransaction.class);
+
+    /**
+     * The configuration the changes are applied to.
+     */
+    private final ConfigurationService config;
+
+    /**
+     * The staged property values in the order they were staged. A
+     * <tt>null</tt> value removes the property and its children.
+     */
+    private final Map<String, Object> properties
+        = new LinkedHashMap<String, Object>();
+
+    /**
+     * The staged passwords, keyed by account prefix.
+     */
+    private final Map<String, String> passwords
+        = new LinkedHashMap<String, String>();
+
+    /**
+     * The sorted names of the properties of {@link #config} when they were
+     * first needed or <tt>null</tt> if they haven't been read yet.
+     */
+    private SortedSet<String> configPropertyNames;
+
+    /**
+     * Creates a transaction over a specific configuration.
+     *
+     * @param config the configuration the changes are applied to
+     */
+    public ConfigurationTransaction(ConfigurationService config)
+    {
+        this.config = config;
+    }
+
+    /**
+     * Stages the setting of a property.
+     *
+     * @param key property key name
+     * @param value property value
+     */
+    public void setProperty(String key, Object value)
+    {
+        // keep the staging order of the overwritten property
+        properties.remove(key);
+        properties.put(key, value);
+    }
+
+    /**
+     * Stages the removal of a property and its children, including the ones
+     * staged for setting before.
+     *
+     * @param key property key name
+     */
+    public void removeProperty(String key)
+    {
+        String childPrefix = key + ".";
+
+        for (Iterator<String> i = properties.keySet().iterator(); i.hasNext();)
+        {
+            String staged = i.next();
+
+            if (staged.equals(key) || staged.startsWith(childPrefix))
+                i.remove();
+        }
+        properties.put(key, null);
+    }
+
+    /**
+     * Stages the storage of a password in the credentials storage.
+     *
+     * @param accountPrefix account prefix
+     * @param password the password to store
+     */
+    public void storePassword(String accountPrefix, String password)
+    {
+        passwords.put(accountPrefix, password);
+    }
+
+    /**
+     * Stages the removal of all the properties, whether they are in the
+     * configuration or have been staged, whose names don't start with one of
+     * specific prefixes.
+     *
+     * @param prefixes the prefixes the names of the kept properties start
+     * with
+     */
+    public void enforcePrefixes(String[] prefixes)
+    {
+        for (Iterator<String> i = properties.keySet().iterator(); i.hasNext();)
+        {
+            if (!startsWithAny(i.next(), prefixes))
+                i.remove();
+        }
+        for (String key : getConfigPropertyNames())
+        {
+            if (!startsWithAny(key, prefixes))
+                properties.put(key, null);
+        }
+    }
+
+    /**
+     * Applies the staged changes: the properties with a single store of the
+     * configuration and then the passwords.
+     */
+    public void commit()
+    {
+        Map<String, Object> changes = new LinkedHashMap<String, Object>();
+        int unchanged = 0;
+
+        for (Map.Entry<String, Object> entry : properties.entrySet())
+        {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+
+            if (value == null)
+            {
+                // the property itself and all its children but the ones staged
+                // for setting after the removal
+                for (String child
+                        : getConfigPropertyNames().subSet(key, key + "/"))
+                {
+                    if ((child.length() == key.length()
+                                || child.charAt(key.length()) == '.')
+                            && (properties.get(child) == null))
+                        changes.put(child, null);
+                }
+            }
+            else if (value.equals(config.getProperty(key)))
+                unchanged++;
+            else
+                changes.put(key, value);
+        }
+
+        if (logger.isInfoEnabled())
+            logger.info("Applying " + changes.size() + " configuration changes"
+                    + " (" + unchanged + " properties unchanged) and "
+                    + passwords.size() + " passwords");
+
+        if (!changes.isEmpty())
+            config.setProperties(changes);
+
+        if (!passwords.isEmpty())
+        {
+            CredentialsStorageService credentialsStorage
+                = ProvisioningActivator.getCredentialsStorageService();
+
+            for (Map.Entry<String, String> entry : passwords.entrySet())
+                credentialsStorage.storePassword(
+                        entry.getKey(),
+                        entry.getValue());
+        }
+
+        rollback();
+    }
+
+    /**
+     * Discards the staged changes without applying them, e.g. when the
+     * provisioning file could only be read in part.
+     */
+    public void rollback()
+    {
+        properties.clear();
+        passwords.clear();
+        configPropertyNames = null;
+    }
+
+    /**
+     * Returns the sorted names of the properties of the configuration, reading
+     * them the first time they're needed.
+     *
+     * @return the sorted names of the properties of the configuration
+     */
+    private SortedSet<String> getConfigPropertyNames()
+    {
+        if (configPropertyNames == null)
+            configPropertyNames
+                = new TreeSet<String>(config.getAllPropertyNames());
+        return configPropertyNames;
+    }
+
+    /**
+     * Determines whether a property name starts with one of specific prefixes.
+     *
+     * @param key property key name
+     * @param prefixes the prefixes to check
+     * @return <tt>true</tt> if <tt>key</tt> starts with one of
+     * <tt>prefixes</tt>
+     */
+    private static boolean startsWithAny(String key, String[] prefixes)
+    {
+        for (String prefix : prefixes)
+        {
+            if (key.startsWith(prefix))
+                return true;
+        }
+        return false;
+    }
+}
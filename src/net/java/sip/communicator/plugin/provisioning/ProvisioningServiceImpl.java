@@ -3,6 +3,7 @@ package net.java.sip.communicator.plugin.provisioning;
 import java.awt.*;
 import java.io.*;
 import java.net.*;
+import java.security.*;
 import java.util.*;
 import java.util.List;
 
@@ -87,6 +88,18 @@ public class ProvisioningServiceImpl
     private static final String PROVISIONING_ENFORCE_PREFIX_PROP
         = "provisioning.ENFORCE_PREFIX";
 
+    /**
+     * Name of the property that contains the hash of the content of the last
+     * applied provisioning file.
+     */
+    private static final String PROVISIONING_CONTENT_HASH_PROP
+        = "net.java.sip.communicator.plugin.provisioning.CONTENT_HASH";
+
+    /**
+     * Hash algorithm for the content of the provisioning file.
+     */
+    private static final String CONTENT_HASH_ALGORITHM = "SHA-1";
+
 
     /**
      * List of allowed configuration prefixes.
@@ -589,9 +602,26 @@ public class ProvisioningServiceImpl
     {
         Properties fileProps = new OrderedProperties();
         InputStream in = null;
+        ConfigurationService config
+            = ProvisioningActivator.getConfigurationService();
+        ConfigurationTransaction transaction = null;
 
         try
         {
+            String contentHash = getContentHash(file);
+
+            if(contentHash != null
+                && contentHash.equals(
+                    config.getString(PROVISIONING_CONTENT_HASH_PROP)))
+            {
+                if(logger.isInfoEnabled())
+                    logger.info("Provisioning file is unchanged, nothing to"
+                        + " apply");
+                return;
+            }
+
+            transaction = new ConfigurationTransaction(config);
+
             in = new BufferedInputStream(new FileInputStream(file));
             fileProps.load(in);
 
@@ -621,7 +651,7 @@ public class ProvisioningServiceImpl
                 }
                 else if(key.equals(PROVISIONING_ENFORCE_PREFIX_PROP))
                 {
-                    checkEnforcePrefix((String)value);
+                    checkEnforcePrefix(transaction, (String)value);
                     continue;
                 }
 
@@ -631,9 +661,14 @@ public class ProvisioningServiceImpl
                     continue;
                 }
 
-                processProperty(key, value);
+                processProperty(transaction, key, value);
             }
 
+            transaction.commit();
+
+            if(contentHash != null)
+                config.setProperty(PROVISIONING_CONTENT_HASH_PROP, contentHash);
+
             try
             {
                 /* save and reload the "new" configuration */
@@ -649,13 +684,16 @@ public class ProvisioningServiceImpl
         }
         catch(IOException e)
         {
+            if(transaction != null)
+                transaction.rollback();
             logger.warn("Error during load of provisioning file");
         }
         finally
         {
             try
             {
-                in.close();
+                if(in != null)
+                    in.close();
                 file.delete();
             }
             catch(IOException e)
@@ -664,6 +702,50 @@ public class ProvisioningServiceImpl
         }
     }
 
+    /**
+     * Computes the hash of the content of the provisioning file.
+     *
+     * @param file provisioning file
+     * @return the hexadecimal hash of the content of <tt>file</tt> or
+     * <tt>null</tt> if the hash algorithm isn't available
+     * @throws IOException if the file cannot be read
+     */
+    private static String getContentHash(File file)
+        throws IOException
+    {
+        MessageDigest digest;
+
+        try
+        {
+            digest = MessageDigest.getInstance(CONTENT_HASH_ALGORITHM);
+        }
+        catch(NoSuchAlgorithmException e)
+        {
+            return null;
+        }
+
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+
+        try
+        {
+            byte[] buffer = new byte[4096];
+            int read;
+
+            while((read = in.read(buffer)) != -1)
+                digest.update(buffer, 0, read);
+        }
+        finally
+        {
+            in.close();
+        }
+
+        StringBuilder hash = new StringBuilder();
+
+        for(byte b : digest.digest())
+            hash.append(String.format("%02x", b));
+        return hash.toString();
+    }
+
     /**
      * Check if a property name belongs to the allowed prefixes.
      *
@@ -698,14 +780,18 @@ public class ProvisioningServiceImpl
      * "PASSWORD", its value is encrypted through credentials storage service,
      * otherwise the property is added/updated in the configuration service.
      *
+     * @param transaction the transaction staging the configuration changes
      * @param key property key name
      * @param value property value
      */
-    private void processProperty(String key, Object value)
+    private void processProperty(
+            ConfigurationTransaction transaction,
+            String key,
+            Object value)
     {
         if((value instanceof String) && value.equals("${null}"))
         {
-            ProvisioningActivator.getConfigurationService().removeProperty(key);
+            transaction.removeProperty(key);
 
             if(logger.isInfoEnabled())
                 logger.info(key + "=" + value);
@@ -713,7 +799,7 @@ public class ProvisioningServiceImpl
         else if(key.endsWith(".PASSWORD"))
         {
             /* password => credentials storage service */
-            ProvisioningActivator.getCredentialsStorageService().storePassword(
+            transaction.storePassword(
                     key.substring(0, key.lastIndexOf(".")),
                     (String)value);
 
@@ -722,8 +808,7 @@ public class ProvisioningServiceImpl
         }
         else
         {
-            ProvisioningActivator.getConfigurationService().setProperty(key,
-                value);
+            transaction.setProperty(key, value);
 
             if(logger.isInfoEnabled())
                 logger.info(key + "=" + value);
@@ -734,12 +819,13 @@ public class ProvisioningServiceImpl
      * Walk through all properties and make sure all properties keys match
      * a specific set of prefixes defined in configuration.
      *
+     * @param transaction the transaction staging the configuration changes
      * @param enforcePrefix list of enforce prefix.
      */
-    private void checkEnforcePrefix(String enforcePrefix)
+    private void checkEnforcePrefix(
+            ConfigurationTransaction transaction,
+            String enforcePrefix)
     {
-        ConfigurationService config = 
-            ProvisioningActivator.getConfigurationService();
         String prefixes[] = null;
 
         if(enforcePrefix == null)
@@ -750,27 +836,9 @@ public class ProvisioningServiceImpl
         /* must escape the | character */
         prefixes = enforcePrefix.split("\\|");
 
-        /* get all properties */
-        for (String key : config.getAllPropertyNames())
-        {
-            boolean isValid = false;
-
-            for(String k : prefixes)
-            {
-                if(key.startsWith(k))
-                {
-                    isValid = true;
-                    break;
-                }
-            }
-
-            /* property name does is not in the enforce prefix list
-             * so remove it
-             */
-            if(!isValid)
-            {
-                config.removeProperty(key);
-            }
-        }
+        /* property names which are not in the enforce prefix list are
+         * removed, in a single pass over all properties
+         */
+        transaction.enforcePrefixes(prefixes);
     }
 }
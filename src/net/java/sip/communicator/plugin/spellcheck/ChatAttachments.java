@@ -44,7 +44,7 @@ class ChatAttachments
 
     private boolean isEnabled = true;
 
-    private SpellDictionary dict;
+    private volatile SpellDictionary dict;
 
     private boolean isAttached = false;
 
@@ -64,7 +64,12 @@ class ChatAttachments
             {
                 try
                 {
-                    return !ChatAttachments.this.dict.isCorrect(word);
+                    SpellDictionary dict = ChatAttachments.this.dict;
+
+                    synchronized (dict)
+                    {
+                        return !dict.isCorrect(word);
+                    }
                 }
                 catch (NullPointerException exc)
                 {
@@ -196,6 +201,7 @@ class ChatAttachments
         synchronized (this.dict)
         {
             this.dict = dict;
+            this.docListener.clearCache();
             this.docListener.reset(this.chat.getMessage());
         }
     }
@@ -6,6 +6,10 @@
 package net.java.sip.communicator.plugin.spellcheck;
 
 import java.awt.*;
+import java.text.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
 
 import javax.swing.*;
 import javax.swing.event.*;
@@ -17,6 +21,13 @@ import net.java.sip.communicator.util.*;
  * Notifies subclasses when words are changed and lets them decide if text
  * should be underlined with a red squiggle. Text appended to the end isn't
  * formatted until the word's completed.
+ * <p>
+ * Checking is incremental: document changes only mark the words around the
+ * change as dirty. Dirty words are collected once per event batch, looked up
+ * on a background thread (with a memo of previous answers) and the resulting
+ * underlining is applied back on the event dispatch thread in a single pass,
+ * so typing doesn't depend on the length of the message or the speed of the
+ * dictionary.
  * 
  * @author Damian Johnson
  */
@@ -29,11 +40,109 @@ abstract class DocUnderliner
 
     private static final DefaultHighlighter.DefaultHighlightPainter UNDERLINER;
 
+    /**
+     * Number of characters read at a time when looking for the boundaries
+     * of the words around a change.
+     */
+    private static final int CONTEXT_CHUNK = 32;
+
+    /**
+     * Maximum number of words whose formatting is remembered.
+     */
+    private static final int MAX_CACHED_WORDS = 2000;
+
+    /**
+     * Thread shared by all chats on which words are checked.
+     */
+    private static final ExecutorService CHECKER
+        = Executors.newSingleThreadExecutor(new ThreadFactory()
+        {
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "SpellChecker");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
     private final Highlighter docHighlighter;
 
     private final CaretListener endChecker;
 
-    private boolean isEnabled = true;
+    private volatile boolean isEnabled = true;
+
+    /**
+     * Formatting previously returned by {@link #getFormatting(String)}, by
+     * word.
+     */
+    private final Map<String, Boolean> formattingCache
+        = Collections.synchronizedMap(
+            new LinkedHashMap<String, Boolean>(64, 0.75f, true)
+            {
+                private static final long serialVersionUID = 0L;
+
+                protected boolean removeEldestEntry(
+                    Map.Entry<String, Boolean> eldest)
+                {
+                    return size() > MAX_CACHED_WORDS;
+                }
+            });
+
+    /**
+     * Incremented every time cached formatting is discarded so that the
+     * formatting of a word determined before isn't cached afterwards.
+     * Guarded by {@link #formattingCache}.
+     */
+    private int cacheGeneration = 0;
+
+    /**
+     * The tags of the underlining added by this underliner to
+     * {@link #docHighlighter}, which may hold highlights of others such as
+     * the selection or the search results.
+     */
+    private final Set<Object> underlines = new HashSet<Object>();
+
+    /**
+     * Ranges of the document which changed since the last check.
+     */
+    private final List<Position[]> dirtyRanges = new ArrayList<Position[]>();
+
+    /**
+     * The document we're listening to, known after the first change.
+     */
+    private volatile Document document;
+
+    /**
+     * Whether a check of the dirty ranges has been scheduled. Guarded by
+     * {@link #dirtyRanges}.
+     */
+    private boolean checkScheduled = false;
+
+    /**
+     * Incremented by {@link #reset(String)} so that checks started before
+     * it are discarded.
+     */
+    private volatile int generation = 0;
+
+    /**
+     * Checks the dirty ranges, scheduled on the event dispatch thread once
+     * per burst of document changes.
+     */
+    private final Runnable dirtyChecker = new Runnable()
+    {
+        public void run()
+        {
+            List<Position[]> dirty;
+
+            synchronized (dirtyRanges)
+            {
+                checkScheduled = false;
+                dirty = new ArrayList<Position[]>(dirtyRanges);
+                dirtyRanges.clear();
+            }
+            checkDirtyRanges(dirty);
+        }
+    };
 
     static
     {
@@ -111,11 +220,8 @@ abstract class DocUnderliner
                     boolean currentlyAtEnd = event.getDot() == doc.getLength();
                     if (isEnabled && this.atEnd && !currentlyAtEnd)
                     {
-                        String text = comp.getText();
-                        Word changed =
-                            Word.getWord(text, text.length() - 1, false);
-                        format(changed);
-                        promptRepaint();
+                        // the last word is complete now
+                        markDirty(doc, doc.getLength(), doc.getLength());
                     }
 
                     this.atEnd = currentlyAtEnd;
@@ -125,9 +231,9 @@ abstract class DocUnderliner
     }
 
     /**
-     * Queries to see if a word should be underlined. This is called on every
-     * internal change and whenever a word's completed so it should be a
-     * lightweight process.
+     * Queries to see if a word should be underlined. This is called on the
+     * spell checker thread, at most once per distinct word until the cache
+     * is cleared.
      * 
      * @param word word to be checked
      * @return true if the word should be underlined, false otherwise
@@ -191,158 +297,419 @@ abstract class DocUnderliner
         if (!this.isEnabled)
             return;
 
-        try
+        markDirty(event.getDocument(), event.getOffset(),
+            event.getOffset() + event.getLength());
+    }
+
+    public void removeUpdate(DocumentEvent event)
+    {
+        if (!this.isEnabled)
+            return;
+
+        markDirty(event.getDocument(), event.getOffset(), event.getOffset());
+    }
+
+    public void changedUpdate(DocumentEvent e)
+    {
+    }
+
+    /**
+     * Provides a listener that prompts the last word to be checked when the
+     * cursor moves away from it.
+     * 
+     * @return listener for caret position that formats last word when
+     *         appropriate
+     */
+    public CaretListener getEndChecker()
+    {
+        return this.endChecker;
+    }
+
+    /**
+     * Forgets the formatting of every word, e.g. because the dictionary
+     * changed.
+     */
+    public void clearCache()
+    {
+        synchronized (this.formattingCache)
         {
-            Document doc = event.getDocument();
-            String text = doc.getText(0, doc.getLength());
+            this.cacheGeneration++;
+            this.formattingCache.clear();
+        }
+    }
 
-            if (event.getLength() == 1)
+    /**
+     * Formats the word with the appropriate underlining (or lack thereof).
+     * The cached formatting of the word is discarded first so this can be
+     * used once the word has been added to the dictionary.
+     * 
+     * @param word word to be formatted
+     */
+    public void format(Word word)
+    {
+        if (!this.isEnabled)
+            return;
+
+        String text = word.getText();
+        if (text.length() > 0)
+        {
+            synchronized (this.formattingCache)
             {
-                char changeChar = text.charAt(event.getOffset());
-                if (getCaretPosition() == text.length() - 1)
-                {
-                    if (!Character.isLetter(changeChar))
-                    {
-                        // finished last word
-                        Word last = Word.getWord(text, text.length() - 1, true);
-                        format(last);
-                    }
-                    else
-                    {
-                        // new character at end (ensure it isn't initially
-                        // underlined)
-                        clearUnderlining(event.getOffset(),
-                            event.getOffset() + 1);
-                    }
-                }
-                else
-                {
-                    if (Character.isLetter(changeChar))
-                    {
-                        // change within word
-                        Word changed;
-                        int previousIndex = Math.max(0, event.getOffset() - 1);
-                        if (Character.isLetter(text.charAt(previousIndex)))
-                            changed =
-                                Word.getWord(text, event.getOffset(), true);
-                        else
-                            changed =
-                                Word.getWord(text, event.getOffset(), false);
-                        format(changed);
-                    }
-                    else
-                    {
-                        // dividing a word - need to check both sides
-                        Word firstWord =
-                            Word.getWord(text, event.getOffset(), true);
-                        Word secondWord =
-                            Word.getWord(text, event.getOffset() + 1, false);
-                        format(firstWord);
-                        format(secondWord);
-                    }
-                }
+                this.cacheGeneration++;
+                this.formattingCache.remove(text);
             }
-            else
-            {
-                // pasting in a chunk of text (checks all words in modified
-                // range)
-                Word changed = Word.getWord(text, event.getOffset(), true);
-                int wordStart = changed.getStart();
-                while (wordStart < event.getOffset() + event.getLength())
+
+            int start = word.getStart();
+            int end = start + text.length();
+            clearUnderlining(start, end);
+            if (isUnderlined(text))
+                underlineRange(start, end);
+        }
+    }
+
+    /**
+     * Marks the words around a changed range of the document as needing to
+     * be checked, and schedules the check.
+     * 
+     * @param doc the changed document
+     * @param start start of the changed range
+     * @param end end of the changed range
+     */
+    private void markDirty(Document doc, int start, int end)
+    {
+        this.document = doc;
+
+        Position[] dirty;
+        try
+        {
+            dirty = new Position[]
                 {
-                    format(changed);
-                    int end =
-                        Math.min(changed.getStart()
-                            + changed.getText().length() + 1, text.length());
-                    changed = Word.getWord(text, end, false);
-                    wordStart = end;
-                }
-            }
+                    doc.createPosition(start),
+                    doc.createPosition(end)
+                };
         }
         catch (BadLocationException exc)
         {
             String msg = "Bad bounds (programmer error in spell checker)";
             logger.error(msg, exc);
+            return;
         }
-        catch (Throwable exc)
+
+        synchronized (this.dirtyRanges)
         {
-            logger.error("Error words processing", exc);
+            this.dirtyRanges.add(dirty);
+            if (this.checkScheduled)
+                return;
+            this.checkScheduled = true;
         }
-
-        promptRepaint();
+        SwingUtilities.invokeLater(this.dirtyChecker);
     }
 
-    public void removeUpdate(DocumentEvent event)
+    /**
+     * Collects the words of the dirty ranges and hands them to the spell
+     * checker thread. Only the text around the changes is read from the
+     * document.
+     * 
+     * @param dirtyRanges the ranges which changed since the last check
+     */
+    private void checkDirtyRanges(List<Position[]> dirtyRanges)
     {
-        if (!this.isEnabled)
+        Document doc = this.document;
+
+        if (!this.isEnabled || doc == null || dirtyRanges.isEmpty())
             return;
 
+        // merges the overlapping ranges once expanded to word boundaries
+        SortedMap<Integer, Integer> ranges = new TreeMap<Integer, Integer>();
         try
         {
-            Document doc = event.getDocument();
-            String text = doc.getText(0, doc.getLength());
-            if (text.length() != 0)
+            for (Position[] dirty : dirtyRanges)
             {
-                Word changed;
-                if (event.getOffset() == 0
-                    || !Character.isLetter(text.charAt(event.getOffset() - 1)))
-                {
-                    changed = Word.getWord(text, event.getOffset(), false);
-                }
-                else
+                int start = findWordsStart(doc, dirty[0].getOffset());
+                int end = findWordsEnd(doc, dirty[1].getOffset());
+                Integer previousEnd = ranges.get(start);
+
+                if (previousEnd == null || previousEnd < end)
+                    ranges.put(start, end);
+            }
+        }
+        catch (BadLocationException exc)
+        {
+            String msg = "Bad bounds (programmer error in spell checker)";
+            logger.error(msg, exc);
+        }
+
+        List<CheckedRange> checkedRanges = new ArrayList<CheckedRange>();
+        CheckedRange current = null;
+        int docLength = doc.getLength();
+        int caret = getCaretPosition();
+
+        try
+        {
+            for (Map.Entry<Integer, Integer> range : ranges.entrySet())
+            {
+                int start = range.getKey();
+                int end = range.getValue();
+
+                if (current != null && start <= current.endOffset)
                 {
-                    changed = Word.getWord(text, event.getOffset() - 1, true);
+                    if (end > current.endOffset)
+                    {
+                        current.text +=
+                            doc.getText(current.endOffset, end
+                                - current.endOffset);
+                        current.endOffset = end;
+                    }
+                    continue;
                 }
 
-                format(changed);
+                current =
+                    new CheckedRange(start, end, doc.getText(start, end
+                        - start));
+                checkedRanges.add(current);
             }
 
-            promptRepaint();
+            List<CheckedWord> words = new ArrayList<CheckedWord>();
+            for (CheckedRange range : checkedRanges)
+            {
+                range.start = doc.createPosition(range.startOffset);
+                range.end = doc.createPosition(range.endOffset);
+                collectWords(doc, range, docLength, caret, words);
+            }
+
+            submit(doc, checkedRanges, words, false);
         }
         catch (BadLocationException exc)
         {
             String msg = "Bad bounds (programmer error in spell checker)";
             logger.error(msg, exc);
         }
-        catch (Throwable exc)
-        {
-            logger.error("Error words processing", exc);
-        }
     }
 
-    public void changedUpdate(DocumentEvent e)
+    /**
+     * Adds the words of a range of the document to <tt>words</tt>. The word
+     * being typed at the end of the document isn't checked until it's
+     * completed.
+     * 
+     * @param doc the document
+     * @param range the range
+     * @param docLength the length of the document
+     * @param caret the position of the caret
+     * @param words the list receiving the words
+     * @throws BadLocationException if the document changed meanwhile
+     */
+    private static void collectWords(Document doc, CheckedRange range,
+        int docLength, int caret, List<CheckedWord> words)
+        throws BadLocationException
     {
+        BreakIterator wordIterator = BreakIterator.getWordInstance();
+        wordIterator.setText(range.text);
+
+        int start = wordIterator.first();
+        for (int end = wordIterator.next(); end != BreakIterator.DONE; start =
+            end, end = wordIterator.next())
+        {
+            if (!Character.isLetter(range.text.charAt(start)))
+                continue;
+
+            int offset = range.startOffset + start;
+            if (offset + (end - start) == docLength && caret == docLength)
+                continue; // word still being typed
+
+            words.add(new CheckedWord(doc.createPosition(offset),
+                range.text.substring(start, end)));
+        }
     }
 
     /**
-     * Provides a listener that prompts the last word to be checked when the
-     * cursor moves away from it.
+     * Checks words on the spell checker thread and applies the resulting
+     * underlining on the event dispatch thread.
      * 
-     * @return listener for caret position that formats last word when
-     *         appropriate
+     * @param doc the document the words belong to, <tt>null</tt> if unknown
+     * @param ranges the ranges whose underlining is replaced
+     * @param words the words to check
+     * @param clearAll whether all underlining should be removed first
      */
-    public CaretListener getEndChecker()
+    private void submit(final Document doc, final List<CheckedRange> ranges,
+        final List<CheckedWord> words, final boolean clearAll)
     {
-        return this.endChecker;
+        final int submitGeneration = this.generation;
+
+        try
+        {
+            CHECKER.execute(new Runnable()
+            {
+                public void run()
+                {
+                    if (submitGeneration != generation)
+                        return;
+
+                    for (CheckedWord word : words)
+                    {
+                        try
+                        {
+                            word.underlined = isUnderlined(word.text);
+                        }
+                        catch (Throwable exc)
+                        {
+                            logger.error("Error words processing", exc);
+                        }
+                    }
+
+                    SwingUtilities.invokeLater(new Runnable()
+                    {
+                        public void run()
+                        {
+                            if (submitGeneration == generation)
+                                applyFormatting(doc, ranges, words, clearAll);
+                        }
+                    });
+                }
+            });
+        }
+        catch (RejectedExecutionException exc)
+        {
+            logger.error("Spell checker is not running", exc);
+        }
     }
 
     /**
-     * Formats the word with the appropriate underlining (or lack thereof).
+     * Replaces the underlining of the checked ranges in a single pass.
+     * Words which changed since they were collected are left alone, the
+     * change marked them dirty again.
      * 
-     * @param word word to be formatted
+     * @param doc the document the words belong to, <tt>null</tt> if unknown
+     * @param ranges the ranges whose underlining is replaced
+     * @param words the checked words
+     * @param clearAll whether all underlining should be removed first
      */
-    public void format(Word word)
+    private void applyFormatting(Document doc, List<CheckedRange> ranges,
+        List<CheckedWord> words, boolean clearAll)
     {
         if (!this.isEnabled)
             return;
 
-        String text = word.getText();
-        if (text.length() > 0)
+        if (clearAll)
+            removeAllUnderlining();
+
+        for (CheckedRange range : ranges)
+            clearUnderlining(range.start.getOffset(), range.end.getOffset());
+
+        for (CheckedWord word : words)
+        {
+            if (!word.underlined)
+                continue;
+
+            int start = word.start.getOffset();
+            int end = start + word.text.length();
+            try
+            {
+                if (doc != null
+                    && (end > doc.getLength() || !word.text.equals(doc
+                        .getText(start, word.text.length()))))
+                    continue;
+            }
+            catch (BadLocationException exc)
+            {
+                continue;
+            }
+            underlineRange(start, end);
+        }
+
+        promptRepaint();
+    }
+
+    /**
+     * Determines whether a word should be underlined, remembering the
+     * answer unless the cache has been cleared in the meantime, e.g. because
+     * the dictionary changed while the word was being checked.
+     * 
+     * @param word the word
+     * @return true if the word should be underlined, false otherwise
+     */
+    private boolean isUnderlined(String word)
+    {
+        Boolean underlined;
+        int checkGeneration;
+
+        synchronized (this.formattingCache)
+        {
+            underlined = this.formattingCache.get(word);
+            checkGeneration = this.cacheGeneration;
+        }
+
+        if (underlined == null)
+        {
+            underlined = getFormatting(word);
+
+            synchronized (this.formattingCache)
+            {
+                if (checkGeneration == this.cacheGeneration)
+                    this.formattingCache.put(word, underlined);
+            }
+        }
+        return underlined;
+    }
+
+    /**
+     * Returns the start of the word containing or preceding
+     * <tt>offset</tt>, reading the document backwards by small chunks until
+     * some white space is found.
+     * 
+     * @param doc the document
+     * @param offset the offset
+     * @return the offset following the white space before <tt>offset</tt>
+     * @throws BadLocationException if <tt>offset</tt> is invalid
+     */
+    private static int findWordsStart(Document doc, int offset)
+        throws BadLocationException
+    {
+        int from = Math.min(offset, doc.getLength());
+
+        while (from > 0)
         {
-            clearUnderlining(word.getStart(), word.getStart() + text.length());
-            if (getFormatting(text))
-                underlineRange(word.getStart(), word.getStart() + text.length());
+            int chunk = Math.min(CONTEXT_CHUNK, from);
+            String text = doc.getText(from - chunk, chunk);
+
+            for (int i = text.length() - 1; i >= 0; i--)
+            {
+                if (Character.isWhitespace(text.charAt(i)))
+                    return from - chunk + i + 1;
+            }
+            from -= chunk;
         }
+        return 0;
+    }
+
+    /**
+     * Returns the end of the word containing or following <tt>offset</tt>,
+     * reading the document forward by small chunks until some white space
+     * is found.
+     * 
+     * @param doc the document
+     * @param offset the offset
+     * @return the offset of the white space after <tt>offset</tt>
+     * @throws BadLocationException if <tt>offset</tt> is invalid
+     */
+    private static int findWordsEnd(Document doc, int offset)
+        throws BadLocationException
+    {
+        int length = doc.getLength();
+        int to = Math.min(offset, length);
+
+        while (to < length)
+        {
+            int chunk = Math.min(CONTEXT_CHUNK, length - to);
+            String text = doc.getText(to, chunk);
+
+            for (int i = 0; i < text.length(); i++)
+            {
+                if (Character.isWhitespace(text.charAt(i)))
+                    return to + i;
+            }
+            to += chunk;
+        }
+        return length;
     }
 
     /**
@@ -358,7 +725,11 @@ abstract class DocUnderliner
             try
             {
                 if (this.isEnabled)
-                    this.docHighlighter.addHighlight(start, end, UNDERLINER);
+                {
+                    this.underlines.add(
+                        this.docHighlighter.addHighlight(start, end,
+                            UNDERLINER));
+                }
             }
             catch (BadLocationException exc)
             {
@@ -369,7 +740,7 @@ abstract class DocUnderliner
     }
 
     /**
-     * Clears any underlining that spans to include the given range. Since
+     * Clears any underlining that overlaps the given range. Since
      * formatting is defined by ranges this will likely clear more than the
      * defined range.
      * 
@@ -378,26 +749,33 @@ abstract class DocUnderliner
      */
     private void clearUnderlining(int start, int end)
     {
-        if (end > start)
+        // removes highlighting if visible
+        if (this.isEnabled)
         {
-            // removes highlighting if visible
-            if (this.isEnabled)
+            for (Highlighter.Highlight highlight : this.docHighlighter
+                .getHighlights())
             {
-                for (Highlighter.Highlight highlight : this.docHighlighter
-                    .getHighlights())
+                if (highlight.getStartOffset() <= end
+                    && highlight.getEndOffset() >= start
+                    && this.underlines.remove(highlight))
                 {
-                    if ((highlight.getStartOffset() <= start && highlight
-                        .getEndOffset() > start)
-                        || (highlight.getStartOffset() < end && highlight
-                            .getEndOffset() >= end))
-                    {
-                        this.docHighlighter.removeHighlight(highlight);
-                    }
+                    this.docHighlighter.removeHighlight(highlight);
                 }
             }
         }
     }
 
+    /**
+     * Clears all the underlining of this underliner, leaving the other
+     * highlights of the document alone.
+     */
+    private void removeAllUnderlining()
+    {
+        for (Object tag : this.underlines)
+            this.docHighlighter.removeHighlight(tag);
+        this.underlines.clear();
+    }
+
     public void setEnabled(boolean enable, String message)
     {
         if (this.isEnabled != enable)
@@ -406,13 +784,18 @@ abstract class DocUnderliner
             if (this.isEnabled)
                 reset(message);
             else
-                this.docHighlighter.removeAllHighlights();
+            {
+                this.generation++;
+                removeAllUnderlining();
+            }
             promptRepaint();
         }
     }
 
     /**
-     * Clears underlining and re-evaluates message's contents
+     * Clears underlining and re-evaluates message's contents. The words are
+     * checked on the spell checker thread, the previous underlining stays
+     * until the new one is applied.
      * 
      * @param message textual contents of document
      */
@@ -421,25 +804,130 @@ abstract class DocUnderliner
         if (!this.isEnabled)
             return;
 
-        // clears previous underlined sections
-        this.docHighlighter.removeAllHighlights();
+        this.generation++;
+
+        // positions follow later changes if the message is the content of
+        // the document we know of
+        Document doc = this.document;
+        if (doc != null && doc.getLength() != message.length())
+            doc = null;
 
-        // runs over message
-        if (message.length() > 0)
+        List<CheckedWord> words = new ArrayList<CheckedWord>();
+        BreakIterator wordIterator = BreakIterator.getWordInstance();
+        wordIterator.setText(message);
+
+        int start = wordIterator.first();
+        for (int end = wordIterator.next(); end != BreakIterator.DONE; start =
+            end, end = wordIterator.next())
         {
-            Word changed = Word.getWord(message, 0, true);
-            int wordStart = changed.getStart();
-            while (wordStart < message.length())
+            if (!Character.isLetter(message.charAt(start)))
+                continue;
+
+            Position position = null;
+            if (doc != null)
             {
-                format(changed);
-                int end =
-                    Math.min(changed.getStart() + changed.getText().length()
-                        + 1, message.length());
-                changed = Word.getWord(message, end, false);
-                wordStart = end;
+                try
+                {
+                    position = doc.createPosition(start);
+                }
+                catch (BadLocationException exc)
+                {
+                    doc = null;
+                }
             }
+            if (position == null)
+                position = new FixedPosition(start);
+
+            words.add(new CheckedWord(position, message.substring(start,
+                end)));
         }
 
-        promptRepaint();
+        submit(doc, new ArrayList<CheckedRange>(), words, true);
+    }
+
+    /**
+     * A range of the document whose words are being checked.
+     */
+    private static class CheckedRange
+    {
+        /**
+         * Start offset of the range when it was read.
+         */
+        private final int startOffset;
+
+        /**
+         * End offset of the range when it was read.
+         */
+        private int endOffset;
+
+        /**
+         * Text of the range.
+         */
+        private String text;
+
+        /**
+         * Start of the range, following document changes.
+         */
+        private Position start;
+
+        /**
+         * End of the range, following document changes.
+         */
+        private Position end;
+
+        CheckedRange(int startOffset, int endOffset, String text)
+        {
+            this.startOffset = startOffset;
+            this.endOffset = endOffset;
+            this.text = text;
+        }
+    }
+
+    /**
+     * A word being checked.
+     */
+    private static class CheckedWord
+    {
+        /**
+         * Start of the word, following document changes.
+         */
+        private final Position start;
+
+        /**
+         * The word.
+         */
+        private final String text;
+
+        /**
+         * Whether the word should be underlined, set by the spell checker
+         * thread.
+         */
+        private volatile boolean underlined = false;
+
+        CheckedWord(Position start, String text)
+        {
+            this.start = start;
+            this.text = text;
+        }
+    }
+
+    /**
+     * A position which doesn't follow document changes, used when the
+     * document isn't known.
+     */
+    private static class FixedPosition
+        implements Position
+    {
+        private final int offset;
+
+        FixedPosition(int offset)
+        {
+            this.offset = offset;
+        }
+
+        public int getOffset()
+        {
+            return this.offset;
+        }
     }
 }
@@ -118,6 +118,18 @@ public interface CallHistoryService
     public Collection<CallRecord> findLast(int count)
         throws RuntimeException;
 
+    /**
+     * Returns the supplied number of recent calls written before the given
+     * date.
+     *
+     * @param date the date before which the calls were written
+     * @param count calls count
+     * @return Collection of CallRecords with CallPeerRecord
+     * @throws RuntimeException if something goes wrong
+     */
+    public Collection<CallRecord> findLastRecordsBefore(Date date, int count)
+        throws RuntimeException;
+
     /**
      * Find the calls made by the supplied peer address
      * @param address String the address of the peer
@@ -11,7 +11,7 @@ import java.util.regex.*;
 
 /**
  * Provides an abstract implementation of a <tt>ContactQuery</tt> which runs in
- * a separate <tt>Thread</tt>.
+ * a separate <tt>Thread</tt> of the shared <tt>ContactQueryExecutor</tt>.
  *
  * @author Lyubomir Marinov
  * @param <T> the very type of <tt>ContactSourceService</tt> which performs the
@@ -47,10 +47,9 @@ public abstract class AsyncContactQuery<T extends ContactSourceService>
         = new LinkedList<SourceContact>();
 
     /**
-     * The <tt>Thread</tt> in which this <tt>AsyncContactQuery</tt> is
-     * performing {@link #query}.
+     * Whether this <tt>AsyncContactQuery</tt> has been started.
      */
-    private Thread thread;
+    private boolean started = false;
 
     /**
      * Initializes a new <tt>AsyncContactQuery</tt> instance which is to perform
@@ -203,40 +202,73 @@ public abstract class AsyncContactQuery<T extends ContactSourceService>
     protected abstract void run();
 
     /**
-     * Starts this <tt>AsyncContactQuery</tt>.
+     * Returns the priority of this <tt>AsyncContactQuery</tt> among the
+     * queries waiting for a thread of the <tt>ContactQueryExecutor</tt>. The
+     * queries which don't go to the network should return
+     * {@link ContactQueryExecutor#LOCAL_PRIORITY} in order to be performed
+     * first.
+     *
+     * @return {@link ContactQueryExecutor#LOCAL_PRIORITY} or
+     * {@link ContactQueryExecutor#REMOTE_PRIORITY}
+     */
+    protected int getPriority()
+    {
+        return ContactQueryExecutor.REMOTE_PRIORITY;
+    }
+
+    /**
+     * Returns the time in milliseconds this <tt>AsyncContactQuery</tt> has to
+     * complete after it has got a thread of the <tt>ContactQueryExecutor</tt>
+     * before it is canceled. The queries have no deadline by default; the
+     * ones which stop early when they are canceled and which are expected to
+     * complete quickly may opt in, for example with
+     * {@link ContactQueryExecutor#DEFAULT_DEADLINE}.
+     *
+     * @return the deadline of this <tt>AsyncContactQuery</tt> in milliseconds
+     * or zero if it can run indefinitely
+     */
+    protected long getDeadline()
+    {
+        return 0;
+    }
+
+    /**
+     * Starts this <tt>AsyncContactQuery</tt>. It is performed as soon as a
+     * thread of the shared <tt>ContactQueryExecutor</tt> is available unless
+     * it is canceled in the meantime.
      */
     public synchronized void start()
     {
-        if (thread == null)
-        {
-            thread
-                = new Thread()
+        if (started)
+            throw new IllegalStateException("started");
+        started = true;
+
+        ContactQueryExecutor.getInstance().execute(
+                this,
+                new Runnable()
                 {
-                    @Override
                     public void run()
                     {
                         boolean completed = false;
 
                         try
                         {
-                            AsyncContactQuery.this.run();
-                            completed = true;
+                            // a query superseded before it got a thread
+                            if (getStatus() != QUERY_CANCELED)
+                            {
+                                AsyncContactQuery.this.run();
+                                completed = true;
+                            }
                         }
                         finally
                         {
                             synchronized (AsyncContactQuery.this)
                             {
-                                if (thread == Thread.currentThread())
-                                    stopped(completed);
+                                stopped(completed);
                             }
                         }
                     }
-                };
-            thread.setDaemon(true);
-            thread.start();
-        }
-        else
-            throw new IllegalStateException("thread");
+                });
     }
 
     /**
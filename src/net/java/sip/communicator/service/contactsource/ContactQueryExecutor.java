@@ -0,0 +1,503 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.service.contactsource;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import net.java.sip.communicator.util.*;
+
+/**
+ * Performs the <tt>AsyncContactQuery</tt>s of all the contact sources on a
+ * bounded number of shared threads instead of a new thread per query. The
+ * queries waiting for a thread are performed in the order of their priority
+ * so that the local sources are searched before the remote ones, a query
+ * which has been canceled while it was waiting is skipped and a query which
+ * has a deadline and doesn't complete within it once it has got a thread is
+ * canceled. The latency of the queries is recorded per contact source.
+ *
+ * @author Lyubomir Marinov
+ */
+public class ContactQueryExecutor
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>ContactQueryExecutor</tt> class and
+     * its instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(ContactQueryExecutor.class);
+
+    /**
+     * The priority of the queries of the contact sources which are local to
+     * this machine such as the address books.
+     */
+    public static final int LOCAL_PRIORITY = 0;
+
+    /**
+     * The priority of the queries of the contact sources which go to the
+     * network such as LDAP directories.
+     */
+    public static final int REMOTE_PRIORITY = 1;
+
+    /**
+     * The suggested time in milliseconds a query which has a deadline has to
+     * complete after it has got a thread before it is canceled. The queries
+     * have no deadline unless they override
+     * {@link AsyncContactQuery#getDeadline()}.
+     */
+    public static final long DEFAULT_DEADLINE = 15000;
+
+    /**
+     * The maximum number of queries performed at the same time.
+     */
+    private static final int MAX_THREADS = 4;
+
+    /**
+     * The time in milliseconds an idle thread waits for a new query before it
+     * ends.
+     */
+    private static final long KEEP_ALIVE_TIME = 60000;
+
+    /**
+     * The <tt>ContactQueryExecutor</tt> shared by all the contact sources.
+     */
+    private static ContactQueryExecutor instance;
+
+    /**
+     * The threads the queries are performed on.
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * The timer which cancels the queries which miss their deadlines.
+     */
+    private final Timer deadlineTimer
+        = new Timer(ContactQueryExecutor.class.getSimpleName(), true);
+
+    /**
+     * The order of the queries in the order they were started, which orders
+     * the queries with the same priority.
+     */
+    private long sequence = 0;
+
+    /**
+     * The latency statistics of the contact sources, by contact source.
+     */
+    private final Map<String, SourceStatistics> statistics
+        = new LinkedHashMap<String, SourceStatistics>();
+
+    /**
+     * Initializes a new <tt>ContactQueryExecutor</tt>.
+     */
+    private ContactQueryExecutor()
+    {
+        executor
+            = new ThreadPoolExecutor(
+                    MAX_THREADS, MAX_THREADS,
+                    KEEP_ALIVE_TIME, TimeUnit.MILLISECONDS,
+                    new PriorityBlockingQueue<Runnable>(),
+                    new ThreadFactory()
+                    {
+                        private int threadCount = 0;
+
+                        public synchronized Thread newThread(Runnable r)
+                        {
+                            Thread thread
+                                = new Thread(
+                                        r,
+                                        "ContactQueryExecutor-"
+                                            + (++threadCount));
+
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns the <tt>ContactQueryExecutor</tt> shared by all the contact
+     * sources.
+     *
+     * @return the <tt>ContactQueryExecutor</tt> shared by all the contact
+     * sources
+     */
+    public static synchronized ContactQueryExecutor getInstance()
+    {
+        if (instance == null)
+            instance = new ContactQueryExecutor();
+        return instance;
+    }
+
+    /**
+     * Performs a query on one of the shared threads when its turn comes.
+     *
+     * @param query the query to be performed
+     * @param task the work of <tt>query</tt> which notifies it when it has
+     * stopped
+     */
+    void execute(AsyncContactQuery<?> query, Runnable task)
+    {
+        QueryTask queryTask;
+
+        synchronized (this)
+        {
+            queryTask = new QueryTask(query, task, sequence++);
+        }
+        executor.execute(queryTask);
+    }
+
+    /**
+     * Returns the latency statistics of the contact sources which have been
+     * queried.
+     *
+     * @return a copy of the latency statistics of the contact sources which
+     * have been queried, by the display names of the contact sources
+     */
+    public synchronized Map<String, SourceStatistics> getStatistics()
+    {
+        Map<String, SourceStatistics> copy
+            = new LinkedHashMap<String, SourceStatistics>();
+
+        for (Map.Entry<String, SourceStatistics> e : statistics.entrySet())
+            copy.put(e.getKey(), new SourceStatistics(e.getValue()));
+        return copy;
+    }
+
+    /**
+     * Records the latency of a query which has stopped.
+     *
+     * @param queryTask the query which has stopped
+     */
+    private void record(QueryTask queryTask)
+    {
+        ContactSourceService contactSource
+            = queryTask.query.getContactSource();
+        String source
+            = (contactSource == null) ? null : contactSource.getDisplayName();
+        long queueTime = queryTask.startTime - queryTask.submitTime;
+        long runTime = queryTask.stopTime - queryTask.startTime;
+        SourceStatistics sourceStatistics;
+
+        synchronized (this)
+        {
+            sourceStatistics = statistics.get(source);
+            if (sourceStatistics == null)
+            {
+                sourceStatistics = new SourceStatistics();
+                statistics.put(source, sourceStatistics);
+            }
+
+            sourceStatistics.queryCount++;
+            if (queryTask.skipped)
+                sourceStatistics.skippedCount++;
+            else
+            {
+                sourceStatistics.totalQueueTime += queueTime;
+                sourceStatistics.totalRunTime += runTime;
+                if (sourceStatistics.maxRunTime < runTime)
+                    sourceStatistics.maxRunTime = runTime;
+            }
+            if (queryTask.deadlineMissed)
+                sourceStatistics.deadlineMissCount++;
+        }
+
+        if (logger.isDebugEnabled())
+        {
+            logger.debug(
+                    "Query " + queryTask.query.getQueryString() + " of "
+                        + source
+                        + (queryTask.skipped
+                                ? " canceled before it was started"
+                                : (" waited " + queueTime + " ms and ran "
+                                    + runTime + " ms"))
+                        + (queryTask.deadlineMissed
+                                ? ", missed its deadline"
+                                : ""));
+        }
+    }
+
+    /**
+     * The latency statistics of the queries of a contact source.
+     */
+    public static class SourceStatistics
+    {
+        /**
+         * The number of queries which have stopped.
+         */
+        private int queryCount;
+
+        /**
+         * The number of queries which were canceled before they were started.
+         */
+        private int skippedCount;
+
+        /**
+         * The number of queries which were canceled because they missed their
+         * deadlines.
+         */
+        private int deadlineMissCount;
+
+        /**
+         * The total time in milliseconds the started queries waited for a
+         * thread.
+         */
+        private long totalQueueTime;
+
+        /**
+         * The total time in milliseconds the started queries ran.
+         */
+        private long totalRunTime;
+
+        /**
+         * The longest time in milliseconds a query ran.
+         */
+        private long maxRunTime;
+
+        /**
+         * Initializes new empty statistics.
+         */
+        private SourceStatistics()
+        {
+        }
+
+        /**
+         * Initializes a copy of specific statistics.
+         *
+         * @param statistics the statistics to copy
+         */
+        private SourceStatistics(SourceStatistics statistics)
+        {
+            queryCount = statistics.queryCount;
+            skippedCount = statistics.skippedCount;
+            deadlineMissCount = statistics.deadlineMissCount;
+            totalQueueTime = statistics.totalQueueTime;
+            totalRunTime = statistics.totalRunTime;
+            maxRunTime = statistics.maxRunTime;
+        }
+
+        /**
+         * Returns the number of queries which have stopped.
+         *
+         * @return the number of queries which have stopped
+         */
+        public int getQueryCount()
+        {
+            return queryCount;
+        }
+
+        /**
+         * Returns the number of queries which were canceled before they were
+         * started, usually because the user typed another query.
+         *
+         * @return the number of queries which were canceled before they were
+         * started
+         */
+        public int getSkippedCount()
+        {
+            return skippedCount;
+        }
+
+        /**
+         * Returns the number of queries which were canceled because they
+         * missed their deadlines.
+         *
+         * @return the number of queries which missed their deadlines
+         */
+        public int getDeadlineMissCount()
+        {
+            return deadlineMissCount;
+        }
+
+        /**
+         * Returns the average time in milliseconds the started queries waited
+         * for a thread.
+         *
+         * @return the average time in milliseconds the started queries waited
+         * for a thread
+         */
+        public long getAverageQueueTime()
+        {
+            int startedCount = queryCount - skippedCount;
+
+            return (startedCount == 0) ? 0 : (totalQueueTime / startedCount);
+        }
+
+        /**
+         * Returns the average time in milliseconds the started queries ran.
+         *
+         * @return the average time in milliseconds the started queries ran
+         */
+        public long getAverageRunTime()
+        {
+            int startedCount = queryCount - skippedCount;
+
+            return (startedCount == 0) ? 0 : (totalRunTime / startedCount);
+        }
+
+        /**
+         * Returns the longest time in milliseconds a query ran.
+         *
+         * @return the longest time in milliseconds a query ran
+         */
+        public long getMaxRunTime()
+        {
+            return maxRunTime;
+        }
+
+        /**
+         * Returns a string representation of these statistics.
+         *
+         * @return a string representation of these statistics
+         */
+        @Override
+        public String toString()
+        {
+            return "queries=" + queryCount
+                + ", skipped=" + skippedCount
+                + ", deadlineMisses=" + deadlineMissCount
+                + ", averageQueueTime=" + getAverageQueueTime()
+                + ", averageRunTime=" + getAverageRunTime()
+                + ", maxRunTime=" + maxRunTime;
+        }
+    }
+
+    /**
+     * A query waiting for a thread, ordered by priority and then by the
+     * order it was started in.
+     */
+    private class QueryTask
+        implements Comparable<QueryTask>,
+                   Runnable
+    {
+        /**
+         * The query.
+         */
+        final AsyncContactQuery<?> query;
+
+        /**
+         * The work of {@link #query}.
+         */
+        private final Runnable task;
+
+        /**
+         * The priority of {@link #query}.
+         */
+        private final int priority;
+
+        /**
+         * The order {@link #query} was started in.
+         */
+        private final long sequence;
+
+        /**
+         * The time in milliseconds {@link #query} has to complete after it
+         * has got a thread or zero if it can run indefinitely.
+         */
+        private final long deadline;
+
+        /**
+         * Cancels {@link #query} if it hasn't stopped before its deadline.
+         */
+        final TimerTask deadlineTask
+            = new TimerTask()
+            {
+                @Override
+                public void run()
+                {
+                    if (query.getStatus() == ContactQuery.QUERY_IN_PROGRESS)
+                    {
+                        deadlineMissed = true;
+                        query.cancel();
+                    }
+                }
+            };
+
+        /**
+         * The time {@link #query} was started at.
+         */
+        final long submitTime = System.currentTimeMillis();
+
+        /**
+         * The time {@link #query} got a thread at.
+         */
+        long startTime;
+
+        /**
+         * The time {@link #query} stopped at.
+         */
+        long stopTime;
+
+        /**
+         * Whether {@link #query} was canceled before it got a thread.
+         */
+        boolean skipped;
+
+        /**
+         * Whether {@link #query} was canceled because it missed its deadline.
+         */
+        volatile boolean deadlineMissed;
+
+        /**
+         * Initializes a new <tt>QueryTask</tt>.
+         *
+         * @param query the query
+         * @param task the work of <tt>query</tt>
+         * @param sequence the order <tt>query</tt> was started in
+         */
+        QueryTask(AsyncContactQuery<?> query, Runnable task, long sequence)
+        {
+            this.query = query;
+            this.task = task;
+            this.priority = query.getPriority();
+            this.sequence = sequence;
+            this.deadline = query.getDeadline();
+        }
+
+        /**
+         * Orders this query before the ones with a lower priority and the
+         * ones with the same priority which were started after it.
+         *
+         * @param other the query to compare to
+         * @return a negative integer, zero, or a positive integer as this
+         * query is to be performed before, at the same time or after
+         * <tt>other</tt>
+         */
+        public int compareTo(QueryTask other)
+        {
+            if (priority != other.priority)
+                return (priority < other.priority) ? -1 : 1;
+            if (sequence != other.sequence)
+                return (sequence < other.sequence) ? -1 : 1;
+            return 0;
+        }
+
+        /**
+         * Performs the query, which skips its work if it has been canceled in
+         * the meantime. The deadline of the query starts now rather than when
+         * the query was started so that the time it waited for a thread
+         * doesn't count.
+         */
+        public void run()
+        {
+            startTime = System.currentTimeMillis();
+            skipped = (query.getStatus() == ContactQuery.QUERY_CANCELED);
+            if (!skipped && (deadline > 0))
+                deadlineTimer.schedule(deadlineTask, deadline);
+            try
+            {
+                task.run();
+            }
+            finally
+            {
+                deadlineTask.cancel();
+                stopTime = System.currentTimeMillis();
+                record(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.service.contactsource;
+
+import java.util.*;
+
+import net.java.sip.communicator.service.protocol.*;
+
+/**
+ * Remembers the addresses of the <tt>SourceContact</tt>s shown as the result
+ * of a search so that a contact found by several contact sources, e.g. an
+ * address book and an LDAP directory, is only shown once. Phone numbers are
+ * compared in their normalized form and the other addresses ignoring case.
+ * <p>
+ * The results of the call history are records of calls rather than contacts
+ * and several of them have the same address, so they are never filtered.
+ * </p>
+ *
+ * @author agent
+ */
+public class SourceContactAddressFilter
+{
+    /**
+     * The normalized addresses of the <tt>SourceContact</tt>s shown.
+     */
+    private final Set<String> addresses = new HashSet<String>();
+
+    /**
+     * The <tt>PhoneNumberI18nService</tt> which normalizes the phone numbers
+     * or <tt>null</tt> if they are compared as the other addresses.
+     */
+    private final PhoneNumberI18nService phoneNumberService;
+
+    /**
+     * Initializes a new <tt>SourceContactAddressFilter</tt>.
+     *
+     * @param phoneNumberService the <tt>PhoneNumberI18nService</tt> which is
+     * to normalize the phone numbers or <tt>null</tt> to compare them as the
+     * other addresses
+     */
+    public SourceContactAddressFilter(
+            PhoneNumberI18nService phoneNumberService)
+    {
+        this.phoneNumberService = phoneNumberService;
+    }
+
+    /**
+     * Adds the addresses of a <tt>SourceContact</tt> to the addresses shown
+     * and determines whether it is to be shown.
+     *
+     * @param sourceContact the <tt>SourceContact</tt> to be shown
+     * @return <tt>false</tt> if all the addresses of <tt>sourceContact</tt>
+     * are already shown and thus it mustn't be shown, <tt>true</tt> -
+     * otherwise
+     */
+    public boolean add(SourceContact sourceContact)
+    {
+        ContactSourceService contactSource = sourceContact.getContactSource();
+
+        if ((contactSource != null)
+                && ContactSourceService.CALL_HISTORY.equals(
+                        contactSource.getIdentifier()))
+            return true;
+
+        List<ContactDetail> details = sourceContact.getContactDetails();
+
+        if (details == null || details.isEmpty())
+            return true;
+
+        boolean added = false;
+
+        synchronized (addresses)
+        {
+            for (ContactDetail detail : details)
+            {
+                String address = normalizeAddress(detail.getContactAddress());
+
+                if (address != null && addresses.add(address))
+                    added = true;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Normalizes an address so that the same phone number or the same address
+     * written differently are recognized.
+     *
+     * @param address the address to normalize
+     * @return the normalized <tt>address</tt> or <tt>null</tt> if
+     * <tt>address</tt> is empty
+     */
+    private String normalizeAddress(String address)
+    {
+        if (address == null)
+            return null;
+
+        address = address.trim();
+        if (address.length() == 0)
+            return null;
+
+        if (phoneNumberService != null
+                && phoneNumberService.isPhoneNumber(address))
+            return phoneNumberService.normalize(address);
+        else
+            return address.toLowerCase();
+    }
+}
@@ -91,4 +91,11 @@ public interface LdapDirectory
      * @param names list of attributes name
      */
     public void overrideAttributesSearch(String attribute, List<String> names);
+
+    /**
+     * Releases the resources (connections, threads) held by this directory.
+     * Called once the directory has been removed from its
+     * <tt>LdapDirectorySet</tt>.
+     */
+    public void dispose();
 }
@@ -0,0 +1,45 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.service.metahistory;
+
+import java.util.*;
+
+/**
+ * Pages backwards through the merged history of a descriptor, starting at a
+ * given date, so that the records can be rendered as they arrive instead of
+ * waiting for the whole history to be loaded.
+ *
+ * @author Damian Minkov
+ */
+public interface MetaHistoryCursor
+{
+    /**
+     * Returns the next page of records, i.e. at most as many records as the
+     * page size of this cursor, older than all the records previously
+     * returned. The records of the page are sorted oldest first. Blocks while
+     * the wrapped services are queried.
+     *
+     * @return the next page of records, empty if there are no more records or
+     * if this cursor has been cancelled
+     */
+    public Collection<Object> previousPage();
+
+    /**
+     * Determines whether there may be more records to return, i.e. whether the
+     * last page was full and this cursor has not been cancelled.
+     *
+     * @return <tt>true</tt> if {@link #previousPage()} may return more
+     * records
+     */
+    public boolean hasPreviousPage();
+
+    /**
+     * Cancels this cursor. A page being retrieved is abandoned and
+     * {@link #previousPage()} returns no more records.
+     */
+    public void cancel();
+}
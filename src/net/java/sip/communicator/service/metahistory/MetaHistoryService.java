@@ -212,6 +212,20 @@ public interface MetaHistoryService
             Object descriptor, Date date, int count)
         throws RuntimeException;
 
+    /**
+     * Returns a cursor which pages backwards through the records before the
+     * given date, <tt>pageSize</tt> records at a time.
+     *
+     * @param services the services classnames we will query
+     * @param descriptor CallPeer address(String),
+     *  MetaContact or ChatRoom.
+     * @param date the date before which the records are to be returned
+     * @param pageSize the maximum number of records of a page
+     * @return a cursor over the records before <tt>date</tt>
+     */
+    public MetaHistoryCursor getCursorBefore(String[] services,
+            Object descriptor, Date date, int pageSize);
+
     /**
      * Adding progress listener for monitoring progress of search process
      *
@@ -7,6 +7,7 @@
 package net.java.sip.communicator.service.protocol;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import net.java.sip.communicator.service.credentialsstorage.*;
 import net.java.sip.communicator.service.protocol.event.*;
@@ -31,6 +32,11 @@ public class AccountManager
      */
     private static final long LOAD_STORED_ACCOUNTS_TIMEOUT = 30000;
 
+    /**
+     * The maximum number of stored accounts loaded at the same time.
+     */
+    private static final int MAX_LOAD_STORED_ACCOUNTS_THREADS = 4;
+
     /**
      * The <tt>BundleContext</tt> this service is registered in.
      */
@@ -109,53 +115,48 @@ public class AccountManager
     }
 
     /**
-     * Loads the accounts stored for a specific
-     * <tt>ProtocolProviderFactory</tt>.
+     * Creates the <tt>AccountID</tt>s of the accounts stored for a specific
+     * <tt>ProtocolProviderFactory</tt> and adds them to the stored accounts.
      *
      * @param factory the <tt>ProtocolProviderFactory</tt> to load the
      *            stored accounts of
+     * @return the <tt>AccountID</tt>s of the stored accounts of
+     * <tt>factory</tt> which are enabled and have to be loaded, in the order
+     * they were stored
      */
-    private void doLoadStoredAccounts(ProtocolProviderFactory factory)
+    private List<AccountID> doLoadStoredAccounts(
+            ProtocolProviderFactory factory)
     {
         ConfigurationService configService
             = ProtocolProviderActivator.getConfigurationService();
         String factoryPackage = getFactoryImplPackageName(factory);
-        List<String> accounts
-            = configService.getPropertyNamesByPrefix(factoryPackage, true);
+        Map<String, List<String>> accounts
+            = getStoredAccountProperties(configService, factoryPackage);
+        List<AccountID> enabledAccounts = new ArrayList<AccountID>();
 
         if (logger.isDebugEnabled())
             logger.debug("Discovered " + accounts.size() + " stored "
                     + factoryPackage + " accounts");
 
-        for (Iterator<String> storedAccountIter = accounts.iterator();
-                storedAccountIter.hasNext();)
-        {
-            String storedAccount = storedAccountIter.next();
+        CredentialsStorageService credentialsStorage
+            = ServiceUtils.getService(
+                    bundleContext,
+                    CredentialsStorageService.class);
 
-            // If the property is not related to an account we skip it.
-            int dotIndex = storedAccount.lastIndexOf(".");
-            if (!storedAccount.substring(dotIndex + 1)
-                    .startsWith(ACCOUNT_UID_PREFIX))
-                continue;
+        for (Map.Entry<String, List<String>> storedAccountEntry
+                : accounts.entrySet())
+        {
+            String storedAccount = storedAccountEntry.getKey();
 
             if (logger.isDebugEnabled())
                 logger.debug("Loading account " + storedAccount);
 
-            List<String> storedAccountProperties =
-                configService.getPropertyNamesByPrefix(storedAccount, true);
             Map<String, String> accountProperties =
                 new Hashtable<String, String>();
             boolean disabled = false;
-            CredentialsStorageService credentialsStorage
-                = ServiceUtils.getService(
-                        bundleContext,
-                        CredentialsStorageService.class);
 
-            for (Iterator<String> storedAccountPropertyIter
-                        = storedAccountProperties.iterator();
-                    storedAccountPropertyIter.hasNext();)
+            for (String property : storedAccountEntry.getValue())
             {
-                String property = storedAccountPropertyIter.next();
                 String value = configService.getString(property);
 
                 property = stripPackagePrefix(property);
@@ -195,7 +196,7 @@ public class AccountManager
                     storedAccounts.add(accountID);
                 }
                 if (!disabled)
-                    factory.loadAccount(accountID);
+                    enabledAccounts.add(accountID);
             }
             catch (Exception ex)
             {
@@ -207,6 +208,101 @@ public class AccountManager
                 logger.error("Failed to load account " + accountProperties, ex);
             }
         }
+        return enabledAccounts;
+    }
+
+    /**
+     * Loads a specific stored account of a <tt>ProtocolProviderFactory</tt>
+     * i.e. creates and registers its <tt>ProtocolProviderService</tt>.
+     *
+     * @param factory the <tt>ProtocolProviderFactory</tt> which stored the
+     *            account
+     * @param accountID the <tt>AccountID</tt> of the account to load
+     */
+    private void loadStoredAccount(
+            ProtocolProviderFactory factory,
+            AccountID accountID)
+    {
+        long startTime = System.currentTimeMillis();
+
+        try
+        {
+            factory.loadAccount(accountID);
+        }
+        catch (Exception ex)
+        {
+
+            /*
+             * Swallow the exception in order to prevent a single account
+             * from halting the loading of subsequent accounts.
+             */
+            logger.error("Failed to load account " + accountID, ex);
+        }
+
+        if (logger.isInfoEnabled())
+            logger.info("Loaded account " + accountID + " within "
+                    + (System.currentTimeMillis() - startTime) + " ms");
+    }
+
+    /**
+     * Reads the names of the properties of the accounts stored for a specific
+     * package with a single query of the configuration instead of one per
+     * account.
+     *
+     * @param configService the <tt>ConfigurationService</tt> to read the
+     *            properties from
+     * @param factoryPackage the name of the package of the
+     *            <tt>ProtocolProviderFactory</tt> which stored the accounts
+     * @return a map of the properties which identify the stored accounts to
+     * the names of the properties of these accounts, in the order the
+     * configuration returned them
+     */
+    private Map<String, List<String>> getStoredAccountProperties(
+            ConfigurationService configService,
+            String factoryPackage)
+    {
+        String accountPrefix = factoryPackage + ".";
+        Map<String, List<String>> accountProperties
+            = new LinkedHashMap<String, List<String>>();
+        Set<String> accounts = new HashSet<String>();
+
+        List<String> properties
+            = configService.getPropertyNamesByPrefix(factoryPackage, false);
+
+        for (String property : properties)
+        {
+            if (!property.startsWith(accountPrefix))
+                continue;
+
+            int dotIndex = property.indexOf('.', accountPrefix.length());
+            String account
+                = (dotIndex == -1)
+                    ? property
+                    : property.substring(0, dotIndex);
+
+            // If the property is not related to an account we skip it.
+            if (!account.startsWith(
+                    ACCOUNT_UID_PREFIX,
+                    accountPrefix.length()))
+                continue;
+
+            List<String> names = accountProperties.get(account);
+
+            if (names == null)
+            {
+                names = new ArrayList<String>();
+                accountProperties.put(account, names);
+            }
+
+            if (dotIndex == -1)
+                accounts.add(account);
+            else if (property.indexOf('.', dotIndex + 1) == -1)
+                names.add(property);
+        }
+
+        // Only the nodes which are properties themselves are stored accounts.
+        accountProperties.keySet().retainAll(accounts);
+        return accountProperties;
     }
 
     /**
@@ -284,27 +380,21 @@ public class AccountManager
                 }
 
                 String factoryPackage = getFactoryImplPackageName(factory);
-                List<String> storedAccounts
-                    = configService
-                        .getPropertyNamesByPrefix(factoryPackage, true);
+                Map<String, List<String>> storedAccounts
+                    = getStoredAccountProperties(
+                            configService,
+                            factoryPackage);
 
                 /* Ignore the hidden accounts. */
-                for (Iterator<String> storedAccountIter =
-                    storedAccounts.iterator(); storedAccountIter.hasNext();)
+                for (List<String> storedAccountProperties
+                        : storedAccounts.values())
                 {
-                    String storedAccount = storedAccountIter.next();
-                    List<String> storedAccountProperties =
-                        configService.getPropertyNamesByPrefix(storedAccount,
-                            true);
                     boolean hidden = false;
 
                     if (!includeHidden)
                     {
-                        for (Iterator<String> storedAccountPropertyIter =
-                            storedAccountProperties.iterator();
-                            storedAccountPropertyIter.hasNext();)
+                        for (String property : storedAccountProperties)
                         {
-                            String property = storedAccountPropertyIter.next();
                             String value = configService.getString(property);
 
                             property = stripPackagePrefix(property);
@@ -335,19 +425,150 @@ public class AccountManager
     }
 
     /**
-     * Loads the accounts stored for a specific
-     * <tt>ProtocolProviderFactory</tt> and notifies the registered
-     * {@link #listeners} that the stored accounts of the specified
-     * <tt>factory</tt> have just been loaded
+     * Loads the accounts stored for specific
+     * <tt>ProtocolProviderFactory</tt>s and notifies the registered
+     * {@link #listeners} that the stored accounts of each of the specified
+     * <tt>factories</tt> have just been loaded. The accounts of different
+     * factories are loaded concurrently and so are the accounts of a factory
+     * which supports it, the others are loaded one after the other in the
+     * order they were stored.
      *
-     * @param factory the <tt>ProtocolProviderFactory</tt> to load the
+     * @param factories the <tt>ProtocolProviderFactory</tt>s to load the
      *            stored accounts of
+     * @throws InterruptedException if the current thread is interrupted while
+     *            waiting for the accounts to be loaded
      */
-    private void loadStoredAccounts(ProtocolProviderFactory factory)
+    private void loadStoredAccounts(List<ProtocolProviderFactory> factories)
+        throws InterruptedException
     {
-        doLoadStoredAccounts(factory);
+        long startTime = System.currentTimeMillis();
+        ExecutorService executor
+            = Executors.newFixedThreadPool(
+                    MAX_LOAD_STORED_ACCOUNTS_THREADS,
+                    new ThreadFactory()
+                    {
+                        public Thread newThread(Runnable runnable)
+                        {
+                            Thread thread = new Thread(runnable);
+
+                            thread.setDaemon(true);
+                            thread.setName("AccountManager.loadStoredAccount");
+                            return thread;
+                        }
+                    });
 
-        fireStoredAccountsLoaded(factory);
+        try
+        {
+            Map<ProtocolProviderFactory, List<Future<?>>> loads
+                = new LinkedHashMap<ProtocolProviderFactory,
+                                    List<Future<?>>>();
+
+            for (ProtocolProviderFactory factory : factories)
+            {
+                try
+                {
+                    loads.put(
+                            factory,
+                            submitStoredAccounts(
+                                    factory,
+                                    doLoadStoredAccounts(factory),
+                                    executor));
+                }
+                catch (Exception ex)
+                {
+
+                    /*
+                     * Swallow the exception in order to prevent a single
+                     * factory from halting the loading of subsequent
+                     * factories.
+                     */
+                    logger.error("Failed to load accounts for " + factory, ex);
+                }
+            }
+
+            for (Map.Entry<ProtocolProviderFactory, List<Future<?>>> load
+                    : loads.entrySet())
+            {
+                ProtocolProviderFactory factory = load.getKey();
+
+                try
+                {
+                    for (Future<?> future : load.getValue())
+                        future.get();
+
+                    fireStoredAccountsLoaded(factory);
+                }
+                catch (ExecutionException ex)
+                {
+                    logger.error(
+                            "Failed to load accounts for " + factory,
+                            ex.getCause());
+                }
+                catch (RuntimeException ex)
+                {
+                    logger.error("Failed to load accounts for " + factory, ex);
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        if (logger.isInfoEnabled())
+            logger.info("Loaded the stored accounts of " + factories.size()
+                    + " protocols within "
+                    + (System.currentTimeMillis() - startTime) + " ms");
+    }
+
+    /**
+     * Submits the loading of the stored accounts of a specific
+     * <tt>ProtocolProviderFactory</tt> to an <tt>ExecutorService</tt>: one
+     * task per account if the factory supports concurrent loading or a single
+     * task loading them in order otherwise.
+     *
+     * @param factory the <tt>ProtocolProviderFactory</tt> which stored the
+     *            accounts
+     * @param accountIDs the <tt>AccountID</tt>s of the accounts to load
+     * @param executor the <tt>ExecutorService</tt> to load the accounts with
+     * @return the <tt>Future</tt>s of the submitted tasks
+     */
+    private List<Future<?>> submitStoredAccounts(
+            final ProtocolProviderFactory factory,
+            final List<AccountID> accountIDs,
+            ExecutorService executor)
+    {
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+
+        if (factory.isConcurrentAccountLoadingSupported())
+        {
+            for (final AccountID accountID : accountIDs)
+            {
+                futures.add(
+                        executor.submit(
+                                new Runnable()
+                                {
+                                    public void run()
+                                    {
+                                        loadStoredAccount(factory, accountID);
+                                    }
+                                }));
+            }
+        }
+        else if (!accountIDs.isEmpty())
+        {
+            futures.add(
+                    executor.submit(
+                            new Runnable()
+                            {
+                                public void run()
+                                {
+                                    for (AccountID accountID : accountIDs)
+                                        loadStoredAccount(factory, accountID);
+                                }
+                            }));
+        }
+        return futures;
     }
 
     /**
@@ -421,12 +642,12 @@ public class AccountManager
         {
             try
             {
-                ProtocolProviderFactory factory;
+                List<ProtocolProviderFactory> factories
+                    = new ArrayList<ProtocolProviderFactory>();
 
                 synchronized (loadStoredAccountsQueue)
                 {
-                    factory = loadStoredAccountsQueue.poll();
-                    if (factory == null)
+                    if (loadStoredAccountsQueue.isEmpty())
                     {
                         /*
                          * Technically, we should be handing spurious wakeups.
@@ -451,28 +672,32 @@ public class AccountManager
                             interrupted = true;
                             break;
                         }
-                        factory = loadStoredAccountsQueue.poll();
                     }
-                    if (factory != null)
+
+                    /*
+                     * Load the stored accounts of all the factories which have
+                     * been registered so far at once.
+                     */
+                    factories.addAll(loadStoredAccountsQueue);
+                    loadStoredAccountsQueue.clear();
+                    if (!factories.isEmpty())
                         loadStoredAccountsQueue.notifyAll();
                 }
 
-                if (factory != null)
+                if (!factories.isEmpty())
                 {
                     try
                     {
-                        loadStoredAccounts(factory);
+                        loadStoredAccounts(factories);
                     }
-                    catch (Exception ex)
+                    catch (InterruptedException ex)
                     {
-
-                        /*
-                         * Swallow the exception in order to prevent a single
-                         * factory from halting the loading of subsequent
-                         * factories.
-                         */
-                        logger.error("Failed to load accounts for " + factory,
+                        logger.warn(
+                            "The loading of the stored accounts has been"
+                                + " interrupted",
                             ex);
+                        interrupted = true;
+                        break;
                     }
                 }
             }
@@ -872,6 +872,23 @@ public abstract class ProtocolProviderFactory
         return accountID;
     }
 
+    /**
+     * Determines whether the stored accounts of this factory may be loaded at
+     * the same time on several threads when the application starts. The
+     * default implementation returns <tt>false</tt> so that the accounts of a
+     * protocol are loaded one after the other in the order they were stored
+     * and protocols which share state between their providers don't have to
+     * be prepared for concurrent initialization.
+     *
+     * @return <tt>true</tt> if {@link #loadAccount(AccountID)} may be called
+     * concurrently for the stored accounts of this factory, otherwise
+     * <tt>false</tt>
+     */
+    protected boolean isConcurrentAccountLoadingSupported()
+    {
+        return false;
+    }
+
     /**
      * Creates a protocol provider for the given <tt>accountID</tt> and
      * registers it in the bundle context. This method has a persistent
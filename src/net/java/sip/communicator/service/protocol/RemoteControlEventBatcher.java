@@ -0,0 +1,300 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.service.protocol;
+
+import java.util.*;
+
+import net.java.sip.communicator.util.*;
+
+import org.jitsi.service.configuration.*;
+
+/**
+ * Queues the remote-control payloads (mouse and keyboard events) which an
+ * <tt>OperationSetDesktopSharingClient</tt> sends to the peers controlling
+ * their desktop and sends them from a thread of its own, as many of them at
+ * once as have been queued since the last send.
+ * <p>
+ * Mouse moves are coalesced: a mouse move replaces the previous one if it has
+ * not been sent yet and mouse moves are sent at most once every
+ * {@link #MOUSE_MOVE_INTERVAL_PNAME} milliseconds. Any other payload is sent
+ * as soon as possible after the mouse move which preceded it.
+ * <p>
+ * The state of a peer, including the time its last mouse move was sent, is
+ * kept until the peer is removed with {@link #remove(CallPeer)}. The thread
+ * sending the payloads runs for as long as there are peers and waits while
+ * there is nothing to send to them.
+ *
+ * @param <T> the type of the payloads
+ *
+ * @author Sebastien Vincent
+ */
+public abstract class RemoteControlEventBatcher<T>
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>RemoteControlEventBatcher</tt>
+     * class and its instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(RemoteControlEventBatcher.class);
+
+    /**
+     * The name of the property which specifies the minimum interval in
+     * milliseconds between two mouse moves sent to a peer.
+     */
+    public static final String MOUSE_MOVE_INTERVAL_PNAME
+        = "net.java.sip.communicator.service.protocol.desktopsharing"
+            + ".MOUSE_MOVE_INTERVAL";
+
+    /**
+     * The default minimum interval in milliseconds between two mouse moves
+     * sent to a peer.
+     */
+    public static final int DEFAULT_MOUSE_MOVE_INTERVAL = 40;
+
+    /**
+     * The payloads waiting to be sent to each peer.
+     */
+    private final Map<CallPeer, Batch> batches
+        = new LinkedHashMap<CallPeer, Batch>();
+
+    /**
+     * The minimum interval in milliseconds between two mouse moves sent to a
+     * peer.
+     */
+    private final long mouseMoveInterval;
+
+    /**
+     * The name of the thread sending the payloads.
+     */
+    private final String name;
+
+    /**
+     * The thread sending the payloads or <tt>null</tt> if it isn't running.
+     */
+    private Thread sendThread;
+
+    /**
+     * Initializes a new <tt>RemoteControlEventBatcher</tt> which sends mouse
+     * moves at the configured interval.
+     *
+     * @param name the name of the thread sending the payloads
+     */
+    protected RemoteControlEventBatcher(String name)
+    {
+        this(name, getConfiguredMouseMoveInterval());
+    }
+
+    /**
+     * Initializes a new <tt>RemoteControlEventBatcher</tt>.
+     *
+     * @param name the name of the thread sending the payloads
+     * @param mouseMoveInterval the minimum interval in milliseconds between
+     * two mouse moves sent to a peer
+     */
+    protected RemoteControlEventBatcher(String name, long mouseMoveInterval)
+    {
+        this.name = name;
+        this.mouseMoveInterval = mouseMoveInterval;
+    }
+
+    /**
+     * Queues a payload to be sent to a peer.
+     *
+     * @param callPeer the <tt>CallPeer</tt> to send <tt>payload</tt> to
+     * @param payload the payload to send
+     * @param mouseMove <tt>true</tt> if <tt>payload</tt> is a mouse move
+     * which may be replaced by the next one
+     */
+    public void add(CallPeer callPeer, T payload, boolean mouseMove)
+    {
+        synchronized (batches)
+        {
+            Batch batch = batches.get(callPeer);
+
+            if (batch == null)
+            {
+                batch = new Batch();
+                batches.put(callPeer, batch);
+            }
+            if (mouseMove)
+            {
+                batch.mouseMove = payload;
+            }
+            else
+            {
+                // the payload must not overtake the last mouse move
+                if (batch.mouseMove != null)
+                {
+                    batch.payloads.add(batch.mouseMove);
+                    batch.mouseMove = null;
+                    batch.lastMouseMoveTime = System.currentTimeMillis();
+                }
+                batch.payloads.add(payload);
+            }
+
+            if (sendThread == null)
+            {
+                sendThread
+                    = new Thread(name)
+                    {
+                        @Override
+                        public void run()
+                        {
+                            runInSendThread();
+                        }
+                    };
+
+                sendThread.setDaemon(true);
+                sendThread.start();
+            }
+            else
+            {
+                batches.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Forgets about a peer and drops the payloads which have not been sent to
+     * it yet.
+     *
+     * @param callPeer the <tt>CallPeer</tt> to forget about
+     */
+    public void remove(CallPeer callPeer)
+    {
+        synchronized (batches)
+        {
+            if (batches.remove(callPeer) != null)
+                batches.notifyAll();
+        }
+    }
+
+    /**
+     * Sends payloads to a peer.
+     *
+     * @param callPeer the <tt>CallPeer</tt> to send <tt>payloads</tt> to
+     * @param payloads the payloads to send in the order they were queued
+     */
+    protected abstract void send(CallPeer callPeer, List<T> payloads);
+
+    /**
+     * Sends the queued payloads as they are ready to be sent and returns once
+     * all the peers have been removed.
+     */
+    private void runInSendThread()
+    {
+        while (true)
+        {
+            CallPeer callPeer = null;
+            List<T> payloads = null;
+
+            synchronized (batches)
+            {
+                if (batches.isEmpty())
+                {
+                    if (sendThread == Thread.currentThread())
+                        sendThread = null;
+                    return;
+                }
+
+                long now = System.currentTimeMillis();
+                long wait = 0;
+
+                for (Map.Entry<CallPeer, Batch> e : batches.entrySet())
+                {
+                    Batch batch = e.getValue();
+                    long mouseMoveTime
+                        = batch.lastMouseMoveTime + mouseMoveInterval;
+
+                    if ((batch.mouseMove != null) && (mouseMoveTime <= now))
+                    {
+                        batch.payloads.add(batch.mouseMove);
+                        batch.mouseMove = null;
+                        batch.lastMouseMoveTime = now;
+                    }
+                    if (!batch.payloads.isEmpty())
+                    {
+                        callPeer = e.getKey();
+                        payloads = batch.payloads;
+                        batch.payloads = new ArrayList<T>();
+                        break;
+                    }
+                    if ((batch.mouseMove != null)
+                            && ((wait == 0) || (mouseMoveTime - now < wait)))
+                    {
+                        wait = mouseMoveTime - now;
+                    }
+                }
+
+                if (payloads == null)
+                {
+                    // Wait for the next mouse move or payload to be due.
+                    try
+                    {
+                        batches.wait(wait);
+                    }
+                    catch (InterruptedException ie)
+                    {
+                    }
+                    continue;
+                }
+            }
+
+            try
+            {
+                send(callPeer, payloads);
+            }
+            catch (Throwable t)
+            {
+                if (t instanceof ThreadDeath)
+                    throw (ThreadDeath) t;
+                logger.error("Failed to send remote-control events", t);
+            }
+        }
+    }
+
+    /**
+     * Returns the configured minimum interval in milliseconds between two
+     * mouse moves sent to a peer.
+     *
+     * @return the configured minimum interval in milliseconds between two
+     * mouse moves sent to a peer
+     */
+    private static long getConfiguredMouseMoveInterval()
+    {
+        ConfigurationService cfg
+            = ProtocolProviderActivator.getConfigurationService();
+
+        return
+            (cfg == null)
+                ? DEFAULT_MOUSE_MOVE_INTERVAL
+                : cfg.getInt(
+                        MOUSE_MOVE_INTERVAL_PNAME,
+                        DEFAULT_MOUSE_MOVE_INTERVAL);
+    }
+
+    /**
+     * The payloads waiting to be sent to a peer.
+     */
+    private class Batch
+    {
+        /**
+         * The payloads to send as soon as possible.
+         */
+        private List<T> payloads = new ArrayList<T>();
+
+        /**
+         * The last mouse move which has not been sent yet.
+         */
+        private T mouseMove;
+
+        /**
+         * The time the last mouse move was sent.
+         */
+        private long lastMouseMoveTime = 0;
+    }
+}
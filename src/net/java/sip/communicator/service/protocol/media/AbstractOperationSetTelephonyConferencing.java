@@ -11,6 +11,7 @@ import java.util.*;
 
 import net.java.sip.communicator.service.protocol.*;
 import net.java.sip.communicator.service.protocol.event.*;
+import net.java.sip.communicator.util.*;
 
 /**
  * Represents a default implementation of
@@ -47,6 +48,21 @@ public abstract class AbstractOperationSetTelephonyConferencing<
                CallListener,
                CallChangeListener
 {
+    /**
+     * The <tt>Logger</tt> used by the
+     * <tt>AbstractOperationSetTelephonyConferencing</tt> class and its
+     * instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(AbstractOperationSetTelephonyConferencing.class);
+
+    /**
+     * The time in milliseconds by which the notifications about the changes
+     * of a conference are delayed so that the changes which happen in quick
+     * succession, such as several peers joining at once, are notified about
+     * together.
+     */
+    private static final long NOTIFY_DELAY = 200;
 
     /**
      * The <tt>OperationSetBasicTelephony</tt> implementation which this
@@ -61,6 +77,19 @@ public abstract class AbstractOperationSetTelephonyConferencing<
      */
     protected final ProtocolProviderServiceT parentProvider;
 
+    /**
+     * The <tt>Call</tt>s whose <tt>CallPeer</tt>s are to be notified about
+     * the changes of the conference once {@link #NOTIFY_DELAY} expires.
+     */
+    private final Set<Call> notifyAllCalls = new HashSet<Call>();
+
+    /**
+     * The <tt>Timer</tt> which notifies the <tt>CallPeer</tt>s of
+     * {@link #notifyAllCalls} or <tt>null</tt> if no notification has been
+     * scheduled yet.
+     */
+    private Timer notifyAllTimer;
+
     /**
      * The <tt>CallPeerListener</tt> which listens to modifications in the
      * properties/state of <tt>CallPeer</tt> so that NOTIFY requests can be sent
@@ -94,7 +123,7 @@ public abstract class AbstractOperationSetTelephonyConferencing<
                             && !state.equals(CallPeerState.FAILED))
                     {
                         AbstractOperationSetTelephonyConferencing.this
-                                .notifyAll(call);
+                                .scheduleNotifyAll(call);
                     }
                 }
             }
@@ -339,6 +368,17 @@ public abstract class AbstractOperationSetTelephonyConferencing<
                 basicTelephony = null;
                 basicTelephonyChanged(oldValue, null);
             }
+
+            // There is no one to notify without a registration.
+            synchronized (notifyAllCalls)
+            {
+                if (notifyAllTimer != null)
+                {
+                    notifyAllTimer.cancel();
+                    notifyAllTimer = null;
+                }
+                notifyAllCalls.clear();
+            }
         }
     }
 
@@ -389,7 +429,7 @@ public abstract class AbstractOperationSetTelephonyConferencing<
     {
         Call call = event.getSourceCall();
 
-        notifyAll(call);
+        scheduleNotifyAll(call);
         notifyCallsInGroup(call);
     }
 
@@ -421,7 +461,7 @@ public abstract class AbstractOperationSetTelephonyConferencing<
 
             if (call != null)
             {
-                notifyAll(call);
+                scheduleNotifyAll(call);
                 notifyCallsInGroup(call);
             }
         }
@@ -538,7 +578,7 @@ public abstract class AbstractOperationSetTelephonyConferencing<
                         OperationSetTelephonyConferencing.class);
                 if(opSet != null)
                 {
-                    opSet.notifyAll(c);
+                    opSet.scheduleNotifyAll(c);
                 }
             }
         }
@@ -551,4 +591,60 @@ public abstract class AbstractOperationSetTelephonyConferencing<
      * @param call the <tt>Call</tt>
      */
     protected abstract void notifyAll(Call call);
+
+    /**
+     * Schedules the notification of all <tt>CallPeer</tt>s associated with
+     * and established in a specific <tt>Call</tt> about the changes of the
+     * conference. The notification is delayed by {@link #NOTIFY_DELAY} and
+     * the changes of the <tt>Call</tt> which happen in the meantime are
+     * notified about together with it.
+     *
+     * @param call the <tt>Call</tt>
+     */
+    protected void scheduleNotifyAll(final Call call)
+    {
+        synchronized (notifyAllCalls)
+        {
+            if (!notifyAllCalls.add(call))
+                return;
+
+            if (notifyAllTimer == null)
+            {
+                notifyAllTimer
+                    = new Timer(
+                            AbstractOperationSetTelephonyConferencing.class
+                                .getSimpleName(),
+                            true);
+            }
+            notifyAllTimer.schedule(
+                    new TimerTask()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            synchronized (notifyAllCalls)
+                            {
+                                notifyAllCalls.remove(call);
+                            }
+                            try
+                            {
+                                AbstractOperationSetTelephonyConferencing.this
+                                        .notifyAll(call);
+                            }
+                            catch (RuntimeException re)
+                            {
+                                /*
+                                 * Don't let the failure to notify about one
+                                 * Call kill the Timer of all of them.
+                                 */
+                                logger.error(
+                                        "Failed to notify the CallPeers of "
+                                            + call,
+                                        re);
+                            }
+                        }
+                    },
+                    NOTIFY_DELAY);
+        }
+    }
 }
@@ -0,0 +1,175 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.service.protocol.media;
+
+import java.util.*;
+
+/**
+ * Remembers the users of a conference which a conference focus has last
+ * notified a specific subscriber about so that the subsequent notifications
+ * only describe the users which have been added, changed or removed since,
+ * in the manner of the <tt>state="partial"</tt> conference-info documents of
+ * RFC 4575. The users are compared by their XML representations which the
+ * protocol implementations generate anyway.
+ *
+ * @author Lyubomir Marinov
+ */
+public class ConferenceInfoDelta
+{
+    /**
+     * The XML representations of the users the subscriber has last been
+     * notified about, by entity, or <tt>null</tt> if the subscriber hasn't
+     * been notified about the full state of the conference yet.
+     */
+    private Map<String, String> notifiedUsers;
+
+    /**
+     * The value of the <tt>version</tt> attribute of the next notification.
+     */
+    private int version = 1;
+
+    /**
+     * Determines what the next notification of the subscriber is to describe
+     * given the current users of the conference. The first notification and
+     * the notifications which are explicitly requested to do so describe the
+     * full state of the conference; the others describe the users which have
+     * been added or changed since the last notification and the users which
+     * have been removed.
+     *
+     * @param users the XML representations of the current users of the
+     * conference by entity, in the order they are to be described in
+     * @param full <tt>true</tt> to describe the full state of the conference
+     * even if the subscriber has already been notified about it
+     * @return the <tt>Update</tt> which describes the next notification or
+     * <tt>null</tt> if the state of the conference hasn't changed since the
+     * last notification and there is nothing to notify about
+     */
+    public synchronized Update update(Map<String, String> users, boolean full)
+    {
+        Map<String, String> updatedUsers;
+
+        if (full || (notifiedUsers == null))
+        {
+            full = true;
+            updatedUsers = users;
+        }
+        else
+        {
+            updatedUsers = new LinkedHashMap<String, String>();
+            for (Map.Entry<String, String> user : users.entrySet())
+            {
+                String entity = user.getKey();
+                String xml = user.getValue();
+
+                if (!xml.equals(notifiedUsers.get(entity)))
+                    updatedUsers.put(entity, xml);
+            }
+            for (String entity : notifiedUsers.keySet())
+            {
+                if (!users.containsKey(entity))
+                    updatedUsers.put(entity, null);
+            }
+            if (updatedUsers.isEmpty())
+                return null;
+        }
+
+        notifiedUsers = new HashMap<String, String>(users);
+        return new Update(full, version++, updatedUsers);
+    }
+
+    /**
+     * Forgets what the subscriber has been notified about so that the next
+     * notification describes the full state of the conference. The
+     * <tt>version</tt> attribute keeps increasing so that the subscriber
+     * doesn't take the next notification for an old one.
+     */
+    public synchronized void reset()
+    {
+        notifiedUsers = null;
+    }
+
+    /**
+     * Describes a notification about the state of a conference.
+     */
+    public static class Update
+    {
+        /**
+         * Whether the notification describes the full state of the
+         * conference.
+         */
+        private final boolean full;
+
+        /**
+         * The value of the <tt>version</tt> attribute of the notification.
+         */
+        private final int version;
+
+        /**
+         * The XML representations of the users described by the
+         * notification, by entity; the removed users have <tt>null</tt>
+         * representations.
+         */
+        private final Map<String, String> users;
+
+        /**
+         * Initializes a new <tt>Update</tt>.
+         *
+         * @param full whether the notification describes the full state of
+         * the conference
+         * @param version the value of the <tt>version</tt> attribute of the
+         * notification
+         * @param users the XML representations of the users described by the
+         * notification, by entity
+         */
+        private Update(boolean full, int version, Map<String, String> users)
+        {
+            this.full = full;
+            this.version = version;
+            this.users = users;
+        }
+
+        /**
+         * Determines whether the notification describes the full state of
+         * the conference i.e. is a <tt>state="full"</tt> document rather than
+         * a <tt>state="partial"</tt> one.
+         *
+         * @return <tt>true</tt> if the notification describes the full state
+         * of the conference; otherwise, <tt>false</tt>
+         */
+        public boolean isFull()
+        {
+            return full;
+        }
+
+        /**
+         * Returns the value of the <tt>version</tt> attribute of the
+         * notification.
+         *
+         * @return the value of the <tt>version</tt> attribute of the
+         * notification
+         */
+        public int getVersion()
+        {
+            return version;
+        }
+
+        /**
+         * Returns the XML representations of the users described by the
+         * notification, by entity, in the order they are to be described in.
+         * The users which have been removed since the last notification, and
+         * are to be described with <tt>state="deleted"</tt>, have
+         * <tt>null</tt> representations.
+         *
+         * @return the XML representations of the users described by the
+         * notification, by entity
+         */
+        public Map<String, String> getUsers()
+        {
+            return users;
+        }
+    }
+}
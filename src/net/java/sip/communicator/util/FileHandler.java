@@ -16,12 +16,29 @@ import java.util.logging.*;
  * home directory. If the pattern option is missing creates log
  * directory in sip-communicator's home directory.
  * If the directory is missing create it.
+ * <p>
+ * The records are formatted and written to the file by a background thread so
+ * that the logging threads don't wait for the disk or for each other. They
+ * wait in a bounded ring buffer: when it is full the records below
+ * <tt>WARNING</tt> are dropped and the others wait for room. The number of
+ * dropped records is written to the file once there is room again.
  *
  * @author Damian Minkov
  */
 public class FileHandler
     extends java.util.logging.FileHandler
 {
+    /**
+     * The default maximum number of records waiting to be written.
+     */
+    private static final int DEFAULT_QUEUE_CAPACITY = 8192;
+
+    /**
+     * Specifies the maximum number of records waiting to be written (defaults
+     * to {@link #DEFAULT_QUEUE_CAPACITY}).
+     */
+    private static int queueCapacity = -1;
+
     /**
      * Specifies how many output files to cycle through (defaults to 1).
      */
@@ -49,6 +66,43 @@ public class FileHandler
      */
     public static String pattern = null;
 
+    /**
+     * The records waiting to be written, in a ring buffer starting at
+     * {@link #queueHead}. Also the lock of the fields of the queue.
+     */
+    private final LogRecord[] queue = new LogRecord[getQueueCapacity()];
+
+    /**
+     * The index in {@link #queue} of the next record to be written.
+     */
+    private int queueHead = 0;
+
+    /**
+     * The number of records waiting to be written.
+     */
+    private int queueSize = 0;
+
+    /**
+     * The number of records which have been queued to be written.
+     */
+    private long queuedCount = 0;
+
+    /**
+     * The number of records which have been dropped because the queue was
+     * full.
+     */
+    private long droppedCount = 0;
+
+    /**
+     * Whether this handler has been closed.
+     */
+    private boolean closed = false;
+
+    /**
+     * The thread which writes the queued records to the file.
+     */
+    private final Thread writerThread;
+
     /**
      * Initialize a <tt>FileHandler</tt> to write to a set of files.  When
      * (approximately) the given limit has been written to one file,
@@ -76,6 +130,8 @@ public class FileHandler
         throws IOException, SecurityException
     {
         super(pattern, limit, count);
+
+        writerThread = startWriterThread();
     }
 
     /**
@@ -93,6 +149,250 @@ public class FileHandler
                 SecurityException
     {
         super(getPattern(), getLimit(), getCount());
+
+        writerThread = startWriterThread();
+    }
+
+    /**
+     * Queues a <tt>LogRecord</tt> to be written to the file by the writer
+     * thread.
+     *
+     * @param record description of the log event. A null record is
+     * silently ignored and is not published
+     */
+    @Override
+    public void publish(LogRecord record)
+    {
+        if (!isLoggable(record))
+            return;
+
+        // The caller of a record which hasn't been logged through our Logger
+        // can only be inferred while it is on the stack.
+        record.getSourceClassName();
+
+        boolean mayDrop
+            = (record.getLevel().intValue() < Level.WARNING.intValue());
+
+        synchronized (queue)
+        {
+            while (!mayDrop && !closed && (queueSize == queue.length))
+            {
+                try
+                {
+                    queue.wait();
+                }
+                catch (InterruptedException ie)
+                {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (closed)
+                return;
+            if (queueSize == queue.length)
+            {
+                droppedCount++;
+                return;
+            }
+
+            queue[(queueHead + queueSize) % queue.length] = record;
+            queueSize++;
+            queuedCount++;
+            queue.notifyAll();
+        }
+    }
+
+    /**
+     * Writes the queued records and closes the file.
+     *
+     * @exception  SecurityException  if a security manager exists and if
+     * the caller does not have <tt>LoggingPermission("control")</tt>.
+     */
+    @Override
+    public void close()
+        throws SecurityException
+    {
+        synchronized (queue)
+        {
+            closed = true;
+            queue.notifyAll();
+        }
+
+        if (Thread.currentThread() != writerThread)
+        {
+            try
+            {
+                writerThread.join();
+            }
+            catch (InterruptedException ie)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        super.close();
+    }
+
+    /**
+     * Returns the number of records which have been queued to be written.
+     *
+     * @return the number of records which have been queued to be written
+     */
+    public long getQueuedRecordCount()
+    {
+        synchronized (queue)
+        {
+            return queuedCount;
+        }
+    }
+
+    /**
+     * Returns the number of records which have been dropped because too many
+     * records were waiting to be written.
+     *
+     * @return the number of records which have been dropped
+     */
+    public long getDroppedRecordCount()
+    {
+        synchronized (queue)
+        {
+            return droppedCount;
+        }
+    }
+
+    /**
+     * Starts the thread which writes the queued records to the file.
+     *
+     * @return the started thread
+     */
+    private Thread startWriterThread()
+    {
+        Thread thread
+            = new Thread(getClass().getName())
+            {
+                @Override
+                public void run()
+                {
+                    writeQueuedRecords();
+                }
+            };
+
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Writes the queued records to the file until this handler is closed and
+     * all the queued records have been written. Takes all the waiting records
+     * at once so that the logging threads meet the writer thread once per
+     * batch instead of once per record.
+     */
+    private void writeQueuedRecords()
+    {
+        LogRecord[] batch = new LogRecord[queue.length];
+        long reportedDroppedCount = 0;
+
+        while (true)
+        {
+            int batchSize;
+            long totalDropped;
+
+            synchronized (queue)
+            {
+                while (!closed && (queueSize == 0))
+                {
+                    try
+                    {
+                        queue.wait();
+                    }
+                    catch (InterruptedException ie)
+                    {
+                    }
+                }
+                if (queueSize == 0)
+                    break;
+
+                batchSize = queueSize;
+                for (int i = 0; i < batchSize; i++)
+                {
+                    int index = (queueHead + i) % queue.length;
+
+                    batch[i] = queue[index];
+                    queue[index] = null;
+                }
+                queueHead = (queueHead + batchSize) % queue.length;
+                queueSize = 0;
+                totalDropped = droppedCount;
+                queue.notifyAll();
+            }
+
+            if (totalDropped != reportedDroppedCount)
+            {
+                LogRecord dropped
+                    = new LogRecord(
+                            Level.WARNING,
+                            "Dropped "
+                                + (totalDropped - reportedDroppedCount)
+                                + " log records because too many records"
+                                + " were waiting to be written.");
+
+                dropped.setLoggerName(FileHandler.class.getName());
+                dropped.setSourceClassName(FileHandler.class.getName());
+                dropped.setSourceMethodName(null);
+                write(dropped);
+                reportedDroppedCount = totalDropped;
+            }
+
+            for (int i = 0; i < batchSize; i++)
+            {
+                write(batch[i]);
+                batch[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Formats and writes a record to the file.
+     *
+     * @param record the record to write
+     */
+    private void write(LogRecord record)
+    {
+        // the writer thread mustn't die or the queue would never be emptied
+        try
+        {
+            super.publish(record);
+        }
+        catch (RuntimeException ex)
+        {
+            reportError(null, ex, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    /**
+     * Returns the maximum number of records waiting to be written or the
+     * default {@link #DEFAULT_QUEUE_CAPACITY}.
+     * @return the maximum number of records waiting to be written
+     */
+    private static int getQueueCapacity()
+    {
+        if(queueCapacity == -1)
+        {
+            String capacityStr = LogManager.getLogManager().getProperty(
+                            FileHandler.class.getName() + ".queueCapacity");
+
+            // default value
+            queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+            try
+            {
+                queueCapacity = Math.max(1, Integer.parseInt(capacityStr));
+            }
+            catch (Exception ex) {}
+        }
+
+        return queueCapacity;
     }
 
     /**
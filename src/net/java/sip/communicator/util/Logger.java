@@ -81,7 +81,9 @@ public class Logger
     {
         if (loggerDelegate.isLoggable(Level.FINEST)) {
             StackTraceElement caller = new Throwable().getStackTrace()[1];
-            loggerDelegate.log(Level.FINEST, "[entry] " + caller.getMethodName());
+            loggerDelegate.logp(Level.FINEST, caller.getClassName(),
+                    caller.getMethodName(),
+                    "[entry] " + caller.getMethodName());
         }
     }
 
@@ -92,7 +94,9 @@ public class Logger
     {
         if (loggerDelegate.isLoggable(Level.FINEST)) {
             StackTraceElement caller = new Throwable().getStackTrace()[1];
-            loggerDelegate.log(Level.FINEST, "[exit] " + caller.getMethodName());
+            loggerDelegate.logp(Level.FINEST, caller.getClassName(),
+                    caller.getMethodName(),
+                    "[exit] " + caller.getMethodName());
         }
     }
 
@@ -118,7 +122,7 @@ public class Logger
      */
     public void trace(Object msg)
     {
-        loggerDelegate.finer(msg!=null?msg.toString():"null");
+        log(Level.FINER, msg, null);
     }
 
     /**
@@ -129,7 +133,7 @@ public class Logger
      */
     public void trace(Object msg, Throwable t)
     {
-        loggerDelegate.log(Level.FINER, msg!=null?msg.toString():"null", t);
+        log(Level.FINER, msg, t);
     }
 
     /**
@@ -154,7 +158,7 @@ public class Logger
      */
     public void debug(Object msg)
     {
-        loggerDelegate.fine(msg!=null?msg.toString():"null");
+        log(Level.FINE, msg, null);
     }
 
     /**
@@ -165,7 +169,7 @@ public class Logger
      */
     public void debug(Object msg, Throwable t)
     {
-        loggerDelegate.log(Level.FINE, msg!=null?msg.toString():"null", t);
+        log(Level.FINE, msg, t);
     }
 
     /**
@@ -190,7 +194,7 @@ public class Logger
      */
     public void info(Object msg)
     {
-        loggerDelegate.info(msg!=null?msg.toString():"null");
+        log(Level.INFO, msg, null);
     }
 
     /**
@@ -201,7 +205,7 @@ public class Logger
      */
     public void info(Object msg, Throwable t)
     {
-        loggerDelegate.log(Level.INFO, msg!=null?msg.toString():"null", t);
+        log(Level.INFO, msg, t);
     }
 
     /**
@@ -215,7 +219,7 @@ public class Logger
      */
     public void warn(Object msg)
     {
-        loggerDelegate.warning(msg!=null?msg.toString():"null");
+        log(Level.WARNING, msg, null);
     }
 
     /**
@@ -226,7 +230,7 @@ public class Logger
      */
     public void warn(Object msg, Throwable t)
     {
-        loggerDelegate.log(Level.WARNING, msg!=null?msg.toString():"null", t);
+        log(Level.WARNING, msg, t);
     }
 
     /**
@@ -240,7 +244,7 @@ public class Logger
      */
     public void error(Object msg)
     {
-        loggerDelegate.severe(msg!=null?msg.toString():"null");
+        log(Level.SEVERE, msg, null);
     }
 
     /**
@@ -251,7 +255,7 @@ public class Logger
      */
     public void error(Object msg, Throwable t)
     {
-        loggerDelegate.log(Level.SEVERE, msg!=null?msg.toString():"null", t);
+        log(Level.SEVERE, msg, t);
     }
 
     /**
@@ -265,7 +269,7 @@ public class Logger
      */
     public void fatal(Object msg)
     {
-        loggerDelegate.severe(msg!=null?msg.toString():"null");
+        log(Level.SEVERE, msg, null);
     }
 
     /**
@@ -276,7 +280,31 @@ public class Logger
      */
     public void fatal(Object msg, Throwable t)
     {
-        loggerDelegate.log(Level.SEVERE, msg!=null?msg.toString():"null", t);
+        log(Level.SEVERE, msg, t);
+    }
+
+    /**
+     * Logs a message if this logger is enabled for its level. The name of
+     * this logger, which is usually the name of the logging class, is given
+     * as the source class of the message so that it doesn't have to be
+     * inferred by walking the stack.
+     *
+     * @param level the level of the message
+     * @param msg the message to log
+     * @param t the <tt>Throwable</tt> associated with the message or
+     * <tt>null</tt>
+     */
+    private void log(Level level, Object msg, Throwable t)
+    {
+        if (loggerDelegate.isLoggable(level))
+        {
+            loggerDelegate.logp(
+                    level,
+                    loggerDelegate.getName(),
+                    null,
+                    (msg != null) ? msg.toString() : "null",
+                    t);
+        }
     }
 
     /**
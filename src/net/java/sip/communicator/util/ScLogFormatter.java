@@ -7,7 +7,6 @@
 package net.java.sip.communicator.util;
 
 import java.io.*;
-import java.text.*;
 import java.util.*;
 import java.util.logging.*;
 
@@ -15,6 +14,12 @@ import java.util.logging.*;
  * Print a brief summary of the LogRecord in a human readable. The summary will
  * typically be on a single line (unless it's too long :) ... what I meant to
  * say is that we don't add any line breaks).
+ * <p>
+ * The formatter is called for every record so it avoids locking and
+ * allocating more than the resulting string: the hour, minutes and seconds
+ * are only computed when the second of the records changes and the caller is
+ * taken from the source of the record, which our <tt>Logger</tt> fills in,
+ * instead of walking the stack.
  *
  * @author Emil Ivov
  */
@@ -25,62 +30,73 @@ public class ScLogFormatter
     static long startTime = System.currentTimeMillis();
 
     private static String lineSeparator = System.getProperty("line.separator");
-    private static DecimalFormat twoDigFmt = new DecimalFormat("00");
-    private static DecimalFormat threeDigFmt = new DecimalFormat("000");
+
+    /**
+     * The prefix which is left out of the names of our loggers.
+     */
+    private static final String LOGGER_NAME_PREFIX
+        = "net.java.sip.communicator.";
+
+    /**
+     * The second of the last formatted record and its text.
+     */
+    private volatile FormattedSecond lastSecond;
 
     /**
      * Format the given LogRecord.
      * @param record the log record to be formatted.
      * @return a formatted log record
      */
-    public synchronized String format(LogRecord record)
+    public String format(LogRecord record)
     {
-        StringBuffer sb = new StringBuffer();
+        String message = record.getMessage();
+        StringBuilder sb
+            = new StringBuilder(
+                    80 + ((message == null) ? 4 : message.length()));
+
+        //the time of the record
+        long millis = record.getMillis();
+        long second = millis / 1000;
+        FormattedSecond formattedSecond = lastSecond;
 
-        //current time
-        Calendar cal = Calendar.getInstance();
-        int hour = cal.get(Calendar.HOUR_OF_DAY);
-        int minutes = cal.get(Calendar.MINUTE);
-        int seconds = cal.get(Calendar.SECOND);
-        int millis = cal.get(Calendar.MILLISECOND);
+        if ((formattedSecond == null) || (formattedSecond.second != second))
+        {
+            formattedSecond = new FormattedSecond(second);
+            lastSecond = formattedSecond;
+        }
+        sb.append(formattedSecond.text);
 
-        sb.append(twoDigFmt.format(hour)).append(':');
-        sb.append(twoDigFmt.format(minutes)).append(':');
-        sb.append(twoDigFmt.format(seconds)).append('.');
-        sb.append(threeDigFmt.format(millis)).append(' ');
+        int millisOfSecond = (int) (millis - second * 1000);
+
+        if (millisOfSecond < 100)
+            sb.append('0');
+        if (millisOfSecond < 10)
+            sb.append('0');
+        sb.append(millisOfSecond).append(' ');
 
         //log level
         sb.append(record.getLevel().getLocalizedName());
         sb.append(": ");
 
-        //caller method
-        int lineNumber = inferCaller(record);
+        //caller
         String loggerName = record.getLoggerName();
 
         if(loggerName == null)
             loggerName = record.getSourceClassName();
 
-        if(loggerName.startsWith("net.java.sip.communicator."))
-        {
-            sb.append(loggerName.substring("net.java.sip.communicator."
-                                           .length()));
-        }
+        if((loggerName != null) && loggerName.startsWith(LOGGER_NAME_PREFIX))
+            sb.append(loggerName, LOGGER_NAME_PREFIX.length(),
+                    loggerName.length());
         else
-            sb.append(record.getLoggerName());
+            sb.append(loggerName);
 
-        if (record.getSourceMethodName() != null)
-        {
-            sb.append(".");
-            sb.append(record.getSourceMethodName());
-
-            //include the line number if we have it.
-            if(lineNumber != -1)
-                sb.append("().").append(Integer.toString(lineNumber));
-            else
-                sb.append("()");
-        }
-        sb.append(" ");
-        sb.append(record.getMessage());
+        String sourceMethodName = record.getSourceMethodName();
+
+        if (sourceMethodName != null)
+            sb.append('.').append(sourceMethodName).append("()");
+
+        sb.append(' ');
+        sb.append(message);
         sb.append(lineSeparator);
         if (record.getThrown() != null)
         {
@@ -100,49 +116,54 @@ public class ScLogFormatter
     }
 
     /**
-     * Try to extract the name of the class and method that called the current
-     * log statement.
-     *
-     * @param record the logrecord where class and method name should be stored.
+     * Appends a number of two digits.
      *
-     * @return the line number that the call was made from in the caller.
+     * @param sb the <tt>StringBuilder</tt> to append to
+     * @param value the number between 0 and 99 to append
+     * @return <tt>sb</tt>
      */
-    private int inferCaller(LogRecord record)
+    private static StringBuilder appendTwoDigits(StringBuilder sb, int value)
     {
-        // Get the stack trace.
-        StackTraceElement stack[] = (new Throwable()).getStackTrace();
-
-        //the line number that the caller made the call from
-        int lineNumber = -1;
+        if (value < 10)
+            sb.append('0');
+        return sb.append(value);
+    }
 
-        // First, search back to a method in the SIP Communicator Logger class.
-        int ix = 0;
-        while (ix < stack.length)
-        {
-            StackTraceElement frame = stack[ix];
-            String cname = frame.getClassName();
-            if (cname.equals("net.java.sip.communicator.util.Logger"))
-            {
-                break;
-            }
-            ix++;
-        }
-        // Now search for the first frame before the SIP Communicator Logger class.
-        while (ix < stack.length)
+    /**
+     * The hour, minutes and seconds of a second formatted as
+     * <tt>HH:mm:ss.</tt>.
+     */
+    private static class FormattedSecond
+    {
+        /**
+         * The second since the epoch.
+         */
+        final long second;
+
+        /**
+         * The hour, minutes and seconds of {@link #second}.
+         */
+        final String text;
+
+        /**
+         * Formats a second.
+         *
+         * @param second the second since the epoch
+         */
+        FormattedSecond(long second)
         {
-            StackTraceElement frame = stack[ix];
-            lineNumber=stack[ix].getLineNumber();
-            String cname = frame.getClassName();
-            if (!cname.equals("net.java.sip.communicator.util.Logger"))
-            {
-                // We've found the relevant frame.
-                record.setSourceClassName(cname);
-                record.setSourceMethodName(frame.getMethodName());
-                break;
-            }
-            ix++;
-        }
+            this.second = second;
 
-        return lineNumber;
+            Calendar cal = Calendar.getInstance();
+
+            cal.setTimeInMillis(second * 1000);
+
+            StringBuilder sb = new StringBuilder(9);
+
+            appendTwoDigits(sb, cal.get(Calendar.HOUR_OF_DAY)).append(':');
+            appendTwoDigits(sb, cal.get(Calendar.MINUTE)).append(':');
+            appendTwoDigits(sb, cal.get(Calendar.SECOND)).append('.');
+            text = sb.toString();
+        }
     }
 }
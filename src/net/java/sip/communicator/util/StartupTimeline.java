@@ -0,0 +1,319 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.util;
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+
+/**
+ * Records the timeline of the startup of the application: when each bundle
+ * was activated and how long its activation took, which bundles had their
+ * activation deferred until their first use and when the milestones such as
+ * the contact list becoming usable were reached. The times are measured from
+ * the start of the JVM so that they include the time spent before the OSGi
+ * framework was started.
+ * <p>
+ * The bundle events are reported by the startup bundle which is the first to
+ * be started and the milestones by the bundles which reach them. When a report
+ * file has been set, the timeline is written to it every time a milestone is
+ * reached so that cold-start regressions can be tracked by starting the
+ * application and reading the report. Nothing is recorded anymore once all
+ * the milestones have been reached because the startup is over.
+ * </p>
+ *
+ * @author Lyubomir Marinov
+ */
+public class StartupTimeline
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>StartupTimeline</tt> class for
+     * logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(StartupTimeline.class);
+
+    /**
+     * The milestone reached when the main window shows the contact list and
+     * the user can start using it.
+     */
+    public static final String CONTACT_LIST_USABLE = "contact list usable";
+
+    /**
+     * The milestone reached when the OSGi framework has started all the
+     * bundles which aren't activated lazily.
+     */
+    public static final String FRAMEWORK_STARTED = "framework started";
+
+    /**
+     * The milestones which end the startup once they have all been reached.
+     */
+    private static final List<String> ALL_MILESTONES
+        = Arrays.asList(FRAMEWORK_STARTED, CONTACT_LIST_USABLE);
+
+    /**
+     * The kind of the entries of the activations of bundles.
+     */
+    private static final String BUNDLE = "bundle";
+
+    /**
+     * The kind of the entries of the bundles whose activations have been
+     * deferred until their first use.
+     */
+    private static final String DEFERRED = "deferred";
+
+    /**
+     * The kind of the entries of the milestones.
+     */
+    private static final String MILESTONE = "milestone";
+
+    /**
+     * The time in milliseconds the JVM was started at.
+     */
+    private static final long jvmStartTime = getJvmStartTime();
+
+    /**
+     * The entries of the timeline in the order they were started.
+     */
+    private static final List<Entry> entries = new ArrayList<Entry>();
+
+    /**
+     * The entries of the activations of bundles which have started but not
+     * completed, by bundle.
+     */
+    private static final Map<String, Entry> activations
+        = new HashMap<String, Entry>();
+
+    /**
+     * The names of the milestones which have been reached.
+     */
+    private static final Set<String> milestones = new HashSet<String>();
+
+    /**
+     * Whether the startup is over and nothing is to be recorded anymore.
+     */
+    private static boolean over = false;
+
+    /**
+     * The file the timeline is written to or <tt>null</tt> if it isn't to be
+     * written.
+     */
+    private static File reportFile;
+
+    /**
+     * Records that the activation of a bundle has started.
+     *
+     * @param bundle the name of the bundle
+     */
+    public static synchronized void bundleStarting(String bundle)
+    {
+        if (over)
+            return;
+
+        Entry entry = new Entry(BUNDLE, bundle);
+
+        entries.add(entry);
+        activations.put(bundle, entry);
+    }
+
+    /**
+     * Records that the activation of a bundle has completed.
+     *
+     * @param bundle the name of the bundle
+     */
+    public static synchronized void bundleStarted(String bundle)
+    {
+        Entry entry = activations.remove(bundle);
+
+        if (entry != null)
+            entry.complete();
+    }
+
+    /**
+     * Records that the activation of a bundle has been deferred until its
+     * first use.
+     *
+     * @param bundle the name of the bundle
+     */
+    public static synchronized void bundleDeferred(String bundle)
+    {
+        if (over)
+            return;
+
+        entries.add(new Entry(DEFERRED, bundle));
+    }
+
+    /**
+     * Records that a milestone has been reached and, if a report file has
+     * been set, writes the timeline. A milestone is only recorded the first
+     * time it is reached and before the startup is over.
+     *
+     * @param milestone the name of the milestone
+     */
+    public static synchronized void milestone(String milestone)
+    {
+        if (over || !milestones.add(milestone))
+            return;
+
+        Entry entry = new Entry(MILESTONE, milestone);
+
+        entries.add(entry);
+        if (logger.isInfoEnabled())
+        {
+            logger.info(
+                    "Startup milestone " + milestone + " reached after "
+                        + entry.start + " ms");
+        }
+
+        if (reportFile != null)
+            writeReport(reportFile);
+
+        if (milestones.containsAll(ALL_MILESTONES))
+        {
+            over = true;
+            entries.clear();
+            activations.clear();
+        }
+    }
+
+    /**
+     * Sets the file the timeline is to be written to when milestones are
+     * reached.
+     *
+     * @param file the file the timeline is to be written to or <tt>null</tt>
+     * if it isn't to be written
+     */
+    public static synchronized void setReportFile(File file)
+    {
+        reportFile = file;
+    }
+
+    /**
+     * Writes the timeline to a file, one tab-separated entry per line: the
+     * kind of the entry, the time it started at and its duration in
+     * milliseconds, and the name of its bundle or milestone. The activations
+     * of the bundles which haven't completed yet and the entries without a
+     * duration have a duration of <tt>-1</tt>.
+     *
+     * @param file the file to write the timeline to
+     */
+    private static void writeReport(File file)
+    {
+        PrintWriter out = null;
+
+        try
+        {
+            File parent = file.getParentFile();
+
+            if (parent != null)
+                parent.mkdirs();
+
+            out = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+            out.println("# Startup timeline in milliseconds since the JVM"
+                    + " started at " + new Date(jvmStartTime));
+            out.println("# kind\tstart\tduration\tname");
+            for (Entry entry : entries)
+            {
+                out.print(entry.kind);
+                out.print('\t');
+                out.print(entry.start);
+                out.print('\t');
+                out.print(entry.duration);
+                out.print('\t');
+                out.println(entry.name);
+            }
+        }
+        catch (IOException ioe)
+        {
+            logger.error("Failed to write the startup timeline to " + file,
+                    ioe);
+        }
+        finally
+        {
+            if (out != null)
+                out.close();
+        }
+    }
+
+    /**
+     * Returns the time the JVM was started at.
+     *
+     * @return the time in milliseconds the JVM was started at or the current
+     * time if it isn't known
+     */
+    private static long getJvmStartTime()
+    {
+        try
+        {
+            return ManagementFactory.getRuntimeMXBean().getStartTime();
+        }
+        catch (Throwable t)
+        {
+            return System.currentTimeMillis();
+        }
+    }
+
+    /** Prevents the creation of <tt>StartupTimeline</tt> instances. */
+    private StartupTimeline()
+    {
+    }
+
+    /**
+     * An entry of the timeline.
+     */
+    private static class Entry
+    {
+        /**
+         * The kind of this entry.
+         */
+        final String kind;
+
+        /**
+         * The name of the bundle or the milestone of this entry.
+         */
+        final String name;
+
+        /**
+         * The time in milliseconds since the start of the JVM this entry
+         * started at.
+         */
+        final long start;
+
+        /**
+         * The value of {@link System#nanoTime()} when this entry started,
+         * which measures its duration more precisely than the current time.
+         */
+        private final long startNanoTime = System.nanoTime();
+
+        /**
+         * The duration in milliseconds of this entry or <tt>-1</tt> if it
+         * hasn't completed or doesn't have a duration.
+         */
+        long duration = -1;
+
+        /**
+         * Initializes a new entry which starts now.
+         *
+         * @param kind the kind of the entry
+         * @param name the name of the bundle or the milestone of the entry
+         */
+        Entry(String kind, String name)
+        {
+            this.kind = kind;
+            this.name = name;
+            this.start = System.currentTimeMillis() - jvmStartTime;
+        }
+
+        /**
+         * Records that this entry has completed now.
+         */
+        void complete()
+        {
+            duration = (System.nanoTime() - startNanoTime) / 1000000;
+        }
+    }
+}
@@ -89,6 +89,7 @@ public class MetaContactListServiceLick
         addTestSuite(TestMetaContactList.class);
         addTestSuite(TestMetaContact.class);
         addTestSuite(TestMetaContactGroup.class);
+        addTestSuite(TestOrderStatisticTree.class);
 
         //tests that verify proper support of multiple protocol providers
         addTest(TestSupportForMultipleProviders.suite());
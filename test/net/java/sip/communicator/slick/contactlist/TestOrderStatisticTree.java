@@ -0,0 +1,163 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.contactlist;
+
+import java.util.*;
+
+import junit.framework.*;
+import net.java.sip.communicator.impl.contactlist.*;
+
+/**
+ * Tests the <tt>OrderStatisticTree</tt> which keeps the child contacts of the
+ * meta contact groups sorted by mirroring random adds and removes in a
+ * <tt>TreeSet</tt> and comparing the ranks and the elements at each index.
+ *
+ * @author agent
+ */
+public class TestOrderStatisticTree
+    extends TestCase
+{
+    /**
+     * The seed of the random operations so that a failure can be reproduced.
+     */
+    private static final long SEED = 20121019L;
+
+    /**
+     * The tree under test.
+     */
+    private OrderStatisticTree<Integer> tree;
+
+    /**
+     * The sorted set which mirrors {@link #tree}.
+     */
+    private TreeSet<Integer> mirror;
+
+    /**
+     * Create a TestOrderStatisticTree wrapper over the test with the
+     * specified name.
+     * @param name the name of the test to run
+     */
+    public TestOrderStatisticTree(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Creates an empty tree and its mirror.
+     * @throws Exception if anything goes wrong.
+     */
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        tree = new OrderStatisticTree<Integer>();
+        mirror = new TreeSet<Integer>();
+    }
+
+    /**
+     * Makes sure that an empty tree has no elements and rejects any index.
+     */
+    public void testEmpty()
+    {
+        assertEquals(0, tree.size());
+        assertEquals(-1, tree.indexOf(1));
+        assertFalse(tree.remove(1));
+        assertTrue(tree.toList().isEmpty());
+
+        try
+        {
+            tree.get(0);
+            fail("get(0) of an empty tree didn't throw");
+        }
+        catch (IndexOutOfBoundsException expected)
+        {
+        }
+    }
+
+    /**
+     * Makes sure that ascending and descending adds, which unbalance a plain
+     * binary search tree, keep the ranks and the order right.
+     */
+    public void testSequentialAdds()
+    {
+        for (int i = 0; i < 500; i++)
+            assertEquals(mirror.add(i), tree.add(i));
+        for (int i = 1000; i >= 500; i--)
+            assertEquals(mirror.add(i), tree.add(i));
+        assertFalse(tree.add(250));
+
+        assertMirrored();
+    }
+
+    /**
+     * Makes sure that random adds and removes of a small range of elements,
+     * so that many of them are duplicates or missing, keep the tree the same
+     * as its mirror, comparing the ranks and the elements at each index
+     * periodically.
+     */
+    public void testRandomOperations()
+    {
+        Random random = new Random(SEED);
+
+        for (int i = 0; i < 20000; i++)
+        {
+            Integer element = random.nextInt(1000);
+
+            if (random.nextInt(3) == 0)
+                assertEquals(mirror.remove(element), tree.remove(element));
+            else
+                assertEquals(mirror.add(element), tree.add(element));
+
+            assertEquals(mirror.size(), tree.size());
+            assertEquals(mirror.contains(element), tree.contains(element));
+            if (tree.contains(element))
+            {
+                int index = mirror.headSet(element).size();
+
+                assertEquals(index, tree.indexOf(element));
+                assertEquals(element, tree.get(index));
+            }
+
+            if (i % 1000 == 0)
+                assertMirrored();
+        }
+        assertMirrored();
+
+        // empty the tree in random order
+        List<Integer> elements = new ArrayList<Integer>(mirror);
+
+        Collections.shuffle(elements, random);
+        for (Integer element : elements)
+        {
+            assertTrue(tree.remove(element));
+            mirror.remove(element);
+        }
+        assertEquals(0, tree.size());
+        assertMirrored();
+    }
+
+    /**
+     * Asserts that {@link #tree} has the elements of {@link #mirror} in the
+     * same order and at the same indices.
+     */
+    private void assertMirrored()
+    {
+        List<Integer> expected = new ArrayList<Integer>(mirror);
+
+        assertEquals(expected, tree.toList());
+        assertEquals(expected.size(), tree.size());
+        for (int index = 0; index < expected.size(); index++)
+        {
+            Integer element = expected.get(index);
+
+            assertEquals(element, tree.get(index));
+            assertEquals(index, tree.indexOf(element));
+        }
+        assertEquals(-1, tree.indexOf(-1));
+        assertEquals(-1, tree.indexOf(Integer.MAX_VALUE));
+    }
+}
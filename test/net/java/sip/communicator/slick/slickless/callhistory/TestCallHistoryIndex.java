@@ -0,0 +1,379 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.callhistory;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.util.*;
+
+import junit.framework.*;
+import net.java.sip.communicator.impl.callhistory.*;
+import net.java.sip.communicator.service.history.*;
+import net.java.sip.communicator.service.history.records.*;
+import net.java.sip.communicator.util.*;
+
+/**
+ * Tests the summary of the calls with a peer maintained by the
+ * <tt>CallHistoryIndex</tt> class as calls are added and when the index is
+ * read from its file or rebuilt from the call history, and measures paging
+ * through the call history.
+ *
+ * @author agent
+ */
+public class TestCallHistoryIndex extends TestCase
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>TestCallHistoryIndex</tt> class for
+     * logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(TestCallHistoryIndex.class);
+
+    /**
+     * The names of the properties of the call history records.
+     */
+    private static final String[] PROPERTY_NAMES
+        = new String[] { "accountUID", "callStart", "callEnd", "dir",
+            "callParticipantIDs", "callParticipantStart",
+            "callParticipantEnd", "callParticipantStates", "callEndReason",
+            "callParticipantNames"};
+
+    /**
+     * The records of the stand-in call history.
+     */
+    private final List<HistoryRecord> history = new ArrayList<HistoryRecord>();
+
+    /**
+     * The file of the index.
+     */
+    private File file;
+
+    /**
+     * Create a TestCallHistoryIndex wrapper over the test with the specified
+     * name.
+     * @param name the name of the test to run
+     */
+    public TestCallHistoryIndex(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Creates an empty call history and a file for the index.
+     * @throws Exception if anything goes wrong.
+     */
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        history.clear();
+        file = File.createTempFile("callhistory", ".index");
+        file.delete();
+    }
+
+    /**
+     * Deletes the file of the index.
+     * @throws Exception if anything goes wrong.
+     */
+    protected void tearDown() throws Exception
+    {
+        file.delete();
+
+        super.tearDown();
+    }
+
+    /**
+     * Makes sure that the calls added to the index update the summary of the
+     * calls with their peers.
+     */
+    public void testSummary()
+    {
+        CallHistoryIndex index = new CallHistoryIndex(null, PROPERTY_NAMES);
+
+        index.load(standInHistory());
+        assertNull(index.getPeerSummary("alice@example.com"));
+
+        index.add(call(1000, 1000, "in", "sip:alice@example.com", 487));
+        index.add(call(2000, 5000, "out", "sip:alice@example.com", 200));
+        index.add(call(3000, 3000, "in", "sip:bob@example.com", 200));
+
+        CallHistoryIndex.PeerSummary alice
+            = index.getPeerSummary("SIP:Alice@example.com;transport=tcp");
+
+        assertEquals(2, alice.getCallCount());
+        assertEquals(1, alice.getMissedCallCount());
+        assertEquals(2000, alice.getLastCallTime().getTime());
+
+        // answered calls and calls cleared normally aren't missed
+        CallHistoryIndex.PeerSummary bob
+            = index.getPeerSummary("bob@example.com");
+
+        assertEquals(1, bob.getCallCount());
+        assertEquals(0, bob.getMissedCallCount());
+        assertEquals(3000, bob.getLastCallTime().getTime());
+    }
+
+    /**
+     * Makes sure that the summary is restored when the index is read from its
+     * file and rebuilt when the call history has been purged since.
+     */
+    public void testReload()
+    {
+        CallHistoryIndex index = new CallHistoryIndex(file, PROPERTY_NAMES);
+
+        index.load(standInHistory());
+        for (HistoryRecord record
+                : new HistoryRecord[]
+                        {
+                            call(1000, 1000, "in", "alice@example.com", 487),
+                            call(2000, 2000, "in", "alice@example.com", 487),
+                            call(3000, 4000, "out", "bob@example.com", 200)
+                        })
+        {
+            history.add(record);
+            index.add(record);
+        }
+
+        index = new CallHistoryIndex(file, PROPERTY_NAMES);
+        index.load(standInHistory());
+
+        CallHistoryIndex.PeerSummary alice
+            = index.getPeerSummary("alice@example.com");
+
+        assertEquals(2, alice.getCallCount());
+        assertEquals(2, alice.getMissedCallCount());
+        assertEquals(2000, alice.getLastCallTime().getTime());
+        assertEquals(1, index.getPeerSummary("bob@example.com").getCallCount());
+
+        // purge the history and make a call
+        history.clear();
+        history.add(call(5000, 6000, "out", "alice@example.com", 200));
+
+        index = new CallHistoryIndex(file, PROPERTY_NAMES);
+        index.load(standInHistory());
+
+        alice = index.getPeerSummary("alice@example.com");
+        assertEquals(1, alice.getCallCount());
+        assertEquals(0, alice.getMissedCallCount());
+        assertEquals(5000, alice.getLastCallTime().getTime());
+        assertNull(index.getPeerSummary("bob@example.com"));
+    }
+
+    /**
+     * Makes sure that the most recent records written before a time are
+     * found, the most recent first, as the pages of the history are read.
+     */
+    public void testFindLastBefore()
+    {
+        CallHistoryIndex index = new CallHistoryIndex(null, PROPERTY_NAMES);
+
+        index.load(standInHistory());
+        for (int i = 1; i <= 10; i++)
+            index.add(call(i * 1000, i * 1000 + 500, "out", "bob", 200));
+
+        List<HistoryRecord> page = index.findLastBefore(5500, 3);
+
+        assertEquals(3, page.size());
+        assertEquals(4500, page.get(0).getTimestamp());
+        assertEquals(2500, page.get(2).getTimestamp());
+
+        // the next page ends at the start of the history
+        page = index.findLastBefore(page.get(2).getTimestamp(), 3);
+        assertEquals(1, page.size());
+        assertEquals(1500, page.get(0).getTimestamp());
+
+        assertTrue(index.findLastBefore(1500, 3).isEmpty());
+        assertEquals(10, index.findLastBefore(Long.MAX_VALUE, 20).size());
+    }
+
+    /**
+     * Pages backwards through a call history of 20000 calls, 50 calls at a
+     * time, and makes sure that the pages read through the index are the same
+     * as the ones read by querying all the calls before the page and keeping
+     * the last ones, the way the meta history used to. Logs the figures.
+     */
+    public void testPaging()
+    {
+        int callCount = 20000;
+        int pageSize = 50;
+        int pageCount = 40;
+        CallHistoryIndex index = new CallHistoryIndex(null, PROPERTY_NAMES);
+
+        index.load(standInHistory());
+        for (int i = 0; i < callCount; i++)
+        {
+            HistoryRecord record
+                = call(i * 1000L, i * 1000L + 500, "out", "bob", 200);
+
+            history.add(record);
+            index.add(record);
+        }
+
+        long start = System.nanoTime();
+        long timestamp = Long.MAX_VALUE;
+        List<List<HistoryRecord>> pages = new ArrayList<List<HistoryRecord>>();
+
+        for (int i = 0; i < pageCount; i++)
+        {
+            List<HistoryRecord> page = index.findLastBefore(timestamp, pageSize);
+
+            pages.add(page);
+            timestamp = page.get(page.size() - 1).getTimestamp();
+        }
+
+        long indexEnd = System.nanoTime();
+        long recordsRead = 0;
+
+        timestamp = Long.MAX_VALUE;
+        for (int i = 0; i < pageCount; i++)
+        {
+            Vector<HistoryRecord> before = new Vector<HistoryRecord>();
+
+            for (QueryResultSet<HistoryRecord> rs
+                        = find(Long.MIN_VALUE, timestamp);
+                    rs.hasNext();)
+                before.add(rs.next());
+            recordsRead += before.size();
+
+            List<HistoryRecord> page = new ArrayList<HistoryRecord>();
+
+            for (int j = before.size() - 1;
+                    (j >= 0) && (page.size() < pageSize);
+                    j--)
+                page.add(before.get(j));
+            assertEquals(pages.get(i), page);
+            timestamp = page.get(page.size() - 1).getTimestamp();
+        }
+
+        long scanEnd = System.nanoTime();
+        String result
+            = pageCount + " pages of " + pageSize + " calls out of "
+                + callCount + ": " + (indexEnd - start) / 1000
+                + " us through the index, " + (scanEnd - indexEnd) / 1000
+                + " us reading " + recordsRead + " calls before each page";
+
+        logger.info(result);
+        assertTrue(result, (indexEnd - start) < (scanEnd - indexEnd));
+    }
+
+    /**
+     * Returns a call history record written when the call ended.
+     *
+     * @param start the start time of the call
+     * @param end the end time of the call
+     * @param dir the direction of the call
+     * @param peer the address of the peer of the call
+     * @param endReason the reason the call ended for
+     * @return a call history record with the specified properties
+     */
+    private static HistoryRecord call(
+            long start,
+            long end,
+            String dir,
+            String peer,
+            int endReason)
+    {
+        return
+            new HistoryRecord(
+                    PROPERTY_NAMES,
+                    new String[]
+                            {
+                                "account",
+                                String.valueOf(start),
+                                String.valueOf(end),
+                                dir,
+                                peer,
+                                String.valueOf(start),
+                                String.valueOf(end),
+                                "Disconnected",
+                                String.valueOf(endReason),
+                                peer
+                            },
+                    end);
+    }
+
+    /**
+     * Returns a stand-in call history which holds {@link #history}. Only the
+     * period queries of its reader are implemented, the other methods return
+     * <tt>null</tt>.
+     *
+     * @return a stand-in call history
+     */
+    private History standInHistory()
+    {
+        final HistoryReader reader
+            = (HistoryReader)
+                Proxy.newProxyInstance(
+                        HistoryReader.class.getClassLoader(),
+                        new Class<?>[] { HistoryReader.class },
+                        new InvocationHandler()
+                        {
+                            public Object invoke(
+                                    Object proxy,
+                                    Method method,
+                                    Object[] args)
+                            {
+                                String name = method.getName();
+
+                                if ("findByStartDate".equals(name))
+                                {
+                                    return find(
+                                            ((Date) args[0]).getTime(),
+                                            Long.MAX_VALUE);
+                                }
+                                else if ("findByPeriod".equals(name))
+                                {
+                                    return find(
+                                            ((Date) args[0]).getTime(),
+                                            ((Date) args[1]).getTime());
+                                }
+                                return null;
+                            }
+                        });
+
+        return
+            (History)
+                Proxy.newProxyInstance(
+                        History.class.getClassLoader(),
+                        new Class<?>[] { History.class },
+                        new InvocationHandler()
+                        {
+                            public Object invoke(
+                                    Object proxy,
+                                    Method method,
+                                    Object[] args)
+                            {
+                                return
+                                    "getReader".equals(method.getName())
+                                        ? reader
+                                        : null;
+                            }
+                        });
+    }
+
+    /**
+     * Returns the records of {@link #history} written within a period.
+     *
+     * @param start the start of the period, excluded
+     * @param end the end of the period, excluded
+     * @return the records of {@link #history} written after <tt>start</tt>
+     * and before <tt>end</tt>
+     */
+    private QueryResultSet<HistoryRecord> find(long start, long end)
+    {
+        Vector<HistoryRecord> records = new Vector<HistoryRecord>();
+
+        for (HistoryRecord record : history)
+        {
+            long timestamp = record.getTimestamp();
+
+            if ((timestamp > start) && (timestamp < end))
+                records.add(record);
+        }
+        return new DefaultQueryResultSet<HistoryRecord>(records);
+    }
+}
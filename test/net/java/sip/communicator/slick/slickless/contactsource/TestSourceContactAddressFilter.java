@@ -0,0 +1,165 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.contactsource;
+
+import java.lang.reflect.*;
+import java.util.*;
+
+import junit.framework.*;
+import net.java.sip.communicator.service.contactsource.*;
+import net.java.sip.communicator.service.protocol.*;
+
+/**
+ * Tests the de-duplication of the search results of the contact sources by
+ * address by the <tt>SourceContactAddressFilter</tt> class.
+ *
+ * @author agent
+ */
+public class TestSourceContactAddressFilter extends TestCase
+{
+    /**
+     * The filter under test, which normalizes phone numbers by removing the
+     * characters other than digits and <tt>+</tt>.
+     */
+    private SourceContactAddressFilter filter;
+
+    /**
+     * Create a TestSourceContactAddressFilter wrapper over the test with the
+     * specified name.
+     * @param name the name of the test to run
+     */
+    public TestSourceContactAddressFilter(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Creates the filter under test.
+     * @throws Exception if anything goes wrong.
+     */
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        PhoneNumberI18nService phoneNumberService
+            = (PhoneNumberI18nService)
+                Proxy.newProxyInstance(
+                        PhoneNumberI18nService.class.getClassLoader(),
+                        new Class<?>[] { PhoneNumberI18nService.class },
+                        new InvocationHandler()
+                        {
+                            public Object invoke(
+                                    Object proxy,
+                                    Method method,
+                                    Object[] args)
+                            {
+                                String name = method.getName();
+                                String number = (String) args[0];
+
+                                if ("isPhoneNumber".equals(name))
+                                    return number.matches("[+0-9 ()-]+");
+                                else if ("normalize".equals(name))
+                                    return number.replaceAll("[^+0-9]", "");
+                                return null;
+                            }
+                        });
+
+        filter = new SourceContactAddressFilter(phoneNumberService);
+    }
+
+    /**
+     * Makes sure that a contact whose addresses have all been found by
+     * another contact source is filtered out and that a contact with one new
+     * address isn't.
+     */
+    public void testDuplicates()
+    {
+        ContactSourceService addressBook = contactSource("AddressBook");
+        ContactSourceService ldap = contactSource("LDAP");
+
+        assertTrue(
+                filter.add(
+                        contact(
+                                addressBook,
+                                "+1 (555) 010-0100",
+                                "John.Doe@example.com")));
+        assertFalse(
+                filter.add(
+                        contact(ldap, "+15550100100", "john.doe@example.com")));
+        assertTrue(
+                filter.add(
+                        contact(ldap, "+15550100100", "jdoe@example.com")));
+
+        // contacts without addresses can't be compared
+        assertTrue(filter.add(contact(ldap)));
+    }
+
+    /**
+     * Makes sure that two calls to the same number found by the call history
+     * are both shown, even after a contact with the number has been shown.
+     */
+    public void testCallHistory()
+    {
+        ContactSourceService callHistory
+            = contactSource(ContactSourceService.CALL_HISTORY);
+
+        assertTrue(filter.add(contact(callHistory, "+1 555 010 0100")));
+        assertTrue(filter.add(contact(callHistory, "+15550100100")));
+
+        assertTrue(
+                filter.add(
+                        contact(contactSource("AddressBook"), "+15550100100")));
+        assertTrue(filter.add(contact(callHistory, "+15550100100")));
+    }
+
+    /**
+     * Returns a search result of a contact source.
+     *
+     * @param contactSource the contact source which has found the contact
+     * @param addresses the addresses of the contact
+     * @return a contact with the specified addresses found by
+     * <tt>contactSource</tt>
+     */
+    private static SourceContact contact(
+            ContactSourceService contactSource,
+            String... addresses)
+    {
+        List<ContactDetail> details = new ArrayList<ContactDetail>();
+
+        for (String address : addresses)
+            details.add(new ContactDetail(address));
+        return new GenericSourceContact(contactSource, "Contact", details);
+    }
+
+    /**
+     * Returns a stand-in contact source which only has an identifier.
+     *
+     * @param identifier the identifier of the contact source
+     * @return a stand-in contact source with the specified identifier
+     */
+    private static ContactSourceService contactSource(final String identifier)
+    {
+        return
+            (ContactSourceService)
+                Proxy.newProxyInstance(
+                        ContactSourceService.class.getClassLoader(),
+                        new Class<?>[] { ContactSourceService.class },
+                        new InvocationHandler()
+                        {
+                            public Object invoke(
+                                    Object proxy,
+                                    Method method,
+                                    Object[] args)
+                            {
+                                return
+                                    "getIdentifier".equals(method.getName())
+                                        ? identifier
+                                        : null;
+                            }
+                        });
+    }
+}
@@ -0,0 +1,363 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.googlecontacts;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.regex.*;
+
+import junit.framework.*;
+import net.java.sip.communicator.impl.googlecontacts.*;
+import net.java.sip.communicator.service.googlecontacts.*;
+
+import com.google.gdata.client.contacts.*;
+import com.sun.net.httpserver.*;
+
+/**
+ * Tests the synchronization of a <tt>GoogleContactsReplica</tt> against a
+ * local HTTP server standing in for Google Contacts: the first
+ * synchronization retrieves all the contacts and their photos, the next ones
+ * only the changes and the stored contacts are searched without going to the
+ * network.
+ *
+ * @author Sebastien Vincent
+ */
+public class TestGoogleContactsReplica extends TestCase
+{
+    /**
+     * The path of the contacts feed on the stand-in server.
+     */
+    private static final String FEED_PATH = "/m8/feeds/contacts/default/full";
+
+    /**
+     * The path of the photos on the stand-in server.
+     */
+    private static final String PHOTOS_PATH = "/m8/feeds/photos/media/default/";
+
+    /**
+     * The photo of all the contacts.
+     */
+    private static final byte[] PHOTO = { 1, 2, 3, 4 };
+
+    /**
+     * The stand-in server.
+     */
+    private HttpServer server;
+
+    /**
+     * The query strings of the requests of the contacts feed, in the order
+     * they were received.
+     */
+    private final List<String> feedQueries = new ArrayList<String>();
+
+    /**
+     * The number of photo requests received by the stand-in server.
+     */
+    private int photoRequests = 0;
+
+    /**
+     * The contacts feed the stand-in server answers with.
+     */
+    private String feed;
+
+    /**
+     * The directory the replica stores the contacts in.
+     */
+    private File directory;
+
+    /**
+     * The URL of the contacts feed.
+     */
+    private URL feedURL;
+
+    /**
+     * The service the contacts are retrieved with, which isn't authenticated
+     * since the stand-in server doesn't check it.
+     */
+    private ContactsService service;
+
+    /**
+     * Create a TestGoogleContactsReplica wrapper over the test with the
+     * specified name.
+     * @param name the name of the test to run
+     */
+    public TestGoogleContactsReplica(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Starts the stand-in server.
+     * @throws Exception if anything goes wrong.
+     */
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        server = HttpServer.create(
+                new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0),
+                0);
+        server.createContext("/m8/feeds/", new HttpHandler()
+        {
+            public void handle(HttpExchange exchange)
+                throws IOException
+            {
+                handleRequest(exchange);
+            }
+        });
+        server.start();
+
+        directory = File.createTempFile("googlecontacts", null);
+        directory.delete();
+        feedURL = new URL(getServerURL() + FEED_PATH);
+        service = new ContactsService("TestGoogleContactsReplica");
+    }
+
+    /**
+     * Stops the stand-in server and deletes the stored contacts.
+     * @throws Exception if anything goes wrong.
+     */
+    protected void tearDown() throws Exception
+    {
+        server.stop(0);
+        delete(directory);
+
+        super.tearDown();
+    }
+
+    /**
+     * Synchronizes twice and makes sure that the second synchronization only
+     * asks for the changes and applies them, including a deletion.
+     */
+    public void testIncrementalSync()
+    {
+        GoogleContactsReplica replica
+            = new GoogleContactsReplica(feedURL, directory);
+
+        feed = feed("2012-01-01T10:00:00.000Z",
+                entry("1", "Bob", "Smith", "bob@example.com", false)
+                + entry("2", "Carol", "Jones", "carol@example.com", false));
+        assertTrue(replica.sync(service));
+
+        assertEquals(1, feedQueries.size());
+        assertFalse(feedQueries.get(0).contains("updated-min"));
+        assertEquals(2, search(replica, "example").size());
+
+        feed = feed("2012-01-02T10:00:00.000Z",
+                entry("1", "Robert", "Smith", "bob@example.com", false)
+                + entry("2", "Carol", "Jones", "carol@example.com", true));
+        assertTrue(replica.sync(service));
+
+        assertEquals(2, feedQueries.size());
+        assertTrue(feedQueries.get(1).contains(
+                "updated-min=2012-01-01T10:00:00.000Z"));
+        assertTrue(feedQueries.get(1).contains("showdeleted=true"));
+
+        List<GoogleContactsEntry> found = search(replica, "example");
+
+        assertEquals(1, found.size());
+        assertEquals("Robert", found.get(0).getGivenName());
+        assertTrue(search(replica, "Carol").isEmpty());
+    }
+
+    /**
+     * Synchronizes, then searches a new replica over the same directory while
+     * the stand-in server is stopped and makes sure that the contacts and
+     * their photos are read from the disk.
+     */
+    public void testStoredReplica()
+    {
+        GoogleContactsReplica replica
+            = new GoogleContactsReplica(feedURL, directory);
+
+        feed = feed("2012-01-01T10:00:00.000Z",
+                entry("1", "Bob", "Smith", "bob@example.com", false));
+        assertTrue(replica.sync(service));
+        assertEquals(1, photoRequests);
+
+        // the photo hasn't changed so it mustn't be downloaded again
+        assertTrue(replica.sync(service));
+        assertEquals(1, photoRequests);
+
+        server.stop(0);
+
+        GoogleContactsReplica stored
+            = new GoogleContactsReplica(feedURL, directory);
+
+        stored.load();
+
+        List<GoogleContactsEntry> found = search(stored, "bob");
+
+        assertEquals(1, found.size());
+        assertEquals("Smith", found.get(0).getFamilyName());
+        assertTrue(Arrays.equals(PHOTO, stored.getPhoto(found.get(0))));
+        assertFalse("the server is stopped", stored.sync(service));
+    }
+
+    /**
+     * Synchronizes, deletes the replica and makes sure that the stored
+     * contacts and photos are gone and aren't stored again.
+     */
+    public void testDelete()
+    {
+        GoogleContactsReplica replica
+            = new GoogleContactsReplica(feedURL, directory);
+
+        feed = feed("2012-01-01T10:00:00.000Z",
+                entry("1", "Bob", "Smith", "bob@example.com", false));
+        assertTrue(replica.sync(service));
+        assertTrue(directory.list().length > 0);
+
+        replica.delete();
+
+        assertFalse(directory.exists());
+        assertTrue(search(replica, "bob").isEmpty());
+        assertFalse("the replica is deleted", replica.sync(service));
+        assertFalse(directory.exists());
+    }
+
+    /**
+     * Searches a replica.
+     *
+     * @param replica the replica to search
+     * @param query the string to search for
+     * @return the contacts matching <tt>query</tt>
+     */
+    private static List<GoogleContactsEntry> search(
+            GoogleContactsReplica replica,
+            String query)
+    {
+        return replica.search(
+                new GoogleQuery(
+                        Pattern.compile(
+                                Pattern.quote(query),
+                                Pattern.CASE_INSENSITIVE)),
+                -1,
+                null);
+    }
+
+    /**
+     * Returns a contacts feed.
+     *
+     * @param updated the time of the feed
+     * @param entries the entries of the feed
+     * @return the Atom document of the feed
+     */
+    private static String feed(String updated, String entries)
+    {
+        return "<?xml version='1.0' encoding='UTF-8'?>"
+            + "<feed xmlns='http://www.w3.org/2005/Atom'"
+            + " xmlns:gd='http://schemas.google.com/g/2005'"
+            + " xmlns:gContact='http://schemas.google.com/contact/2008'>"
+            + "<id>alice@example.com</id>"
+            + "<updated>" + updated + "</updated>"
+            + "<title>Alice's Contacts</title>"
+            + entries
+            + "</feed>";
+    }
+
+    /**
+     * Returns a contacts feed entry.
+     *
+     * @param id the id of the contact
+     * @param givenName the given name of the contact
+     * @param familyName the family name of the contact
+     * @param mail the mail address of the contact
+     * @param deleted whether the contact has been deleted
+     * @return the Atom element of the entry
+     */
+    private String entry(
+            String id,
+            String givenName,
+            String familyName,
+            String mail,
+            boolean deleted)
+    {
+        return "<entry>"
+            + "<id>http://www.google.com/m8/feeds/contacts/alice%40example.com"
+            + "/base/" + id + "</id>"
+            + "<updated>2012-01-01T09:00:00.000Z</updated>"
+            + "<category scheme='http://schemas.google.com/g/2005#kind'"
+            + " term='http://schemas.google.com/contact/2008#contact'/>"
+            + "<title>" + givenName + " " + familyName + "</title>"
+            + "<link rel='http://schemas.google.com/contacts/2008/rel#photo'"
+            + " type='image/*' href='" + getServerURL() + PHOTOS_PATH + id
+            + "' gd:etag='&quot;photo" + id + "&quot;'/>"
+            + (deleted ? "<gd:deleted/>" : "")
+            + "<gd:name>"
+            + "<gd:fullName>" + givenName + " " + familyName + "</gd:fullName>"
+            + "<gd:givenName>" + givenName + "</gd:givenName>"
+            + "<gd:familyName>" + familyName + "</gd:familyName>"
+            + "</gd:name>"
+            + "<gd:email rel='http://schemas.google.com/g/2005#work'"
+            + " address='" + mail + "'/>"
+            + "</entry>";
+    }
+
+    /**
+     * Returns the URL of the stand-in server.
+     *
+     * @return the URL of the stand-in server
+     */
+    private String getServerURL()
+    {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Records a request to the stand-in server and answers it.
+     *
+     * @param exchange the request and its response.
+     * @throws IOException if the response cannot be sent.
+     */
+    private void handleRequest(HttpExchange exchange)
+        throws IOException
+    {
+        String path = exchange.getRequestURI().getRawPath();
+        byte[] content;
+
+        if (path.startsWith(PHOTOS_PATH))
+        {
+            photoRequests++;
+            exchange.getResponseHeaders().set("Content-Type", "image/png");
+            content = PHOTO;
+        }
+        else
+        {
+            feedQueries.add(
+                    URLDecoder.decode(
+                            exchange.getRequestURI().getRawQuery(),
+                            "UTF-8"));
+            exchange.getResponseHeaders().set(
+                    "Content-Type",
+                    "application/atom+xml; charset=UTF-8");
+            content = feed.getBytes("UTF-8");
+        }
+
+        exchange.sendResponseHeaders(200, content.length);
+        exchange.getResponseBody().write(content);
+        exchange.close();
+    }
+
+    /**
+     * Deletes a file or a directory and its content.
+     *
+     * @param file the file or the directory to delete
+     */
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+
+        if (children != null)
+        {
+            for (File child : children)
+                delete(child);
+        }
+        file.delete();
+    }
+}
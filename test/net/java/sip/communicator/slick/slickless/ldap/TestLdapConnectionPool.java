@@ -0,0 +1,197 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.ldap;
+
+import java.lang.reflect.*;
+import java.util.*;
+
+import javax.naming.ldap.*;
+
+import junit.framework.*;
+import net.java.sip.communicator.impl.ldap.*;
+
+/**
+ * Tests the checkout and the return of connections to an LDAP directory by
+ * the <tt>LdapConnectionPool</tt> class, which hands out connections it
+ * creates through a stand-in for the directory.
+ *
+ * @author agent
+ */
+public class TestLdapConnectionPool extends TestCase
+{
+    /**
+     * The pool under test.
+     */
+    private LdapConnectionPool pool;
+
+    /**
+     * The connections created by {@link #pool}, in the order they were
+     * created.
+     */
+    private final List<LdapContext> created = new ArrayList<LdapContext>();
+
+    /**
+     * The connections which have been closed.
+     */
+    private final Set<LdapContext> closed = new HashSet<LdapContext>();
+
+    /**
+     * The number of times the request controls of a connection have been
+     * reset.
+     */
+    private int controlResets;
+
+    /**
+     * Create a TestLdapConnectionPool wrapper over the test with the
+     * specified name.
+     * @param name the name of the test to run
+     */
+    public TestLdapConnectionPool(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Creates a pool which creates stand-in connections.
+     * @throws Exception if anything goes wrong.
+     */
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        created.clear();
+        closed.clear();
+        controlResets = 0;
+        pool
+            = new LdapConnectionPool(new Hashtable<String, String>(), "test")
+            {
+                @Override
+                protected LdapContext createContext()
+                {
+                    LdapContext context = createStandInContext();
+
+                    created.add(context);
+                    return context;
+                }
+            };
+    }
+
+    /**
+     * Makes sure that a returned connection is reused instead of creating a
+     * new one and that the request controls of its last search are reset.
+     * @throws Exception if anything goes wrong.
+     */
+    public void testReuse() throws Exception
+    {
+        LdapContext first = pool.borrow();
+        LdapContext second = pool.borrow();
+
+        assertNotSame(first, second);
+        assertEquals(2, created.size());
+
+        pool.release(first, false);
+        assertEquals(1, controlResets);
+
+        assertSame(first, pool.borrow());
+        assertEquals(2, created.size());
+        assertTrue(closed.isEmpty());
+    }
+
+    /**
+     * Makes sure that a broken connection is closed rather than reused.
+     * @throws Exception if anything goes wrong.
+     */
+    public void testBroken() throws Exception
+    {
+        LdapContext context = pool.borrow();
+
+        pool.release(context, true);
+
+        assertTrue(closed.contains(context));
+        assertNotSame(context, pool.borrow());
+        assertEquals(2, created.size());
+    }
+
+    /**
+     * Makes sure that the connections returned beyond the maximum number of
+     * idle connections are closed.
+     * @throws Exception if anything goes wrong.
+     */
+    public void testMaxIdle() throws Exception
+    {
+        List<LdapContext> borrowed = new ArrayList<LdapContext>();
+
+        for (int i = 0; i < 6; i++)
+            borrowed.add(pool.borrow());
+        for (LdapContext context : borrowed)
+            pool.release(context, false);
+
+        assertEquals(2, closed.size());
+        assertTrue(closed.contains(borrowed.get(4)));
+        assertTrue(closed.contains(borrowed.get(5)));
+
+        // the most recently returned idle connection is reused first
+        assertSame(borrowed.get(3), pool.borrow());
+    }
+
+    /**
+     * Makes sure that closing the pool closes the idle connections and the
+     * connections returned afterwards.
+     * @throws Exception if anything goes wrong.
+     */
+    public void testClose() throws Exception
+    {
+        LdapContext idle = pool.borrow();
+        LdapContext borrowed = pool.borrow();
+
+        pool.release(idle, false);
+        pool.close();
+
+        assertTrue(closed.contains(idle));
+        assertFalse(closed.contains(borrowed));
+
+        pool.release(borrowed, false);
+        assertTrue(closed.contains(borrowed));
+    }
+
+    /**
+     * Returns a stand-in connection which records when it is closed and when
+     * its request controls are reset. Its other methods aren't called so
+     * they all return <tt>null</tt>.
+     *
+     * @return a stand-in connection
+     */
+    private LdapContext createStandInContext()
+    {
+        return
+            (LdapContext)
+                Proxy.newProxyInstance(
+                        LdapContext.class.getClassLoader(),
+                        new Class<?>[] { LdapContext.class },
+                        new InvocationHandler()
+                        {
+                            public Object invoke(
+                                    Object proxy,
+                                    Method method,
+                                    Object[] args)
+                            {
+                                String name = method.getName();
+
+                                if ("close".equals(name))
+                                    closed.add((LdapContext) proxy);
+                                else if ("setRequestControls".equals(name)
+                                        && (args[0] == null))
+                                    controlResets++;
+                                else if ("hashCode".equals(name))
+                                    return System.identityHashCode(proxy);
+                                else if ("equals".equals(name))
+                                    return proxy == args[0];
+                                return null;
+                            }
+                        });
+    }
+}
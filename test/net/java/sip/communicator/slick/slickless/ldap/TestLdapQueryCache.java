@@ -0,0 +1,187 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.ldap;
+
+import java.util.*;
+
+import javax.naming.directory.*;
+
+import junit.framework.*;
+import net.java.sip.communicator.impl.ldap.*;
+
+/**
+ * Tests the hits and the invalidation of the search results cached by the
+ * <tt>LdapQueryCache</tt> class.
+ *
+ * @author agent
+ */
+public class TestLdapQueryCache extends TestCase
+{
+    /**
+     * The attributes the search filter is built upon.
+     */
+    private static final List<String> SEARCHABLE_ATTRIBUTES
+        = Arrays.asList("cn", "mail");
+
+    /**
+     * The search scope of the cached searches.
+     */
+    private static final int SCOPE = SearchControls.SUBTREE_SCOPE;
+
+    /**
+     * Create a TestLdapQueryCache wrapper over the test with the specified
+     * name.
+     * @param name the name of the test to run
+     */
+    public TestLdapQueryCache(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Makes sure that the very same search is answered with the cached
+     * results and that other scopes and query strings aren't.
+     */
+    public void testHit()
+    {
+        LdapQueryCache cache = new LdapQueryCache();
+        List<LdapQueryCache.Result> results
+            = Arrays.asList(
+                    result("cn=John Doe", "John Doe", "jdoe@example.com"),
+                    result("cn=Johnny Walker", "Johnny Walker", null));
+
+        assertNull(cache.get("*john*", SCOPE, SEARCHABLE_ATTRIBUTES));
+
+        cache.put("*john*", SCOPE, results);
+
+        assertEquals(
+                getDNs(results),
+                getDNs(cache.get("*john*", SCOPE, SEARCHABLE_ATTRIBUTES)));
+        assertNull(
+                cache.get(
+                        "*john*",
+                        SearchControls.ONELEVEL_SCOPE,
+                        SEARCHABLE_ATTRIBUTES));
+        assertNull(cache.get("*jane*", SCOPE, SEARCHABLE_ATTRIBUTES));
+    }
+
+    /**
+     * Makes sure that a narrower substring search is answered by filtering
+     * the results of a broader cached one on the searchable attributes only.
+     */
+    public void testBroaderSearch()
+    {
+        LdapQueryCache cache = new LdapQueryCache();
+
+        cache.put("*jo*", SCOPE,
+                Arrays.asList(
+                        result("cn=John Doe", "John Doe", "jdoe@example.com"),
+                        result("cn=Jo Smith", "Jo Smith", "john@example.com"),
+                        result("cn=Joe Bloggs", "Joe Bloggs", null)));
+
+        assertEquals(
+                Arrays.asList("cn=John Doe", "cn=Jo Smith"),
+                getDNs(cache.get("*JOHN*", SCOPE, SEARCHABLE_ATTRIBUTES)));
+        assertEquals(
+                Arrays.asList("cn=John Doe"),
+                getDNs(
+                        cache.get(
+                                "*john*",
+                                SCOPE,
+                                Collections.singletonList("CN"))));
+
+        // not a plain substring search
+        assertNull(cache.get("*jo*doe*", SCOPE, SEARCHABLE_ATTRIBUTES));
+    }
+
+    /**
+     * Makes sure that cleared and expired results are no longer returned.
+     * @throws Exception if anything goes wrong.
+     */
+    public void testInvalidation() throws Exception
+    {
+        LdapQueryCache cache = new LdapQueryCache();
+        List<LdapQueryCache.Result> results
+            = Collections.singletonList(
+                    result("cn=John Doe", "John Doe", null));
+
+        cache.put("*john*", SCOPE, results);
+        cache.clear();
+        assertNull(cache.get("*john*", SCOPE, SEARCHABLE_ATTRIBUTES));
+        assertNull(cache.get("*johnd*", SCOPE, SEARCHABLE_ATTRIBUTES));
+
+        cache = new LdapQueryCache(50);
+        cache.put("*john*", SCOPE, results);
+        assertNotNull(cache.get("*john*", SCOPE, SEARCHABLE_ATTRIBUTES));
+        Thread.sleep(100);
+        assertNull(cache.get("*john*", SCOPE, SEARCHABLE_ATTRIBUTES));
+        assertNull(cache.get("*johnd*", SCOPE, SEARCHABLE_ATTRIBUTES));
+    }
+
+    /**
+     * Makes sure that the least recently used searches are evicted once the
+     * cache is full.
+     */
+    public void testEviction()
+    {
+        LdapQueryCache cache = new LdapQueryCache();
+        List<LdapQueryCache.Result> results
+            = Collections.singletonList(
+                    result("cn=John Doe", "John Doe", null));
+
+        for (int i = 0; i < 64; i++)
+            cache.put("query" + i, SCOPE, results);
+
+        // use the first search so that the second one is evicted instead
+        assertNotNull(cache.get("query0", SCOPE, SEARCHABLE_ATTRIBUTES));
+        cache.put("query64", SCOPE, results);
+
+        assertNotNull(cache.get("query0", SCOPE, SEARCHABLE_ATTRIBUTES));
+        assertNull(cache.get("query1", SCOPE, SEARCHABLE_ATTRIBUTES));
+        assertNotNull(cache.get("query64", SCOPE, SEARCHABLE_ATTRIBUTES));
+    }
+
+    /**
+     * Returns an entry returned by the directory.
+     *
+     * @param dn the distinguished name of the entry
+     * @param cn the value of the <tt>cn</tt> attribute of the entry
+     * @param mail the value of the <tt>mail</tt> attribute of the entry or
+     * <tt>null</tt> if the entry has no such attribute
+     * @return an entry with the specified attributes
+     */
+    private static LdapQueryCache.Result result(
+            String dn,
+            String cn,
+            String mail)
+    {
+        Map<String, Set<String>> attributes
+            = new HashMap<String, Set<String>>();
+
+        attributes.put("cn", Collections.singleton(cn));
+        if (mail != null)
+            attributes.put("mail", Collections.singleton(mail));
+        return new LdapQueryCache.Result(dn, attributes);
+    }
+
+    /**
+     * Returns the distinguished names of entries returned by the directory.
+     *
+     * @param results the entries
+     * @return the distinguished names of <tt>results</tt> in the same order
+     */
+    private static List<String> getDNs(List<LdapQueryCache.Result> results)
+    {
+        assertNotNull("No cached results", results);
+
+        List<String> dns = new ArrayList<String>();
+
+        for (LdapQueryCache.Result result : results)
+            dns.add(result.getDN());
+        return dns;
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.otr;
+
+import java.lang.reflect.*;
+import java.security.*;
+import java.util.*;
+
+import junit.framework.*;
+import net.java.sip.communicator.plugin.otr.*;
+import net.java.sip.communicator.service.protocol.*;
+import net.java.sip.communicator.util.*;
+
+import org.jitsi.service.configuration.*;
+
+/**
+ * Tests the cache of the decoded key material of <tt>ScOtrKeyManagerImpl</tt>
+ * and measures the key lookups of an AKE with and without it.
+ *
+ * @author agent
+ */
+public class TestScOtrKeyManager extends TestCase
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>TestScOtrKeyManager</tt> class for
+     * logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(TestScOtrKeyManager.class);
+
+    /**
+     * The number of AKEs simulated when measuring.
+     */
+    private static final int AKE_COUNT = 200;
+
+    /**
+     * The properties of the stand-in configuration.
+     */
+    private final Map<String, Object> properties
+        = new HashMap<String, Object>();
+
+    /**
+     * The number of properties read from the stand-in configuration.
+     */
+    private int reads;
+
+    /**
+     * The configuration of the OTR plug-in before the test, restored after
+     * it.
+     */
+    private ConfigurationService configService;
+
+    /**
+     * Our account.
+     */
+    private AccountID account;
+
+    /**
+     * The contact we start OTR sessions with.
+     */
+    private Contact contact;
+
+    /**
+     * Create a TestScOtrKeyManager wrapper over the test with the specified
+     * name.
+     * @param name the name of the test to run
+     */
+    public TestScOtrKeyManager(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Makes the OTR plug-in use a stand-in configuration which counts the
+     * properties read.
+     * @throws Exception if anything goes wrong.
+     */
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        properties.clear();
+        reads = 0;
+        configService = OtrActivator.configService;
+        OtrActivator.configService
+            = (ConfigurationService)
+                Proxy.newProxyInstance(
+                        ConfigurationService.class.getClassLoader(),
+                        new Class<?>[] { ConfigurationService.class },
+                        new InvocationHandler()
+                        {
+                            public Object invoke(
+                                    Object proxy,
+                                    Method method,
+                                    Object[] args)
+                            {
+                                String name = method.getName();
+
+                                if ("getString".equals(name))
+                                {
+                                    reads++;
+                                    return properties.get(args[0]);
+                                }
+                                else if ("getBoolean".equals(name))
+                                {
+                                    Object value = properties.get(args[0]);
+
+                                    reads++;
+                                    return
+                                        (value == null)
+                                            ? args[1]
+                                            : Boolean.valueOf(
+                                                    value.toString());
+                                }
+                                else if ("setProperty".equals(name))
+                                    properties.put((String) args[0], args[1]);
+                                else if ("removeProperty".equals(name))
+                                    properties.remove(args[0]);
+                                return null;
+                            }
+                        });
+
+        account
+            = new AccountID(
+                    "alice",
+                    new HashMap<String, String>(),
+                    "Jabber",
+                    "example.com")
+            {
+            };
+        contact
+            = (Contact)
+                Proxy.newProxyInstance(
+                        Contact.class.getClassLoader(),
+                        new Class<?>[] { Contact.class },
+                        new InvocationHandler()
+                        {
+                            public Object invoke(
+                                    Object proxy,
+                                    Method method,
+                                    Object[] args)
+                            {
+                                return
+                                    "getAddress".equals(method.getName())
+                                        ? "bob@example.com"
+                                        : null;
+                            }
+                        });
+    }
+
+    /**
+     * Restores the configuration of the OTR plug-in.
+     * @throws Exception if anything goes wrong.
+     */
+    protected void tearDown() throws Exception
+    {
+        OtrActivator.configService = configService;
+
+        super.tearDown();
+    }
+
+    /**
+     * Makes sure that the cached keys, fingerprints and verification status
+     * are the ones stored in the configuration and that they are replaced
+     * when a key pair is generated, a public key is saved and a contact is
+     * verified or unverified.
+     * @throws Exception if anything goes wrong.
+     */
+    public void testCache() throws Exception
+    {
+        ScOtrKeyManager keyManager = new ScOtrKeyManagerImpl();
+
+        assertNull(keyManager.loadKeyPair(account));
+        assertNull(keyManager.loadPublicKey(contact));
+
+        keyManager.generateKeyPair(account);
+        keyManager.savePublicKey(contact, generatePublicKey());
+
+        KeyPair keyPair = keyManager.loadKeyPair(account);
+        PublicKey publicKey = keyManager.loadPublicKey(contact);
+        String localFingerprint = keyManager.getLocalFingerprint(account);
+        String remoteFingerprint = keyManager.getRemoteFingerprint(contact);
+
+        // the keys are read only once
+        reads = 0;
+        assertSame(keyPair, keyManager.loadKeyPair(account));
+        assertSame(publicKey, keyManager.loadPublicKey(contact));
+        assertEquals(localFingerprint, keyManager.getLocalFingerprint(account));
+        assertEquals(0, reads);
+
+        // and are the ones stored in the configuration
+        ScOtrKeyManager reloaded = new ScOtrKeyManagerImpl();
+        KeyPair reloadedKeyPair = reloaded.loadKeyPair(account);
+
+        assertTrue(
+                Arrays.equals(
+                        keyPair.getPublic().getEncoded(),
+                        reloadedKeyPair.getPublic().getEncoded()));
+        assertEquals(publicKey, reloaded.loadPublicKey(contact));
+        assertEquals(localFingerprint, reloaded.getLocalFingerprint(account));
+        assertEquals(
+                remoteFingerprint,
+                reloaded.getRemoteFingerprint(contact));
+
+        assertFalse(keyManager.isVerified(contact));
+        keyManager.verify(contact);
+        assertTrue(keyManager.isVerified(contact));
+        assertTrue(new ScOtrKeyManagerImpl().isVerified(contact));
+        keyManager.unverify(contact);
+        assertFalse(keyManager.isVerified(contact));
+        assertFalse(new ScOtrKeyManagerImpl().isVerified(contact));
+
+        // a new public key of the contact isn't verified
+        keyManager.verify(contact);
+        keyManager.savePublicKey(contact, generatePublicKey());
+        assertFalse(keyManager.isVerified(contact));
+        assertFalse(
+                remoteFingerprint.equals(
+                        keyManager.getRemoteFingerprint(contact)));
+
+        keyManager.generateKeyPair(account);
+        assertNotSame(keyPair, keyManager.loadKeyPair(account));
+        assertFalse(
+                localFingerprint.equals(
+                        keyManager.getLocalFingerprint(account)));
+    }
+
+    /**
+     * Simulates the key lookups of {@link #AKE_COUNT} AKEs with the same
+     * contact, once with a new key manager for each AKE, i.e. decoding the
+     * keys from the configuration every time as before they were cached, and
+     * once with a single key manager. Logs the figures.
+     * @throws Exception if anything goes wrong.
+     */
+    public void testAke() throws Exception
+    {
+        new ScOtrKeyManagerImpl().generateKeyPair(account);
+        new ScOtrKeyManagerImpl().savePublicKey(contact, generatePublicKey());
+
+        // warm up before measuring
+        for (int i = 0; i < AKE_COUNT; i++)
+            ake(new ScOtrKeyManagerImpl());
+
+        reads = 0;
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < AKE_COUNT; i++)
+            ake(new ScOtrKeyManagerImpl());
+
+        long uncachedEnd = System.nanoTime();
+        int uncachedReads = reads;
+        ScOtrKeyManager keyManager = new ScOtrKeyManagerImpl();
+
+        reads = 0;
+        for (int i = 0; i < AKE_COUNT; i++)
+            ake(keyManager);
+
+        long cachedEnd = System.nanoTime();
+        String result
+            = AKE_COUNT + " AKEs: " + (uncachedEnd - start) / AKE_COUNT / 1000
+                + " us and " + uncachedReads / AKE_COUNT
+                + " configuration reads per AKE decoding the keys every time, "
+                + (cachedEnd - uncachedEnd) / AKE_COUNT / 1000 + " us and "
+                + reads + " configuration reads in all with the cache";
+
+        logger.info(result);
+        assertTrue(result, reads <= 4);
+    }
+
+    /**
+     * Performs the key lookups of an AKE with {@link #contact}: our key pair
+     * is asked for by the OTR engine, then the public key of the contact, its
+     * fingerprint and its verification status by the session status
+     * listener.
+     *
+     * @param keyManager the key manager to look up the keys with
+     */
+    private void ake(ScOtrKeyManager keyManager)
+    {
+        assertNotNull(keyManager.loadKeyPair(account));
+        assertNotNull(keyManager.loadPublicKey(contact));
+        assertNotNull(keyManager.getRemoteFingerprint(contact));
+        keyManager.isVerified(contact);
+    }
+
+    /**
+     * Generates the public key of a DSA key pair.
+     *
+     * @return the public key of a new DSA key pair
+     * @throws Exception if anything goes wrong.
+     */
+    private static PublicKey generatePublicKey() throws Exception
+    {
+        return KeyPairGenerator.getInstance("DSA").genKeyPair().getPublic();
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.protocol;
+
+import java.lang.reflect.*;
+import java.util.*;
+
+import junit.framework.*;
+import net.java.sip.communicator.service.protocol.*;
+
+/**
+ * Tests the coalescing of the mouse moves and the batching of the other
+ * remote-control payloads by the <tt>RemoteControlEventBatcher</tt> class.
+ *
+ * @author agent
+ */
+public class TestRemoteControlEventBatcher extends TestCase
+{
+    /**
+     * The minimum interval in milliseconds between two mouse moves sent by
+     * the batcher under test.
+     */
+    private static final long MOUSE_MOVE_INTERVAL = 40;
+
+    /**
+     * The batcher under test.
+     */
+    private RemoteControlEventBatcher<Integer> batcher;
+
+    /**
+     * The peer the payloads are sent to.
+     */
+    private CallPeer callPeer;
+
+    /**
+     * The payloads sent by {@link #batcher}, one list per send.
+     */
+    private final List<List<Integer>> sends = new ArrayList<List<Integer>>();
+
+    /**
+     * The threads {@link #batcher} has sent the payloads from.
+     */
+    private final Set<Thread> sendThreads = new HashSet<Thread>();
+
+    /**
+     * Create a TestRemoteControlEventBatcher wrapper over the test with the
+     * specified name.
+     * @param name the name of the test to run
+     */
+    public TestRemoteControlEventBatcher(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Creates a batcher which records what it sends and the peer it sends to.
+     * @throws Exception if anything goes wrong.
+     */
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        sends.clear();
+        sendThreads.clear();
+        batcher
+            = new RemoteControlEventBatcher<Integer>(
+                    "TestRemoteControlEventBatcher",
+                    MOUSE_MOVE_INTERVAL)
+            {
+                @Override
+                protected void send(CallPeer callPeer, List<Integer> payloads)
+                {
+                    synchronized (sends)
+                    {
+                        sends.add(new ArrayList<Integer>(payloads));
+                        sendThreads.add(Thread.currentThread());
+                        sends.notifyAll();
+                    }
+                }
+            };
+        callPeer
+            = (CallPeer)
+                Proxy.newProxyInstance(
+                        CallPeer.class.getClassLoader(),
+                        new Class<?>[] { CallPeer.class },
+                        new InvocationHandler()
+                        {
+                            public Object invoke(
+                                    Object proxy,
+                                    Method method,
+                                    Object[] args)
+                            {
+                                String name = method.getName();
+
+                                if ("hashCode".equals(name))
+                                    return System.identityHashCode(proxy);
+                                else if ("equals".equals(name))
+                                    return proxy == args[0];
+                                return null;
+                            }
+                        });
+    }
+
+    /**
+     * Removes the peer so that the send thread of {@link #batcher} exits.
+     * @throws Exception if anything goes wrong.
+     */
+    protected void tearDown() throws Exception
+    {
+        batcher.remove(callPeer);
+
+        super.tearDown();
+    }
+
+    /**
+     * Queues a burst of 100 mouse moves at 200 Hz and makes sure that they
+     * are coalesced to about one send per interval from a single thread and
+     * that the last position is sent.
+     * @throws Exception if anything goes wrong.
+     */
+    public void testMouseMoveBurst() throws Exception
+    {
+        int moves = 100;
+        long start = System.currentTimeMillis();
+
+        for (int i = 0; i < moves; i++)
+        {
+            batcher.add(callPeer, i, true);
+            Thread.sleep(5);
+        }
+
+        List<Integer> last = waitForSend(moves - 1);
+        long duration = System.currentTimeMillis() - start;
+        int sendCount;
+
+        synchronized (sends)
+        {
+            sendCount = sends.size();
+        }
+
+        assertEquals(Arrays.asList(moves - 1), last);
+        assertTrue(
+                sendCount + " sends for " + moves + " mouse moves in "
+                    + duration + " ms",
+                sendCount <= duration / MOUSE_MOVE_INTERVAL + 2);
+        assertEquals(1, sendThreads.size());
+    }
+
+    /**
+     * Makes sure that a payload other than a mouse move is sent right away,
+     * together with the pending mouse move which precedes it, and from the
+     * same thread as the mouse moves.
+     * @throws Exception if anything goes wrong.
+     */
+    public void testClickAfterMove() throws Exception
+    {
+        batcher.add(callPeer, 1, true);
+        waitForSend(1);
+
+        // within the interval so the move is pending when the click is queued
+        batcher.add(callPeer, 2, true);
+        batcher.add(callPeer, 3, true);
+        batcher.add(callPeer, 4, false);
+
+        assertEquals(Arrays.asList(3, 4), waitForSend(4));
+        assertEquals(1, sendThreads.size());
+    }
+
+    /**
+     * Waits for the send which ends with a specific payload.
+     *
+     * @param payload the payload the awaited send ends with
+     * @return the payloads of the awaited send
+     * @throws InterruptedException if the wait is interrupted
+     */
+    private List<Integer> waitForSend(int payload)
+        throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 5000;
+
+        synchronized (sends)
+        {
+            while (true)
+            {
+                if (!sends.isEmpty())
+                {
+                    List<Integer> last = sends.get(sends.size() - 1);
+
+                    if (last.get(last.size() - 1) == payload)
+                        return last;
+                }
+
+                long wait = deadline - System.currentTimeMillis();
+
+                if (wait <= 0)
+                    fail("Payload " + payload + " not sent: " + sends);
+                sends.wait(wait);
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.protocol.jabber;
+
+import java.lang.reflect.*;
+import java.util.*;
+
+import junit.framework.*;
+import net.java.sip.communicator.impl.protocol.jabber.*;
+import net.java.sip.communicator.service.netaddr.*;
+import net.java.sip.communicator.service.netaddr.event.*;
+
+import org.ice4j.*;
+import org.ice4j.ice.harvest.*;
+
+/**
+ * Tests the reuse of the STUN/TURN server and UPnP gateway discoveries by
+ * the <tt>IceHarvesterCache</tt> class, their expiration and their
+ * invalidation when the network configuration changes.
+ *
+ * @author agent
+ */
+public class TestIceHarvesterCache extends TestCase
+{
+    /**
+     * The STUN server published by the domains of the tests.
+     */
+    private static final TransportAddress STUN_SERVER
+        = new TransportAddress("192.0.2.1", 3478, Transport.UDP);
+
+    /**
+     * The domains the STUN/TURN server has been discovered for, in the order
+     * of the discoveries.
+     */
+    private final List<String> discoveries = new ArrayList<String>();
+
+    /**
+     * The stand-in <tt>NetworkAddressManagerService</tt> which records the
+     * discoveries. The domains which start with <tt>none.</tt> don't publish
+     * a STUN/TURN server.
+     */
+    private NetworkAddressManagerService namSer;
+
+    /**
+     * Create a TestIceHarvesterCache wrapper over the test with the
+     * specified name.
+     * @param name the name of the test to run
+     */
+    public TestIceHarvesterCache(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Creates the stand-in <tt>NetworkAddressManagerService</tt>.
+     * @throws Exception if anything goes wrong.
+     */
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        discoveries.clear();
+        namSer
+            = (NetworkAddressManagerService)
+                Proxy.newProxyInstance(
+                        NetworkAddressManagerService.class.getClassLoader(),
+                        new Class<?>[] { NetworkAddressManagerService.class },
+                        new InvocationHandler()
+                        {
+                            public Object invoke(
+                                    Object proxy,
+                                    Method method,
+                                    Object[] args)
+                            {
+                                if (!"discoverStunServer".equals(
+                                        method.getName()))
+                                    return null;
+
+                                String domainName = (String) args[0];
+
+                                discoveries.add(domainName);
+                                return
+                                    domainName.startsWith("none.")
+                                        ? null
+                                        : new StunCandidateHarvester(
+                                                STUN_SERVER);
+                            }
+                        });
+    }
+
+    /**
+     * Makes sure that the STUN/TURN server of a domain, or its absence, is
+     * discovered once and reused by the next calls, each of them getting a
+     * new harvester, and that the UPnP harvester is shared.
+     */
+    public void testHit()
+    {
+        IceHarvesterCache cache = new IceHarvesterCache(namSer, 60000);
+        StunCandidateHarvester harvester = stunHarvester(cache, "example.com");
+
+        assertEquals(STUN_SERVER, harvester.stunServer);
+
+        StunCandidateHarvester cached = stunHarvester(cache, "example.com");
+
+        assertNotSame(harvester, cached);
+        assertEquals(STUN_SERVER, cached.stunServer);
+        assertEquals(Arrays.asList("example.com"), discoveries);
+
+        assertNull(stunHarvester(cache, "none.example.com"));
+        assertNull(stunHarvester(cache, "none.example.com"));
+        assertEquals(
+                Arrays.asList("example.com", "none.example.com"),
+                discoveries);
+
+        assertSame(cache.getUPNPHarvester(), cache.getUPNPHarvester());
+    }
+
+    /**
+     * Makes sure that the discovery results aren't reused once they have
+     * expired.
+     * @throws Exception if anything goes wrong.
+     */
+    public void testExpiry() throws Exception
+    {
+        IceHarvesterCache cache = new IceHarvesterCache(namSer, 50);
+
+        stunHarvester(cache, "example.com");
+
+        UPNPHarvester upnpHarvester = cache.getUPNPHarvester();
+
+        Thread.sleep(100);
+        stunHarvester(cache, "example.com");
+        assertEquals(Arrays.asList("example.com", "example.com"), discoveries);
+        assertNotSame(upnpHarvester, cache.getUPNPHarvester());
+    }
+
+    /**
+     * Makes sure that the discovery results are dropped when they are
+     * invalidated and when the network configuration changes, but not by the
+     * initial notifications about the network configuration.
+     */
+    public void testInvalidation()
+    {
+        IceHarvesterCache cache = new IceHarvesterCache(namSer, 60000);
+
+        stunHarvester(cache, "example.com");
+
+        UPNPHarvester upnpHarvester = cache.getUPNPHarvester();
+
+        cache.configurationChanged(
+                new ChangeEvent(
+                        this,
+                        ChangeEvent.ADDRESS_UP,
+                        null,
+                        false,
+                        true));
+        stunHarvester(cache, "example.com");
+        assertEquals(1, discoveries.size());
+        assertSame(upnpHarvester, cache.getUPNPHarvester());
+
+        cache.configurationChanged(
+                new ChangeEvent(this, ChangeEvent.ADDRESS_DOWN));
+        stunHarvester(cache, "example.com");
+        assertEquals(2, discoveries.size());
+        assertNotSame(upnpHarvester, cache.getUPNPHarvester());
+
+        cache.invalidate();
+        stunHarvester(cache, "example.com");
+        assertEquals(3, discoveries.size());
+    }
+
+    /**
+     * Returns a harvester for the STUN/TURN server of a domain.
+     *
+     * @param cache the cache to get the harvester from
+     * @param domainName the domain to get the STUN/TURN server of
+     * @return a harvester for the STUN/TURN server of <tt>domainName</tt> or
+     * <tt>null</tt> if it doesn't publish one
+     */
+    private static StunCandidateHarvester stunHarvester(
+            IceHarvesterCache cache,
+            String domainName)
+    {
+        return cache.getStunHarvester(domainName, new byte[0], new byte[0]);
+    }
+}
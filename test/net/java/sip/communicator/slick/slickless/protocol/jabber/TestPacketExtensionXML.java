@@ -0,0 +1,271 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.protocol.jabber;
+
+import java.util.*;
+
+import junit.framework.*;
+import net.java.sip.communicator.impl.protocol.jabber.extensions.*;
+import net.java.sip.communicator.impl.protocol.jabber.extensions.coin.*;
+import net.java.sip.communicator.impl.protocol.jabber.extensions.jingle.*;
+import net.java.sip.communicator.util.*;
+
+import org.jivesoftware.smack.packet.*;
+
+/**
+ * Tests the serialization of Jingle and COIN packet extension trees into a
+ * single buffer by <tt>AbstractPacketExtension</tt> and measures it against
+ * serializing every element into its own <tt>String</tt>, the way the
+ * extensions did before.
+ *
+ * @author agent
+ */
+public class TestPacketExtensionXML extends TestCase
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>TestPacketExtensionXML</tt> class
+     * for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(TestPacketExtensionXML.class);
+
+    /**
+     * The number of times each packet is serialized when measuring.
+     */
+    private static final int ITERATIONS = 2000;
+
+    /**
+     * Create a TestPacketExtensionXML wrapper over the test with the
+     * specified name.
+     * @param name the name of the test to run
+     */
+    public TestPacketExtensionXML(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Makes sure that a <tt>session-initiate</tt> with many payload types and
+     * candidates is serialized in a single buffer and measures it.
+     */
+    public void testSessionInitiate()
+    {
+        List<ContentPacketExtension> contents
+            = new ArrayList<ContentPacketExtension>();
+
+        contents.add(createContent("audio", 12, 16));
+        contents.add(createContent("video", 4, 16));
+
+        JingleIQ sessionInitiate
+            = JinglePacketFactory.createSessionInitiate(
+                    "alice@example.com/jitsi",
+                    "bob@example.com/jitsi",
+                    JingleIQ.generateSID(),
+                    contents);
+
+        measure(
+                "session-initiate",
+                sessionInitiate,
+                new ArrayList<PacketExtension>(contents));
+    }
+
+    /**
+     * Makes sure that the full COIN state of a conference of 30 participants
+     * is serialized in a single buffer and measures it.
+     */
+    public void testCoin()
+    {
+        CoinIQ coin = new CoinIQ();
+        UsersPacketExtension users = new UsersPacketExtension();
+
+        coin.setEntity("alice@example.com/jitsi");
+        coin.setState(StateType.full);
+        coin.setVersion(1);
+        for (int i = 0; i < 30; i++)
+        {
+            String entity = "xmpp:user" + i + "@example.com";
+            UserPacketExtension user = new UserPacketExtension(entity);
+            EndpointPacketExtension endpoint
+                = new EndpointPacketExtension(entity);
+
+            user.setDisplayText("User " + i);
+            endpoint.setStatus(EndpointStatusType.connected);
+            for (String type : new String[] { "audio", "video" })
+            {
+                MediaPacketExtension media
+                    = new MediaPacketExtension(type + i);
+
+                media.setType(type);
+                media.setSrcID(Long.toString(1000000L + i));
+                media.setStatus("sendrecv");
+                endpoint.addChildExtension(media);
+            }
+            user.addChildExtension(endpoint);
+            users.addChildExtension(user);
+        }
+        coin.addExtension(users);
+
+        measure(
+                "COIN",
+                coin,
+                new ArrayList<PacketExtension>(coin.getExtensions()));
+    }
+
+    /**
+     * Makes sure that the XML of <tt>iq</tt> contains the XML of each of its
+     * children and that serializing its tree into a single buffer copies
+     * much less than serializing every element into its own
+     * <tt>String</tt>. Logs the figures.
+     *
+     * @param name the name of the packet to log
+     * @param iq the packet to serialize
+     * @param children the children of the child element of <tt>iq</tt>
+     */
+    private static void measure(
+            String name,
+            IQ iq,
+            List<PacketExtension> children)
+    {
+        String xml = iq.getChildElementXML();
+        long perElementChars = xml.length();
+
+        for (PacketExtension child : children)
+        {
+            StringBuilder streamed = new StringBuilder();
+
+            AbstractPacketExtension.appendXML(streamed, child);
+            assertEquals(child.toXML(), streamed.toString());
+            assertTrue(xml.contains(streamed));
+
+            perElementChars += serializeElements(child);
+        }
+
+        // warm up before measuring
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            iq.getChildElementXML();
+            for (PacketExtension child : children)
+                serializeElements(child);
+        }
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < ITERATIONS; i++)
+            iq.getChildElementXML();
+
+        long streamedEnd = System.nanoTime();
+
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            for (PacketExtension child : children)
+                serializeElements(child);
+        }
+
+        long perElementEnd = System.nanoTime();
+        String result
+            = name + " of " + xml.length() + " chars: single buffer in "
+                + (streamedEnd - start) / ITERATIONS / 1000 + " us, "
+                + perElementChars + " chars copied element by element in "
+                + (perElementEnd - streamedEnd) / ITERATIONS / 1000 + " us";
+
+        logger.info(result);
+        assertTrue(result, perElementChars > 3 * xml.length());
+    }
+
+    /**
+     * Serializes every element of a tree into its own <tt>String</tt>, i.e.
+     * copies the XML of each element once per level it is nested at.
+     *
+     * @param extension the root of the tree
+     * @return the number of characters of the XML of all the elements of the
+     * tree
+     */
+    private static long serializeElements(PacketExtension extension)
+    {
+        long chars = extension.toXML().length();
+
+        if (extension instanceof AbstractPacketExtension)
+        {
+            List<? extends PacketExtension> children
+                = ((AbstractPacketExtension) extension).getChildExtensions();
+
+            if (children != null)
+            {
+                for (PacketExtension child : children)
+                    chars += serializeElements(child);
+            }
+        }
+        return chars;
+    }
+
+    /**
+     * Creates a Jingle content with RTP payload types and ICE candidates.
+     *
+     * @param media the media type of the content
+     * @param payloadTypeCount the number of payload types of the content
+     * @param candidateCount the number of candidates of the content
+     * @return a Jingle content with the specified payload types and
+     * candidates
+     */
+    private static ContentPacketExtension createContent(
+            String media,
+            int payloadTypeCount,
+            int candidateCount)
+    {
+        ContentPacketExtension content
+            = new ContentPacketExtension(
+                    ContentPacketExtension.CreatorEnum.initiator,
+                    media);
+        RtpDescriptionPacketExtension description
+            = new RtpDescriptionPacketExtension(media);
+
+        for (int i = 0; i < payloadTypeCount; i++)
+        {
+            PayloadTypePacketExtension payloadType
+                = new PayloadTypePacketExtension();
+
+            payloadType.setId(96 + i);
+            payloadType.setName("codec" + i);
+            payloadType.setClockrate(90000);
+            for (int j = 0; j < 2; j++)
+            {
+                ParameterPacketExtension parameter
+                    = new ParameterPacketExtension();
+
+                parameter.setName("param" + j);
+                parameter.setValue("value" + j);
+                payloadType.addParameter(parameter);
+            }
+            description.addPayloadType(payloadType);
+        }
+        content.addChildExtension(description);
+
+        IceUdpTransportPacketExtension transport
+            = new IceUdpTransportPacketExtension();
+
+        transport.setUfrag("ufrag");
+        transport.setPassword("password");
+        for (int i = 0; i < candidateCount; i++)
+        {
+            CandidatePacketExtension candidate
+                = new CandidatePacketExtension();
+
+            candidate.setComponent(1 + i % 2);
+            candidate.setFoundation(i);
+            candidate.setGeneration(0);
+            candidate.setID("candidate" + i);
+            candidate.setIP("192.0.2." + i);
+            candidate.setPort(5000 + i);
+            candidate.setPriority(2130706431L - i);
+            candidate.setProtocol("udp");
+            candidate.setType(CandidateType.host);
+            transport.addCandidate(candidate);
+        }
+        content.addChildExtension(transport);
+        return content;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.protocol.media;
+
+import java.lang.management.*;
+import java.util.*;
+
+import junit.framework.*;
+import net.java.sip.communicator.service.protocol.media.*;
+import net.java.sip.communicator.util.*;
+
+/**
+ * Tests the computation of the partial conference-info notifications of a
+ * conference focus by the <tt>ConferenceInfoDelta</tt> class.
+ *
+ * @author Lyubomir Marinov
+ */
+public class TestConferenceInfoDelta extends TestCase
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>TestConferenceInfoDelta</tt> class
+     * for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(TestConferenceInfoDelta.class);
+
+    /**
+     * The number of participants of the simulated conference.
+     */
+    private static final int PARTICIPANT_COUNT = 30;
+
+    /**
+     * Create a TestConferenceInfoDelta wrapper over the test with the
+     * specified name.
+     * @param name the name of the test to run
+     */
+    public TestConferenceInfoDelta(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Makes sure that the first notification describes the full state of the
+     * conference and the next ones only the added, changed and removed users.
+     */
+    public void testUpdate()
+    {
+        ConferenceInfoDelta delta = new ConferenceInfoDelta();
+        Map<String, String> users = new LinkedHashMap<String, String>();
+
+        users.put("sip:alice@example.com", getUserXML(0, "connected"));
+        users.put("sip:bob@example.com", getUserXML(1, "connected"));
+
+        ConferenceInfoDelta.Update update = delta.update(users, false);
+
+        assertTrue(update.isFull());
+        assertEquals(1, update.getVersion());
+        assertEquals(users, update.getUsers());
+
+        assertNull("Notified about an unchanged conference",
+                delta.update(users, false));
+
+        users.put("sip:bob@example.com", getUserXML(1, "on-hold"));
+        users.put("sip:carol@example.com", getUserXML(2, "connected"));
+        update = delta.update(users, false);
+        assertFalse(update.isFull());
+        assertEquals(2, update.getVersion());
+        assertEquals(
+                Arrays.asList("sip:bob@example.com", "sip:carol@example.com"),
+                new ArrayList<String>(update.getUsers().keySet()));
+
+        users.remove("sip:alice@example.com");
+        update = delta.update(users, false);
+        assertEquals(3, update.getVersion());
+        assertEquals(1, update.getUsers().size());
+        assertTrue(update.getUsers().containsKey("sip:alice@example.com"));
+        assertNull(update.getUsers().get("sip:alice@example.com"));
+
+        update = delta.update(users, true);
+        assertTrue(update.isFull());
+        assertEquals(4, update.getVersion());
+        assertEquals(users, update.getUsers());
+
+        delta.reset();
+        update = delta.update(users, false);
+        assertTrue(update.isFull());
+        assertEquals(5, update.getVersion());
+        assertEquals(users, update.getUsers());
+    }
+
+    /**
+     * Simulates a conference which participants join one after the other and
+     * makes sure that notifying the participants about the changes of the
+     * conference sends much less than notifying them about its full state.
+     */
+    public void testConference()
+    {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        boolean cpuTime = threadMXBean.isCurrentThreadCpuTimeSupported();
+
+        long fullStart = cpuTime ? threadMXBean.getCurrentThreadCpuTime() : 0;
+        long fullBytes = simulateConference(true);
+        long fullEnd = cpuTime ? threadMXBean.getCurrentThreadCpuTime() : 0;
+        long partialBytes = simulateConference(false);
+        long partialEnd = cpuTime ? threadMXBean.getCurrentThreadCpuTime() : 0;
+        String result
+            = PARTICIPANT_COUNT + " participants: partial notifications sent "
+                + partialBytes + " bytes"
+                + (cpuTime ? (" in " + (partialEnd - fullEnd) / 1000 + " us")
+                        : "")
+                + ", full notifications " + fullBytes + " bytes"
+                + (cpuTime ? (" in " + (fullEnd - fullStart) / 1000 + " us")
+                        : "");
+
+        logger.info(result);
+        assertTrue(result, partialBytes * 5 < fullBytes);
+    }
+
+    /**
+     * Simulates a conference of {@link #PARTICIPANT_COUNT} participants which
+     * join one after the other. Every time a participant joins, the
+     * participants which have joined are notified.
+     *
+     * @param full <tt>true</tt> to notify the participants about the full
+     * state of the conference every time
+     * @return the number of bytes of the users sent to the participants
+     */
+    private static long simulateConference(boolean full)
+    {
+        Map<String, String> users = new LinkedHashMap<String, String>();
+        List<ConferenceInfoDelta> deltas = new ArrayList<ConferenceInfoDelta>();
+        long bytes = 0;
+
+        for (int i = 0; i < PARTICIPANT_COUNT; i++)
+        {
+            users.put(getEntity(i), getUserXML(i, "connected"));
+            deltas.add(new ConferenceInfoDelta());
+
+            for (ConferenceInfoDelta delta : deltas)
+            {
+                ConferenceInfoDelta.Update update = delta.update(users, full);
+
+                for (Map.Entry<String, String> user
+                        : update.getUsers().entrySet())
+                {
+                    String userXML = user.getValue();
+
+                    bytes
+                        += (userXML == null)
+                            ? user.getKey().length()
+                            : userXML.length();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the entity of a participant of the simulated conference.
+     *
+     * @param index the index of the participant
+     * @return the entity of the participant with the specified <tt>index</tt>
+     */
+    private static String getEntity(int index)
+    {
+        return "sip:participant" + index + "@example.com";
+    }
+
+    /**
+     * Returns a <tt>user</tt> XML element of a participant of the simulated
+     * conference similar to the ones generated by the SIP implementation.
+     *
+     * @param index the index of the participant
+     * @param status the status of the endpoint of the participant
+     * @return a <tt>user</tt> XML element of the participant with the
+     * specified <tt>index</tt>
+     */
+    private static String getUserXML(int index, String status)
+    {
+        return
+            "<user entity=\"" + getEntity(index) + "\" state=\"full\">"
+                + "<display-text>Participant " + index + "</display-text>"
+                + "<endpoint><status>" + status + "</status>"
+                + "<media><type>audio</type><src-id>" + (1000 + index)
+                + "</src-id><status>sendrecv</status></media>"
+                + "</endpoint></user>";
+    }
+}
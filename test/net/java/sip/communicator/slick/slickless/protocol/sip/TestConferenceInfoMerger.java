@@ -0,0 +1,365 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.protocol.sip;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.util.*;
+
+import javax.xml.parsers.*;
+
+import junit.framework.*;
+import net.java.sip.communicator.impl.protocol.sip.*;
+import net.java.sip.communicator.service.protocol.*;
+
+import org.w3c.dom.*;
+
+/**
+ * Tests the representation of the full and partial conference-info documents
+ * received from a conference focus as <tt>ConferenceMember</tt>s by the
+ * <tt>ConferenceInfoMerger</tt> class, including the request of the full
+ * state of the conference after a missed version.
+ *
+ * @author agent
+ */
+public class TestConferenceInfoMerger extends TestCase
+{
+    /**
+     * The conference focus sending the documents.
+     */
+    private CallPeer focus;
+
+    /**
+     * The <tt>ConferenceMember</tt>s of {@link #focus}.
+     */
+    private List<ConferenceMember> members;
+
+    /**
+     * The value of the <tt>version</tt> attribute of the document currently
+     * represented by {@link #members}.
+     */
+    private int version;
+
+    /**
+     * The number of times the full state of the conference has been
+     * requested again.
+     */
+    private int polls;
+
+    /**
+     * Create a TestConferenceInfoMerger wrapper over the test with the
+     * specified name.
+     * @param name the name of the test to run
+     */
+    public TestConferenceInfoMerger(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Creates the conference focus. Its methods aren't called so they all
+     * return <tt>null</tt>.
+     * @throws Exception if anything goes wrong.
+     */
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        focus
+            = (CallPeer)
+                Proxy.newProxyInstance(
+                        CallPeer.class.getClassLoader(),
+                        new Class<?>[] { CallPeer.class },
+                        new InvocationHandler()
+                        {
+                            public Object invoke(
+                                    Object proxy,
+                                    Method method,
+                                    Object[] args)
+                            {
+                                return null;
+                            }
+                        });
+        members = new ArrayList<ConferenceMember>();
+        version = 0;
+        polls = 0;
+    }
+
+    /**
+     * Receives a full document and then partial ones which change, add and
+     * delete users and makes sure that the users which they don't describe
+     * are kept.
+     */
+    public void testPartial()
+    {
+        receive(document(1, true, true,
+                user("sip:alice@example.com", null, "Alice", "connected", 1)
+                + user("sip:bob@example.com", null, "Bob", "connected", 2)
+                + user("sip:carol@example.com", null, "Carol", "connected",
+                        3)));
+
+        assertEquals(
+                Arrays.asList(
+                        "sip:alice@example.com",
+                        "sip:bob@example.com",
+                        "sip:carol@example.com"),
+                getAddresses());
+
+        receive(document(2, false, false,
+                user("sip:bob@example.com", "partial", null, "on-hold", -1)
+                + user("sip:carol@example.com", "deleted", null, null, -1)
+                + user("sip:dave@example.com", null, "Dave", "connected",
+                        4)));
+
+        assertEquals(
+                Arrays.asList(
+                        "sip:alice@example.com",
+                        "sip:bob@example.com",
+                        "sip:dave@example.com"),
+                getAddresses());
+
+        ConferenceMember bob = getConferenceMember("sip:bob@example.com");
+
+        assertEquals("Bob", bob.getDisplayName());
+        assertEquals(ConferenceMemberState.ON_HOLD, bob.getState());
+        assertEquals(2, bob.getAudioSsrc());
+        assertEquals(
+                ConferenceMemberState.CONNECTED,
+                getConferenceMember("sip:alice@example.com").getState());
+        assertEquals(0, polls);
+        assertEquals(2, version);
+    }
+
+    /**
+     * Makes sure that a full document removes the users which it doesn't
+     * describe while a partial <tt>users</tt> element doesn't.
+     */
+    public void testFull()
+    {
+        receive(document(1, true, true,
+                user("sip:alice@example.com", null, "Alice", "connected", 1)
+                + user("sip:bob@example.com", null, "Bob", "connected", 2)));
+        receive(document(2, false, false,
+                user("sip:alice@example.com", null, "Alice", "on-hold", 1)));
+
+        assertEquals(
+                Arrays.asList("sip:alice@example.com", "sip:bob@example.com"),
+                getAddresses());
+
+        receive(document(3, true, true,
+                user("sip:alice@example.com", null, "Alice", "connected",
+                        1)));
+
+        assertEquals(
+                Arrays.asList("sip:alice@example.com"),
+                getAddresses());
+    }
+
+    /**
+     * Skips a version of the partial documents and makes sure that the next
+     * partial document isn't represented and the full state of the
+     * conference is requested again and represented once received.
+     */
+    public void testMissedVersion()
+    {
+        receive(document(1, true, true,
+                user("sip:alice@example.com", null, "Alice", "connected", 1)
+                + user("sip:bob@example.com", null, "Bob", "connected", 2)));
+
+        // version 2 which deletes bob is lost
+        receive(document(3, false, false,
+                user("sip:alice@example.com", "partial", null, "on-hold",
+                        -1)));
+
+        assertEquals(1, polls);
+        assertEquals(1, version);
+        assertEquals(
+                Arrays.asList("sip:alice@example.com", "sip:bob@example.com"),
+                getAddresses());
+        assertEquals(
+                ConferenceMemberState.CONNECTED,
+                getConferenceMember("sip:alice@example.com").getState());
+
+        // the full state requested again
+        receive(document(4, true, true,
+                user("sip:alice@example.com", null, "Alice", "on-hold", 1)));
+
+        assertEquals(1, polls);
+        assertEquals(4, version);
+        assertEquals(
+                Arrays.asList("sip:alice@example.com"),
+                getAddresses());
+        assertEquals(
+                ConferenceMemberState.ON_HOLD,
+                getConferenceMember("sip:alice@example.com").getState());
+    }
+
+    /**
+     * Makes sure that a partial document received before any full one isn't
+     * represented and the full state of the conference is requested.
+     */
+    public void testPartialFirst()
+    {
+        receive(document(5, false, false,
+                user("sip:alice@example.com", null, "Alice", "connected",
+                        1)));
+
+        assertEquals(1, polls);
+        assertTrue(members.isEmpty());
+    }
+
+    /**
+     * Handles a received conference-info document the way the SIP
+     * conferencing implementation does: a partial document which doesn't
+     * directly follow the represented one requests the full state of the
+     * conference again, the others are represented unless they are older.
+     *
+     * @param xml the received conference-info document
+     */
+    private void receive(String xml)
+    {
+        Document document;
+
+        try
+        {
+            document
+                = DocumentBuilderFactory
+                    .newInstance()
+                        .newDocumentBuilder()
+                            .parse(
+                                new ByteArrayInputStream(
+                                        xml.getBytes("UTF-8")));
+        }
+        catch (Exception e)
+        {
+            throw new AssertionFailedError(e.toString());
+        }
+
+        if (ConferenceInfoMerger.isMissingVersions(version, document))
+            polls++;
+        else
+        {
+            int documentVersion = ConferenceInfoMerger.getVersion(document);
+
+            if (documentVersion >= version)
+            {
+                ConferenceInfoMerger.merge(focus, members, document);
+                version = documentVersion;
+            }
+        }
+    }
+
+    /**
+     * Returns the addresses of the <tt>ConferenceMember</tt>s of
+     * {@link #focus} sorted alphabetically.
+     *
+     * @return the addresses of {@link #members}
+     */
+    private List<String> getAddresses()
+    {
+        List<String> addresses = new ArrayList<String>();
+
+        for (ConferenceMember member : members)
+            addresses.add(member.getAddress());
+        Collections.sort(addresses);
+        return addresses;
+    }
+
+    /**
+     * Returns the <tt>ConferenceMember</tt> of {@link #focus} with a specific
+     * address.
+     *
+     * @param address the address of the <tt>ConferenceMember</tt>
+     * @return the <tt>ConferenceMember</tt> of {@link #focus} with the
+     * specified <tt>address</tt>
+     */
+    private ConferenceMember getConferenceMember(String address)
+    {
+        for (ConferenceMember member : members)
+        {
+            if (address.equals(member.getAddress()))
+                return member;
+        }
+        fail("No conference member " + address);
+        return null;
+    }
+
+    /**
+     * Returns a conference-info document.
+     *
+     * @param version the value of the <tt>version</tt> attribute
+     * @param full whether the document describes the full state of the
+     * conference
+     * @param fullUsers whether the <tt>users</tt> element describes all the
+     * users
+     * @param users the <tt>user</tt> elements
+     * @return the conference-info document
+     */
+    private static String document(
+            int version,
+            boolean full,
+            boolean fullUsers,
+            String users)
+    {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<conference-info"
+            + " xmlns=\"urn:ietf:params:xml:ns:conference-info\""
+            + " entity=\"sip:focus@example.com\""
+            + " state=\"" + (full ? "full" : "partial") + "\""
+            + " version=\"" + version + "\">"
+            + "<users" + (fullUsers ? "" : " state=\"partial\"") + ">"
+            + users
+            + "</users></conference-info>";
+    }
+
+    /**
+     * Returns a <tt>user</tt> element of a conference-info document.
+     *
+     * @param entity the entity of the user
+     * @param state the value of the <tt>state</tt> attribute or
+     * <tt>null</tt> to not specify one
+     * @param displayText the display text of the user or <tt>null</tt> to
+     * not specify one
+     * @param status the status of the endpoint of the user or <tt>null</tt>
+     * to not describe the endpoint
+     * @param audioSrcId the SSRC of the audio of the user or <tt>-1</tt> to
+     * not describe the media of the endpoint
+     * @return the <tt>user</tt> element
+     */
+    private static String user(
+            String entity,
+            String state,
+            String displayText,
+            String status,
+            long audioSrcId)
+    {
+        StringBuilder xml = new StringBuilder();
+
+        xml.append("<user entity=\"").append(entity).append('"');
+        if (state != null)
+            xml.append(" state=\"").append(state).append('"');
+        xml.append('>');
+        if (displayText != null)
+        {
+            xml.append("<display-text>").append(displayText)
+                .append("</display-text>");
+        }
+        if (status != null)
+        {
+            xml.append("<endpoint><status>").append(status)
+                .append("</status>");
+            if (audioSrcId != -1)
+            {
+                xml.append("<media><type>audio</type><src-id>")
+                    .append(audioSrcId).append("</src-id></media>");
+            }
+            xml.append("</endpoint>");
+        }
+        xml.append("</user>");
+        return xml.toString();
+    }
+}
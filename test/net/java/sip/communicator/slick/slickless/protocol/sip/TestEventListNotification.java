@@ -0,0 +1,138 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.protocol.sip;
+
+import java.util.*;
+
+import junit.framework.*;
+import net.java.sip.communicator.impl.protocol.sip.*;
+
+/**
+ * Tests the parsing of the notifications of a resource list server by the
+ * <tt>EventListNotification</tt> class.
+ *
+ * @author Damian Minkov
+ */
+public class TestEventListNotification extends TestCase
+{
+    /**
+     * The boundary of the sample notification.
+     */
+    private static final String BOUNDARY = "50UBfW7LSCVLtggUPe5z";
+
+    /**
+     * A notification in the format of the examples of rfc4662 with an active
+     * resource carrying a PIDF document and a pending one.
+     */
+    private static final String NOTIFICATION
+        = "--" + BOUNDARY + "\r\n"
+        + "Content-Transfer-Encoding: binary\r\n"
+        + "Content-ID: <nXYxAE@pres.example.com>\r\n"
+        + "Content-Type: application/rlmi+xml;charset=\"UTF-8\"\r\n"
+        + "\r\n"
+        + "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n"
+        + "<list xmlns=\"urn:ietf:params:xml:ns:rlmi\"\r\n"
+        + "      uri=\"sip:adam-friends@pres.example.com\"\r\n"
+        + "      version=\"1\" fullState=\"true\">\r\n"
+        + "  <name xml:lang=\"en\">Buddy List at COM</name>\r\n"
+        + "  <resource uri=\"sip:bob@example.com\">\r\n"
+        + "    <name>Bob Smith</name>\r\n"
+        + "    <instance id=\"juwigmtboe\" state=\"active\"\r\n"
+        + "              cid=\"bUZBsM@pres.example.com\"/>\r\n"
+        + "  </resource>\r\n"
+        + "  <resource uri=\"sip:dave@example.com\">\r\n"
+        + "    <name>Dave Jones</name>\r\n"
+        + "    <instance id=\"hqzsuxtfyq\" state=\"pending\"/>\r\n"
+        + "  </resource>\r\n"
+        + "</list>\r\n"
+        + "\r\n"
+        + "--" + BOUNDARY + "\r\n"
+        + "Content-Transfer-Encoding: binary\r\n"
+        + "Content-ID: <bUZBsM@pres.example.com>\r\n"
+        + "Content-Type: application/pidf+xml;charset=\"UTF-8\"\r\n"
+        + "\r\n"
+        + "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n"
+        + "<presence xmlns=\"urn:ietf:params:xml:ns:pidf\"\r\n"
+        + "    entity=\"sip:bob@example.com\">\r\n"
+        + "  <tuple id=\"sg89ae\">\r\n"
+        + "    <status>\r\n"
+        + "      <basic>open</basic>\r\n"
+        + "    </status>\r\n"
+        + "  </tuple>\r\n"
+        + "</presence>\r\n"
+        + "--" + BOUNDARY + "--\r\n";
+
+    /**
+     * Create a TestEventListNotification wrapper over the test with the
+     * specified name.
+     * @param name the name of the test to run
+     */
+    public TestEventListNotification(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Parses the sample notification and makes sure that the list and its
+     * resources are reported with their states and documents.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    public void testParse()
+        throws Exception
+    {
+        EventListNotification notification
+            = EventListNotification.parse(
+                    "\"" + BOUNDARY + "\"",
+                    NOTIFICATION.getBytes("UTF-8"));
+
+        assertNotNull("Failed to parse the notification", notification);
+        assertEquals("sip:adam-friends@pres.example.com",
+                notification.getUri());
+        assertEquals(1, notification.getVersion());
+        assertTrue(notification.isFullState());
+
+        List<EventListNotification.Resource> resources
+            = notification.getResources();
+
+        assertEquals(2, resources.size());
+
+        EventListNotification.Resource bob = resources.get(0);
+
+        assertEquals("sip:bob@example.com", bob.getUri());
+        assertEquals("Bob Smith", bob.getName());
+        assertEquals("active", bob.getState());
+        assertNotNull("No PIDF document for an active resource",
+                bob.getContent());
+
+        String pidf = new String(bob.getContent(), "UTF-8");
+
+        assertTrue(pidf.startsWith("<?xml"));
+        assertTrue(pidf.endsWith("</presence>"));
+
+        EventListNotification.Resource dave = resources.get(1);
+
+        assertEquals("sip:dave@example.com", dave.getUri());
+        assertEquals("pending", dave.getState());
+        assertNull(dave.getContent());
+    }
+
+    /**
+     * Makes sure that a body which isn't a resource list notification is
+     * rejected.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    public void testParseInvalid()
+        throws Exception
+    {
+        assertNull(
+                EventListNotification.parse(
+                        BOUNDARY,
+                        "<presence/>".getBytes("UTF-8")));
+    }
+}
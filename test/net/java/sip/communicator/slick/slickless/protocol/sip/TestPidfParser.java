@@ -0,0 +1,141 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.protocol.sip;
+
+import junit.framework.*;
+import net.java.sip.communicator.impl.protocol.sip.*;
+
+/**
+ * Tests the extraction of the presence information of NOTIFY bodies by the
+ * <tt>PidfParser</tt> class.
+ *
+ * @author Damian Minkov
+ */
+public class TestPidfParser extends TestCase
+{
+    /**
+     * The PIDF document of the examples of rfc3863, with two contacts in a
+     * tuple.
+     */
+    private static final String PIDF
+        = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<impp:presence xmlns:impp=\"urn:ietf:params:xml:ns:pidf\"\n"
+        + "    entity=\"pres:someone@example.com\">\n"
+        + "  <impp:tuple id=\"sg89ae\">\n"
+        + "    <impp:status>\n"
+        + "      <impp:basic>open</impp:basic>\n"
+        + "    </impp:status>\n"
+        + "    <impp:contact priority=\"0.8\">tel:+09012345678</impp:contact>\n"
+        + "    <impp:contact priority=\"1.5\">\n"
+        + "      sip:a@example.com\n"
+        + "    </impp:contact>\n"
+        + "  </impp:tuple>\n"
+        + "  <impp:tuple id=\"mobile\">\n"
+        + "    <impp:status><impp:basic>closed</impp:basic></impp:status>\n"
+        + "    <impp:status><impp:basic>open</impp:basic></impp:status>\n"
+        + "    <impp:note>Away</impp:note>\n"
+        + "  </impp:tuple>\n"
+        + "</impp:presence>\n";
+
+    /**
+     * A PIDF document with RPID extensions as published by a SIP client
+     * which puts them in a <tt>person</tt> element.
+     */
+    private static final String RPID
+        = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<presence xmlns=\"urn:ietf:params:xml:ns:pidf\"\n"
+        + "    xmlns:dm=\"urn:ietf:params:xml:ns:pidf:data-model\"\n"
+        + "    xmlns:rpid=\"urn:ietf:params:xml:ns:pidf:rpid\"\n"
+        + "    entity=\"sip:bob@example.com\">\n"
+        + "  <dm:person id=\"p1234\">\n"
+        + "    <rpid:activities><rpid:unknown/></rpid:activities>\n"
+        + "    <rpid:activities><rpid:on-the-phone/></rpid:activities>\n"
+        + "    <rpid:status-icon>\n"
+        + "      http://example.com/bob.png\n"
+        + "    </rpid:status-icon>\n"
+        + "  </dm:person>\n"
+        + "  <tuple id=\"t5678\">\n"
+        + "    <status><basic>open</basic></status>\n"
+        + "    <contact>sip:bob@example.com</contact>\n"
+        + "    <note>On the phone</note>\n"
+        + "  </tuple>\n"
+        + "</presence>\n";
+
+    /**
+     * Create a TestPidfParser wrapper over the test with the specified name.
+     * @param name the name of the test to run
+     */
+    public TestPidfParser(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Parses a plain PIDF document and makes sure that the tuples are read
+     * with their contacts, notes and last basic status.
+     */
+    public void testParsePidf()
+    {
+        PidfParser.Presence presence = PidfParser.parse(PIDF);
+
+        assertNotNull("Failed to parse the document", presence);
+        assertEquals("pres:someone@example.com", presence.getEntity());
+        assertNull(presence.getActivity());
+        assertNull(presence.getStatusIcon());
+        assertEquals(2, presence.getTuples().size());
+
+        PidfParser.Tuple tuple = presence.getTuples().get(0);
+
+        assertEquals("open", tuple.getBasic());
+        assertEquals(2, tuple.getContacts().size());
+        assertEquals("tel:+09012345678",
+                tuple.getContacts().get(0).getUri());
+        assertEquals("0.8", tuple.getContacts().get(0).getPriority());
+        assertEquals("sip:a@example.com",
+                tuple.getContacts().get(1).getUri());
+        assertTrue(tuple.getNotes().isEmpty());
+
+        tuple = presence.getTuples().get(1);
+
+        assertEquals("the last status must win", "open", tuple.getBasic());
+        assertTrue(tuple.getContacts().isEmpty());
+        assertEquals(1, tuple.getNotes().size());
+        assertEquals("Away", tuple.getNotes().get(0));
+    }
+
+    /**
+     * Parses a document with RPID extensions and makes sure that the first
+     * known activity and the status icon of the person are read.
+     */
+    public void testParseRpid()
+    {
+        PidfParser.Presence presence = PidfParser.parse(RPID);
+
+        assertNotNull("Failed to parse the document", presence);
+        assertEquals("sip:bob@example.com", presence.getEntity());
+        assertEquals("on-the-phone", presence.getActivity());
+        assertEquals("http://example.com/bob.png", presence.getStatusIcon());
+        assertEquals(1, presence.getTuples().size());
+
+        PidfParser.Tuple tuple = presence.getTuples().get(0);
+
+        assertEquals("open", tuple.getBasic());
+        assertEquals(1, tuple.getContacts().size());
+        assertNull(tuple.getContacts().get(0).getPriority());
+        assertEquals("On the phone", tuple.getNotes().get(0));
+    }
+
+    /**
+     * Makes sure that documents which are not well-formed or don't have a
+     * <tt>presence</tt> element are rejected.
+     */
+    public void testParseInvalid()
+    {
+        assertNull(PidfParser.parse("<presence><tuple></presence>"));
+        assertNull(PidfParser.parse("<watcherinfo/>"));
+    }
+}
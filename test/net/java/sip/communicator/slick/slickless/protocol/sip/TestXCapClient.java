@@ -0,0 +1,349 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.protocol.sip;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+
+import javax.sip.*;
+import javax.sip.address.*;
+
+import junit.framework.*;
+import net.java.sip.communicator.impl.protocol.sip.xcap.*;
+import net.java.sip.communicator.impl.protocol.sip.xcap.model.resourcelists.*;
+
+import com.sun.net.httpserver.*;
+
+/**
+ * Tests the requests the <tt>XCapClientImpl</tt> sends against a local HTTP
+ * server standing in for an XCAP server and recording the requests: the
+ * documents are revalidated with their ETags, contacts are put and deleted
+ * with node selectors and the connections are kept alive between requests.
+ *
+ * @author Grigorii Balutsel
+ */
+public class TestXCapClient extends TestCase
+{
+    /**
+     * The path of the XCAP root on the stand-in server.
+     */
+    private static final String XCAP_ROOT = "/xcap-root";
+
+    /**
+     * The xcap-caps of the stand-in server.
+     */
+    private static final String XCAP_CAPS
+        = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+        + "<xcap-caps xmlns=\"urn:ietf:params:xml:ns:xcap-caps\">"
+        + "<auids><auid>resource-lists</auid></auids>"
+        + "<namespaces>"
+        + "<namespace>urn:ietf:params:xml:ns:xcap-caps</namespace>"
+        + "</namespaces>"
+        + "</xcap-caps>";
+
+    /**
+     * The resource-lists of the user on the stand-in server.
+     */
+    private static final String RESOURCE_LISTS
+        = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+        + "<resource-lists xmlns=\"urn:ietf:params:xml:ns:resource-lists\">"
+        + "<list name=\"Friends\">"
+        + "<entry uri=\"sip:carol@example.com\"/>"
+        + "</list>"
+        + "</resource-lists>";
+
+    /**
+     * The ETag of the resource-lists on the stand-in server.
+     */
+    private static final String ETAG = "\"v1\"";
+
+    /**
+     * The stand-in server.
+     */
+    private HttpServer server;
+
+    /**
+     * The requests received by the stand-in server, in the order they were
+     * received.
+     */
+    private final List<Request> requests = new ArrayList<Request>();
+
+    /**
+     * The client under test.
+     */
+    private XCapClientImpl client;
+
+    /**
+     * Create a TestXCapClient wrapper over the test with the specified name.
+     * @param name the name of the test to run
+     */
+    public TestXCapClient(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Starts the stand-in server and connects the client to it.
+     * @throws Exception if anything goes wrong.
+     */
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        server = HttpServer.create(
+                new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0),
+                0);
+        server.createContext(XCAP_ROOT, new HttpHandler()
+        {
+            public void handle(HttpExchange exchange)
+                throws IOException
+            {
+                handleRequest(exchange);
+            }
+        });
+        server.start();
+
+        SipFactory sipFactory = SipFactory.getInstance();
+        sipFactory.setPathName("gov.nist");
+        Address userAddress
+            = sipFactory.createAddressFactory().createAddress(
+                    "sip:alice@example.com");
+
+        client = new XCapClientImpl();
+        client.connect(
+                new java.net.URI(
+                        "http://127.0.0.1:" + server.getAddress().getPort()
+                            + XCAP_ROOT),
+                userAddress,
+                "alice",
+                "secret");
+    }
+
+    /**
+     * Disconnects the client and stops the stand-in server.
+     * @throws Exception if anything goes wrong.
+     */
+    protected void tearDown() throws Exception
+    {
+        client.disconnect();
+        server.stop(0);
+
+        super.tearDown();
+    }
+
+    /**
+     * Fetches the resource-lists twice and makes sure that the second time
+     * the server is asked whether it has changed instead of sending it again.
+     * @throws Exception if anything goes wrong.
+     */
+    public void testRevalidateWithETag() throws Exception
+    {
+        ResourceListsType first = client.getResourceLists();
+        ResourceListsType second = client.getResourceLists();
+
+        assertEquals(1, first.getList().size());
+        assertEquals(1, second.getList().size());
+        assertEquals("Friends", second.getList().get(0).getName());
+
+        List<Request> gets = getRequests("GET", "/resource-lists/");
+
+        assertEquals(2, gets.size());
+        assertNull(gets.get(0).ifNoneMatch);
+        assertEquals(ETAG, gets.get(1).ifNoneMatch);
+    }
+
+    /**
+     * Puts and deletes an entry and makes sure that only the entry is sent,
+     * with a node selector, and that the cached resource-lists is fetched
+     * again afterwards.
+     * @throws Exception if anything goes wrong.
+     */
+    public void testEntryNodeSelector() throws Exception
+    {
+        client.getResourceLists();
+
+        EntryType entry = new EntryType("sip:bob@example.com");
+        client.putResourceListsEntry(Arrays.asList("Friends"), entry);
+        client.deleteResourceListsEntry(
+                Arrays.asList("Friends"), "sip:carol@example.com");
+        client.getResourceLists();
+
+        String documentPath = XCAP_ROOT
+            + "/resource-lists/users/sip:alice@example.com/index";
+        List<Request> puts = getRequests("PUT", "/resource-lists/");
+
+        assertEquals(1, puts.size());
+        assertEquals(documentPath
+                + "/~~/resource-lists/list%5B@name=%22Friends%22%5D"
+                + "/entry%5B@uri=%22sip:bob@example.com%22%5D",
+                puts.get(0).path);
+        assertEquals(ResourceListsClient.ELEMENT_CONTENT_TYPE,
+                puts.get(0).contentType);
+        assertTrue(puts.get(0).content.startsWith("<entry"));
+        assertTrue(puts.get(0).content.contains("sip:bob@example.com"));
+
+        List<Request> deletes = getRequests("DELETE", "/resource-lists/");
+
+        assertEquals(1, deletes.size());
+        assertEquals(documentPath
+                + "/~~/resource-lists/list%5B@name=%22Friends%22%5D"
+                + "/entry%5B@uri=%22sip:carol@example.com%22%5D",
+                deletes.get(0).path);
+
+        List<Request> gets = getRequests("GET", "/resource-lists/");
+
+        assertEquals(2, gets.size());
+        assertNull("the modified document must be fetched again",
+                gets.get(1).ifNoneMatch);
+    }
+
+    /**
+     * Makes sure that the requests reuse the same connection.
+     * @throws Exception if anything goes wrong.
+     */
+    public void testKeepAlive() throws Exception
+    {
+        client.getResourceLists();
+        client.getResourceLists();
+        client.deleteResourceListsEntry(
+                Arrays.asList("Friends"), "sip:carol@example.com");
+
+        Set<Integer> ports = new HashSet<Integer>();
+
+        synchronized (requests)
+        {
+            for (Request request : requests)
+                ports.add(request.remotePort);
+        }
+        assertEquals("requests were not sent over one connection",
+                1, ports.size());
+    }
+
+    /**
+     * Returns the requests with a specific method and path.
+     *
+     * @param method the method of the requests.
+     * @param pathPart a part of the path of the requests.
+     * @return the requests with <tt>method</tt> and a path containing
+     * <tt>pathPart</tt>.
+     */
+    private List<Request> getRequests(String method, String pathPart)
+    {
+        List<Request> result = new ArrayList<Request>();
+
+        synchronized (requests)
+        {
+            for (Request request : requests)
+            {
+                if (request.method.equals(method)
+                        && request.path.contains(pathPart))
+                    result.add(request);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Records a request to the stand-in server and answers it.
+     *
+     * @param exchange the request and its response.
+     * @throws IOException if the response cannot be sent.
+     */
+    private void handleRequest(HttpExchange exchange)
+        throws IOException
+    {
+        Request request = new Request();
+
+        request.method = exchange.getRequestMethod();
+        request.path = exchange.getRequestURI().getRawPath();
+        request.ifNoneMatch
+            = exchange.getRequestHeaders().getFirst("If-None-Match");
+        request.contentType
+            = exchange.getRequestHeaders().getFirst("Content-Type");
+        request.remotePort = exchange.getRemoteAddress().getPort();
+
+        InputStream in = exchange.getRequestBody();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+
+        while ((read = in.read(buffer)) != -1)
+            body.write(buffer, 0, read);
+        request.content = new String(body.toByteArray(), "UTF-8");
+
+        synchronized (requests)
+        {
+            requests.add(request);
+        }
+
+        Headers responseHeaders = exchange.getResponseHeaders();
+
+        if (request.path.endsWith("/xcap-caps/global/index"))
+        {
+            responseHeaders.set("Content-Type", XCapCapsClient.CONTENT_TYPE);
+            sendResponse(exchange, 200, XCAP_CAPS);
+        }
+        else if (!request.method.equals("GET"))
+        {
+            sendResponse(exchange, 200, null);
+        }
+        else if (ETAG.equals(request.ifNoneMatch))
+        {
+            sendResponse(exchange, 304, null);
+        }
+        else
+        {
+            responseHeaders.set("Content-Type",
+                    ResourceListsClient.RESOURCE_LISTS_CONTENT_TYPE);
+            responseHeaders.set("ETag", ETAG);
+            sendResponse(exchange, 200, RESOURCE_LISTS);
+        }
+    }
+
+    /**
+     * Sends the response to a request to the stand-in server.
+     *
+     * @param exchange the request and its response.
+     * @param code the status code of the response.
+     * @param content the body of the response or <tt>null</tt> if there isn't
+     * one.
+     * @throws IOException if the response cannot be sent.
+     */
+    private static void sendResponse(
+            HttpExchange exchange,
+            int code,
+            String content)
+        throws IOException
+    {
+        if (content == null)
+        {
+            exchange.sendResponseHeaders(code, -1);
+        }
+        else
+        {
+            byte[] bytes = content.getBytes("UTF-8");
+
+            exchange.sendResponseHeaders(code, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        }
+        exchange.close();
+    }
+
+    /**
+     * A request received by the stand-in server.
+     */
+    private static class Request
+    {
+        String method;
+        String path;
+        String ifNoneMatch;
+        String contentType;
+        String content;
+        int remotePort;
+    }
+}
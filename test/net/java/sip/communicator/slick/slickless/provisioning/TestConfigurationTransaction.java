@@ -0,0 +1,213 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.provisioning;
+
+import java.lang.reflect.*;
+import java.util.*;
+
+import junit.framework.*;
+import net.java.sip.communicator.plugin.provisioning.*;
+
+import org.jitsi.service.configuration.*;
+
+/**
+ * Tests the staging of configuration changes by the
+ * <tt>ConfigurationTransaction</tt> class and their application with a
+ * single store of the configuration.
+ *
+ * @author agent
+ */
+public class TestConfigurationTransaction extends TestCase
+{
+    /**
+     * The properties of the stand-in configuration.
+     */
+    private final Map<String, Object> properties
+        = new HashMap<String, Object>();
+
+    /**
+     * The changes passed to the <tt>setProperties</tt> calls on the stand-in
+     * configuration, one map per call.
+     */
+    private final List<Map<String, Object>> stores
+        = new ArrayList<Map<String, Object>>();
+
+    /**
+     * The stand-in configuration which records the <tt>setProperties</tt>
+     * calls and fails on the others, e.g. on the ones which change a single
+     * property.
+     */
+    private ConfigurationService config;
+
+    /**
+     * Create a TestConfigurationTransaction wrapper over the test with the
+     * specified name.
+     * @param name the name of the test to run
+     */
+    public TestConfigurationTransaction(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Creates the stand-in configuration with an account.
+     * @throws Exception if anything goes wrong.
+     */
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        properties.clear();
+        stores.clear();
+        properties.put("acc1", "acc1");
+        properties.put("acc1.USER_ID", "alice@example.com");
+        properties.put("acc1.SERVER_PORT", "5222");
+        properties.put("acc10", "acc10");
+        properties.put("proxy.ADDRESS", "192.0.2.1");
+        config
+            = (ConfigurationService)
+                Proxy.newProxyInstance(
+                        ConfigurationService.class.getClassLoader(),
+                        new Class<?>[] { ConfigurationService.class },
+                        new InvocationHandler()
+                        {
+                            @SuppressWarnings("unchecked")
+                            public Object invoke(
+                                    Object proxy,
+                                    Method method,
+                                    Object[] args)
+                            {
+                                String name = method.getName();
+
+                                if ("getProperty".equals(name))
+                                    return properties.get(args[0]);
+                                else if ("getAllPropertyNames".equals(name))
+                                {
+                                    return
+                                        new ArrayList<String>(
+                                                properties.keySet());
+                                }
+                                else if ("setProperties".equals(name))
+                                {
+                                    Map<String, Object> changes
+                                        = (Map<String, Object>) args[0];
+
+                                    stores.add(
+                                            new HashMap<String, Object>(
+                                                    changes));
+                                    for (Map.Entry<String, Object> entry
+                                            : changes.entrySet())
+                                    {
+                                        if (entry.getValue() == null)
+                                            properties.remove(entry.getKey());
+                                        else
+                                        {
+                                            properties.put(
+                                                    entry.getKey(),
+                                                    entry.getValue());
+                                        }
+                                    }
+                                    return null;
+                                }
+                                throw new UnsupportedOperationException(name);
+                            }
+                        });
+    }
+
+    /**
+     * Makes sure that the staged properties are applied with a single
+     * <tt>setProperties</tt> call which leaves out the properties that
+     * already have the staged value.
+     */
+    public void testCommit()
+    {
+        ConfigurationTransaction transaction
+            = new ConfigurationTransaction(config);
+
+        transaction.setProperty("acc1.USER_ID", "alice@example.com");
+        transaction.setProperty("acc1.SERVER_PORT", "5223");
+        transaction.setProperty("acc2", "acc2");
+        transaction.setProperty("acc2.USER_ID", "bob@example.com");
+        assertTrue(stores.isEmpty());
+
+        transaction.commit();
+
+        Map<String, Object> expected = new HashMap<String, Object>();
+
+        expected.put("acc1.SERVER_PORT", "5223");
+        expected.put("acc2", "acc2");
+        expected.put("acc2.USER_ID", "bob@example.com");
+        assertEquals(Collections.singletonList(expected), stores);
+        assertEquals("bob@example.com", properties.get("acc2.USER_ID"));
+
+        // nothing is left staged and an unchanged configuration isn't stored
+        transaction.commit();
+        transaction.setProperty("acc2", "acc2");
+        transaction.commit();
+        assertEquals(1, stores.size());
+    }
+
+    /**
+     * Makes sure that the changes staged before a rollback are discarded and
+     * the configuration left untouched.
+     */
+    public void testRollback()
+    {
+        Map<String, Object> before = new HashMap<String, Object>(properties);
+        ConfigurationTransaction transaction
+            = new ConfigurationTransaction(config);
+
+        transaction.setProperty("acc1.SERVER_PORT", "5223");
+        transaction.removeProperty("proxy");
+        transaction.enforcePrefixes(new String[] { "acc" });
+        transaction.rollback();
+        transaction.commit();
+
+        assertTrue(stores.isEmpty());
+        assertEquals(before, properties);
+    }
+
+    /**
+     * Makes sure that removing a property removes its children but not the
+     * properties whose names merely start with its name, that it overrides
+     * the properties staged before, and that the prefixes enforced remove
+     * the properties, configured or staged, which don't start with them.
+     */
+    public void testRemoveProperty()
+    {
+        ConfigurationTransaction transaction
+            = new ConfigurationTransaction(config);
+
+        transaction.setProperty("acc1.PASSWORD_PERSISTENT", "true");
+        transaction.removeProperty("acc1");
+        transaction.commit();
+
+        Map<String, Object> expected = new HashMap<String, Object>();
+
+        expected.put("acc1", null);
+        expected.put("acc1.USER_ID", null);
+        expected.put("acc1.SERVER_PORT", null);
+        assertEquals(Collections.singletonList(expected), stores);
+        assertEquals(
+                new HashSet<String>(Arrays.asList("acc10", "proxy.ADDRESS")),
+                properties.keySet());
+
+        stores.clear();
+        transaction.setProperty("acc2", "acc2");
+        transaction.setProperty("user.NAME", "bob");
+        transaction.enforcePrefixes(new String[] { "acc" });
+        transaction.commit();
+
+        expected.clear();
+        expected.put("acc2", "acc2");
+        expected.put("proxy.ADDRESS", null);
+        assertEquals(Collections.singletonList(expected), stores);
+        assertEquals(
+                new HashSet<String>(Arrays.asList("acc10", "acc2")),
+                properties.keySet());
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.startup;
+
+import java.lang.reflect.*;
+import java.util.*;
+
+import junit.framework.*;
+import net.java.sip.communicator.impl.startup.*;
+
+import org.osgi.framework.*;
+
+/**
+ * Tests the parsing of the <tt>Lazy-Services</tt> manifest header by the
+ * <tt>LazyActivationManager</tt> class and the matching of the services the
+ * lazily activated bundles register by the <tt>LazyService</tt> class.
+ *
+ * @author agent
+ */
+public class TestLazyService extends TestCase
+{
+    /**
+     * The name of the class of the configuration forms.
+     */
+    private static final String CONFIGURATION_FORM
+        = "net.java.sip.communicator.service.gui.ConfigurationForm";
+
+    /**
+     * Create a TestLazyService wrapper over the test with the specified name.
+     * @param name the name of the test to run
+     */
+    public TestLazyService(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Makes sure that the services, their properties and their
+     * <tt>unless:=</tt> directives are parsed, including the quoted values
+     * which contain separators.
+     */
+    public void testParse()
+    {
+        List<LazyService> services
+            = LazyActivationManager.parseLazyServices(
+                    bundle(
+                            Constants.ACTIVATION_LAZY,
+                            CONFIGURATION_FORM + "; FORM_TYPE=GENERAL_TYPE;"
+                                + " unless:=\"plugin.chatconfig.DISABLED\","
+                                + " net.java.sip.communicator.service"
+                                + ".replacement.ReplacementService;"
+                                + " SOURCE=\"a;b,c\""));
+
+        assertEquals(2, services.size());
+
+        LazyService form = services.get(0);
+
+        assertEquals(CONFIGURATION_FORM, form.getClassName());
+        assertEquals(
+                Collections.singletonMap("FORM_TYPE", "GENERAL_TYPE"),
+                form.getProperties());
+        assertEquals(
+                "plugin.chatconfig.DISABLED",
+                form.getDisabledProperty());
+
+        LazyService replacement = services.get(1);
+
+        assertEquals(
+                "net.java.sip.communicator.service.replacement"
+                    + ".ReplacementService",
+                replacement.getClassName());
+        assertEquals(
+                Collections.singletonMap("SOURCE", "a;b,c"),
+                replacement.getProperties());
+        assertNull(replacement.getDisabledProperty());
+    }
+
+    /**
+     * Makes sure that the bundles which don't declare the lazy activation
+     * policy or don't list any service aren't activated lazily.
+     */
+    public void testNotLazy()
+    {
+        assertNull(
+                LazyActivationManager.parseLazyServices(
+                        bundle(null, CONFIGURATION_FORM)));
+        assertNull(
+                LazyActivationManager.parseLazyServices(
+                        bundle(Constants.ACTIVATION_LAZY, null)));
+        assertNull(
+                LazyActivationManager.parseLazyServices(
+                        bundle(Constants.ACTIVATION_LAZY, " , ")));
+    }
+
+    /**
+     * Makes sure that a service registered by a lazily activated bundle
+     * matches its lazy service only if it has been registered under the
+     * declared class and with the declared properties.
+     */
+    public void testMatches()
+    {
+        LazyService service
+            = new LazyService(
+                    bundle(Constants.ACTIVATION_LAZY, null),
+                    CONFIGURATION_FORM + ";FORM_TYPE=GENERAL_TYPE");
+        Map<String, Object> properties = new HashMap<String, Object>();
+
+        properties.put(
+                Constants.OBJECTCLASS,
+                new String[] { "java.lang.Object", CONFIGURATION_FORM });
+        properties.put("FORM_TYPE", "GENERAL_TYPE");
+        properties.put("OTHER", "ignored");
+        assertTrue(service.matches(serviceReference(properties)));
+
+        properties.put("FORM_TYPE", "ADVANCED_TYPE");
+        assertFalse(service.matches(serviceReference(properties)));
+
+        properties.remove("FORM_TYPE");
+        assertFalse(service.matches(serviceReference(properties)));
+
+        properties.put("FORM_TYPE", "GENERAL_TYPE");
+        properties.put(
+                Constants.OBJECTCLASS,
+                new String[] { "java.lang.Object" });
+        assertFalse(service.matches(serviceReference(properties)));
+    }
+
+    /**
+     * Returns a stand-in bundle with specific manifest headers. Its other
+     * methods aren't called so they all return <tt>null</tt>.
+     *
+     * @param activationPolicy the value of the
+     * <tt>Bundle-ActivationPolicy</tt> header or <tt>null</tt> if the bundle
+     * doesn't declare one
+     * @param lazyServices the value of the <tt>Lazy-Services</tt> header or
+     * <tt>null</tt> if the bundle doesn't declare one
+     * @return a stand-in bundle with the specified manifest headers
+     */
+    private static Bundle bundle(String activationPolicy, String lazyServices)
+    {
+        final Hashtable<String, String> headers
+            = new Hashtable<String, String>();
+
+        if (activationPolicy != null)
+            headers.put(Constants.BUNDLE_ACTIVATIONPOLICY, activationPolicy);
+        if (lazyServices != null)
+            headers.put("Lazy-Services", lazyServices);
+
+        return
+            (Bundle)
+                Proxy.newProxyInstance(
+                        Bundle.class.getClassLoader(),
+                        new Class<?>[] { Bundle.class },
+                        new InvocationHandler()
+                        {
+                            public Object invoke(
+                                    Object proxy,
+                                    Method method,
+                                    Object[] args)
+                            {
+                                return
+                                    "getHeaders".equals(method.getName())
+                                        ? headers
+                                        : null;
+                            }
+                        });
+    }
+
+    /**
+     * Returns a stand-in for a registered service with specific properties.
+     * Its other methods aren't called so they all return <tt>null</tt>.
+     *
+     * @param properties the properties of the service
+     * @return a stand-in for a service with the specified properties
+     */
+    private static ServiceReference serviceReference(
+            Map<String, Object> properties)
+    {
+        final Map<String, Object> copy
+            = new HashMap<String, Object>(properties);
+
+        return
+            (ServiceReference)
+                Proxy.newProxyInstance(
+                        ServiceReference.class.getClassLoader(),
+                        new Class<?>[] { ServiceReference.class },
+                        new InvocationHandler()
+                        {
+                            public Object invoke(
+                                    Object proxy,
+                                    Method method,
+                                    Object[] args)
+                            {
+                                return
+                                    "getProperty".equals(method.getName())
+                                        ? copy.get(args[0])
+                                        : null;
+                            }
+                        });
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.zeroconf;
+
+import java.net.*;
+import java.util.*;
+
+import junit.framework.*;
+import net.java.sip.communicator.impl.protocol.zeroconf.jmdns.*;
+
+/**
+ * Tests the expiration of the records of the <tt>DNSCache</tt> class when
+ * their TTL is reset by the records received again from their peers.
+ *
+ * @author agent
+ */
+public class TestDNSCache extends TestCase
+{
+    /**
+     * The interval in milliseconds at which <tt>JmDNS</tt> reaps the expired
+     * records of its cache.
+     */
+    private static final long REAPER_INTERVAL = 10000;
+
+    /**
+     * The name of the records of the tests.
+     */
+    private static final String NAME = "host.local.";
+
+    /**
+     * The address of the records of the tests.
+     */
+    private InetAddress address;
+
+    /**
+     * Create a TestDNSCache wrapper over the test with the specified name.
+     * @param name the name of the test to run
+     */
+    public TestDNSCache(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Creates the address of the records of the tests.
+     * @throws Exception if anything goes wrong.
+     */
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        address = InetAddress.getByAddress(new byte[] { (byte) 192, 0, 2, 1 });
+    }
+
+    /**
+     * Makes sure that a record which its peer has said goodbye to, i.e. sent
+     * again with a TTL of zero, is reaped the next time the cache is reaped
+     * rather than at the end of its former TTL.
+     */
+    public void testGoodbye()
+    {
+        DNSCache cache = new DNSCache(16);
+        long now = System.currentTimeMillis();
+        DNSRecord rec = address(120);
+
+        cache.add(rec);
+        cache.resetTTL(rec, address(0));
+
+        assertEquals(
+                Collections.singletonList(rec),
+                cache.reap(now + REAPER_INTERVAL));
+        assertNull(cache.get(rec));
+    }
+
+    /**
+     * Makes sure that a record whose TTL has been extended is kept past its
+     * former TTL and reaped at the end of the new one.
+     */
+    public void testRefresh()
+    {
+        DNSCache cache = new DNSCache(16);
+        long now = System.currentTimeMillis();
+        DNSRecord rec = address(120);
+
+        cache.add(rec);
+        cache.resetTTL(rec, address(3600));
+
+        assertTrue(cache.reap(now + 130 * 1000).isEmpty());
+        assertSame(rec, cache.get(rec));
+
+        assertEquals(
+                Collections.singletonList(rec),
+                cache.reap(now + 3600 * 1000 + REAPER_INTERVAL));
+        assertNull(cache.get(rec));
+    }
+
+    /**
+     * Returns an address record of {@link #NAME} received now.
+     *
+     * @param ttl the TTL of the record in seconds
+     * @return an address record of {@link #NAME} with the specified TTL
+     */
+    private DNSRecord address(int ttl)
+    {
+        return
+            new DNSRecord.Address(
+                    NAME,
+                    DNSConstants.TYPE_A,
+                    DNSConstants.CLASS_IN,
+                    ttl,
+                    address);
+    }
+}